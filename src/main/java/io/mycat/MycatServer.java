@@ -59,6 +59,8 @@ import io.mycat.backend.datasource.PhysicalDBNode;
 import io.mycat.backend.datasource.PhysicalDBPool;
 import io.mycat.backend.datasource.PhysicalDatasource;
 import io.mycat.backend.heartbeat.zkprocess.MycatLeaderLatch;
+import io.mycat.backend.hetu.HetuConnectionPool;
+import io.mycat.backend.hetu.HetuLiveness;
 import io.mycat.backend.mysql.nio.handler.MultiNodeCoordinator;
 import io.mycat.backend.mysql.xa.CoordinatorLogEntry;
 import io.mycat.backend.mysql.xa.ParticipantLogEntry;
@@ -70,6 +72,7 @@ import io.mycat.backend.mysql.xa.recovery.impl.FileSystemRepository;
 import io.mycat.buffer.BufferPool;
 import io.mycat.buffer.DirectByteBufferPool;
 import io.mycat.buffer.NettyBufferPool;
+import io.mycat.buffer.SizeClassBufferPool;
 import io.mycat.cache.CacheService;
 import io.mycat.config.MycatConfig;
 import io.mycat.config.classloader.DynaClassLoader;
@@ -87,13 +90,16 @@ import io.mycat.net.NIOAcceptor;
 import io.mycat.net.NIOConnector;
 import io.mycat.net.NIOProcessor;
 import io.mycat.net.NIOReactorPool;
+import io.mycat.net.NIOReusePortAcceptor;
 import io.mycat.net.SocketAcceptor;
 import io.mycat.net.SocketConnector;
+import io.mycat.net.factory.FrontendConnectionFactory;
 import io.mycat.route.MyCATSequnceProcessor;
 import io.mycat.route.RouteService;
 import io.mycat.route.factory.RouteStrategyFactory;
 import io.mycat.route.sequence.handler.SequenceHandler;
 import io.mycat.server.ServerConnectionFactory;
+import io.mycat.server.postgres.PostgresConnectionFactory;
 import io.mycat.server.interceptor.SQLInterceptor;
 import io.mycat.server.interceptor.impl.GlobalTableUtil;
 import io.mycat.sqlengine.OneRawSQLQueryResultHandler;
@@ -162,9 +168,13 @@ public class MycatServer {
     private final long startupTime;
     private NIOProcessor[] processors;
     private SocketConnector connector;
+    // NIO时的reactor, AIO时为null
+    private NIOReactorPool reactorPool;
     private NameableExecutor businessExecutor;
     private NameableExecutor sequenceExecutor;
     private NameableExecutor timerExecutor;
+    private NameableExecutor connectExecutor;
+    private NameableExecutor prefetchExecutor;
     private ListeningExecutorService listeningExecutorService;
     private InterProcessMutex dnindexLock;
     private long totalNetWorkBufferSize = 0;
@@ -240,6 +250,17 @@ public class MycatServer {
         return timerExecutor;
     }
 
+    public NameableExecutor getConnectExecutor() {
+        return connectExecutor;
+    }
+
+    /**
+     * hetu大结果集的取数据线程, 和编码的业务线程并行
+     */
+    public NameableExecutor getPrefetchExecutor() {
+        return prefetchExecutor;
+    }
+
     public DynaClassLoader getCatletClassLoader() {
         return catletClassLoader;
     }
@@ -344,6 +365,7 @@ public class MycatServer {
         ServerConnectionFactory sf = new ServerConnectionFactory();
         SocketAcceptor manager = null;
         SocketAcceptor server = null;
+        SocketAcceptor postgres = null;
         aio = (system.getUsingAIO() == 1);
 
         // startup processors
@@ -362,7 +384,8 @@ public class MycatServer {
         switch (bufferPoolType) {
             case 0:
                 bufferPool = new DirectByteBufferPool(bufferPoolPageSize, bufferPoolChunkSize,
-                        bufferPoolPageNumber, system.getFrontSocketSoRcvbuf());
+                        bufferPoolPageNumber, system.getFrontSocketSoRcvbuf(),
+                        system.getBufferPoolMaxPageNumber(), system.getBufferPoolPageIdleTimeout());
 
 
                 totalNetWorkBufferSize = bufferPoolPageSize * bufferPoolPageNumber;
@@ -385,10 +408,17 @@ public class MycatServer {
                 bufferPool = new NettyBufferPool(bufferPoolChunkSize);
                 LOGGER.info("Use Netty Buffer Pool");
 
+                break;
+            case 3:
+                bufferPool = new SizeClassBufferPool(bufferPoolPageSize, bufferPoolChunkSize,
+                        bufferPoolPageNumber, system.getFrontSocketSoRcvbuf());
+                LOGGER.info("Use Size Class Buffer Pool");
+                totalNetWorkBufferSize = bufferPoolPageSize * bufferPoolPageNumber;
                 break;
             default:
                 bufferPool = new DirectByteBufferPool(bufferPoolPageSize, bufferPoolChunkSize,
-                        bufferPoolPageNumber, system.getFrontSocketSoRcvbuf());
+                        bufferPoolPageNumber, system.getFrontSocketSoRcvbuf(),
+                        system.getBufferPoolMaxPageNumber(), system.getBufferPoolPageIdleTimeout());
                 ;
                 totalNetWorkBufferSize = bufferPoolPageSize * bufferPoolPageNumber;
         }
@@ -409,6 +439,8 @@ public class MycatServer {
                 threadPoolSize);
         sequenceExecutor = ExecutorUtil.create("SequenceExecutor", threadPoolSize);
         timerExecutor = ExecutorUtil.create("Timer", system.getTimerExecutor());
+        connectExecutor = ExecutorUtil.create("ConnectExecutor", system.getConnectExecutor());
+        prefetchExecutor = ExecutorUtil.createCached("PrefetchExecutor");
         listeningExecutorService = MoreExecutors.listeningDecorator(businessExecutor);
 
         for (int i = 0; i < processors.length; i++) {
@@ -442,24 +474,36 @@ public class MycatServer {
 
             server = new AIOAcceptor(NAME + "Server", system.getBindIp(),
                     system.getServerPort(), sf, this.asyncChannelGroups[0]);
+            if (system.getPostgresPort() > 0) {
+                postgres = new AIOAcceptor(NAME + "Postgres", system.getBindIp(),
+                        system.getPostgresPort(), new PostgresConnectionFactory(), this.asyncChannelGroups[0]);
+            }
 
         } else {
             LOGGER.info("using nio network handler ");
 
-            NIOReactorPool reactorPool = new NIOReactorPool(
+            reactorPool = new NIOReactorPool(
                     DirectByteBufferPool.LOCAL_BUF_THREAD_PREX + "NIOREACTOR",
                     processors.length);
             connector = new NIOConnector(DirectByteBufferPool.LOCAL_BUF_THREAD_PREX + "NIOConnector", reactorPool);
             ((NIOConnector) connector).start();
 
 
-            server = new NIOAcceptor(DirectByteBufferPool.LOCAL_BUF_THREAD_PREX + NAME
-                    + "Server", system.getBindIp(), system.getServerPort(), sf, reactorPool);
+            server = newNIOAcceptor(DirectByteBufferPool.LOCAL_BUF_THREAD_PREX + NAME
+                    + "Server", system.getServerPort(), sf);
+            if (system.getPostgresPort() > 0) {
+                postgres = newNIOAcceptor(DirectByteBufferPool.LOCAL_BUF_THREAD_PREX + NAME
+                        + "Postgres", system.getPostgresPort(), new PostgresConnectionFactory());
+            }
         }
 
         server.start();
         // server started
         LOGGER.info(server.getName() + " is started and listening on " + server.getPort());
+        if (postgres != null) {
+            postgres.start();
+            LOGGER.info(postgres.getName() + " is started and listening on " + postgres.getPort());
+        }
 
         LOGGER.info("===============================================");
 
@@ -478,6 +522,19 @@ public class MycatServer {
         }
 
 
+        scheduler.scheduleAtFixedRate(hetuPoolCheck(), HetuConnectionPool.CHECK_PERIOD,
+                HetuConnectionPool.CHECK_PERIOD, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(hetuLivenessCheck(), HetuLiveness.CHECK_PERIOD,
+                HetuLiveness.CHECK_PERIOD, TimeUnit.MILLISECONDS);
+        if (bufferPool instanceof DirectByteBufferPool
+                && ((DirectByteBufferPool) bufferPool).getMaxPageCount() > bufferPoolPageNumber) {
+            scheduler.scheduleAtFixedRate(bufferPoolCheck(), DirectByteBufferPool.CHECK_PERIOD,
+                    DirectByteBufferPool.CHECK_PERIOD, TimeUnit.MILLISECONDS);
+        } else if (bufferPool instanceof SizeClassBufferPool) {
+            scheduler.scheduleAtFixedRate(bufferPoolCheck(), SizeClassBufferPool.CHECK_PERIOD,
+                    SizeClassBufferPool.CHECK_PERIOD, TimeUnit.MILLISECONDS);
+        }
+
         //xa 事务定时检查 是否全部提交 或者部分提交  部分回滚, 进行补充提交补充回滚.
         scheduler.scheduleAtFixedRate(xaTaskCheck(), 0L, 10 * 1000, TimeUnit.MILLISECONDS);
 //        new Thread(tableStructureCheck()).start();
@@ -817,6 +874,10 @@ public class MycatServer {
         return connector;
     }
 
+    public NIOReactorPool getReactorPool() {
+        return reactorPool;
+    }
+
     public SQLRecorder getSqlRecorder() {
         return sqlRecorder;
     }
@@ -963,6 +1024,66 @@ public class MycatServer {
         };
     }
 
+    // hetu连接池空闲连接回收和预热
+    private Runnable hetuPoolCheck() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    HetuConnectionPool.getInstance().check();
+                } catch (Exception e) {
+                    LOGGER.warn("hetu connection pool check error", e);
+                }
+            }
+        };
+    }
+
+    private SocketAcceptor newNIOAcceptor(String name, int port, FrontendConnectionFactory factory)
+            throws IOException {
+        SystemConfig system = config.getSystem();
+        if (system.getAcceptMode() == 1) {
+            if (NIOReusePortAcceptor.isSupported()) {
+                LOGGER.info(name + " accepts on " + reactorPool.getReactors().length + " SO_REUSEPORT sockets");
+                return new NIOReusePortAcceptor(name, system.getBindIp(), port, factory, reactorPool,
+                        system.getAcceptBacklog());
+            }
+            LOGGER.warn("SO_REUSEPORT is not supported, " + name + " uses one acceptor thread");
+        }
+        return new NIOAcceptor(name, system.getBindIp(), port, factory, reactorPool, system.getAcceptBacklog());
+    }
+
+    // 释放扩容后空闲的buffer page, 或已退出线程的magazine
+    private Runnable bufferPoolCheck() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (bufferPool instanceof SizeClassBufferPool) {
+                        ((SizeClassBufferPool) bufferPool).releaseDeadThreads();
+                    } else {
+                        ((DirectByteBufferPool) bufferPool).releaseIdlePages();
+                    }
+                } catch (Exception e) {
+                    LOGGER.warn("buffer pool check error", e);
+                }
+            }
+        };
+    }
+
+    // 在COM_PING使用的后端状态过期前后台校验
+    private Runnable hetuLivenessCheck() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    HetuLiveness.getInstance().check();
+                } catch (Exception e) {
+                    LOGGER.warn("hetu liveness check error", e);
+                }
+            }
+        };
+    }
+
     //定时清理xa任务 对超过阈值的xa任务回滚或者提交
     private Runnable xaTaskCheck() {
         return new Runnable() {
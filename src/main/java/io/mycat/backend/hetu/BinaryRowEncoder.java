@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.backend.mysql.BufferUtil;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.MysqlDefs;
+import io.mycat.util.StringEncoder;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * binary protocol row (COM_STMT_EXECUTE), values are taken from the typed getters of the
+ * ResultSet, so there is no text round trip as in BinaryRowDataPacket.convert().
+ *
+ * @see @http://dev.mysql.com/doc/internals/en/binary-protocol-resultset-row.html
+ * @see @http://dev.mysql.com/doc/internals/en/binary-protocol-value.html
+ */
+public class BinaryRowEncoder extends RowEncoder {
+    private static final int COLUMN_STRING = 0;
+    private static final int COLUMN_BINARY = 1;
+    private static final int COLUMN_DECIMAL = 2;
+    private static final int COLUMN_LONGLONG = 3;
+    private static final int COLUMN_INT = 4;
+    private static final int COLUMN_SHORT = 5;
+    private static final int COLUMN_TINY = 6;
+    private static final int COLUMN_BIT = 7;
+    private static final int COLUMN_DOUBLE = 8;
+    private static final int COLUMN_FLOAT = 9;
+    private static final int COLUMN_DATE = 10;
+    private static final int COLUMN_DATETIME = 11;
+    private static final int COLUMN_TIME = 12;
+
+    private final int[] columnWriters;
+    private final int nullBitMapSize;
+    // 当前行的NULL-bitmap位置, 只在writeRow()期间有效
+    private ByteBuffer nullBitMap;
+    private int nullBitMapStart;
+
+    public BinaryRowEncoder(List<FieldPacket> fieldPks, String charset) {
+        this(fieldPks, new StringEncoder(charset));
+    }
+
+    public BinaryRowEncoder(List<FieldPacket> fieldPks, StringEncoder stringEncoder) {
+        super(fieldPks, stringEncoder);
+        this.columnWriters = new int[fieldTypes.length];
+        for (int i = 0; i < fieldTypes.length; i++) {
+            columnWriters[i] = columnWriter(fieldTypes[i]);
+        }
+        this.nullBitMapSize = (fieldTypes.length + 7 + 2) / 8;
+    }
+
+    private static int columnWriter(int type) {
+        if (isBinary(type)) {
+            return COLUMN_BINARY;
+        }
+        switch (type) {
+            case MysqlDefs.FIELD_TYPE_DECIMAL:
+            case MysqlDefs.FIELD_TYPE_NEW_DECIMAL:
+                return COLUMN_DECIMAL;
+            case MysqlDefs.FIELD_TYPE_LONGLONG:
+                return COLUMN_LONGLONG;
+            case MysqlDefs.FIELD_TYPE_LONG:
+            case MysqlDefs.FIELD_TYPE_INT24:
+                return COLUMN_INT;
+            case MysqlDefs.FIELD_TYPE_SHORT:
+            case MysqlDefs.FIELD_TYPE_YEAR:
+                return COLUMN_SHORT;
+            case MysqlDefs.FIELD_TYPE_TINY:
+                return COLUMN_TINY;
+            case MysqlDefs.FIELD_TYPE_BIT:
+                return COLUMN_BIT;
+            case MysqlDefs.FIELD_TYPE_DOUBLE:
+                return COLUMN_DOUBLE;
+            case MysqlDefs.FIELD_TYPE_FLOAT:
+                return COLUMN_FLOAT;
+            case MysqlDefs.FIELD_TYPE_DATE:
+                return COLUMN_DATE;
+            case MysqlDefs.FIELD_TYPE_DATETIME:
+            case MysqlDefs.FIELD_TYPE_TIMESTAMP:
+                return COLUMN_DATETIME;
+            case MysqlDefs.FIELD_TYPE_TIME:
+                return COLUMN_TIME;
+            default:
+                return COLUMN_STRING;
+        }
+    }
+
+    @Override
+    protected void writeRow(ResultSet rs) throws SQLException {
+        // packet header [00] + NULL-bitmap, null bits are set later
+        ensureCapacity(1 + nullBitMapSize);
+        buffer.put((byte) 0);
+        nullBitMap = buffer;
+        nullBitMapStart = buffer.position();
+        for (int i = 0; i < nullBitMapSize; i++) {
+            buffer.put((byte) 0);
+        }
+
+        for (int i = 0; i < columnWriters.length; i++) {
+            int j = i + 1;
+            switch (columnWriters[i]) {
+                case COLUMN_LONGLONG: {
+                    long v = rs.getLong(j);
+                    if (rs.wasNull()) {
+                        setNull(i);
+                    } else {
+                        ensureCapacity(8);
+                        BufferUtil.writeLong(buffer, v);
+                    }
+                    break;
+                }
+                case COLUMN_INT: {
+                    int v = rs.getInt(j);
+                    if (rs.wasNull()) {
+                        setNull(i);
+                    } else {
+                        ensureCapacity(4);
+                        BufferUtil.writeInt(buffer, v);
+                    }
+                    break;
+                }
+                case COLUMN_SHORT: {
+                    short v = rs.getShort(j);
+                    if (rs.wasNull()) {
+                        setNull(i);
+                    } else {
+                        ensureCapacity(2);
+                        BufferUtil.writeUB2(buffer, v);
+                    }
+                    break;
+                }
+                case COLUMN_TINY: {
+                    byte v = rs.getByte(j);
+                    if (rs.wasNull()) {
+                        setNull(i);
+                    } else {
+                        ensureCapacity(1);
+                        buffer.put(v);
+                    }
+                    break;
+                }
+                case COLUMN_BIT: {
+                    // bit is sent as length-encoded string
+                    boolean v = rs.getBoolean(j);
+                    if (rs.wasNull()) {
+                        setNull(i);
+                    } else {
+                        ensureCapacity(2);
+                        buffer.put((byte) 1);
+                        buffer.put(v ? (byte) 1 : (byte) 0);
+                    }
+                    break;
+                }
+                case COLUMN_DOUBLE: {
+                    double v = rs.getDouble(j);
+                    if (rs.wasNull()) {
+                        setNull(i);
+                    } else {
+                        ensureCapacity(8);
+                        BufferUtil.writeDouble(buffer, v);
+                    }
+                    break;
+                }
+                case COLUMN_FLOAT: {
+                    float v = rs.getFloat(j);
+                    if (rs.wasNull()) {
+                        setNull(i);
+                    } else {
+                        ensureCapacity(4);
+                        BufferUtil.writeFloat(buffer, v);
+                    }
+                    break;
+                }
+                case COLUMN_DATE: {
+                    Date v = rs.getDate(j);
+                    if (v == null) {
+                        setNull(i);
+                    } else {
+                        LocalDate date = v.toLocalDate();
+                        writeDateTime(date.getYear(), date.getMonthValue(), date.getDayOfMonth(), 0, 0, 0, 0);
+                    }
+                    break;
+                }
+                case COLUMN_DATETIME: {
+                    Timestamp v = rs.getTimestamp(j);
+                    if (v == null) {
+                        setNull(i);
+                    } else {
+                        LocalDateTime dateTime = v.toLocalDateTime();
+                        writeDateTime(dateTime.getYear(), dateTime.getMonthValue(), dateTime.getDayOfMonth(),
+                                dateTime.getHour(), dateTime.getMinute(), dateTime.getSecond(), v.getNanos() / 1000);
+                    }
+                    break;
+                }
+                case COLUMN_TIME: {
+                    Time v = rs.getTime(j);
+                    if (v == null) {
+                        setNull(i);
+                    } else {
+                        // java.sql.Time.toLocalTime() drops the milliseconds
+                        LocalTime time = v.toLocalTime();
+                        int microSecond = (int) Math.floorMod(v.getTime(), 1000L) * 1000;
+                        writeTime(time.getHour(), time.getMinute(), time.getSecond(), microSecond);
+                    }
+                    break;
+                }
+                case COLUMN_DECIMAL: {
+                    // ensure that do not use scientific notation format
+                    BigDecimal v = rs.getBigDecimal(j);
+                    if (v == null) {
+                        setNull(i);
+                    } else {
+                        writeString(v.toPlainString());
+                    }
+                    break;
+                }
+                case COLUMN_BINARY: {
+                    byte[] v = rs.getBytes(j);
+                    if (v == null) {
+                        setNull(i);
+                    } else {
+                        writeBytes(v);
+                    }
+                    break;
+                }
+                default: {
+                    String v = rs.getString(j);
+                    if (v == null) {
+                        setNull(i);
+                    } else {
+                        writeString(v);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Object readColumn(ResultSet rs, int column) throws SQLException {
+        Object v;
+        switch (columnWriters[column - 1]) {
+            case COLUMN_LONGLONG:
+                v = rs.getLong(column);
+                break;
+            case COLUMN_INT:
+                v = rs.getInt(column);
+                break;
+            case COLUMN_SHORT:
+                v = rs.getShort(column);
+                break;
+            case COLUMN_TINY:
+                v = rs.getByte(column);
+                break;
+            case COLUMN_BIT:
+                v = rs.getBoolean(column);
+                break;
+            case COLUMN_DOUBLE:
+                v = rs.getDouble(column);
+                break;
+            case COLUMN_FLOAT:
+                v = rs.getFloat(column);
+                break;
+            case COLUMN_DATE:
+                return rs.getDate(column);
+            case COLUMN_DATETIME:
+                return rs.getTimestamp(column);
+            case COLUMN_TIME:
+                return rs.getTime(column);
+            case COLUMN_DECIMAL:
+                return rs.getBigDecimal(column);
+            case COLUMN_BINARY:
+                return rs.getBytes(column);
+            default:
+                return rs.getString(column);
+        }
+        return rs.wasNull() ? null : v;
+    }
+
+    private void setNull(int i) {
+        // ensureCapacity() 后行可能接在新的buffer中, NULL-bitmap 留在写它时的buffer里
+        int pos = nullBitMapStart + (i + 2) / 8;
+        nullBitMap.put(pos, (byte) (nullBitMap.get(pos) | (1 << ((i + 2) % 8))));
+    }
+
+    private void writeDateTime(int year, int month, int day, int hour, int minute, int second, int microSecond) {
+        ensureCapacity(12);
+        if (year == 0 && month == 0 && day == 0 && hour == 0 && minute == 0 && second == 0
+                && microSecond == 0) {
+            buffer.put((byte) 0);
+            return;
+        }
+        boolean hasTime = hour != 0 || minute != 0 || second != 0 || microSecond != 0;
+        buffer.put((byte) (microSecond != 0 ? 11 : (hasTime ? 7 : 4)));
+        BufferUtil.writeUB2(buffer, year);
+        buffer.put((byte) month);
+        buffer.put((byte) day);
+        if (hasTime) {
+            buffer.put((byte) hour);
+            buffer.put((byte) minute);
+            buffer.put((byte) second);
+            if (microSecond != 0) {
+                BufferUtil.writeInt(buffer, microSecond);
+            }
+        }
+    }
+
+    private void writeTime(int hour, int minute, int second, int microSecond) {
+        ensureCapacity(13);
+        if (hour == 0 && minute == 0 && second == 0 && microSecond == 0) {
+            buffer.put((byte) 0);
+            return;
+        }
+        buffer.put((byte) (microSecond != 0 ? 12 : 8));
+        buffer.put((byte) 0); // is_negative
+        BufferUtil.writeInt(buffer, 0); // days
+        buffer.put((byte) hour);
+        buffer.put((byte) minute);
+        buffer.put((byte) second);
+        if (microSecond != 0) {
+            BufferUtil.writeInt(buffer, microSecond);
+        }
+    }
+}
@@ -19,20 +19,29 @@
 
 package io.mycat.backend.hetu;
 
-import io.mycat.backend.hetu.odbc.escapesequences.QueryParserUtil;
+import io.mycat.MycatServer;
+import io.mycat.backend.hetu.odbc.escapesequences.RewrittenSqlCache;
 import io.mycat.backend.jdbc.JDBCConnection;
+import io.mycat.backend.mysql.BindValue;
 import io.mycat.backend.mysql.PreparedStatement;
+import io.mycat.backend.mysql.nio.handler.SingleNodeHandler;
+import io.mycat.cache.CachePool;
+import io.mycat.cache.MysqlDataSetCache;
+import io.mycat.cache.impl.DataSetCachePool;
 import io.mycat.config.ErrorCode;
 import io.mycat.net.mysql.EOFPacket;
 import io.mycat.net.mysql.ErrorPacket;
 import io.mycat.net.mysql.FieldPacket;
 import io.mycat.net.mysql.OkPacket;
 import io.mycat.net.mysql.ResultSetHeaderPacket;
+import io.mycat.net.mysql.RowDataPacket;
 import io.mycat.route.RouteResultsetNode;
 import io.mycat.server.ServerConnection;
 import io.mycat.server.parser.ServerParse;
+import io.mycat.statistic.CancelStat;
 import io.mycat.util.HetuUtil;
 import io.mycat.util.StringUtil;
+import io.netty.util.Timeout;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +51,9 @@ import java.nio.ByteBuffer;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -55,6 +67,50 @@ public class HetuConnection
 
     private volatile ConcurrentHashMap<String, Integer> prepareIdInfo;  //map for prepareId to real sqlType of the prepared statement
 
+    // COM_STMT_PREPARE id -> jdbc PreparedStatement, created on the first execute
+    private final Map<Long, java.sql.PreparedStatement> serverPrepared = new ConcurrentHashMap<>();
+
+    // CURSOR_TYPE_READ_ONLY执行打开的游标, key为预处理语句id, COM_STMT_FETCH从中读取
+    private final Map<Long, HetuCursor> cursors = new ConcurrentHashMap<>();
+
+    // SET SESSION 设置过的session属性和值, 归还连接池前RESET
+    private final Map<String, String> sessionProperties = new ConcurrentHashMap<>();
+
+    // 已经设置到jdbc连接上的catalog/schema/隔离级别/autocommit, 只把变化的部分设置到驱动
+    private volatile String appliedCatalog;
+    private volatile String appliedSchema;
+    private volatile boolean catalogApplied;
+    private volatile boolean schemaApplied;
+    private volatile int appliedIsolation = -1;
+    private volatile Boolean appliedAutoCommit;
+
+    // 会话状态同步的调试计数: 语句数和省掉的驱动setter/getter调用数, debug日志每1000条语句输出一次
+    private static final AtomicLong syncStatements = new AtomicLong();
+    private static final AtomicLong syncAvoided = new AtomicLong();
+
+    // 所属连接池分组的key, 为null时不放回连接池
+    private volatile String poolKey;
+    // hetu server url和登录用户, 元数据缓存的key
+    private volatile String url;
+    private volatile String user;
+
+    // 建立连接时的catalog/schema, 归还连接池时恢复
+    private volatile String defaultCatalog;
+    private volatile String defaultSchema;
+
+    private final AtomicInteger leaseCount = new AtomicInteger();
+
+    // 执行中的语句在时间轮中的deadline
+    private volatile Timeout timeout;
+    private volatile boolean timedOut;
+    // startTimeout/stopTimeout/statementTimeout互斥, 到期的deadline不会影响下一条语句
+    private final Object timeoutLock = new Object();
+    private volatile boolean reused;
+
+    private static final Pattern patternSession = Pattern.compile(
+            "^\\s*(SET|RESET)\\s+SESSION\\s+([\\w.]+)(?:\\s*=\\s*(.*?))?\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
     public HetuConnection() {
         super();
         prepareIdInfo = new ConcurrentHashMap<String, Integer>();
@@ -63,6 +119,8 @@ public class HetuConnection
     @Override
     public void close(String reason) {
         try {
+            serverPrepared.clear();
+            cursors.clear();
             con.close();
             if (processor != null) {
                 processor.removeConnection(this);
@@ -80,6 +138,206 @@ public class HetuConnection
         this.catalog = newCatalog;
     }
 
+    public String getPoolKey() {
+        return poolKey;
+    }
+
+    public void setPoolKey(String poolKey) {
+        this.poolKey = poolKey;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void setServer(String url, String user) {
+        this.url = url;
+        this.user = user;
+    }
+
+    public void setDefaultCatalogAndSchema(String defaultCatalog, String defaultSchema) {
+        this.defaultCatalog = defaultCatalog;
+        this.defaultSchema = defaultSchema;
+    }
+
+    /**
+     * @param reused true if the connection is taken from the idle connections of the pool
+     */
+    public void lease(boolean reused) {
+        this.reused = reused;
+        leaseCount.incrementAndGet();
+    }
+
+    /**
+     * 连接池中的空闲连接已校验过, 新建的连接需要ping
+     */
+    public boolean isReused() {
+        return reused;
+    }
+
+    public int getLeaseCount() {
+        return leaseCount.get();
+    }
+
+    /**
+     * 归还连接池前恢复连接状态: 回滚未提交的事务, 关闭预处理语句, RESET设置过的session属性,
+     * DEALLOCATE未释放的PREPARE, 恢复建立连接时的catalog/schema
+     *
+     * @return false if the connection can not be reused
+     */
+    public boolean resetSession() {
+        try {
+            if (!getAutoCommit()) {
+                con.rollback();
+                setAutoCommit(true);
+            }
+            closeAllPrepared();
+            if (!sessionProperties.isEmpty() || !prepareIdInfo.isEmpty()) {
+                try (Statement stmt = con.createStatement()) {
+                    for (String name : sessionProperties.keySet()) {
+                        stmt.execute("RESET SESSION " + name);
+                    }
+                    for (String prepareId : prepareIdInfo.keySet()) {
+                        stmt.execute("DEALLOCATE PREPARE " + prepareId);
+                    }
+                }
+                sessionProperties.clear();
+                prepareIdInfo.clear();
+            }
+            // 驱动上的catalog/schema可能被语句改过, 不比较直接设置
+            con.setCatalog(defaultCatalog);
+            con.setSchema(defaultSchema);
+            appliedCatalog = defaultCatalog;
+            appliedSchema = defaultSchema;
+            catalogApplied = true;
+            schemaApplied = true;
+            this.catalog = defaultCatalog;
+            this.schema = defaultSchema;
+            this.modifiedSQLExecuted = false;
+            this.respHandler = null;
+            this.frontConn = null;
+            return true;
+        } catch (SQLException e) {
+            LOGGER.warn("reset hetu connection " + id + " failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 执行成功的SET/RESET SESSION, 记录属性的值
+     */
+    public void recordSessionProperty(String sql) {
+        Matcher matcher = patternSession.matcher(sql);
+        if (matcher.find()) {
+            if ("SET".equalsIgnoreCase(matcher.group(1)) && matcher.group(3) != null) {
+                sessionProperties.put(matcher.group(2), matcher.group(3));
+            } else {
+                sessionProperties.remove(matcher.group(2));
+            }
+        }
+    }
+
+    /**
+     * SET SESSION的值和已经设置的相同, 不需要再发给hetu
+     */
+    boolean isAppliedSessionProperty(String sql) {
+        if (sessionProperties.isEmpty()) {
+            return false;
+        }
+        Matcher matcher = patternSession.matcher(sql);
+        return matcher.find() && "SET".equalsIgnoreCase(matcher.group(1)) && matcher.group(3) != null
+                && matcher.group(3).equals(sessionProperties.get(matcher.group(2)));
+    }
+
+    /**
+     * 把会话的catalog/schema/隔离级别同步到jdbc连接, 只调用值有变化的setter
+     *
+     * @param isolation mycat isolation, -1 to keep the current one
+     */
+    public void syncSession(String newCatalog, String newSchema, int isolation) throws SQLException {
+        int avoided = 0;
+        if (catalogApplied && Objects.equals(newCatalog, appliedCatalog)) {
+            avoided++;
+        } else {
+            con.setCatalog(newCatalog);
+            appliedCatalog = newCatalog;
+            catalogApplied = true;
+        }
+        if (schemaApplied && Objects.equals(newSchema, appliedSchema)) {
+            avoided++;
+        } else {
+            con.setSchema(newSchema);
+            appliedSchema = newSchema;
+            schemaApplied = true;
+        }
+        if (isolation >= 0) {
+            if (isolation == appliedIsolation) {
+                // getTransactionIsolation 和 setTransactionIsolation
+                avoided++;
+            } else {
+                syncIsolation(isolation);
+                appliedIsolation = isolation;
+            }
+        }
+        recordSync(avoided);
+    }
+
+    private static void recordSync(int avoided) {
+        long statements = syncStatements.incrementAndGet();
+        long total = syncAvoided.addAndGet(avoided);
+        if (statements % 1000 == 0 && LOGGER.isDebugEnabled()) {
+            LOGGER.debug("session sync: " + total + " driver calls avoided in " + statements + " statements, "
+                    + (total * 1000 / statements) + " per 1k statements");
+        }
+    }
+
+    public static long getSyncStatements() {
+        return syncStatements.get();
+    }
+
+    public static long getSyncAvoided() {
+        return syncAvoided.get();
+    }
+
+    @Override
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        Boolean applied = appliedAutoCommit;
+        if (applied != null && applied == autoCommit) {
+            syncAvoided.incrementAndGet();
+            return;
+        }
+        con.setAutoCommit(autoCommit);
+        appliedAutoCommit = autoCommit;
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException {
+        Boolean applied = appliedAutoCommit;
+        if (applied != null) {
+            return applied;
+        }
+        boolean autoCommit = con.getAutoCommit();
+        appliedAutoCommit = autoCommit;
+        return autoCommit;
+    }
+
+    @Override
+    public boolean isAutocommit() {
+        Boolean applied = appliedAutoCommit;
+        return applied != null ? applied : super.isAutocommit();
+    }
+
+    @Override
+    public void execute(RouteResultsetNode node, ServerConnection source, boolean autocommit) throws IOException {
+        // 前端在执行期间关闭时, 连接不能放回连接池
+        this.running = true;
+        super.execute(node, source, autocommit);
+    }
+
     @Override
     protected void executeSQL(RouteResultsetNode rrn, ServerConnection sc, boolean autocommit) throws IOException {
         String orgin = rrn.getStatement();
@@ -92,18 +350,19 @@ public class HetuConnection
         // orgin = orgin.replace("\\\\", "");
         orgin = orgin.replace('\0', ' ');
         // handle the ODBC Escape Sequences
-        orgin = QueryParserUtil.parseAndRewriteQuery(orgin);
+        orgin = RewrittenSqlCache.parseAndRewriteQuery(orgin);
+        Timeout deadline = startTimeout(sc);
         try {
-            // set connection schema
-            con.setSchema(sc.getSchema());
-
-            syncIsolation(sc.getTxIsolation());
-
-            con.setCatalog(sc.getCatalog());
-//            con.setSchema(schema);
+            // set connection catalog, schema and isolation, only the changed ones
+            syncSession(sc.getCatalog(), sc.getSchema(), sc.getTxIsolation());
 
             int sqlType = rrn.getSqlType();
             int commandType = sqlType;
+            boolean noCache = false;
+            if (sqlType == ServerParse.SELECT) {
+                noCache = HetuResultCache.isNoCache(orgin);
+                orgin = HetuResultCache.stripHint(orgin);
+            }
 
             // for special sqlType, parse sqlType+prepareId+realSqlType
             HetuSqlExecutionHub sqlHub = new HetuSqlExecutionHub(this, orgin, sqlType);
@@ -119,38 +378,402 @@ public class HetuConnection
                        commandType == ServerParse.DESCRIBE) {
                 // WITH HARD CODE
                 // orgin = orgin.replace('`', '\"');
-                ouputResultSet(sc, orgin);
+                if (commandType != ServerParse.SELECT && url != null
+                        && HetuMetadataCache.getInstance().isCacheable(orgin)) {
+                    // odbc catalog functions, answered from the metadata cache
+                    outputMetadata(sc, cachedMetadata(sc, orgin, true), true);
+                } else if (sqlType != ServerParse.SELECT || noCache || !cachedResult(sc, orgin, autocommit)) {
+                    ouputResultSet(sc, orgin);
+                }
+            } else if (isAppliedSessionProperty(orgin)) {
+                syncAvoided.incrementAndGet();
+                affectedRowsResponse(sc, 0, orgin);
             } else {
                 executeddl(sc, orgin);
+                recordSessionProperty(orgin);
             }
 
             sqlHub.postProc();
+            livenessConfirmed();
         } catch (SQLException e) {
-            String msg = e.getMessage();
-            LOGGER.error("Direct execute command raises error: " + "\n"
-                    + "Message is: " + msg + "\n"
-                    + "Cause is: " + e.getCause().getMessage());
-            ErrorPacket error = new ErrorPacket();
-            error.packetId = ++packetId;
-            error.errno = e.getErrorCode();
-            error.message = msg.getBytes();
-            this.respHandler.errorResponse(error.writeToBytes(sc), this);
+            sqlError(sc, e);
         } catch (Exception e) {
-            String msg = e.getMessage();
-            ErrorPacket error = new ErrorPacket();
-            error.packetId = ++packetId;
-            error.errno = ErrorCode.ER_UNKNOWN_ERROR;
-            error.message = ((msg == null) ? e.toString().getBytes() : msg.getBytes());
-            String err = null;
-            if (error.message != null) {
-                err = new String(error.message);
+            unknownError(sc, e);
+        } finally {
+            stopTimeout(deadline);
+            this.running = false;
+        }
+
+    }
+
+    // 语句执行成功说明后端可用, COM_PING在pingValidateTime内不需要再校验
+    private void livenessConfirmed() {
+        if (url != null) {
+            HetuLiveness.getInstance().alive(url);
+        }
+    }
+
+    /**
+     * COM_STMT_EXECUTE: bind the values on a jdbc PreparedStatement kept for the prepared id, so
+     * the sql is parsed and rewritten only once
+     */
+    public void executePrepared(final PreparedStatement pstmt, final BindValue[] bindValues,
+            final int[] paramTypes, final ServerConnection sc, final boolean cursor) {
+        this.running = true;
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                executePreparedSQL(pstmt, bindValues, paramTypes, sc, cursor);
             }
-            LOGGER.error("sql execute error: " + err, e);
-            this.respHandler.errorResponse(error.writeToBytes(sc), this);
+        };
+
+        MycatServer.getInstance().getBusinessExecutor().execute(runnable);
+    }
+
+    protected void executePreparedSQL(PreparedStatement pstmt, BindValue[] bindValues, int[] paramTypes,
+            ServerConnection sc, boolean cursor) {
+        ResultSet rs = null;
+        Timeout deadline = startTimeout(sc);
+        try {
+            if (cursor) {
+                // 重新执行时上一次的游标被关闭, 和mysql一样
+                closeCursor(pstmt.getId());
+                int maxOpenCursors = MycatServer.getInstance().getConfig().getSystem().getMaxOpenCursors();
+                if (cursors.size() >= maxOpenCursors) {
+                    ErrorPacket error = new ErrorPacket();
+                    error.packetId = ++packetId;
+                    error.errno = ErrorCode.ER_OUT_OF_RESOURCES;
+                    error.message = ("Too many open cursors, max is " + maxOpenCursors).getBytes();
+                    this.respHandler.errorResponse(error.writeToBytes(sc), this);
+                    return;
+                }
+            }
+            syncSession(sc.getCatalog(), sc.getSchema(), sc.getTxIsolation());
+
+            java.sql.PreparedStatement ps = serverPrepared.get(pstmt.getId());
+            if (ps == null) {
+                String sql = RewrittenSqlCache.parseAndRewriteQuery(pstmt.getStatement().replace('\0', ' '));
+                ps = con.prepareStatement(sql);
+                serverPrepared.put(pstmt.getId(), ps);
+            } else {
+                ps.clearParameters();
+            }
+            String charset = sc.getCharset();
+            for (int i = 0; i < bindValues.length; i++) {
+                HetuParameterBinder.bind(ps, i + 1, paramTypes[i], bindValues[i], charset);
+            }
+
+            statementStarted(ps);
+            if (ps.execute()) {
+                rs = ps.getResultSet();
+                if (cursor && respHandler instanceof SingleNodeHandler) {
+                    openCursor(sc, pstmt.getId(), ps, rs);
+                    // 游标关闭时再关闭
+                    rs = null;
+                } else {
+                    ouputResultSet(sc, rs);
+                }
+            } else {
+                if (!modifiedSQLExecuted) {
+                    modifiedSQLExecuted = true;
+                }
+                affectedRowsResponse(sc, ps.getUpdateCount(), pstmt.getStatement());
+            }
+            livenessConfirmed();
+        } catch (SQLException e) {
+            sqlError(sc, e);
+        } catch (Exception e) {
+            unknownError(sc, e);
+        } finally {
+            stopTimeout(deadline);
+            statementFinished();
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+
+                }
+            }
+            this.running = false;
+        }
+    }
+
+    /**
+     * 只返回列定义, EOF带SERVER_STATUS_CURSOR_EXISTS, 客户端随后用COM_STMT_FETCH分批读取
+     */
+    private void openCursor(ServerConnection sc, long pstmtId, Statement stmt, ResultSet rs) throws SQLException {
+        List<FieldPacket> fieldPks = new ArrayList<FieldPacket>();
+        HetuUtil.resultSetToFieldPacket(sc.getCharset(), fieldPks, rs);
+        outputFields(sc, fieldPks, HetuCursor.SERVER_STATUS_AUTOCOMMIT | HetuCursor.SERVER_STATUS_CURSOR_EXISTS);
+        cursors.put(pstmtId, new HetuCursor(stmt, rs, fieldPks, sc.getStringEncoder()));
+        ((SingleNodeHandler) respHandler).cursorOpened(this);
+    }
+
+    public boolean hasCursor(long pstmtId) {
+        return cursors.containsKey(pstmtId);
+    }
+
+    /**
+     * COM_STMT_FETCH: 在业务线程中读取游标的下numRows行
+     */
+    public void fetchCursor(final long pstmtId, final long numRows, final ServerConnection sc) {
+        this.running = true;
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                fetchCursorRows(pstmtId, numRows, sc);
+            }
+        };
+
+        MycatServer.getInstance().getBusinessExecutor().execute(runnable);
+    }
+
+    void fetchCursorRows(long pstmtId, long numRows, ServerConnection sc) {
+        HetuCursor cursor = cursors.get(pstmtId);
+        if (cursor == null) {
+            this.running = false;
+            sc.writeErrMessage(ErrorCode.ER_STMT_HAS_NO_OPEN_CURSOR,
+                    "The statement (" + pstmtId + ") has no open cursor.");
+            return;
+        }
+        Timeout deadline = startTimeout(sc);
+        ByteBuffer buffer = sc.allocate();
+        try {
+            statementStarted(cursor.getStatement());
+            buffer = cursor.fetch(numRows, buffer, sc);
+            EOFPacket eof = new EOFPacket();
+            eof.packetId = (byte) (cursor.getPacketId() + 1);
+            eof.status = cursor.getStatus();
+            buffer = eof.write(buffer, sc, true);
+            if (cursor.isExhausted()) {
+                closeCursor(pstmtId);
+            }
+            sc.write(buffer);
+        } catch (SQLException e) {
+            closeCursor(pstmtId);
+            sc.recycle(buffer);
+            ErrorPacket error = sqlErrorPacket(e);
+            error.packetId = 1;
+            error.write(sc);
+        } catch (Exception e) {
+            LOGGER.error("fetch cursor error", e);
+            closeCursor(pstmtId);
+            sc.recycle(buffer);
+            sc.writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, e.toString());
         } finally {
+            stopTimeout(deadline);
+            statementFinished();
             this.running = false;
         }
+    }
+
+    public void closeCursor(long pstmtId) {
+        HetuCursor cursor = cursors.remove(pstmtId);
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+
+    public void closePrepared(long pstmtId) {
+        closeCursor(pstmtId);
+        java.sql.PreparedStatement ps = serverPrepared.remove(pstmtId);
+        if (ps != null) {
+            try {
+                ps.close();
+            } catch (SQLException e) {
+
+            }
+        }
+    }
+
+    public void closeAllPrepared() {
+        for (Long pstmtId : serverPrepared.keySet()) {
+            closePrepared(pstmtId);
+        }
+        for (Long pstmtId : cursors.keySet()) {
+            closeCursor(pstmtId);
+        }
+    }
+
+    private Timeout startTimeout(ServerConnection sc) {
+        return startTimeout(sc.getUser(), sc.getCatalog(), sc.getSchema());
+    }
+
+    private Timeout startTimeout(String frontUser, String frontCatalog, String frontSchema) {
+        synchronized (timeoutLock) {
+            timedOut = false;
+            Timeout deadline = StatementTimeout.getInstance().schedule(this, frontUser, frontCatalog, frontSchema);
+            this.timeout = deadline;
+            return deadline;
+        }
+    }
+
+    /**
+     * a statement of a frontend that is not a mysql ServerConnection (postgres) starts. the session
+     * is synced, cancel and the statement timeout apply like in executeSQL. endStatement() must
+     * follow in finally, also when this throws.
+     */
+    public Timeout beginStatement(String frontUser, String frontCatalog, String frontSchema, Statement stmt)
+            throws SQLException {
+        this.running = true;
+        Timeout deadline = startTimeout(frontUser, frontCatalog, frontSchema);
+        syncSession(frontCatalog, frontSchema, -1);
+        statementStarted(stmt);
+        return deadline;
+    }
+
+    public void endStatement(Timeout deadline, boolean success) {
+        stopTimeout(deadline);
+        statementFinished();
+        this.running = false;
+        if (success) {
+            livenessConfirmed();
+        }
+    }
+
+    /**
+     * the last statement was cancelled by the statement timeout
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * select 1 on the jdbc connection, for a new connection of a frontend that does not ping
+     */
+    public boolean validate() {
+        return HetuConnectionPool.validate(this);
+    }
+
+    private void stopTimeout(Timeout deadline) {
+        if (deadline != null) {
+            deadline.cancel();
+        }
+        synchronized (timeoutLock) {
+            this.timeout = null;
+        }
+    }
+
+    /**
+     * 语句超时, 在时间轮线程中调用. cancel需要请求hetu coordinator, 放到connect executor中执行.
+     * 在timeoutLock内确认deadline仍属于当前语句并取得它的执行, 之后只cancel这次执行,
+     * timedOut也不会落到下一条语句上
+     */
+    void statementTimeout(Timeout deadline) {
+        final Execution execution;
+        synchronized (timeoutLock) {
+            if (deadline != this.timeout) {
+                // 语句已经结束
+                return;
+            }
+            timedOut = true;
+            execution = runningExecution.get();
+        }
+        CancelStat.getInstance().timedOut();
+        LOGGER.info("statement of connection " + id + " timed out, cancel it");
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                cancel(execution);
+            }
+        };
+        try {
+            MycatServer.getInstance().getConnectExecutor().execute(runnable);
+        } catch (RejectedExecutionException e) {
+            runnable.run();
+        }
+    }
+
+    private void sqlError(ServerConnection sc, SQLException e) {
+        ErrorPacket error = sqlErrorPacket(e);
+        error.packetId = ++packetId;
+        this.respHandler.errorResponse(error.writeToBytes(sc), this);
+    }
+
+    private ErrorPacket sqlErrorPacket(SQLException e) {
+        String msg = e.getMessage();
+        ErrorPacket error = new ErrorPacket();
+        if (timedOut) {
+            LOGGER.info("statement of connection " + id + " is cancelled by timeout: " + msg);
+            error.errno = ErrorCode.ER_QUERY_TIMEOUT;
+            error.message = "Query execution was interrupted, maximum statement execution time exceeded".getBytes();
+            return error;
+        }
+        if (isCancelled()) {
+            // KILL QUERY, 和mysql一样返回1317, 会话继续可用
+            LOGGER.info("statement of connection " + id + " is cancelled: " + msg);
+            error.errno = ErrorCode.ER_QUERY_INTERRUPTED;
+            error.message = "Query execution was interrupted".getBytes();
+            return error;
+        }
+        LOGGER.error("Direct execute command raises error: " + "\n"
+                + "Message is: " + msg + "\n"
+                + "Cause is: " + (e.getCause() == null ? null : e.getCause().getMessage()));
+        error.errno = e.getErrorCode();
+        error.message = msg.getBytes();
+        return error;
+    }
+
+    private void unknownError(ServerConnection sc, Exception e) {
+        String msg = e.getMessage();
+        ErrorPacket error = new ErrorPacket();
+        error.packetId = ++packetId;
+        error.errno = ErrorCode.ER_UNKNOWN_ERROR;
+        error.message = ((msg == null) ? e.toString().getBytes() : msg.getBytes());
+        String err = null;
+        if (error.message != null) {
+            err = new String(error.message);
+        }
+        LOGGER.error("sql execute error: " + err, e);
+        this.respHandler.errorResponse(error.writeToBytes(sc), this);
+    }
+
+    @Override
+    protected ByteBuffer outputRows(ServerConnection sc, ResultSet rs, List<FieldPacket> fieldPks, ByteBuffer byteBuf)
+            throws SQLException {
+        if (!(respHandler instanceof SingleNodeHandler)
+                || !((SingleNodeHandler) respHandler).isDirectRowSupported()) {
+            return super.outputRows(sc, rs, fieldPks, byteBuf);
+        }
+
+        // encode rows from the ResultSet getters straight into the frontend buffer
+        SingleNodeHandler handler = (SingleNodeHandler) respHandler;
+        RowEncoder encoder = handler.isPrepared()
+                ? new BinaryRowEncoder(fieldPks, sc.getStringEncoder())
+                : new TextRowEncoder(fieldPks, sc.getStringEncoder());
+        int pipelineRows = MycatServer.getInstance().getConfig().getSystem().getHetuResultPipelineRows();
+        long rows = 0;
+        while (rs.next()) {
+            ++packetId;
+            handler.rowResponse(rs, encoder, this);
+            // stop fetching while the client is slower than hetu, the driver paging slows the query down
+            sc.waitWriteQueueDrain();
+            if (pipelineRows > 0 && ++rows >= pipelineRows) {
+                // large result: the rest is fetched in another thread while this one encodes
+                outputPipelined(sc, rs, encoder, handler);
+                break;
+            }
+        }
+        return byteBuf;
+    }
 
+    private void outputPipelined(ServerConnection sc, ResultSet rs, RowEncoder encoder, SingleNodeHandler handler)
+            throws SQLException {
+        long prefetchBytes = MycatServer.getInstance().getConfig().getSystem().getHetuResultPrefetchBytes();
+        HetuResultPipeline pipeline = new HetuResultPipeline(rs, encoder, prefetchBytes);
+        pipeline.start(MycatServer.getInstance().getPrefetchExecutor());
+        try {
+            while (pipeline.next()) {
+                ++packetId;
+                handler.rowResponse(pipeline, encoder, this);
+                long start = System.nanoTime();
+                sc.waitWriteQueueDrain();
+                pipeline.rowEncoded(encoder.getLastPacketSize(), System.nanoTime() - start);
+            }
+        } finally {
+            pipeline.close();
+            pipeline.report(sc.getExecuteSql());
+        }
     }
 
     @Override
@@ -158,14 +781,11 @@ public class HetuConnection
         Statement stmt = null;
         try {
             stmt = con.createStatement();
+            statementStarted(stmt);
             int count = stmt.executeUpdate(sql);
-            OkPacket okPck = new OkPacket();
-            okPck.affectedRows = count;
-            okPck.insertId = 0;
-            okPck.packetId = ++packetId;
-            okPck.message = " OK!".getBytes();
-            this.respHandler.okResponse(okPck.writeToBytes(sc), this);
+            affectedRowsResponse(sc, count, sql);
         } finally {
+            statementFinished();
             if (stmt != null) {
                 try {
                     stmt.close();
@@ -176,203 +796,251 @@ public class HetuConnection
         }
     }
 
+    private void affectedRowsResponse(ServerConnection sc, int count, String sql) {
+        if ((ServerParse.parse(sql) & 0xff) == ServerParse.DDL) {
+            // table definition may be changed, the cached prepared metadata is dropped
+            CachePool preparedCache = PreparedMetadata.getCachePool();
+            if (preparedCache != null) {
+                preparedCache.clearCache();
+            }
+            if (url != null) {
+                HetuMetadataCache.getInstance().invalidate(url);
+            }
+        }
+        // cached results of the written tables
+        HetuResultCache.invalidate(sql, sc.getCatalog(), sc.getSchema());
+        OkPacket okPck = new OkPacket();
+        okPck.affectedRows = count;
+        okPck.insertId = 0;
+        okPck.packetId = ++packetId;
+        okPck.message = " OK!".getBytes();
+        this.respHandler.okResponse(okPck.writeToBytes(sc), this);
+    }
+
     public void fieldList(ServerConnection sc, String sql) {
         {
-            ResultSet rs = null;
-            Statement stmt = null;
             sql = sql.replace('\0', ' ');
 
             sql = "select * from " + sc.getSchema() + '.' + sql + " limit 1";
 
             try {
                 // set connection schema
-                con.setCatalog(catalog);
-                con.setSchema(schema);
-
-                stmt = con.createStatement();
-                rs = stmt.executeQuery(sql);
-
-                List<FieldPacket> fieldPks = new LinkedList<FieldPacket>();
-                HetuUtil.resultSetToFieldPacket(sc.getCharset(), fieldPks, rs);
-                int colunmCount = fieldPks.size();
-                ByteBuffer byteBuf = sc.allocate();
-                ResultSetHeaderPacket headerPkg = new ResultSetHeaderPacket();
-                headerPkg.fieldCount = fieldPks.size();
-                headerPkg.packetId = ++packetId;
-
-                byteBuf = headerPkg.write(byteBuf, sc, true);
-                byteBuf.flip();
-                byte[] header = new byte[byteBuf.limit()];
-                byteBuf.get(header);
-                byteBuf.clear();
-                List<byte[]> fields = new ArrayList<byte[]>(fieldPks.size());
-                Iterator<FieldPacket> itor = fieldPks.iterator();
-                while (itor.hasNext()) {
-                    FieldPacket curField = itor.next();
-                    curField.packetId = ++packetId;
-                    byteBuf = curField.write(byteBuf, sc, false);
-                    byteBuf.flip();
-                    byte[] field = new byte[byteBuf.limit()];
-                    byteBuf.get(field);
-                    byteBuf.clear();
-                    fields.add(field);
-                }
-                EOFPacket eofPckg = new EOFPacket();
-                eofPckg.packetId = ++packetId;
-                byteBuf = eofPckg.write(byteBuf, sc, false);
-                byteBuf.flip();
-                byte[] eof = new byte[byteBuf.limit()];
-                byteBuf.get(eof);
-                byteBuf.clear();
-                this.respHandler.fieldEofResponse(header, fields, eof, this);
-
-                fieldPks.clear();
+                syncSession(catalog, schema, -1);
+
+                // only the field packets are cached and written
+                outputMetadata(sc, cachedMetadata(sc, sql, false), false);
             } catch (SQLException e) {
                 String msg = e.getMessage();
                 LOGGER.error("COM_FIELD_LIST command raises error: " + "\n"
                     + "Message is: " + msg + "\n"
-                    + "Cause is: " + e.getCause().getMessage());
+                    + "Cause is: " + (e.getCause() == null ? null : e.getCause().getMessage()));
                 ErrorPacket error = new ErrorPacket();
                 error.packetId = ++packetId;
                 error.errno = e.getErrorCode();
                 error.message = msg.getBytes();
                 this.respHandler.errorResponse(error.writeToBytes(sc), this);
-            } finally {
-                if (rs != null) {
-                    try {
-                        rs.close();
-                    } catch (SQLException e) {
-
-                    }
-                }
-                if (stmt != null) {
-                    try {
-                        stmt.close();
-                    } catch (SQLException e) {
-
-                    }
-                }
             }
         }
     }
 
-    public List<String> prepareParameters(ServerConnection sc, String sql, long prepareId, PreparedStatement pstmt) {
-        ResultSet rsInput = null;
-        ResultSet rsOutput = null;
-
-        Statement stmt = null;
-        Statement stmtInput = null;
-        Statement stmtOutput = null;
-        Statement stmtDealloc = null;
-
-        String executeSql = "";
-        List<String> parameters = new ArrayList<>();
+    /**
+     * read-only SELECT: write the result from HetuResultCache, true if it is cached. Otherwise the
+     * handler records the packets of this execution for the next one
+     */
+    private boolean cachedResult(ServerConnection sc, String sql, boolean autocommit) {
+        DataSetCachePool pool = HetuResultCache.getCachePool();
+        // 事务中可能读到未提交的修改, 不使用缓存
+        if (pool == null || url == null || !autocommit || !(respHandler instanceof SingleNodeHandler)) {
+            return false;
+        }
+        SingleNodeHandler handler = (SingleNodeHandler) respHandler;
+        if (handler.isPrepared() || !handler.isDirectRowSupported()) {
+            return false;
+        }
+        String key = HetuResultCache.cacheKey(url, user, sc.getCatalog(), sc.getSchema(), sc.getCharset(), sql);
+        MysqlDataSetCache dataSet = (MysqlDataSetCache) pool.get(key);
+        if (dataSet != null && handler.cachedResponse(dataSet, this)) {
+            return true;
+        }
+        Set<String> tables = HetuResultCache.selectTables(sql, sc.getCatalog(), sc.getSchema());
+        if (tables != null) {
+            handler.setCapture(new HetuResultCache.Capture(pool, key, sql, tables));
+        }
+        return false;
+    }
 
-        int colNum = 0;
+    /**
+     * result of a catalog metadata statement from HetuMetadataCache, loaded on this connection when
+     * it is not cached (or the cache is disabled)
+     */
+    private HetuMetadataCache.Metadata cachedMetadata(ServerConnection sc, String sql, boolean withRows)
+            throws SQLException {
+        HetuMetadataCache cache = HetuMetadataCache.getInstance();
+        String key = HetuMetadataCache.cacheKey(url, user, sc.getCatalog(), sc.getSchema(), sc.getCharset(),
+                withRows ? sql : "FIELD_LIST " + sql);
+        HetuMetadataCache.Metadata metadata = cache.get(key);
+        if (metadata != null) {
+            cache.refreshIfNeeded(key, metadata, poolKey);
+            return metadata;
+        }
+        long generation = cache.getGeneration();
+        Statement stmt = con.createStatement();
         try {
-            con.setCatalog(catalog);
-            con.setSchema(schema);
+            statementStarted(stmt);
+            metadata = HetuMetadataCache.load(stmt, sql, sc.getCatalog(), sc.getSchema(), sc.getCharset(),
+                    withRows);
+        } finally {
+            statementFinished();
+            try {
+                stmt.close();
+            } catch (SQLException e) {
 
-            executeSql = "PREPARE STMT" + prepareId + " FROM " + sql;
-            stmt = con.createStatement();
-            stmt.execute(executeSql);
+            }
+        }
+        cache.put(key, metadata, generation);
+        return metadata;
+    }
 
-            executeSql = "DESCRIBE INPUT " + "STMT" + prepareId;
-            stmtInput = con.createStatement();
-            rsInput = stmtInput.executeQuery(executeSql);
-            // the result column of describe input
-            // Position | Type
-            while (rsInput.next()) {
-                parameters.add(rsInput.getString(2));
+    private void outputMetadata(ServerConnection sc, HetuMetadataCache.Metadata metadata, boolean withRows) {
+        outputFields(sc, metadata.copyFieldPks(), HetuCursor.SERVER_STATUS_AUTOCOMMIT);
+        if (!withRows) {
+            return;
+        }
+
+        ByteBuffer byteBuf = sc.allocate();
+        for (byte[][] values : metadata.getRows()) {
+            RowDataPacket curRow = new RowDataPacket(values.length);
+            for (byte[] value : values) {
+                curRow.add(value);
             }
+            curRow.packetId = ++packetId;
+            byteBuf = curRow.write(byteBuf, sc, false);
+            this.respHandler.rowResponse(toBytes(byteBuf), this);
+        }
+        EOFPacket eofPckg = new EOFPacket();
+        eofPckg.packetId = ++packetId;
+        byteBuf = eofPckg.write(byteBuf, sc, false);
+        byte[] eof = toBytes(byteBuf);
+        sc.recycle(byteBuf);
+        this.respHandler.rowEofResponse(eof, this);
+    }
 
-            executeSql = "DESCRIBE OUTPUT " + "STMT" + prepareId;
-            stmtOutput = con.createStatement();
-            rsOutput = stmtOutput.executeQuery(executeSql);
-            String charset = sc.getCharset();
-            List<FieldPacket> fieldPks = new LinkedList<>();
-            while (rsOutput.next()) {
-                FieldPacket fieldPacket = new FieldPacket();
-                // the resultset's column info of describe out command:
-                // Column Name | Catalog | Schema  |    Table    |  Type   | Type Size | Aliased
-                fieldPacket.orgName = StringUtil.encode(rsOutput.getString(1), charset);
-                fieldPacket.name = StringUtil.encode(rsOutput.getString(1), charset);
-                fieldPacket.orgTable = StringUtil.encode(rsOutput.getString(4), charset);
-                fieldPacket.table = StringUtil.encode(rsOutput.getString(4), charset);
-                fieldPacket.db = StringUtil.encode(rsOutput.getString(3), charset);
-                String type = rsOutput.getString(5);
-                HetuUtil.serverTypeConvert(type, fieldPacket);
-                fieldPks.add(fieldPacket);
-                colNum++;
-            }
-            pstmt.setOutFieldPks(fieldPks);
-            pstmt.setColumnsNumber(colNum);
+    /**
+     * result set header, column definitions and the EOF after them, status is the server status of the EOF
+     */
+    private void outputFields(ServerConnection sc, List<FieldPacket> fieldPks, int status) {
+        ByteBuffer byteBuf = sc.allocate();
+        ResultSetHeaderPacket headerPkg = new ResultSetHeaderPacket();
+        headerPkg.fieldCount = fieldPks.size();
+        headerPkg.packetId = ++packetId;
+
+        byteBuf = headerPkg.write(byteBuf, sc, true);
+        byte[] header = toBytes(byteBuf);
+        List<byte[]> fields = new ArrayList<byte[]>(fieldPks.size());
+        for (FieldPacket curField : fieldPks) {
+            curField.packetId = ++packetId;
+            byteBuf = curField.write(byteBuf, sc, false);
+            fields.add(toBytes(byteBuf));
+        }
+        EOFPacket eofPckg = new EOFPacket();
+        eofPckg.packetId = ++packetId;
+        eofPckg.status = status;
+        byteBuf = eofPckg.write(byteBuf, sc, false);
+        byte[] eof = toBytes(byteBuf);
+        sc.recycle(byteBuf);
+        this.respHandler.fieldEofResponse(header, fields, eof, this);
+    }
+
+    private static byte[] toBytes(ByteBuffer byteBuf) {
+        byteBuf.flip();
+        byte[] bytes = new byte[byteBuf.limit()];
+        byteBuf.get(bytes);
+        byteBuf.clear();
+        return bytes;
+    }
 
+    public List<String> prepareParameters(ServerConnection sc, String sql, long prepareId, PreparedStatement pstmt) {
+        PreparedMetadata metadata;
+        try {
+            metadata = describe(sql, prepareId, sc.getCharset());
         } catch (SQLException e) {
             String msg = e.getMessage();
             LOGGER.error("prepareParameters command raises error: " + "\n"
                     + "Message is: " + msg + "\n"
                     + "catalog is:" + catalog + ", schema is:" + schema + "\n"
-                    + "Cause is: " + e.getCause().getMessage());
+                    + "Cause is: " + (e.getCause() == null ? null : e.getCause().getMessage()));
             ErrorPacket error = new ErrorPacket();
             error.packetId = ++packetId;
             error.errno = e.getErrorCode();
             error.message = msg.getBytes();
             this.respHandler.errorResponse(error.writeToBytes(sc), this);
             return null;
-        } finally {
-            executeSql = "DEALLOCATE PREPARE " + "STMT" + prepareId;
-            try {
-                stmtDealloc = con.createStatement();
-                stmtDealloc.execute(executeSql);
-            } catch (SQLException e) {
-                LOGGER.error("DEALLOCATE PREPARE STMT raise error!");
-            }
-            if (rsInput != null) {
-                try {
-                    rsInput.close();
-                } catch (SQLException e) {
-
-                }
-            }
-            if (rsOutput != null) {
-                try {
-                    rsOutput.close();
-                } catch (SQLException e) {
+        }
+        pstmt.setOutFieldPks(metadata.copyFieldPks());
+        pstmt.setColumnsNumber(metadata.getColumnsNumber());
+        return metadata.getParameters();
+    }
 
-                }
+    /**
+     * PREPARE + DESCRIBE INPUT + DESCRIBE OUTPUT of sql, PREPARE/DESCRIBE are skipped when the same
+     * statement is found in the HetuPreparedCache. field names are encoded with charset.
+     */
+    public PreparedMetadata describe(String sql, long prepareId, String charset) throws SQLException {
+        CachePool preparedCache = PreparedMetadata.getCachePool();
+        String cacheKey = null;
+        if (preparedCache != null) {
+            cacheKey = PreparedMetadata.cacheKey(url, user, catalog, schema, charset, sql);
+            PreparedMetadata metadata = (PreparedMetadata) preparedCache.get(cacheKey);
+            if (metadata != null) {
+                return metadata;
             }
-            if (stmt != null) {
-                try {
-                    stmt.close();
-                } catch (SQLException e) {
+        }
 
+        syncSession(catalog, schema, -1);
+        String name = "STMT" + prepareId;
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("PREPARE " + name + " FROM " + sql);
+        }
+        try {
+            List<String> parameters = new ArrayList<>();
+            try (Statement stmtInput = con.createStatement();
+                 ResultSet rsInput = stmtInput.executeQuery("DESCRIBE INPUT " + name)) {
+                // the result column of describe input
+                // Position | Type
+                while (rsInput.next()) {
+                    parameters.add(rsInput.getString(2));
                 }
             }
-            if (stmtInput != null) {
-                try {
-                    stmtInput.close();
-                } catch (SQLException e) {
 
+            List<FieldPacket> fieldPks = new LinkedList<>();
+            try (Statement stmtOutput = con.createStatement();
+                 ResultSet rsOutput = stmtOutput.executeQuery("DESCRIBE OUTPUT " + name)) {
+                while (rsOutput.next()) {
+                    FieldPacket fieldPacket = new FieldPacket();
+                    // the resultset's column info of describe out command:
+                    // Column Name | Catalog | Schema  |    Table    |  Type   | Type Size | Aliased
+                    fieldPacket.orgName = StringUtil.encode(rsOutput.getString(1), charset);
+                    fieldPacket.name = StringUtil.encode(rsOutput.getString(1), charset);
+                    fieldPacket.orgTable = StringUtil.encode(rsOutput.getString(4), charset);
+                    fieldPacket.table = StringUtil.encode(rsOutput.getString(4), charset);
+                    fieldPacket.db = StringUtil.encode(rsOutput.getString(3), charset);
+                    String type = rsOutput.getString(5);
+                    HetuUtil.serverTypeConvert(type, fieldPacket);
+                    fieldPks.add(fieldPacket);
                 }
             }
-            if (stmtOutput != null) {
-                try {
-                    stmtOutput.close();
-                } catch (SQLException e) {
-
-                }
+            PreparedMetadata metadata = new PreparedMetadata(parameters, fieldPks);
+            if (preparedCache != null) {
+                preparedCache.putIfAbsent(cacheKey, metadata);
             }
-            if (stmtDealloc != null) {
-                try {
-                    stmtDealloc.close();
-                } catch (SQLException e) {
-
-                }
+            return metadata;
+        } finally {
+            try (Statement stmtDealloc = con.createStatement()) {
+                stmtDealloc.execute("DEALLOCATE PREPARE " + name);
+            } catch (SQLException e) {
+                LOGGER.error("DEALLOCATE PREPARE STMT raise error!");
             }
         }
-
-        return parameters;
     }
 
     public String getServerVersion() {
@@ -35,10 +35,12 @@ public class HetuConnectionFactory
         c.setPort(cfg.getPort());
         c.setCatalog(catalog);
         c.setSchema(schema);
+        c.setDefaultCatalogAndSchema(catalog, schema);
         c.setDbType(cfg.getDbType());
+        c.setServer(cfg.getUrl(), properties.getProperty("user", cfg.getUser()));
         Connection connection = DriverManager.getConnection(cfg.getUrl(), properties);
-        connection.setCatalog(catalog);
         c.setCon(connection);
+        c.syncSession(catalog, schema, -1);
         return c;
     }
 }
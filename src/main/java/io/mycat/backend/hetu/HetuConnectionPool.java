@@ -0,0 +1,427 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.MycatServer;
+import io.mycat.config.model.DBHostConfig;
+import io.mycat.config.model.SystemConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * hetu后端连接池, 按 (url, user, 连接属性的hash) 分组.
+ * 前端登录时借出连接, 前端关闭时恢复catalog/schema/session属性后归还; 执行中、重置失败或超过maxLifetime的连接直接关闭.
+ * 空闲超过validateIdleTime的连接借出前先用 select 1 校验, 每个分组在后台保持minIdle个预热的空闲连接.
+ * hetuPoolMaxIdle为0时不复用连接, 和每次登录新建连接一样.
+ */
+public class HetuConnectionPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HetuConnectionPool.class);
+
+    public static final long CHECK_PERIOD = 5000L;
+
+    private static final String VALIDATE_SQL = "/* ping */ select 1";
+
+    private static volatile HetuConnectionPool instance;
+
+    private final HetuConnectionFactory factory;
+    private final Executor executor;
+    private final int maxIdle;
+    private final int minIdle;
+    private final long maxLifetime;
+    private final long idleTimeout;
+    private final long validateIdleTime;
+
+    private final ConcurrentHashMap<String, Group> groups = new ConcurrentHashMap<>();
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    HetuConnectionPool(HetuConnectionFactory factory, Executor executor, int maxIdle, int minIdle, long maxLifetime,
+            long idleTimeout, long validateIdleTime) {
+        this.factory = factory;
+        this.executor = executor;
+        this.maxIdle = maxIdle;
+        this.minIdle = Math.min(minIdle, maxIdle);
+        this.maxLifetime = maxLifetime;
+        this.idleTimeout = idleTimeout;
+        this.validateIdleTime = validateIdleTime;
+    }
+
+    public static HetuConnectionPool getInstance() {
+        if (instance == null) {
+            synchronized (HetuConnectionPool.class) {
+                if (instance == null) {
+                    MycatServer server = MycatServer.getInstance();
+                    SystemConfig sys = server.getConfig().getSystem();
+                    instance = new HetuConnectionPool(new HetuConnectionFactory(), server.getConnectExecutor(),
+                            sys.getHetuPoolMaxIdle(), sys.getHetuPoolMinIdle(), sys.getHetuPoolMaxLifetime(),
+                            sys.getHetuPoolIdleTimeout(), sys.getHetuPoolValidateIdleTime());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 连接属性里有密码, key中只保留属性的sha-256, 密码不同的登录不会共用连接
+     */
+    public static String poolKey(String url, String user, Properties properties) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+                digest.update(name.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '=');
+                digest.update(properties.getProperty(name).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder sb = new StringBuilder(url).append('\u0000').append(user).append('\u0000');
+            for (byte b : digest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 借出一个连接, 没有可用的空闲连接时新建. 复用的连接已校验过, 新建的连接isReused为false, 由调用者ping
+     */
+    public HetuConnection borrow(DBHostConfig cfg, Properties properties, String catalog, String schema)
+            throws SQLException {
+        long start = System.currentTimeMillis();
+        String key = poolKey(cfg.getUrl(), cfg.getUser(), properties);
+        Group group = groups.get(key);
+        if (group == null) {
+            group = new Group(cfg, properties, catalog, schema);
+            Group old = groups.putIfAbsent(key, group);
+            if (old != null) {
+                group = old;
+            }
+        }
+        return borrow(key, group, catalog, schema, start);
+    }
+
+    /**
+     * 后台任务(如元数据缓存刷新)按poolKey借出连接, 分组已被移除时返回null
+     */
+    public HetuConnection borrow(String key, String catalog, String schema) throws SQLException {
+        Group group = getGroup(key);
+        if (group == null) {
+            return null;
+        }
+        return borrow(key, group, catalog, schema, System.currentTimeMillis());
+    }
+
+    private HetuConnection borrow(String key, Group group, String catalog, String schema, long start)
+            throws SQLException {
+        group.lastBorrowTime = start;
+
+        HetuConnection c;
+        boolean reused = false;
+        while ((c = group.poll()) != null) {
+            if (isUsable(group, c, start)) {
+                reused = true;
+                break;
+            }
+            c.close("hetu pool: connection is not usable");
+        }
+        if (c == null) {
+            c = create(key, group, catalog, schema);
+        } else {
+            try {
+                c.syncSession(catalog, schema, -1);
+            } catch (SQLException e) {
+                c.close("hetu pool: set catalog failed");
+                throw e;
+            }
+            c.setCatalog(catalog);
+            c.setSchema(schema);
+        }
+        c.lease(reused);
+        c.setBorrowed(true);
+        group.borrowed(System.currentTimeMillis() - start, reused);
+        prewarm(key, group);
+        return c;
+    }
+
+    /**
+     * 前端关闭时归还连接, 重置需要访问hetu, 在connect executor中执行
+     */
+    public void release(final HetuConnection c, final String reason) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    doRelease(c, reason);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            c.close(reason);
+        }
+    }
+
+    private void doRelease(HetuConnection c, String reason) {
+        String key = c.getPoolKey();
+        Group group = key == null ? null : groups.get(key);
+        // 重复归还(KILL和IO错误同时关闭前端)时只有第一次生效, 否则同一个连接会两次进入空闲队列
+        if (!c.compareAndSetBorrowed(true, false)) {
+            return;
+        }
+        if (group == null || maxIdle <= 0 || c.isRunning() || c.isClosed() || isExpired(c, System.currentTimeMillis())
+                || group.idleCount.get() >= maxIdle || !c.resetSession()) {
+            c.close(reason);
+            return;
+        }
+        c.setLastTime(System.currentTimeMillis());
+        group.offer(c, maxIdle);
+    }
+
+    /**
+     * 定时任务: 关闭过期和多余的空闲连接, 补足minIdle个预热连接, 长时间没有登录的分组被移除
+     */
+    public void check() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Group> entry : groups.entrySet()) {
+            Group group = entry.getValue();
+            boolean inactive = now - group.lastBorrowTime >= maxLifetime;
+            // 从最久没用的一端开始
+            Iterator<HetuConnection> it = group.idle.descendingIterator();
+            while (it.hasNext()) {
+                HetuConnection c = it.next();
+                boolean idleTooLong = now - c.getLastTime() >= idleTimeout
+                        && (inactive || group.idleCount.get() > minIdle);
+                if ((isExpired(c, now) || idleTooLong) && group.remove(c)) {
+                    c.close("hetu pool: idle connection expired");
+                }
+            }
+            if (inactive) {
+                if (group.idleCount.get() == 0 && group.warming.get() == 0) {
+                    groups.remove(entry.getKey(), group);
+                }
+            } else {
+                prewarm(entry.getKey(), group);
+            }
+        }
+    }
+
+    private void prewarm(final String key, final Group group) {
+        int missing = minIdle - group.idleCount.get() - group.warming.get();
+        for (int i = 0; i < missing; i++) {
+            group.warming.incrementAndGet();
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            HetuConnection c = create(key, group, group.catalog, group.schema);
+                            if (validate(c)) {
+                                c.setLastTime(System.currentTimeMillis());
+                                group.offer(c, maxIdle);
+                            } else {
+                                c.close("hetu pool: prewarm validation failed");
+                            }
+                        } catch (SQLException e) {
+                            LOGGER.warn("prewarm hetu connection failed: " + e.getMessage());
+                        } finally {
+                            group.warming.decrementAndGet();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                group.warming.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private HetuConnection create(String key, Group group, String catalog, String schema) throws SQLException {
+        HetuConnection c = (HetuConnection) factory.createNewConnection(group.cfg, group.properties, catalog, schema);
+        c.setId(idGenerator.incrementAndGet());
+        c.setPoolKey(key);
+        group.createCount.increment();
+        return c;
+    }
+
+    private boolean isUsable(Group group, HetuConnection c, long now) {
+        if (c.isClosed() || isExpired(c, now)) {
+            return false;
+        }
+        if (now - c.getLastTime() < validateIdleTime) {
+            return true;
+        }
+        group.validateCount.increment();
+        if (validate(c)) {
+            return true;
+        }
+        group.validateFailure.increment();
+        return false;
+    }
+
+    private boolean isExpired(HetuConnection c, long now) {
+        return now - c.getStartupTime() >= maxLifetime;
+    }
+
+    static boolean validate(HetuConnection c) {
+        try (Statement stmt = c.getCon().createStatement();
+             ResultSet rs = stmt.executeQuery(VALIDATE_SQL)) {
+            return rs.next();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    public Group getGroup(String key) {
+        return key == null ? null : groups.get(key);
+    }
+
+    public List<HetuConnection> getIdleConnections() {
+        List<HetuConnection> list = new ArrayList<>();
+        for (Group group : groups.values()) {
+            list.addAll(group.idle);
+        }
+        return list;
+    }
+
+    /**
+     * 一个 (url, user, 连接属性) 的空闲连接和统计
+     */
+    public static class Group {
+        private final DBHostConfig cfg;
+        private final Properties properties;
+        // 预热连接使用第一次登录的catalog/schema, 借出时再切换
+        private final String catalog;
+        private final String schema;
+
+        // 头部是最近归还的连接
+        private final ConcurrentLinkedDeque<HetuConnection> idle = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+        private final AtomicInteger warming = new AtomicInteger();
+        private volatile long lastBorrowTime;
+
+        private final LongAdder borrowCount = new LongAdder();
+        private final LongAdder reuseCount = new LongAdder();
+        private final LongAdder createCount = new LongAdder();
+        private final LongAdder validateCount = new LongAdder();
+        private final LongAdder validateFailure = new LongAdder();
+        private final LongAdder waitTime = new LongAdder();
+        private final AtomicLong maxWaitTime = new AtomicLong();
+
+        Group(DBHostConfig cfg, Properties properties, String catalog, String schema) {
+            this.cfg = cfg;
+            this.properties = (Properties) properties.clone();
+            this.catalog = catalog;
+            this.schema = schema;
+        }
+
+        HetuConnection poll() {
+            HetuConnection c = idle.pollFirst();
+            if (c != null) {
+                idleCount.decrementAndGet();
+            }
+            return c;
+        }
+
+        void offer(HetuConnection c, int maxIdle) {
+            if (idleCount.incrementAndGet() > maxIdle) {
+                idleCount.decrementAndGet();
+                c.close("hetu pool: too many idle connections");
+                return;
+            }
+            idle.offerFirst(c);
+        }
+
+        boolean remove(HetuConnection c) {
+            if (idle.removeLastOccurrence(c)) {
+                idleCount.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        void borrowed(long wait, boolean reused) {
+            borrowCount.increment();
+            if (reused) {
+                reuseCount.increment();
+            }
+            waitTime.add(wait);
+            long max;
+            while (wait > (max = maxWaitTime.get()) && !maxWaitTime.compareAndSet(max, wait)) {
+                // retry
+            }
+        }
+
+        public int getIdleCount() {
+            return idleCount.get();
+        }
+
+        public long getBorrowCount() {
+            return borrowCount.sum();
+        }
+
+        public long getReuseCount() {
+            return reuseCount.sum();
+        }
+
+        public long getCreateCount() {
+            return createCount.sum();
+        }
+
+        public long getValidateCount() {
+            return validateCount.sum();
+        }
+
+        public long getValidateFailure() {
+            return validateFailure.sum();
+        }
+
+        public double getReuseRatio() {
+            long borrow = borrowCount.sum();
+            return borrow == 0 ? 0 : (double) reuseCount.sum() / borrow;
+        }
+
+        public long getAvgWaitTime() {
+            long borrow = borrowCount.sum();
+            return borrow == 0 ? 0 : waitTime.sum() / borrow;
+        }
+
+        public long getMaxWaitTime() {
+            return maxWaitTime.get();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.net.FrontendConnection;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.StringEncoder;
+
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * read only cursor opened by COM_STMT_EXECUTE with CURSOR_TYPE_READ_ONLY. The hetu ResultSet is
+ * kept open and each COM_STMT_FETCH encodes only the rows asked by the client, so the memory used
+ * is bounded by the fetch size instead of the result size.
+ */
+class HetuCursor {
+    static final int SERVER_STATUS_AUTOCOMMIT = 0x0002;
+    static final int SERVER_STATUS_CURSOR_EXISTS = 0x0040;
+    static final int SERVER_STATUS_LAST_ROW_SENT = 0x0080;
+
+    private final Statement statement;
+    private final ResultSet rs;
+    private final BinaryRowEncoder encoder;
+    private byte packetId;
+    private boolean exhausted;
+
+    HetuCursor(Statement statement, ResultSet rs, List<FieldPacket> fieldPks, StringEncoder stringEncoder) {
+        this.statement = statement;
+        this.rs = rs;
+        this.encoder = new BinaryRowEncoder(fieldPks, stringEncoder);
+    }
+
+    /**
+     * write at most numRows binary rows into buffer, the packet ids start from 1.
+     * The EOF after the rows uses getPacketId() + 1 and getStatus().
+     */
+    ByteBuffer fetch(long numRows, ByteBuffer buffer, FrontendConnection source) throws SQLException {
+        packetId = 0;
+        for (long i = 0; i < numRows; i++) {
+            if (!rs.next()) {
+                exhausted = true;
+                break;
+            }
+            buffer = encoder.encode(rs, ++packetId, buffer, source);
+            if (source != null) {
+                source.waitWriteQueueDrain();
+            }
+        }
+        return buffer;
+    }
+
+    byte getPacketId() {
+        return packetId;
+    }
+
+    boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * server status of the EOF packet ending a fetch, same as mysql the last one has LAST_ROW_SENT
+     */
+    int getStatus() {
+        int status = SERVER_STATUS_AUTOCOMMIT | SERVER_STATUS_CURSOR_EXISTS;
+        return exhausted ? status | SERVER_STATUS_LAST_ROW_SENT : status;
+    }
+
+    Statement getStatement() {
+        return statement;
+    }
+
+    void close() {
+        try {
+            rs.close();
+        } catch (SQLException e) {
+
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.MycatServer;
+import io.mycat.config.model.SystemConfig;
+import io.mycat.statistic.PingStat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * liveness of the hetu coordinators for COM_PING. ODBC pools ping before each use, so a ping is
+ * answered from the last known state of the backend (url) without going to hetu. Only when nothing
+ * has confirmed the state for validateTime, a select 1 runs on the connect executor (never on the
+ * reactor). check() validates the backends that are pinged before their state gets old, so pings of
+ * busy pools do not wait for hetu at all. The background check borrows a connection of the same
+ * pool group, connections of clients are never kept here.
+ */
+public class HetuLiveness {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HetuLiveness.class);
+
+    public static final long CHECK_PERIOD = 5000L;
+
+    private static volatile HetuLiveness instance;
+
+    private final long validateTime;
+    private final Executor executor;
+    private final Map<String, Backend> backends = new ConcurrentHashMap<>();
+
+    HetuLiveness(long validateTime, Executor executor) {
+        this.validateTime = validateTime;
+        this.executor = executor;
+    }
+
+    public static HetuLiveness getInstance() {
+        if (instance == null) {
+            synchronized (HetuLiveness.class) {
+                if (instance == null) {
+                    MycatServer server = MycatServer.getInstance();
+                    SystemConfig sys = server.getConfig().getSystem();
+                    instance = new HetuLiveness(sys.getPingValidateTime(), server.getConnectExecutor());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * callback of ping(), called in the reactor thread or in the executor
+     */
+    public interface Callback {
+        void done(boolean alive);
+    }
+
+    /**
+     * answer from the state of the backend if it is younger than validateTime, otherwise validate c
+     * on the executor first
+     */
+    public void ping(final HetuConnection c, final Callback callback) {
+        final Backend backend = backend(c.getUrl());
+        long now = System.currentTimeMillis();
+        backend.pingTime = now;
+        backend.poolKey = c.getPoolKey();
+        backend.catalog = c.getCatalog();
+        backend.schema = c.getSchema();
+        if (now - backend.checkTime < validateTime || c.isRunning()) {
+            // 有语句在执行时连接本身就是可用的
+            callback.done(backend.alive || c.isRunning());
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.done(validate(backend, c));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            callback.done(backend.alive);
+        }
+    }
+
+    /**
+     * a statement finished on the backend, no validation is needed for validateTime
+     */
+    public void alive(String url) {
+        Backend backend = backend(url);
+        backend.alive = true;
+        backend.checkTime = System.currentTimeMillis();
+    }
+
+    /**
+     * background validator: backends pinged during the last validateTime are validated before their
+     * state gets old. Idle backends are not touched.
+     */
+    public void check() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Backend> entry : backends.entrySet()) {
+            final Backend backend = entry.getValue();
+            if (now - backend.pingTime >= validateTime) {
+                if (now - backend.pingTime >= validateTime * 2 && now - backend.checkTime >= validateTime * 2) {
+                    backends.remove(entry.getKey(), backend);
+                }
+                continue;
+            }
+            final String poolKey = backend.poolKey;
+            if (poolKey == null || now - backend.checkTime < validateTime - CHECK_PERIOD
+                    || !backend.validating.compareAndSet(false, true)) {
+                continue;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            validatePooled(backend, poolKey);
+                        } finally {
+                            backend.validating.set(false);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                backend.validating.set(false);
+            }
+        }
+    }
+
+    /**
+     * validate with a connection borrowed from the pool group, like the metadata cache refresh
+     */
+    private void validatePooled(Backend backend, String poolKey) {
+        HetuConnection c = null;
+        try {
+            c = borrow(poolKey, backend.catalog, backend.schema);
+            if (c == null) {
+                // 分组已被移除, 等下一次ping
+                backend.poolKey = null;
+                return;
+            }
+            validate(backend, c);
+        } catch (SQLException e) {
+            PingStat.getInstance().validated();
+            if (backend.alive) {
+                LOGGER.warn("hetu backend of " + poolKey + " is not alive: " + e.getMessage());
+            }
+            backend.alive = false;
+            backend.checkTime = System.currentTimeMillis();
+        } finally {
+            if (c != null) {
+                release(c);
+            }
+        }
+    }
+
+    private boolean validate(Backend backend, HetuConnection c) {
+        PingStat.getInstance().validated();
+        boolean alive = validate(c);
+        if (backend.alive && !alive) {
+            LOGGER.warn("hetu backend " + c.getUrl() + " is not alive");
+        }
+        backend.alive = alive;
+        backend.checkTime = System.currentTimeMillis();
+        return alive;
+    }
+
+    boolean validate(HetuConnection c) {
+        return HetuConnectionPool.validate(c);
+    }
+
+    HetuConnection borrow(String poolKey, String catalog, String schema) throws SQLException {
+        return HetuConnectionPool.getInstance().borrow(poolKey, catalog, schema);
+    }
+
+    void release(HetuConnection c) {
+        HetuConnectionPool.getInstance().release(c, "hetu liveness checked");
+    }
+
+    private Backend backend(String url) {
+        String key = url == null ? "" : url;
+        Backend backend = backends.get(key);
+        if (backend == null) {
+            backend = new Backend();
+            Backend old = backends.putIfAbsent(key, backend);
+            if (old != null) {
+                backend = old;
+            }
+        }
+        return backend;
+    }
+
+    private static final class Backend {
+        volatile boolean alive = true;
+        // 最近一次确认状态的时间, 0为未知
+        volatile long checkTime;
+        volatile long pingTime;
+        // 最近一次ping的连接所在的连接池分组, 后台校验从中借连接
+        volatile String poolKey;
+        volatile String catalog;
+        volatile String schema;
+        final AtomicBoolean validating = new AtomicBoolean();
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.MycatServer;
+import io.mycat.cache.CacheStatic;
+import io.mycat.config.model.SystemConfig;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.HetuUtil;
+import io.mycat.util.MysqlDefs;
+import io.mycat.util.StringUtil;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * gateway-side cache of the catalog metadata used by the odbc catalog functions: results of
+ * SHOW CATALOGS/SCHEMAS/TABLES/COLUMNS, DESCRIBE and the field packets of COM_FIELD_LIST.
+ * entries are shared by all connections of the same (url, user, catalog), an entry older than
+ * metadataCacheRefresh is still returned and reloaded in the background with a pooled connection,
+ * an entry older than metadataCacheTtl is loaded again. DDL drops all entries of the server.
+ */
+public class HetuMetadataCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HetuMetadataCache.class);
+
+    public static final String CACHE_NAME = "HetuMetadataCache";
+
+    // DESCRIBE INPUT/OUTPUT 是预处理语句的元数据, 不缓存
+    private static final Pattern CACHEABLE = Pattern.compile(
+            "^\\s*(SHOW\\s+(CATALOGS|SCHEMAS|DATABASES|TABLES|COLUMNS)\\b|DESC(RIBE)?\\s+(?!(INPUT|OUTPUT)\\s))",
+            Pattern.CASE_INSENSITIVE);
+
+    private static volatile HetuMetadataCache instance;
+
+    private final long ttl;
+    private final long refreshAfter;
+    private final int maxEntries;
+    private final Executor executor;
+    private final ConcurrentHashMap<String, Metadata> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder accessCount = new LongAdder();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder putCount = new LongAdder();
+    private final LongAdder refreshCount = new LongAdder();
+    private final LongAdder invalidateCount = new LongAdder();
+    private final AtomicLong lastAccessTime = new AtomicLong();
+    private final AtomicLong lastPutTime = new AtomicLong();
+    // invalidate的次数, 加载期间有DDL时加载的结果不放入缓存
+    private final AtomicLong generation = new AtomicLong();
+
+    HetuMetadataCache(long ttl, long refreshAfter, int maxEntries, Executor executor) {
+        this.ttl = ttl;
+        this.refreshAfter = refreshAfter > 0 ? Math.min(refreshAfter, ttl) : ttl;
+        this.maxEntries = maxEntries;
+        this.executor = executor;
+    }
+
+    public static HetuMetadataCache getInstance() {
+        if (instance == null) {
+            synchronized (HetuMetadataCache.class) {
+                if (instance == null) {
+                    MycatServer server = MycatServer.getInstance();
+                    SystemConfig sys = server.getConfig().getSystem();
+                    instance = new HetuMetadataCache(sys.getMetadataCacheTtl(), sys.getMetadataCacheRefresh(),
+                            sys.getMetadataCacheMaxEntries(), server.getConnectExecutor());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return ttl > 0 && maxEntries > 0;
+    }
+
+    public boolean isCacheable(String sql) {
+        return isEnabled() && CACHEABLE.matcher(sql).find();
+    }
+
+    /**
+     * 元数据对所有连接共享, key中只有url和登录用户, 结果还和当前catalog/schema有关.
+     * 字段名和行数据按客户端字符集编码, 字符集也是key的一部分
+     */
+    public static String cacheKey(String url, String user, String catalog, String schema, String charset,
+            String sql) {
+        return url + '\u0000' + user + '\u0000' + catalog + '\u0000' + schema + '\u0000' + charset + '\u0000'
+                + PreparedMetadata.normalize(sql);
+    }
+
+    /**
+     * 返回未超过ttl的缓存项, 没有时返回null, 由调用者加载后put
+     */
+    public Metadata get(String key) {
+        long now = System.currentTimeMillis();
+        accessCount.increment();
+        lastAccessTime.set(now);
+        Metadata metadata = entries.get(key);
+        if (metadata == null) {
+            return null;
+        }
+        if (now - metadata.loadTime >= ttl) {
+            entries.remove(key, metadata);
+            return null;
+        }
+        hitCount.increment();
+        return metadata;
+    }
+
+    /**
+     * 加载前取得, put时比较
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public void put(String key, Metadata metadata) {
+        put(key, metadata, generation.get());
+    }
+
+    /**
+     * 放入getGeneration()之后加载的结果, 加载期间invalidate过时不放入
+     */
+    public void put(String key, Metadata metadata, long loadGeneration) {
+        if (!isEnabled() || generation.get() != loadGeneration) {
+            return;
+        }
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            evict(System.currentTimeMillis());
+        }
+        entries.put(key, metadata);
+        // invalidate先增加generation再删除, 和放入同时发生时由这里或invalidate删除
+        if (generation.get() != loadGeneration) {
+            entries.remove(key, metadata);
+            return;
+        }
+        putCount.increment();
+        lastPutTime.set(System.currentTimeMillis());
+    }
+
+    /**
+     * 先删除过期的缓存项, 仍然满时删除最早加载的一项
+     */
+    private void evict(long now) {
+        String oldestKey = null;
+        long oldest = Long.MAX_VALUE;
+        Iterator<Map.Entry<String, Metadata>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Metadata> entry = it.next();
+            long loadTime = entry.getValue().loadTime;
+            if (now - loadTime >= ttl) {
+                it.remove();
+            } else if (loadTime < oldest) {
+                oldest = loadTime;
+                oldestKey = entry.getKey();
+            }
+        }
+        if (entries.size() >= maxEntries && oldestKey != null) {
+            entries.remove(oldestKey);
+        }
+    }
+
+    /**
+     * 缓存项超过metadataCacheRefresh时在connect executor中用连接池的连接重新加载, 同一项只有一个刷新任务
+     */
+    public void refreshIfNeeded(final String key, final Metadata metadata, final String poolKey) {
+        if (poolKey == null || System.currentTimeMillis() - metadata.loadTime < refreshAfter
+                || !metadata.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    refresh(key, metadata, poolKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            metadata.refreshing.set(false);
+        }
+    }
+
+    private void refresh(String key, Metadata metadata, String poolKey) {
+        HetuConnectionPool pool = HetuConnectionPool.getInstance();
+        HetuConnection c = null;
+        try {
+            c = pool.borrow(poolKey, metadata.catalog, metadata.schema);
+            if (c == null) {
+                return;
+            }
+            Statement stmt = c.getCon().createStatement();
+            try {
+                Metadata loaded = load(stmt, metadata.sql, metadata.catalog, metadata.schema, metadata.charset,
+                        metadata.withRows);
+                // 刷新期间被DDL清除的项不再放回
+                if (entries.replace(key, metadata, loaded)) {
+                    refreshCount.increment();
+                }
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("refresh hetu metadata failed: " + e.getMessage());
+        } finally {
+            metadata.refreshing.set(false);
+            if (c != null) {
+                pool.release(c, "hetu metadata refreshed");
+            }
+        }
+    }
+
+    /**
+     * DDL可能修改任意catalog的元数据, 删除同一个hetu server(url)的所有缓存项
+     */
+    public void invalidate(String url) {
+        generation.incrementAndGet();
+        String prefix = url + '\u0000';
+        Iterator<String> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+        invalidateCount.increment();
+    }
+
+    /**
+     * 执行查询并把结果保存在内存中, withRows为false时只保存字段(COM_FIELD_LIST)
+     */
+    public static Metadata load(Statement stmt, String sql, String catalog, String schema, String charset,
+            boolean withRows) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            List<FieldPacket> fieldPks = new ArrayList<>();
+            HetuUtil.resultSetToFieldPacket(charset, fieldPks, rs);
+            List<byte[][]> rows = new ArrayList<>();
+            while (withRows && rs.next()) {
+                byte[][] row = new byte[fieldPks.size()][];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = columnValue(rs, i + 1, fieldPks.get(i).type, charset);
+                }
+                rows.add(row);
+            }
+            return new Metadata(sql, catalog, schema, charset, withRows, fieldPks, rows);
+        }
+    }
+
+    // 和JDBCConnection.outputRows的转换一致
+    private static byte[] columnValue(ResultSet rs, int index, int type, String charset) throws SQLException {
+        if (MysqlDefs.isBianry((byte) type)) {
+            return rs.getBytes(index);
+        } else if (type == MysqlDefs.FIELD_TYPE_DECIMAL || type == (MysqlDefs.FIELD_TYPE_NEW_DECIMAL - 256)) {
+            BigDecimal val = rs.getBigDecimal(index);
+            return StringUtil.encode(val != null ? val.toPlainString() : null, charset);
+        } else if (type == MysqlDefs.FIELD_TYPE_BIT) {
+            return StringUtil.encode(rs.getBoolean(index) ? "1" : "0", charset);
+        }
+        return StringUtil.encode(rs.getString(index), charset);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    public long getInvalidateCount() {
+        return invalidateCount.sum();
+    }
+
+    /**
+     * 统计信息, 由show @@cache显示
+     */
+    public CacheStatic getCacheStatic() {
+        CacheStatic cacheStatic = new CacheStatic();
+        cacheStatic.setMaxSize(maxEntries);
+        cacheStatic.setItemSize(entries.size());
+        cacheStatic.setAccessTimes(accessCount.sum());
+        cacheStatic.setHitTimes(hitCount.sum());
+        cacheStatic.setPutTimes(putCount.sum());
+        cacheStatic.setLastAccesTime(lastAccessTime.get());
+        cacheStatic.setLastPutTime(lastPutTime.get());
+        return cacheStatic;
+    }
+
+    /**
+     * one cached result, immutable except the refreshing flag
+     */
+    public static final class Metadata {
+        private final String sql;
+        private final String catalog;
+        private final String schema;
+        private final String charset;
+        private final boolean withRows;
+        private final List<FieldPacket> fieldPks;
+        private final List<byte[][]> rows;
+        private final long loadTime = System.currentTimeMillis();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Metadata(String sql, String catalog, String schema, String charset, boolean withRows,
+                List<FieldPacket> fieldPks, List<byte[][]> rows) {
+            this.sql = sql;
+            this.catalog = catalog;
+            this.schema = schema;
+            this.charset = charset;
+            this.withRows = withRows;
+            this.fieldPks = Collections.unmodifiableList(new ArrayList<>(fieldPks));
+            this.rows = Collections.unmodifiableList(rows);
+        }
+
+        /**
+         * packetId of the field packets is changed when they are written, each response gets its own copy
+         */
+        public List<FieldPacket> copyFieldPks() {
+            return PreparedMetadata.copyFieldPks(fieldPks);
+        }
+
+        public List<byte[][]> getRows() {
+            return rows;
+        }
+
+        public long getLoadTime() {
+            return loadTime;
+        }
+    }
+}
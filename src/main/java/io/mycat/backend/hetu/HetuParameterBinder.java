@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.backend.mysql.BindValue;
+import io.mycat.util.MysqlDefs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * bind the COM_STMT_EXECUTE values to a jdbc PreparedStatement with typed setters.
+ * paramType is the parameter type reported by DESCRIBE INPUT (mysql type), the value is converted
+ * to it when the client sends another type, e.g. a string for a date parameter. An integer that
+ * does not fit the parameter type is rejected instead of truncated.
+ */
+public final class HetuParameterBinder {
+    private HetuParameterBinder() {
+    }
+
+    public static void bind(PreparedStatement ps, int index, int paramType, BindValue bv, String charset)
+            throws SQLException {
+        int type = paramType & 0xff;
+        if (type == (MysqlDefs.FIELD_TYPE_UNKNOWN & 0xff) || type == MysqlDefs.FIELD_TYPE_NULL) {
+            // hetu can not infer the type, use what the client sends
+            type = bv.type & 0xff;
+        }
+        if (bv.isNull || bv.value == null) {
+            ps.setNull(index, sqlType(type));
+            return;
+        }
+
+        Object value = bv.value;
+        switch (type) {
+            case MysqlDefs.FIELD_TYPE_TINY:
+                ps.setByte(index, (byte) integer(index, value, charset, Byte.MIN_VALUE, Byte.MAX_VALUE));
+                break;
+            case MysqlDefs.FIELD_TYPE_SHORT:
+                ps.setShort(index, (short) integer(index, value, charset, Short.MIN_VALUE, Short.MAX_VALUE));
+                break;
+            case MysqlDefs.FIELD_TYPE_LONG:
+            case MysqlDefs.FIELD_TYPE_INT24:
+                ps.setInt(index, (int) integer(index, value, charset, Integer.MIN_VALUE, Integer.MAX_VALUE));
+                break;
+            case MysqlDefs.FIELD_TYPE_LONGLONG:
+                ps.setLong(index, integer(index, value, charset, Long.MIN_VALUE, Long.MAX_VALUE));
+                break;
+            case MysqlDefs.FIELD_TYPE_FLOAT:
+                ps.setFloat(index, value instanceof Number ? ((Number) value).floatValue()
+                        : Float.parseFloat(toString(value, charset).trim()));
+                break;
+            case MysqlDefs.FIELD_TYPE_DOUBLE:
+                ps.setDouble(index, value instanceof Number ? ((Number) value).doubleValue()
+                        : Double.parseDouble(toString(value, charset).trim()));
+                break;
+            case MysqlDefs.FIELD_TYPE_DECIMAL:
+            case MysqlDefs.FIELD_TYPE_NEW_DECIMAL:
+                ps.setBigDecimal(index, value instanceof BigDecimal ? (BigDecimal) value
+                        : new BigDecimal(toString(value, charset).trim()));
+                break;
+            case MysqlDefs.FIELD_TYPE_BIT:
+                ps.setBoolean(index, toBoolean(value, charset));
+                break;
+            case MysqlDefs.FIELD_TYPE_DATE:
+                if (value instanceof java.util.Date) {
+                    ps.setDate(index, new Date(((java.util.Date) value).getTime()));
+                } else {
+                    ps.setDate(index, Date.valueOf(toString(value, charset).trim()));
+                }
+                break;
+            case MysqlDefs.FIELD_TYPE_DATETIME:
+            case MysqlDefs.FIELD_TYPE_TIMESTAMP:
+                if (value instanceof Timestamp) {
+                    ps.setTimestamp(index, (Timestamp) value);
+                } else if (value instanceof java.util.Date) {
+                    ps.setTimestamp(index, new Timestamp(((java.util.Date) value).getTime()));
+                } else {
+                    ps.setTimestamp(index, Timestamp.valueOf(toString(value, charset).trim()));
+                }
+                break;
+            case MysqlDefs.FIELD_TYPE_TIME:
+                if (value instanceof java.util.Date) {
+                    ps.setTime(index, new Time(((java.util.Date) value).getTime()));
+                } else {
+                    ps.setTime(index, Time.valueOf(toString(value, charset).trim()));
+                }
+                break;
+            case MysqlDefs.FIELD_TYPE_TINY_BLOB:
+            case MysqlDefs.FIELD_TYPE_MEDIUM_BLOB:
+            case MysqlDefs.FIELD_TYPE_LONG_BLOB:
+            case MysqlDefs.FIELD_TYPE_BLOB:
+                ps.setBytes(index, toBytes(value, charset));
+                break;
+            default:
+                ps.setString(index, toString(value, charset));
+                break;
+        }
+    }
+
+    public static int sqlType(int mysqlType) {
+        switch (mysqlType & 0xff) {
+            case MysqlDefs.FIELD_TYPE_TINY:
+                return Types.TINYINT;
+            case MysqlDefs.FIELD_TYPE_SHORT:
+                return Types.SMALLINT;
+            case MysqlDefs.FIELD_TYPE_LONG:
+            case MysqlDefs.FIELD_TYPE_INT24:
+                return Types.INTEGER;
+            case MysqlDefs.FIELD_TYPE_LONGLONG:
+                return Types.BIGINT;
+            case MysqlDefs.FIELD_TYPE_FLOAT:
+                return Types.REAL;
+            case MysqlDefs.FIELD_TYPE_DOUBLE:
+                return Types.DOUBLE;
+            case MysqlDefs.FIELD_TYPE_DECIMAL:
+            case MysqlDefs.FIELD_TYPE_NEW_DECIMAL:
+                return Types.DECIMAL;
+            case MysqlDefs.FIELD_TYPE_BIT:
+                return Types.BOOLEAN;
+            case MysqlDefs.FIELD_TYPE_DATE:
+                return Types.DATE;
+            case MysqlDefs.FIELD_TYPE_DATETIME:
+            case MysqlDefs.FIELD_TYPE_TIMESTAMP:
+                return Types.TIMESTAMP;
+            case MysqlDefs.FIELD_TYPE_TIME:
+                return Types.TIME;
+            case MysqlDefs.FIELD_TYPE_TINY_BLOB:
+            case MysqlDefs.FIELD_TYPE_MEDIUM_BLOB:
+            case MysqlDefs.FIELD_TYPE_LONG_BLOB:
+            case MysqlDefs.FIELD_TYPE_BLOB:
+                return Types.VARBINARY;
+            case MysqlDefs.FIELD_TYPE_NULL:
+                return Types.NULL;
+            default:
+                return Types.VARCHAR;
+        }
+    }
+
+    /**
+     * the value as an integer in [min, max]. A fraction or an out of range value fails like hetu
+     * fails the literal, e.g. 300 for a tinyint parameter
+     */
+    private static long integer(int index, Object value, String charset, long min, long max)
+            throws SQLException {
+        BigDecimal decimal;
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            decimal = BigDecimal.valueOf(((Number) value).longValue());
+        } else {
+            try {
+                decimal = value instanceof Number ? new BigDecimal(value.toString())
+                        : new BigDecimal(new BigInteger(toString(value, charset).trim()));
+            } catch (NumberFormatException e) {
+                throw new SQLException("parameter " + index + " is not an integer: " + value, "22018");
+            }
+            if (decimal.signum() != 0 && decimal.stripTrailingZeros().scale() > 0) {
+                throw new SQLException("parameter " + index + " is not an integer: " + value, "22018");
+            }
+        }
+        if (decimal.compareTo(BigDecimal.valueOf(min)) < 0 || decimal.compareTo(BigDecimal.valueOf(max)) > 0) {
+            throw new SQLException("parameter " + index + " is out of range [" + min + ", " + max + "]: " + value,
+                    "22003");
+        }
+        return decimal.longValue();
+    }
+
+    private static boolean toBoolean(Object value, String charset) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue() != 0;
+        } else if (value instanceof byte[]) {
+            // bit(1) is sent as length-encoded bytes
+            for (byte b : (byte[]) value) {
+                if (b != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String str = toString(value, charset).trim();
+        return "1".equals(str) || "true".equalsIgnoreCase(str);
+    }
+
+    private static byte[] toBytes(Object value, String charset) {
+        if (value instanceof ByteArrayOutputStream) {
+            return ((ByteArrayOutputStream) value).toByteArray();
+        } else if (value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        try {
+            return value.toString().getBytes(charset);
+        } catch (UnsupportedEncodingException e) {
+            return value.toString().getBytes();
+        }
+    }
+
+    private static String toString(Object value, String charset) {
+        if (value instanceof ByteArrayOutputStream || value instanceof byte[]) {
+            byte[] bytes = toBytes(value, charset);
+            try {
+                return new String(bytes, charset);
+            } catch (UnsupportedEncodingException e) {
+                return new String(bytes);
+            }
+        }
+        return value.toString();
+    }
+}
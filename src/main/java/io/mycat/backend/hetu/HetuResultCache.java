@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+import com.alibaba.druid.sql.visitor.SchemaStatVisitor;
+import com.alibaba.druid.stat.TableStat;
+import com.alibaba.druid.util.JdbcConstants;
+
+import io.mycat.MycatServer;
+import io.mycat.cache.CachePool;
+import io.mycat.cache.MysqlDataSetCache;
+import io.mycat.cache.impl.DataSetCachePool;
+import io.mycat.server.parser.ServerParse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * opt-in cache of the result packets of read-only SELECTs, kept in the HetuResultCache pool of
+ * cacheservice.properties (a DataSetCachePool, absent by default). The key is (url, user, catalog,
+ * schema, charset, rewritten sql), entries are dropped when a DML/DDL touches one of their tables.
+ * SELECT SQL_NO_CACHE bypasses the cache.
+ */
+public final class HetuResultCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HetuResultCache.class);
+
+    public static final String CACHE_POOL = "HetuResultCache";
+
+    // mysql 的 SELECT SQL_CACHE / SQL_NO_CACHE, hetu不支持, 执行前去掉
+    private static final Pattern HINT = Pattern.compile("^(\\s*SELECT\\s+)SQL_(NO_)?CACHE\\s+",
+            Pattern.CASE_INSENSITIVE);
+    // 结果随时间或调用变化的函数
+    private static final Pattern NON_DETERMINISTIC = Pattern.compile(
+            "\\b(now|rand|random|uuid|current_\\w+|localtime|localtimestamp)\\b", Pattern.CASE_INSENSITIVE);
+
+    private HetuResultCache() {
+    }
+
+    public static DataSetCachePool getCachePool() {
+        CachePool pool = MycatServer.getInstance().getCacheService().getAllCachePools().get(CACHE_POOL);
+        return pool instanceof DataSetCachePool ? (DataSetCachePool) pool : null;
+    }
+
+    public static boolean isNoCache(String sql) {
+        Matcher matcher = HINT.matcher(sql);
+        return matcher.find() && matcher.group(2) != null;
+    }
+
+    public static String stripHint(String sql) {
+        Matcher matcher = HINT.matcher(sql);
+        return matcher.find() ? matcher.group(1) + sql.substring(matcher.end()) : sql;
+    }
+
+    /**
+     * rows are encoded with the client charset, so it is part of the key as well
+     */
+    public static String cacheKey(String url, String user, String catalog, String schema, String charset,
+            String sql) {
+        return url + '\u0000' + user + '\u0000' + catalog + '\u0000' + schema + '\u0000' + charset + '\u0000'
+                + PreparedMetadata.normalize(sql);
+    }
+
+    /**
+     * tables read by a SELECT as catalog.schema.table, null if the result can not be cached
+     */
+    public static Set<String> selectTables(String sql, String catalog, String schema) {
+        if (NON_DETERMINISTIC.matcher(sql).find()) {
+            return null;
+        }
+        Set<String> tables = tables(sql, catalog, schema, true);
+        return tables == null || tables.isEmpty() ? null : tables;
+    }
+
+    /**
+     * drop the cached results of the tables written by a DML/DDL, all results when the statement
+     * can not be parsed
+     */
+    public static void invalidate(String sql, String catalog, String schema) {
+        DataSetCachePool pool = getCachePool();
+        if (pool == null) {
+            return;
+        }
+        switch (ServerParse.parse(sql) & 0xff) {
+            case ServerParse.INSERT:
+            case ServerParse.UPDATE:
+            case ServerParse.DELETE:
+            case ServerParse.REPLACE:
+            case ServerParse.DDL:
+                break;
+            default:
+                return;
+        }
+        Set<String> tables = tables(sql, catalog, schema, false);
+        if (tables == null) {
+            pool.clearCache();
+        } else {
+            pool.removeTables(tables);
+        }
+    }
+
+    /**
+     * hetu sql is closer to the postgresql dialect of druid (double quoted identifiers, WITH)
+     */
+    static Set<String> tables(String sql, String catalog, String schema, boolean select) {
+        try {
+            List<SQLStatement> statements = SQLUtils.parseStatements(sql, JdbcConstants.POSTGRESQL);
+            if (statements.size() != 1 || (select && !(statements.get(0) instanceof SQLSelectStatement))) {
+                return null;
+            }
+            SchemaStatVisitor visitor = SQLUtils.createSchemaStatVisitor(JdbcConstants.POSTGRESQL);
+            statements.get(0).accept(visitor);
+            Set<String> tables = new HashSet<>();
+            for (TableStat.Name name : visitor.getTables().keySet()) {
+                tables.add(qualify(name.getName(), catalog, schema));
+            }
+            return tables;
+        } catch (RuntimeException e) {
+            LOGGER.debug("can not parse tables of sql: " + sql, e);
+            return null;
+        }
+    }
+
+    static String qualify(String table, String catalog, String schema) {
+        String name = table.replace("\"", "").replace("`", "").toLowerCase(Locale.ROOT);
+        int parts = name.split("\\.", -1).length;
+        if (parts == 1) {
+            return (catalog + '.' + schema + '.' + name).toLowerCase(Locale.ROOT);
+        } else if (parts == 2) {
+            return (catalog + '.').toLowerCase(Locale.ROOT) + name;
+        }
+        return name;
+    }
+
+    /**
+     * records the packets of one result as they are written to the client, the dataset is put into
+     * the pool when the whole result is written. A result larger than the max entry size is dropped,
+     * as is one whose tables were written while the SELECT ran.
+     */
+    public static final class Capture implements RowEncoder.RowListener {
+        private final DataSetCachePool pool;
+        private final String key;
+        // 在SELECT执行前取得, 之后的invalidate使结果作废
+        private final long generation;
+        private MysqlDataSetCache dataSet;
+
+        public Capture(DataSetCachePool pool, String key, String sql, Set<String> tables) {
+            this.pool = pool;
+            this.key = key;
+            this.generation = pool.getGeneration();
+            this.dataSet = pool.newDataSet(sql);
+            this.dataSet.setTables(Collections.unmodifiableSet(tables));
+        }
+
+        public void addPacket(byte[] packet) {
+            if (dataSet == null) {
+                return;
+            }
+            try {
+                dataSet.addHeader(packet);
+                checkSize();
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+
+        public void addRow(byte[] row) {
+            if (dataSet == null) {
+                return;
+            }
+            try {
+                dataSet.appendRecord(row);
+                checkSize();
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+
+        @Override
+        public void rowSegment(ByteBuffer buffer, int offset, int length) {
+            if (dataSet == null) {
+                return;
+            }
+            try {
+                dataSet.appendRecordPart(buffer, offset, length);
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+
+        @Override
+        public void rowEnd() {
+            if (dataSet == null) {
+                return;
+            }
+            dataSet.endRecord();
+            checkSize();
+        }
+
+        public void finish() {
+            MysqlDataSetCache finished = dataSet;
+            dataSet = null;
+            if (finished == null) {
+                return;
+            }
+            try {
+                finished.finishStoring();
+                pool.putIfAbsent(key, finished, generation);
+            } catch (IOException e) {
+                LOGGER.warn("store result cache failed: " + e.getMessage());
+                finished.release();
+            }
+        }
+
+        public void abort() {
+            if (dataSet != null) {
+                dataSet.release();
+                dataSet = null;
+            }
+        }
+
+        private void checkSize() {
+            if (dataSet.getSize() > pool.getMaxEntryBytes()) {
+                abort();
+            }
+        }
+
+        private void failed(IOException e) {
+            LOGGER.warn("store result cache failed: " + e.getMessage());
+            abort();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import com.alibaba.druid.util.jdbc.ResultSetBase;
+
+import io.mycat.statistic.ResultPipelineStat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * two stage result path for large results. The fetch stage runs in its own thread, calls rs.next()
+ * (which waits for the next hetu page) and reads the columns with RowEncoder.readColumn(). The
+ * encode stage is the business thread, it reads the rows through this ResultSet and encodes them
+ * into the frontend buffers. Batches are handed over by a bounded queue, so at most about
+ * prefetchBytes of rows are kept in memory.
+ * <p>
+ * The batch size follows the row width (batch bytes / average row bytes) and the drain rate:
+ * it grows while the encode stage waits for rows and shrinks while the queue is full.
+ */
+public class HetuResultPipeline extends ResultSetBase implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HetuResultPipeline.class);
+
+    static final int QUEUE_BATCHES = 4;
+    static final int MIN_BATCH_ROWS = 64;
+    static final int MAX_BATCH_ROWS = 8192;
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // close()等待取数线程的时间, 超过后cancel语句, 让阻塞在rs.next()中的取数线程返回
+    static final long CLOSE_CANCEL_MILLIS = 1000;
+
+    private final ResultSet rs;
+    private final RowEncoder encoder;
+    private final int columnCount;
+    private final long batchBytes;
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+    private final CountDownLatch fetchDone = new CountDownLatch(1);
+    private volatile boolean stopped;
+
+    // fetch stage
+    private volatile int batchRows = MIN_BATCH_ROWS;
+    private volatile long fetchWaitNanos;
+
+    // encode stage
+    private Batch current;
+    private int rowIndex;
+    private Object[] row;
+    private long rows;
+    private long bytes;
+    private long encodeWaitNanos;
+    private long drainWaitNanos;
+    private final long startTime = System.nanoTime();
+
+    public HetuResultPipeline(ResultSet rs, RowEncoder encoder, long prefetchBytes) {
+        super(null);
+        this.rs = rs;
+        this.encoder = encoder;
+        this.columnCount = encoder.getColumnCount();
+        this.batchBytes = Math.max(1, prefetchBytes / QUEUE_BATCHES);
+    }
+
+    public void start(Executor executor) {
+        try {
+            executor.execute(this);
+        } catch (RuntimeException e) {
+            fetchDone.countDown();
+            throw e;
+        }
+    }
+
+    /**
+     * fetch stage
+     */
+    @Override
+    public void run() {
+        Batch batch = null;
+        try {
+            boolean more = true;
+            while (more && !stopped) {
+                batch = new Batch(batchRows);
+                long width = 0;
+                while (batch.size < batchRows && width < batchBytes) {
+                    if (!rs.next()) {
+                        more = false;
+                        break;
+                    }
+                    Object[] values = new Object[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        Object v = encoder.readColumn(rs, i + 1);
+                        values[i] = v;
+                        width += width(v);
+                    }
+                    batch.rows[batch.size++] = values;
+                }
+                batch.last = !more;
+                boolean waited = put(batch);
+                adapt(batch.size, width, waited);
+                batch = null;
+            }
+        } catch (Throwable e) {
+            // 已经读到的行先输出
+            if (batch != null && batch.size > 0) {
+                put(batch);
+            }
+            Batch error = new Batch(0);
+            error.error = e;
+            error.last = true;
+            put(error);
+        } finally {
+            fetchDone.countDown();
+        }
+    }
+
+    /**
+     * @return true if the queue was full
+     */
+    private boolean put(Batch batch) {
+        if (queue.offer(batch)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            while (!stopped && !queue.offer(batch, POLL_NANOS, TimeUnit.NANOSECONDS)) {
+                // 编码或客户端读得慢, 等待
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        }
+        fetchWaitNanos += System.nanoTime() - start;
+        return true;
+    }
+
+    private void adapt(int size, long width, boolean waited) {
+        if (size == 0) {
+            return;
+        }
+        // 按行宽, 一批不超过batchBytes
+        long avgRowBytes = Math.max(1, width / size);
+        int widthRows = (int) Math.max(MIN_BATCH_ROWS, Math.min(MAX_BATCH_ROWS, batchBytes / avgRowBytes));
+        // 队列满说明下游慢, 少取一些; 否则加倍, 让hetu多取几页
+        int next = waited ? batchRows / 2 : batchRows * 2;
+        next = Math.max(MIN_BATCH_ROWS, Math.min(widthRows, next));
+        if (next != batchRows) {
+            batchRows = next;
+            try {
+                rs.setFetchSize(next);
+            } catch (SQLException e) {
+                // 只是提示, 驱动不支持时忽略
+            }
+        }
+    }
+
+    int getBatchRows() {
+        return batchRows;
+    }
+
+    static long width(Object v) {
+        if (v == null) {
+            return 1;
+        } else if (v instanceof String) {
+            return ((String) v).length() + 1;
+        } else if (v instanceof byte[]) {
+            return ((byte[]) v).length + 1;
+        }
+        return 8;
+    }
+
+    /**
+     * encode stage
+     */
+    @Override
+    public boolean next() throws SQLException {
+        while (true) {
+            if (current != null) {
+                if (rowIndex < current.size) {
+                    row = current.rows[rowIndex];
+                    current.rows[rowIndex++] = null;
+                    return true;
+                }
+                if (current.last) {
+                    row = null;
+                    return false;
+                }
+            }
+            current = take();
+            rowIndex = 0;
+            if (current.error != null) {
+                Throwable e = current.error;
+                current = null;
+                throw e instanceof SQLException ? (SQLException) e : new SQLException(e.toString(), e);
+            }
+        }
+    }
+
+    private Batch take() throws SQLException {
+        Batch batch = queue.poll();
+        if (batch != null) {
+            return batch;
+        }
+        long start = System.nanoTime();
+        try {
+            while (batch == null) {
+                if (stopped) {
+                    throw new SQLException("result pipeline is closed");
+                }
+                batch = queue.poll(POLL_NANOS, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for hetu rows", e);
+        } finally {
+            encodeWaitNanos += System.nanoTime() - start;
+        }
+        return batch;
+    }
+
+    @Override
+    public Object getObjectInternal(int columnIndex) throws SQLException {
+        return row[columnIndex - 1];
+    }
+
+    @Override
+    public boolean previous() throws SQLException {
+        throw new SQLFeatureNotSupportedException("previous");
+    }
+
+    @Override
+    public void updateObject(int columnIndex, Object x) throws SQLException {
+        throw new SQLFeatureNotSupportedException("updateObject");
+    }
+
+    /**
+     * called by the encode stage after each row
+     */
+    public void rowEncoded(int packetSize, long drainNanos) {
+        rows++;
+        bytes += packetSize;
+        drainWaitNanos += drainNanos;
+    }
+
+    /**
+     * stop the fetch stage and wait until it has returned, the caller closes the ResultSet and
+     * the Statement afterwards and must not race with rs.next() of the fetch thread
+     */
+    @Override
+    public void close() throws SQLException {
+        stopped = true;
+        // 取数线程可能在等待队列空位
+        queue.clear();
+        try {
+            if (!fetchDone.await(CLOSE_CANCEL_MILLIS, TimeUnit.MILLISECONDS)) {
+                cancelFetch();
+                fetchDone.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queue.clear();
+        super.close();
+    }
+
+    private void cancelFetch() {
+        try {
+            Statement stmt = rs.getStatement();
+            if (stmt != null) {
+                stmt.cancel();
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("cancel of the pipelined statement failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * which side is the bottleneck: hetu (the encode stage waits for rows), client (the encode stage
+     * waits for the socket) or encode (neither of them waits)
+     */
+    public String bottleneck() {
+        long elapsed = System.nanoTime() - startTime;
+        if (encodeWaitNanos >= fetchWaitNanos && encodeWaitNanos * 4 >= elapsed) {
+            return ResultPipelineStat.HETU;
+        }
+        if (drainWaitNanos * 4 >= elapsed) {
+            return ResultPipelineStat.CLIENT;
+        }
+        return ResultPipelineStat.ENCODE;
+    }
+
+    /**
+     * per query statistics, logged and counted in ResultPipelineStat (show @@server)
+     */
+    public void report(String sql) {
+        long elapsed = Math.max(1, System.nanoTime() - startTime);
+        String bottleneck = bottleneck();
+        ResultPipelineStat.getInstance().finished(rows, bytes, bottleneck);
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("result pipeline: rows=" + rows + ", bytes=" + bytes
+                    + ", rows/s=" + perSecond(rows, elapsed) + ", bytes/s=" + perSecond(bytes, elapsed)
+                    + ", fetch wait ms=" + TimeUnit.NANOSECONDS.toMillis(fetchWaitNanos)
+                    + ", encode wait ms=" + TimeUnit.NANOSECONDS.toMillis(encodeWaitNanos)
+                    + ", client wait ms=" + TimeUnit.NANOSECONDS.toMillis(drainWaitNanos)
+                    + ", batch rows=" + batchRows + ", bottleneck=" + bottleneck + ", sql=" + sql);
+        }
+    }
+
+    /**
+     * 用double计算, count * 1e9 在几个GB的导出时会溢出long
+     */
+    static long perSecond(long count, long elapsedNanos) {
+        return (long) (count * 1e9 / Math.max(1, elapsedNanos));
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    private static final class Batch {
+        final Object[][] rows;
+        int size;
+        boolean last;
+        Throwable error;
+
+        Batch(int capacity) {
+            this.rows = new Object[capacity][];
+        }
+    }
+}
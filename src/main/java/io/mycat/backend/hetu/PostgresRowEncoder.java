@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.net.postgres.PostgresPacket;
+import io.mycat.net.postgres.PostgresTypes;
+import io.mycat.util.StringEncoder;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * postgres DataRow: 'D', Int32 length, Int16 column count, then Int32 length (-1 for NULL) and
+ * the value of each column. Each column is text or binary as requested by Bind, strings are utf8
+ * (client_encoding is always UTF8).
+ */
+public class PostgresRowEncoder extends RowEncoder {
+    private static final int HEADER_SIZE = 5;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final int[] oids;
+    private final boolean[] binary;
+
+    // long最多20个字符(含负号)
+    private final byte[] digits = new byte[20];
+
+    /**
+     * @param formats result format of each column, PostgresTypes.FORMAT_TEXT or FORMAT_BINARY
+     */
+    public PostgresRowEncoder(List<FieldPacket> fieldPks, short[] formats) {
+        super(fieldPks, new StringEncoder("UTF-8"));
+        this.oids = new int[fieldTypes.length];
+        this.binary = new boolean[fieldTypes.length];
+        for (int i = 0; i < fieldTypes.length; i++) {
+            oids[i] = PostgresTypes.oid(fieldTypes[i]);
+            binary[i] = formats[i] == PostgresTypes.FORMAT_BINARY;
+        }
+    }
+
+    public int getOid(int column) {
+        return oids[column];
+    }
+
+    public short getFormat(int column) {
+        return binary[column] ? PostgresTypes.FORMAT_BINARY : PostgresTypes.FORMAT_TEXT;
+    }
+
+    @Override
+    protected int getHeaderSize() {
+        return HEADER_SIZE;
+    }
+
+    @Override
+    protected void writeHeader(ByteBuffer buf, int start, int payloadSize, byte packetId) {
+        buf.put(start, PostgresPacket.DATA_ROW);
+        // the length includes itself
+        buf.putInt(start + 1, payloadSize + 4);
+    }
+
+    @Override
+    protected void writeRow(ResultSet rs) throws SQLException {
+        ensureCapacity(2);
+        buffer.putShort((short) oids.length);
+        for (int i = 0; i < oids.length; i++) {
+            if (binary[i]) {
+                writeBinary(rs, i + 1, oids[i]);
+            } else {
+                writeText(rs, i + 1, oids[i]);
+            }
+        }
+    }
+
+    private void writeText(ResultSet rs, int j, int oid) throws SQLException {
+        switch (oid) {
+            case PostgresTypes.INT2:
+            case PostgresTypes.INT4:
+            case PostgresTypes.INT8:
+                long lv = rs.getLong(j);
+                if (rs.wasNull()) {
+                    writeNull();
+                } else {
+                    writeLong(lv);
+                }
+                break;
+            case PostgresTypes.NUMERIC:
+                BigDecimal dv = rs.getBigDecimal(j);
+                writeString(dv == null ? null : dv.toPlainString());
+                break;
+            case PostgresTypes.BOOL:
+                boolean bv = rs.getBoolean(j);
+                if (rs.wasNull()) {
+                    writeNull();
+                } else {
+                    ensureCapacity(5);
+                    buffer.putInt(1);
+                    buffer.put(bv ? (byte) 't' : (byte) 'f');
+                }
+                break;
+            case PostgresTypes.BYTEA:
+                writeHex(rs.getBytes(j));
+                break;
+            default:
+                writeString(rs.getString(j));
+                break;
+        }
+    }
+
+    private void writeBinary(ResultSet rs, int j, int oid) throws SQLException {
+        switch (oid) {
+            case PostgresTypes.INT2:
+                short sv = rs.getShort(j);
+                if (!rs.wasNull()) {
+                    ensureCapacity(6);
+                    buffer.putInt(2);
+                    buffer.putShort(sv);
+                    return;
+                }
+                break;
+            case PostgresTypes.INT4:
+                int iv = rs.getInt(j);
+                if (!rs.wasNull()) {
+                    ensureCapacity(8);
+                    buffer.putInt(4);
+                    buffer.putInt(iv);
+                    return;
+                }
+                break;
+            case PostgresTypes.INT8:
+                long lv = rs.getLong(j);
+                if (!rs.wasNull()) {
+                    ensureCapacity(12);
+                    buffer.putInt(8);
+                    buffer.putLong(lv);
+                    return;
+                }
+                break;
+            case PostgresTypes.FLOAT4:
+                float fv = rs.getFloat(j);
+                if (!rs.wasNull()) {
+                    ensureCapacity(8);
+                    buffer.putInt(4);
+                    buffer.putFloat(fv);
+                    return;
+                }
+                break;
+            case PostgresTypes.FLOAT8:
+                double dv = rs.getDouble(j);
+                if (!rs.wasNull()) {
+                    ensureCapacity(12);
+                    buffer.putInt(8);
+                    buffer.putDouble(dv);
+                    return;
+                }
+                break;
+            case PostgresTypes.BOOL:
+                boolean bv = rs.getBoolean(j);
+                if (!rs.wasNull()) {
+                    ensureCapacity(5);
+                    buffer.putInt(1);
+                    buffer.put(bv ? (byte) 1 : (byte) 0);
+                    return;
+                }
+                break;
+            case PostgresTypes.NUMERIC:
+                BigDecimal nv = rs.getBigDecimal(j);
+                if (nv != null) {
+                    int size = PostgresTypes.numericSize(nv);
+                    ensureCapacity(4 + size);
+                    buffer.putInt(size);
+                    PostgresTypes.writeNumeric(buffer, nv);
+                    return;
+                }
+                break;
+            case PostgresTypes.DATE:
+                Date date = rs.getDate(j);
+                if (date != null) {
+                    ensureCapacity(8);
+                    buffer.putInt(4);
+                    buffer.putInt(PostgresTypes.toPostgresDays(date.toLocalDate()));
+                    return;
+                }
+                break;
+            case PostgresTypes.TIME:
+                Time time = rs.getTime(j);
+                if (time != null) {
+                    ensureCapacity(12);
+                    buffer.putInt(8);
+                    buffer.putLong(time.toLocalTime().toNanoOfDay() / 1000);
+                    return;
+                }
+                break;
+            case PostgresTypes.TIMESTAMP:
+                Timestamp timestamp = rs.getTimestamp(j);
+                if (timestamp != null) {
+                    ensureCapacity(12);
+                    buffer.putInt(8);
+                    buffer.putLong(PostgresTypes.toPostgresMicros(timestamp.toLocalDateTime()));
+                    return;
+                }
+                break;
+            case PostgresTypes.BYTEA:
+                byte[] bytes = rs.getBytes(j);
+                if (bytes != null) {
+                    ensureCapacity(4 + bytes.length);
+                    buffer.putInt(bytes.length);
+                    buffer.put(bytes);
+                    return;
+                }
+                break;
+            default:
+                // 文本类型的二进制格式就是utf8字节
+                writeString(rs.getString(j));
+                return;
+        }
+        writeNull();
+    }
+
+    @Override
+    public Object readColumn(ResultSet rs, int column) throws SQLException {
+        return rs.getObject(column);
+    }
+
+    @Override
+    protected void writeNull() {
+        ensureCapacity(4);
+        buffer.putInt(-1);
+    }
+
+    /**
+     * Int32 length and the utf8 bytes, null is written as -1
+     */
+    @Override
+    protected void writeString(String v) {
+        if (v == null) {
+            writeNull();
+            return;
+        }
+        int length = v.length();
+        ensureCapacity(4 + length);
+        int start = buffer.position();
+        buffer.position(start + 4);
+        if (stringEncoder.putDirectBytes(v, buffer)) {
+            buffer.putInt(start, length);
+            return;
+        }
+        buffer.position(start);
+        ByteBuffer bytes = stringEncoder.encode(v);
+        int size = bytes.remaining();
+        ensureCapacity(4 + size);
+        buffer.putInt(size);
+        buffer.put(bytes);
+    }
+
+    /**
+     * text format of bytea: \x and two hex digits per byte
+     */
+    private void writeHex(byte[] v) {
+        if (v == null) {
+            writeNull();
+            return;
+        }
+        int size = 2 + 2 * v.length;
+        ensureCapacity(4 + size);
+        buffer.putInt(size);
+        buffer.put((byte) '\\');
+        buffer.put((byte) 'x');
+        for (byte b : v) {
+            buffer.put(HEX[(b >> 4) & 0x0f]);
+            buffer.put(HEX[b & 0x0f]);
+        }
+    }
+
+    private void writeLong(long v) {
+        // 用负数做除法, Long.MIN_VALUE 不会溢出
+        long q = v < 0 ? v : -v;
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' - (q % 10));
+            q /= 10;
+        } while (q != 0);
+        if (v < 0) {
+            digits[--pos] = '-';
+        }
+        int len = digits.length - pos;
+        ensureCapacity(4 + len);
+        buffer.putInt(len);
+        buffer.put(digits, pos, len);
+    }
+}
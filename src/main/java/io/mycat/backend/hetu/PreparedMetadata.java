@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.MycatServer;
+import io.mycat.cache.CachePool;
+import io.mycat.net.mysql.FieldPacket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * result of PREPARE + DESCRIBE INPUT + DESCRIBE OUTPUT for one statement, cached in the
+ * HetuPreparedCache pool of cacheservice.properties (size and expire seconds are configured there,
+ * hit/access counters are shown by show @@cache). Remove the pool to disable the cache.
+ */
+public class PreparedMetadata {
+    public static final String CACHE_POOL = "HetuPreparedCache";
+
+    private final List<String> parameters;
+    private final List<FieldPacket> fieldPks;
+
+    public PreparedMetadata(List<String> parameters, List<FieldPacket> fieldPks) {
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+        this.fieldPks = Collections.unmodifiableList(new ArrayList<>(fieldPks));
+    }
+
+    public static CachePool getCachePool() {
+        return MycatServer.getInstance().getCacheService().getAllCachePools().get(CACHE_POOL);
+    }
+
+    /**
+     * field names are encoded with the client charset, so it is part of the key as well.
+     * url and user are included because a statement may resolve differently per backend or user
+     */
+    public static String cacheKey(String url, String user, String catalog, String schema, String charset,
+            String sql) {
+        return url + '\u0000' + user + '\u0000' + catalog + '\u0000' + schema + '\u0000' + charset + '\u0000'
+                + normalize(sql);
+    }
+
+    /**
+     * collapse whitespace outside of quotes and trim, case is kept because quoted identifiers
+     * and literals are case sensitive
+     */
+    public static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                sb.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    public List<String> getParameters() {
+        return new ArrayList<>(parameters);
+    }
+
+    /**
+     * packetId of the field packets is changed when they are written, each statement gets its own copy
+     */
+    public List<FieldPacket> copyFieldPks() {
+        return copyFieldPks(fieldPks);
+    }
+
+    static List<FieldPacket> copyFieldPks(List<FieldPacket> fieldPks) {
+        List<FieldPacket> copy = new ArrayList<>(fieldPks.size());
+        for (FieldPacket fieldPk : fieldPks) {
+            FieldPacket fieldPacket = new FieldPacket();
+            fieldPacket.catalog = fieldPk.catalog;
+            fieldPacket.db = fieldPk.db;
+            fieldPacket.table = fieldPk.table;
+            fieldPacket.orgTable = fieldPk.orgTable;
+            fieldPacket.name = fieldPk.name;
+            fieldPacket.orgName = fieldPk.orgName;
+            fieldPacket.charsetIndex = fieldPk.charsetIndex;
+            fieldPacket.length = fieldPk.length;
+            fieldPacket.type = fieldPk.type;
+            fieldPacket.flags = fieldPk.flags;
+            fieldPacket.decimals = fieldPk.decimals;
+            fieldPacket.definition = fieldPk.definition;
+            copy.add(fieldPacket);
+        }
+        return copy;
+    }
+
+    public int getColumnsNumber() {
+        return fieldPks.size();
+    }
+}
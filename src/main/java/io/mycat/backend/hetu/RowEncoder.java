@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.backend.mysql.BufferUtil;
+import io.mycat.net.FrontendConnection;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.MysqlDefs;
+import io.mycat.util.StringEncoder;
+
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encode the current row of a ResultSet as one row packet, directly into the frontend
+ * write buffer. Subclasses choose the column writers once from the field packets, so no
+ * RowDataPacket / byte[] per row is needed.
+ */
+public abstract class RowEncoder {
+    /**
+     * receives the bytes of each finished row before its buffers are handed to the connection.
+     * a row that did not fit into one buffer comes in several segments.
+     */
+    public interface RowListener {
+        void rowSegment(ByteBuffer buffer, int offset, int length);
+
+        void rowEnd();
+    }
+
+    protected static final int PACKET_HEADER_SIZE = 4;
+    protected static final byte NULL_MARK = (byte) 251;
+    protected static final byte EMPTY_MARK = (byte) 0;
+
+    protected final int[] fieldTypes;
+    protected final StringEncoder stringEncoder;
+
+    // 以下状态只在encode()期间有效
+    protected ByteBuffer buffer;
+    protected int rowStart;
+    private FrontendConnection source;
+    // 放不下一行时, 行的前半部分所在的buffer, 行结束写好header后再依次交给source
+    private final List<ByteBuffer> rowChain = new ArrayList<>(2);
+    private int lastPacketSize;
+
+    protected RowEncoder(List<FieldPacket> fieldPks, String charset) {
+        this(fieldPks, new StringEncoder(charset));
+    }
+
+    /**
+     * @param stringEncoder the one of the frontend connection, FrontendConnection.getStringEncoder()
+     */
+    protected RowEncoder(List<FieldPacket> fieldPks, StringEncoder stringEncoder) {
+        this.stringEncoder = stringEncoder;
+        this.fieldTypes = new int[fieldPks.size()];
+        int i = 0;
+        for (FieldPacket fieldPk : fieldPks) {
+            // HetuUtil 中 type 是按 byte 存的
+            fieldTypes[i++] = fieldPk.type & 0xff;
+        }
+    }
+
+    public int getColumnCount() {
+        return fieldTypes.length;
+    }
+
+    /**
+     * size (header included) of the last packet written by encode()
+     */
+    public int getLastPacketSize() {
+        return lastPacketSize;
+    }
+
+    /**
+     * write the current row of rs as one row packet into buffer.
+     * if the buffer is full, the row continues in new buffers which are chained after it
+     * (nothing is copied), and all of them are handed to source when the row is finished,
+     * so the returned buffer must be used by the caller from now on.
+     */
+    public ByteBuffer encode(ResultSet rs, byte packetId, ByteBuffer buffer, FrontendConnection source)
+            throws SQLException {
+        return encode(rs, packetId, buffer, source, null);
+    }
+
+    /**
+     * same as encode(rs, packetId, buffer, source), listener (may be null) gets the bytes of the row
+     */
+    public ByteBuffer encode(ResultSet rs, byte packetId, ByteBuffer buffer, FrontendConnection source,
+            RowListener listener) throws SQLException {
+        int headerSize = getHeaderSize();
+        if (buffer.remaining() < headerSize) {
+            // header要和行的开头在同一个buffer中
+            if (buffer.position() > 0) {
+                source.write(buffer);
+            } else {
+                source.recycle(buffer);
+            }
+            buffer = allocate(source, headerSize);
+        }
+        this.buffer = buffer;
+        this.source = source;
+        this.rowStart = buffer.position();
+        boolean finished = false;
+        try {
+            this.buffer.position(rowStart + headerSize);
+            writeRow(rs);
+
+            ByteBuffer buf = this.buffer;
+            if (rowChain.isEmpty()) {
+                int payloadSize = buf.position() - rowStart - headerSize;
+                writeHeader(buf, rowStart, payloadSize, packetId);
+                lastPacketSize = payloadSize + headerSize;
+                if (listener != null) {
+                    listener.rowSegment(buf, rowStart, lastPacketSize);
+                    listener.rowEnd();
+                }
+            } else {
+                ByteBuffer head = rowChain.get(0);
+                int payloadSize = head.position() - rowStart - headerSize + buf.position();
+                for (int i = 1; i < rowChain.size(); i++) {
+                    payloadSize += rowChain.get(i).position();
+                }
+                writeHeader(head, rowStart, payloadSize, packetId);
+                lastPacketSize = payloadSize + headerSize;
+                if (listener != null) {
+                    listener.rowSegment(head, rowStart, head.position() - rowStart);
+                    for (int i = 1; i < rowChain.size(); i++) {
+                        listener.rowSegment(rowChain.get(i), 0, rowChain.get(i).position());
+                    }
+                    listener.rowSegment(buf, 0, buf.position());
+                    listener.rowEnd();
+                }
+                for (ByteBuffer b : rowChain) {
+                    source.write(b);
+                }
+            }
+            finished = true;
+            return buf;
+        } finally {
+            if (!finished) {
+                abortRow(buffer);
+            }
+            rowChain.clear();
+            this.buffer = null;
+            this.source = null;
+        }
+    }
+
+    /**
+     * the row failed: the buffers allocated for it are recycled, the caller's buffer is
+     * left as it was before the row
+     */
+    private void abortRow(ByteBuffer head) {
+        for (ByteBuffer b : rowChain) {
+            if (b != head) {
+                source.recycle(b);
+            }
+        }
+        if (this.buffer != head) {
+            source.recycle(this.buffer);
+        }
+        head.position(rowStart);
+    }
+
+    private static ByteBuffer allocate(FrontendConnection source, int need) {
+        return source.getProcessor().getBufferPool().allocate(
+                Math.max(source.getProcessor().getBufferPool().getChunkSize(), need));
+    }
+
+    protected int getHeaderSize() {
+        return PACKET_HEADER_SIZE;
+    }
+
+    /**
+     * fill the header in front of the payload once the row is written
+     */
+    protected void writeHeader(ByteBuffer buf, int start, int payloadSize, byte packetId) {
+        buf.put(start, (byte) (payloadSize & 0xff));
+        buf.put(start + 1, (byte) (payloadSize >>> 8));
+        buf.put(start + 2, (byte) (payloadSize >>> 16));
+        buf.put(start + 3, packetId);
+    }
+
+    /**
+     * write the payload of the row, buffer position is just after the packet header
+     */
+    protected abstract void writeRow(ResultSet rs) throws SQLException;
+
+    /**
+     * read a column (1-based) with the getter writeRow() uses for it, null for sql NULL.
+     * HetuResultPipeline keeps these values so that the row is encoded later in another thread.
+     */
+    public abstract Object readColumn(ResultSet rs, int column) throws SQLException;
+
+    protected static boolean isBinary(int type) {
+        return MysqlDefs.isBianry((byte) type);
+    }
+
+    protected void writeNull() {
+        ensureCapacity(1);
+        buffer.put(NULL_MARK);
+    }
+
+    /**
+     * length-encoded string, null is written as NULL_MARK
+     */
+    protected void writeBytes(byte[] v) {
+        if (v == null) {
+            writeNull();
+        } else if (v.length == 0) {
+            ensureCapacity(1);
+            buffer.put(EMPTY_MARK);
+        } else {
+            ensureCapacity(BufferUtil.getLength(v));
+            BufferUtil.writeWithLength(buffer, v);
+        }
+    }
+
+    /**
+     * length-encoded string in the client charset, null is written as NULL_MARK. no byte[] is
+     * created: single byte chars are put directly, others are encoded by the StringEncoder.
+     */
+    protected void writeString(String v) {
+        if (v == null) {
+            writeNull();
+            return;
+        }
+        int length = v.length();
+        if (length == 0) {
+            ensureCapacity(1);
+            buffer.put(EMPTY_MARK);
+            return;
+        }
+        if (stringEncoder.hasDirectPath()) {
+            ensureCapacity(BufferUtil.getLength(length) + length);
+            if (stringEncoder.putDirect(v, buffer)) {
+                return;
+            }
+        }
+        ByteBuffer bytes = stringEncoder.encode(v);
+        int size = bytes.remaining();
+        ensureCapacity(BufferUtil.getLength(size) + size);
+        BufferUtil.writeLength(buffer, size);
+        buffer.put(bytes);
+    }
+
+    /**
+     * make sure that need bytes can be put into the buffer. the packet header is written at
+     * the end of the row, so the filled buffer is kept in the row chain instead of being
+     * handed to source, and the row continues in a new buffer without copying.
+     */
+    protected void ensureCapacity(int need) {
+        ByteBuffer buf = buffer;
+        if (buf.remaining() >= need) {
+            return;
+        }
+        rowChain.add(buf);
+        buffer = allocate(source, need);
+    }
+}
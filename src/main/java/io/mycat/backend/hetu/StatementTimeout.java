@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.MycatServer;
+import io.mycat.config.model.SystemConfig;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * hetu语句超时. 语句开始执行时在时间轮中登记deadline, 结束时取消, 登记和取消都是O(1), 和连接数无关;
+ * 到期时cancel执行中的Statement, 连接和会话保留.
+ * 超时秒数按 hetuStatementTimeoutRules (user@catalog.schema=seconds, 逗号分隔) 匹配, 优先级:
+ * user@catalog.schema, user@catalog, user@*, *@catalog.schema, *@catalog, *@*, 最后是hetuStatementTimeout. 0为不限制
+ */
+public final class StatementTimeout {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementTimeout.class);
+
+    private static final String ANY = "*";
+
+    // 100ms一格, 512格一圈, 超时精度100ms
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "StatementTimeoutTimer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }, 100, TimeUnit.MILLISECONDS, 512);
+
+    private static volatile StatementTimeout instance;
+
+    private final long defaultSeconds;
+    private final Map<String, Long> rules;
+
+    StatementTimeout(long defaultSeconds, String rules) {
+        this.defaultSeconds = defaultSeconds;
+        this.rules = parseRules(rules);
+    }
+
+    public static StatementTimeout getInstance() {
+        if (instance == null) {
+            synchronized (StatementTimeout.class) {
+                if (instance == null) {
+                    SystemConfig sys = MycatServer.getInstance().getConfig().getSystem();
+                    instance = new StatementTimeout(sys.getHetuStatementTimeout(), sys.getHetuStatementTimeoutRules());
+                }
+            }
+        }
+        return instance;
+    }
+
+    static Map<String, Long> parseRules(String rules) {
+        Map<String, Long> map = new HashMap<>();
+        if (rules == null) {
+            return map;
+        }
+        for (String rule : rules.split(",")) {
+            rule = rule.trim();
+            if (rule.isEmpty()) {
+                continue;
+            }
+            int eq = rule.lastIndexOf('=');
+            int at = rule.indexOf('@');
+            if (eq < 0 || at < 0 || at > eq) {
+                LOGGER.warn("invalid hetuStatementTimeoutRules item: " + rule);
+                continue;
+            }
+            try {
+                String key = key(rule.substring(0, at).trim(), rule.substring(at + 1, eq).trim());
+                map.put(key, Long.parseLong(rule.substring(eq + 1).trim()));
+            } catch (NumberFormatException e) {
+                LOGGER.warn("invalid hetuStatementTimeoutRules item: " + rule);
+            }
+        }
+        return map;
+    }
+
+    private static String key(String user, String schema) {
+        return user + '@' + schema.toLowerCase();
+    }
+
+    public long timeoutSeconds(String user, String catalog, String schema) {
+        if (rules.isEmpty()) {
+            return defaultSeconds;
+        }
+        String catalogSchema = catalog + '.' + schema;
+        Long seconds;
+        for (String u : new String[] {user, ANY}) {
+            if ((seconds = rules.get(key(u, catalogSchema))) != null
+                    || (seconds = rules.get(key(u, String.valueOf(catalog)))) != null
+                    || (seconds = rules.get(key(u, ANY))) != null) {
+                return seconds;
+            }
+        }
+        return defaultSeconds;
+    }
+
+    /**
+     * 登记语句的deadline, 没有超时限制时返回null
+     */
+    public Timeout schedule(final HetuConnection c, String user, String catalog, String schema) {
+        long seconds = timeoutSeconds(user, catalog, schema);
+        if (seconds <= 0) {
+            return null;
+        }
+        return TIMER.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                c.statementTimeout(timeout);
+            }
+        }, seconds, TimeUnit.SECONDS);
+    }
+}
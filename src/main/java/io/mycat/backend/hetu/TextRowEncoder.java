@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.MysqlDefs;
+import io.mycat.util.StringEncoder;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * text protocol row (COM_QUERY)
+ */
+public class TextRowEncoder extends RowEncoder {
+    private static final int COLUMN_STRING = 0;
+    private static final int COLUMN_INTEGER = 1;
+    private static final int COLUMN_DECIMAL = 2;
+    private static final int COLUMN_BIT = 3;
+    private static final int COLUMN_BINARY = 4;
+
+    private final int[] columnWriters;
+
+    // long最多20个字符(含负号)
+    private final byte[] digits = new byte[20];
+
+    public TextRowEncoder(List<FieldPacket> fieldPks, String charset) {
+        this(fieldPks, new StringEncoder(charset));
+    }
+
+    public TextRowEncoder(List<FieldPacket> fieldPks, StringEncoder stringEncoder) {
+        super(fieldPks, stringEncoder);
+        this.columnWriters = new int[fieldTypes.length];
+        for (int i = 0; i < fieldTypes.length; i++) {
+            columnWriters[i] = columnWriter(fieldTypes[i]);
+        }
+    }
+
+    private static int columnWriter(int type) {
+        if (isBinary(type)) {
+            return COLUMN_BINARY;
+        }
+        switch (type) {
+            case MysqlDefs.FIELD_TYPE_TINY:
+            case MysqlDefs.FIELD_TYPE_SHORT:
+            case MysqlDefs.FIELD_TYPE_LONG:
+            case MysqlDefs.FIELD_TYPE_INT24:
+            case MysqlDefs.FIELD_TYPE_LONGLONG:
+                return COLUMN_INTEGER;
+            case MysqlDefs.FIELD_TYPE_DECIMAL:
+            case MysqlDefs.FIELD_TYPE_NEW_DECIMAL:
+                return COLUMN_DECIMAL;
+            case MysqlDefs.FIELD_TYPE_BIT:
+                return COLUMN_BIT;
+            default:
+                return COLUMN_STRING;
+        }
+    }
+
+    @Override
+    protected void writeRow(ResultSet rs) throws SQLException {
+        for (int i = 0; i < columnWriters.length; i++) {
+            int j = i + 1;
+            switch (columnWriters[i]) {
+                case COLUMN_INTEGER:
+                    long lv = rs.getLong(j);
+                    if (rs.wasNull()) {
+                        writeNull();
+                    } else {
+                        writeLong(lv);
+                    }
+                    break;
+                case COLUMN_DECIMAL:
+                    // ensure that do not use scientific notation format
+                    BigDecimal dv = rs.getBigDecimal(j);
+                    writeString(dv == null ? null : dv.toPlainString());
+                    break;
+                case COLUMN_BIT:
+                    //boolean map to bit, cant't use getString()
+                    boolean bv = rs.getBoolean(j);
+                    if (rs.wasNull()) {
+                        writeNull();
+                    } else {
+                        ensureCapacity(2);
+                        buffer.put((byte) 1);
+                        buffer.put(bv ? (byte) '1' : (byte) '0');
+                    }
+                    break;
+                case COLUMN_BINARY:
+                    writeBytes(rs.getBytes(j));
+                    break;
+                default:
+                    writeString(rs.getString(j));
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public Object readColumn(ResultSet rs, int column) throws SQLException {
+        Object v;
+        switch (columnWriters[column - 1]) {
+            case COLUMN_INTEGER:
+                v = rs.getLong(column);
+                break;
+            case COLUMN_DECIMAL:
+                return rs.getBigDecimal(column);
+            case COLUMN_BIT:
+                v = rs.getBoolean(column);
+                break;
+            case COLUMN_BINARY:
+                return rs.getBytes(column);
+            default:
+                return rs.getString(column);
+        }
+        return rs.wasNull() ? null : v;
+    }
+
+    private void writeLong(long v) {
+        // 用负数做除法, Long.MIN_VALUE 不会溢出
+        long q = v < 0 ? v : -v;
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' - (q % 10));
+            q /= 10;
+        } while (q != 0);
+        if (v < 0) {
+            digits[--pos] = '-';
+        }
+        int len = digits.length - pos;
+        ensureCapacity(len + 1);
+        buffer.put((byte) len);
+        buffer.put(digits, pos, len);
+    }
+}
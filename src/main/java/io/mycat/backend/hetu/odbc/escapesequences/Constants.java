@@ -25,63 +25,11 @@ package io.mycat.backend.hetu.odbc.escapesequences;
  * @since 2020-06-01
  */
 public class Constants {
-    /**
-     * ODBC SCALAR FN PATTERN
-     */
-    public static final String ODBC_SCALAR_FN_PATTERN = "\\{fn[^{}]*}";
-
-    // public static final String CHAR_FN_PATTERN = "'[^']*\\{fn[^']*'";
-
-    /**
-     * ODBC DATE LITERAL ESCAPE SEQUENCE PATTERN
-     */
-    public static final String ODBC_DATE_LITERAL_ESCAPE_SEQUENCE_PATTERN = "\\{d\\s+('[^']*')+}";
-
-    /**
-     * ODBC TIME LITERAL ESCAPE SEQUENCE PATTERN
-     */
-    public static final String ODBC_TIME_LITERAL_ESCAPE_SEQUENCE_PATTERN = "\\{t\\s+('[^']*')+}";
-
-    /**
-     * ODBC TIMESTAMP LITERAL ESCAPE SEQUENCE PATTERN
-     */
-    public static final String ODBC_TIMESTAMP_LITERAL_ESCAPE_SEQUENCE_PATTERN = "\\{ts\\s+('[^']*')+}";
-
-    /**
-     * ODBC LIKE PREDICATE WITH ESCAPE CHARACTER PATTERN
-     */
-    public static final String ODBC_LIKE_PREDICATE_WITH_ESCAPE_CHARACTER_PATTERN = "LIKE\\s+('[^']*')+\\s+\\{escape\\s+'.'}";
-
-    /**
-     * ODBC INTERVAL ESCAPE SEQUENCE PATTERN
-     */
-    public static final String ODBC_INTERVAL_ESCAPE_SEQUENCE_PATTERN = "\\{\\s*INTERVAL\\s+('[^']*')+\\s+[^}]*}";
-
-    /**
-     * CHAR PATTERN
-     */
-    public static final String CHAR_PATTERN = "('[^']*')+";
-
-    /**
-     * SPACE PATTERN
-     */
-    public static final String SPACE_PATTERN = "[\\s\\t\\n\\r]+";
-
-    /**
-     * SQL STRING_TAG
-     */
-    public static final String SQL_STRING_TAG = "'";
-
     /**
      * SPACE STRING
      */
     public static final String SPACE_STRING = " ";
 
-    /**
-     * SQL CHAR FILL TAG
-     */
-    public static final String SQL_CHAR_FILL_TAG = "#";
-
     /**
      * LEFT PARENTHESIS STRING
      */
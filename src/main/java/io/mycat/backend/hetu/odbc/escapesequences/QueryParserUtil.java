@@ -23,23 +23,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Stack;
-import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import static io.mycat.backend.hetu.odbc.escapesequences.Constants.CHAR_PATTERN;
 import static io.mycat.backend.hetu.odbc.escapesequences.Constants.LEFT_PARENTHESIS_STRING;
-import static io.mycat.backend.hetu.odbc.escapesequences.Constants.ODBC_DATE_LITERAL_ESCAPE_SEQUENCE_PATTERN;
-import static io.mycat.backend.hetu.odbc.escapesequences.Constants.ODBC_INTERVAL_ESCAPE_SEQUENCE_PATTERN;
-import static io.mycat.backend.hetu.odbc.escapesequences.Constants.ODBC_LIKE_PREDICATE_WITH_ESCAPE_CHARACTER_PATTERN;
-import static io.mycat.backend.hetu.odbc.escapesequences.Constants.ODBC_SCALAR_FN_PATTERN;
-import static io.mycat.backend.hetu.odbc.escapesequences.Constants.ODBC_TIMESTAMP_LITERAL_ESCAPE_SEQUENCE_PATTERN;
-import static io.mycat.backend.hetu.odbc.escapesequences.Constants.ODBC_TIME_LITERAL_ESCAPE_SEQUENCE_PATTERN;
-import static io.mycat.backend.hetu.odbc.escapesequences.Constants.SQL_CHAR_FILL_TAG;
-import static io.mycat.backend.hetu.odbc.escapesequences.Constants.SQL_STRING_TAG;
 
 /**
  * Prepare Query
@@ -54,6 +43,10 @@ import static io.mycat.backend.hetu.odbc.escapesequences.Constants.SQL_STRING_TA
 public class QueryParserUtil {
     private static final Logger LOGGER = LoggerFactory.getLogger(QueryParserUtil.class);
 
+    // 改写后的{fn}用这两个字符包起来, 外层{fn}分参数时原样使用不再翻译, 结束后去掉
+    private static final char REWRITTEN_START = '\uE000';
+    private static final char REWRITTEN_END = '\uE001';
+
     private QueryParserUtil() {
     }
 
@@ -64,86 +57,213 @@ public class QueryParserUtil {
      * @return the rewrite result which conform to the Hetu syntax
      */
     public static String parseAndRewriteQuery(String sql) {
+        // every odbc escape sequence starts with '{', most of the statements have none
+        if (sql == null || sql.indexOf('{') < 0) {
+            return sql;
+        }
         return replaceOdbcEscapeSequences(sql);
     }
 
+    /**
+     * one scan over the sql, quoted strings are copied as they are. Each '{' opens a frame at the current
+     * output position, the matching '}' rewrites the frame in place, so nested escapes ({fn} in {fn},
+     * {d} in {fn}) are rewritten from the innermost one. A frame which is not a known escape is kept and
+     * its outer frames are kept too. A rewritten {fn} is an argument of its outer {fn} as it is, it is not
+     * translated a second time.
+     */
     private static String replaceOdbcEscapeSequences(String sql) {
-        List<String> tmpCharCache = new ArrayList<>();
-        // like pattern must be first
-        String likePatternDone = replaceOneLevelPatternLiteral(sql, ODBC_LIKE_PREDICATE_WITH_ESCAPE_CHARACTER_PATTERN, QueryParserUtil::likeEscapeStringHandler);
-        String buryCharSql = buryCharPattern(likePatternDone, tmpCharCache);
-        String intervalPatternDone = replaceOneLevelPatternLiteral(buryCharSql, ODBC_INTERVAL_ESCAPE_SEQUENCE_PATTERN, QueryParserUtil::intervalEscapeStringHandler);
-        String dateLiteralDone = replaceOneLevelPatternLiteral(intervalPatternDone, ODBC_DATE_LITERAL_ESCAPE_SEQUENCE_PATTERN, QueryParserUtil::dateLiteralStringHandler);
-        String timeLiteralDone = replaceOneLevelPatternLiteral(dateLiteralDone, ODBC_TIME_LITERAL_ESCAPE_SEQUENCE_PATTERN, QueryParserUtil::timeLiteralStringHandler);
-        String timestampLiteralDone = replaceOneLevelPatternLiteral(timeLiteralDone, ODBC_TIMESTAMP_LITERAL_ESCAPE_SEQUENCE_PATTERN, QueryParserUtil::timestampLiteralStringHandler);
-        String fnPatternDone = replacePatternFnWithoutChar(timestampLiteralDone);
-        return turnBackChar(fnPatternDone, tmpCharCache);
+        boolean mark = sql.indexOf(REWRITTEN_START) < 0 && sql.indexOf(REWRITTEN_END) < 0;
+        int length = sql.length();
+        StringBuilder out = new StringBuilder(length + 16);
+        int[] frames = new int[8];
+        boolean[] kept = new boolean[8];
+        int depth = 0;
+        int i = 0;
+        while (i < length) {
+            int plain = i;
+            char c = 0;
+            while (i < length && (c = sql.charAt(i)) != '\'' && c != '"' && c != '{' && c != '}') {
+                i++;
+            }
+            out.append(sql, plain, i);
+            if (i == length) {
+                break;
+            }
+            if (c == '\'' || c == '"') {
+                int close = sql.indexOf(c, i + 1);
+                // a quote without its end is a normal char
+                if (close > 0) {
+                    out.append(sql, i, close + 1);
+                    i = close + 1;
+                    continue;
+                }
+            } else if (c == '{') {
+                if (depth == frames.length) {
+                    frames = Arrays.copyOf(frames, depth * 2);
+                    kept = Arrays.copyOf(kept, depth * 2);
+                }
+                frames[depth] = out.length();
+                kept[depth] = false;
+                depth++;
+            } else if (c == '}' && depth > 0) {
+                depth--;
+                out.append(c);
+                if ((kept[depth] || !rewriteEscape(out, frames[depth], mark)) && depth > 0) {
+                    kept[depth - 1] = true;
+                }
+                i++;
+                continue;
+            }
+            out.append(c);
+            i++;
+        }
+        return mark ? removeMarks(out) : out.toString();
     }
 
-    private static String replaceOneLevelPatternLiteral(String sql, String pattern, Function<String, String> literalHandler) {
-        Pattern dateLiteralPattern = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
-        Matcher matcher = dateLiteralPattern.matcher(sql);
-        StringBuffer builder = new StringBuffer();
-        while (matcher.find()) {
-            String dateLiteralString = sql.substring(matcher.start(), matcher.end());
-            String rewriteStr =  literalHandler.apply(dateLiteralString);
-            matcher.appendReplacement(builder, " " + rewriteStr.replaceAll("\\\\", "\\\\\\\\").replaceAll("\\$", "\\\\\\$") + " ");
+    private static String removeMarks(StringBuilder out) {
+        int to = 0;
+        for (int from = 0; from < out.length(); from++) {
+            char c = out.charAt(from);
+            if (c != REWRITTEN_START && c != REWRITTEN_END) {
+                out.setCharAt(to++, c);
+            }
         }
-        matcher.appendTail(builder);
-        sql = builder.toString();
-        return sql;
+        out.setLength(to);
+        return out.toString();
     }
 
-    // For the prefixed '{' suffixed '}' is the only difference between ODBC Interval Escape String and Hetu sql,
-    // We just remove the prefixed '{' suffixed '}'
-    private static String intervalEscapeStringHandler(String intervalString) {
-        intervalString = intervalString.trim();
-        return intervalString.substring(1, intervalString.length()-1);
+    /**
+     * rewrite the escape which starts at start of out and ends at the end of out
+     *
+     * @return false if it is not a odbc escape sequence, out is not changed
+     */
+    private static boolean rewriteEscape(StringBuilder out, int start, boolean mark) {
+        String escape = out.substring(start);
+        String rewrite = null;
+        if (escape.regionMatches(true, 1, "fn", 0, 2)) {
+            rewrite = fnFunctionStringHandler(escape);
+            if (mark) {
+                rewrite = REWRITTEN_START + rewrite + REWRITTEN_END;
+            }
+        } else if ((rewrite = literalEscapeHandler(escape, "ts", "timestamp")) == null
+                && (rewrite = literalEscapeHandler(escape, "t", "time")) == null
+                && (rewrite = literalEscapeHandler(escape, "d", "date")) == null
+                && (rewrite = intervalEscapeStringHandler(escape)) == null) {
+            int likeStart = likeStart(out, start, escape);
+            if (likeStart < 0) {
+                return false;
+            }
+            // LIKE 'pattern' {escape 'c'} -> LIKE 'pattern' escape 'c'
+            rewrite = out.substring(likeStart, start).trim() + " " + escape.substring(1, escape.length() - 1);
+            start = likeStart;
+        }
+        out.setLength(start);
+        out.append(' ').append(rewrite).append(' ');
+        return true;
     }
 
-    private static String likeEscapeStringHandler(String likeString) {
-        likeString = likeString.trim();
-        Pattern likePattern = Pattern.compile("\\{escape\\s+'.'}", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = likePattern.matcher(likeString);
-        matcher.find();
-        int start = matcher.start();
-        int end = matcher.end();
-        String escapeStr = likeString.substring(start + 1, end-1);
-        return likeString.substring(0, start).trim() + " " + escapeStr;
+    // {d 'x'}, {t 'x'}, {ts 'x'}, see the LITERAL_ESCAPE_SEQUENCE_PATTERN of Constants
+    private static String literalEscapeHandler(String escape, String header, String hetuType) {
+        int end = escape.length() - 1;
+        if (!escape.regionMatches(true, 1, header, 0, header.length())) {
+            return null;
+        }
+        int begin = 1 + header.length();
+        int literal = skipSpaces(escape, begin, end);
+        if (literal == begin || skipLiterals(escape, literal, end) != end) {
+            return null;
+        }
+        return hetuType + " " + escape.substring(literal, end);
     }
 
-    private static String dateLiteralStringHandler(String dateLiteral){
-        dateLiteral = dateLiteral.trim();
-        String charString = dateLiteral.substring(2, dateLiteral.length()-1).trim();
-        return "date " + charString;
+    // For the prefixed '{' suffixed '}' is the only difference between ODBC Interval Escape String and Hetu sql,
+    // We just remove the prefixed '{' suffixed '}'
+    private static String intervalEscapeStringHandler(String escape) {
+        int end = escape.length() - 1;
+        int begin = skipSpaces(escape, 1, end);
+        if (!escape.regionMatches(true, begin, "INTERVAL", 0, 8)) {
+            return null;
+        }
+        int literal = skipSpaces(escape, begin + 8, end);
+        if (literal == begin + 8) {
+            return null;
+        }
+        int literalEnd = skipLiterals(escape, literal, end);
+        if (literalEnd < 0 || skipSpaces(escape, literalEnd, end) == literalEnd) {
+            return null;
+        }
+        return escape.substring(1, end);
     }
 
-    private static String timeLiteralStringHandler(String timeLiteral) {
-        timeLiteral = timeLiteral.trim();
-        String charString = timeLiteral.substring(2, timeLiteral.length()-1).trim();
-        return "time " + charString;
+    /**
+     * {escape 'c'} must follow LIKE 'pattern'
+     *
+     * @return the index of LIKE in out, -1 if it is not a like escape
+     */
+    private static int likeStart(StringBuilder out, int start, String escape) {
+        if (!escape.regionMatches(true, 1, "escape", 0, 6)) {
+            return -1;
+        }
+        int literal = skipSpaces(escape, 7, escape.length());
+        if (literal == 7 || escape.length() != literal + 4 || escape.charAt(literal) != '\''
+                || escape.charAt(literal + 2) != '\'' || escape.charAt(literal + 1) == '\n') {
+            return -1;
+        }
+        // backward: spaces, 'pattern' (may be 'a''b'), spaces, LIKE
+        int index = start - 1;
+        while (index >= 0 && isSpace(out.charAt(index))) {
+            index--;
+        }
+        if (index == start - 1 || index < 0 || out.charAt(index) != '\'') {
+            return -1;
+        }
+        while (index >= 0 && out.charAt(index) == '\'') {
+            int open = out.lastIndexOf("'", index - 1);
+            if (open < 0) {
+                return -1;
+            }
+            index = open - 1;
+        }
+        int literalStart = index;
+        while (index >= 0 && isSpace(out.charAt(index))) {
+            index--;
+        }
+        if (index == literalStart || index < 3) {
+            return -1;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (Character.toUpperCase(out.charAt(index - 3 + i)) != "LIKE".charAt(i)) {
+                return -1;
+            }
+        }
+        return index - 3;
     }
 
-    private static String timestampLiteralStringHandler(String timestampLiteral) {
-        timestampLiteral = timestampLiteral.trim();
-        String charString = timestampLiteral.substring(3, timestampLiteral.length()-1).trim();
-        return "timestamp " + charString;
+    private static int skipSpaces(String str, int index, int end) {
+        while (index < end && isSpace(str.charAt(index))) {
+            index++;
+        }
+        return index;
     }
 
-    private static String replacePatternFnWithoutChar(String sql) {
-        Pattern fnPattern = Pattern.compile(ODBC_SCALAR_FN_PATTERN, Pattern.CASE_INSENSITIVE);
-        while (fnPattern.matcher(sql).find()) {
-            Matcher matcher = fnPattern.matcher(sql);
-            StringBuffer sb = new StringBuffer();
-            while (matcher.find()) {
-                String fnString = sql.substring(matcher.start(), matcher.end());
-                matcher.appendReplacement(sb, " " + fnFunctionStringHandler(fnString).replaceAll("\\\\", "\\\\\\\\").replaceAll("\\$", "\\\\\\$") + " ");
+    // ('[^']*')+, return the index after the last quote, -1 if there is no literal at index
+    private static int skipLiterals(String str, int index, int end) {
+        if (index >= end || str.charAt(index) != '\'') {
+            return -1;
+        }
+        while (index < end && str.charAt(index) == '\'') {
+            int close = str.indexOf('\'', index + 1);
+            if (close < 0 || close >= end) {
+                return -1;
             }
-            matcher.appendTail(sb);
-            // LOGGER.info(sb.toString());
-            sql = sb.toString();
+            index = close + 1;
         }
-        return sql;
+        return index;
+    }
+
+    // the same as \s of regex
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
     }
 
     // in 'fn' level grammar only has one function
@@ -156,7 +276,13 @@ public class QueryParserUtil {
 
     private static String fnFunctionHelper(String buryCharFunctionString) {
         buryCharFunctionString = buryCharFunctionString.trim();
-        int beginIndexOfFirstParenthesis = buryCharFunctionString.indexOf(LEFT_PARENTHESIS_STRING);
+        int last = buryCharFunctionString.length() - 1;
+        if (last > 0 && buryCharFunctionString.charAt(0) == REWRITTEN_START
+                && buryCharFunctionString.indexOf(REWRITTEN_END) == last) {
+            // a nested {fn} which is already rewritten
+            return buryCharFunctionString.substring(1, last);
+        }
+        int beginIndexOfFirstParenthesis = indexOfUnquoted(buryCharFunctionString, LEFT_PARENTHESIS_STRING.charAt(0));
         String functionName;
         String functionVariablesString;
         if (beginIndexOfFirstParenthesis == -1) {
@@ -194,6 +320,14 @@ public class QueryParserUtil {
                         return buryCharFunctionString;
                     }
                     break;
+                case '\'':
+                case '"':
+                    // ',' '(' ')' in strings are not function grammar
+                    int close = functionVariablesString.indexOf(chs[i], i + 1);
+                    if (close > 0) {
+                        i = close;
+                    }
+                    break;
                 default:
             }
         }
@@ -221,8 +355,42 @@ public class QueryParserUtil {
         return finalFunctionsTranslator(functionName, vars);
     }
 
+    private static int indexOfUnquoted(String str, char ch) {
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == ch) {
+                return i;
+            }
+            if (c == '\'' || c == '"') {
+                int close = str.indexOf(c, i + 1);
+                if (close > 0) {
+                    i = close;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String upperCaseUnquoted(String str) {
+        if (str.indexOf('\'') < 0 && str.indexOf('"') < 0) {
+            return str.toUpperCase(Locale.ENGLISH);
+        }
+        StringBuilder sb = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            int close = c == '\'' || c == '"' ? str.indexOf(c, i + 1) : -1;
+            if (close > 0) {
+                sb.append(str, i, close + 1);
+                i = close;
+            } else {
+                sb.append(Character.toUpperCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
     private static String finalFunctionsTranslator(String functionSignature, List<String> varsList) {
-        functionSignature = functionSignature.trim().toUpperCase(Locale.ENGLISH);
+        functionSignature = upperCaseUnquoted(functionSignature.trim());
         switch (functionSignature) {
             // firstly, rewrite string function
             case "ASCII":
@@ -555,41 +723,4 @@ public class QueryParserUtil {
                 return upperTypeName;
         }
     }
-
-    private static String buryCharPattern(String strWithPattern, List<String> strCache) {
-        Pattern charFnPattern = Pattern.compile(CHAR_PATTERN, Pattern.CASE_INSENSITIVE);
-        Matcher charMatcher = charFnPattern.matcher(strWithPattern);
-        String result = strWithPattern;
-        if (charMatcher.find()) {
-            int start = charMatcher.start();
-            int end = charMatcher.end();
-            // LOGGER.info(start + " : " + end);
-            String prt = strWithPattern.substring(start, end);
-            strCache.add(prt);
-            String tm = conChar(SQL_CHAR_FILL_TAG, prt.length() - 2, strCache.size()-1);
-            String str1 = strWithPattern.substring(0, start);
-            String str2 = buryCharPattern(strWithPattern.substring(end), strCache);
-            // LOGGER.info(prt);
-            result = str1.concat(SQL_STRING_TAG).concat(tm).concat(SQL_STRING_TAG).concat(str2);
-        }
-        return result;
-    }
-
-    private static String turnBackChar(String buryCharSql, List<String> cacheList) {
-        String result = buryCharSql;
-        for (int i = 0; i < cacheList.size(); i++) {
-            int length = cacheList.get(i).length();
-            result = result.replaceAll(SQL_STRING_TAG + conChar(SQL_CHAR_FILL_TAG, length - 2, i) + SQL_STRING_TAG, cacheList.get(i).replaceAll("\\\\", "\\\\\\\\").replaceAll("\\$", "\\\\\\$"));
-        }
-        return result;
-    }
-
-    private static String conChar(String str, int length, int count) {
-        StringBuilder builder = new StringBuilder();
-        builder.append(count);
-        for (int i = 0; i < length; i++) {
-            builder.append(str);
-        }
-        return builder.toString();
-    }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu.odbc.escapesequences;
+
+import io.mycat.MycatServer;
+import io.mycat.cache.CachePool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * cache of QueryParserUtil results, in the HetuRewriteCache pool of cacheservice.properties
+ * (lru pool, size is in bytes). Hit/access counters are shown by show @@cache, remove the pool to
+ * disable the cache.
+ * With sqlRewriteCacheNormalize=1 the string and number literals outside of escape sequences are replaced by
+ * placeholders in the key, statements only different in literals share one rewritten template.
+ *
+ * @since 2020-06-01
+ */
+public final class RewrittenSqlCache {
+    public static final String CACHE_POOL = "HetuRewriteCache";
+
+    // placeholder of the literals in the template, private use char, String.trim() keeps it
+    private static final char MARK = '\uE000';
+
+    private RewrittenSqlCache() {
+    }
+
+    /**
+     * the same as QueryParserUtil.parseAndRewriteQuery, cached
+     *
+     * @param sql the sql string wait to rewrite
+     * @return the rewrite result which conform to the Hetu syntax
+     */
+    public static String parseAndRewriteQuery(String sql) {
+        if (sql == null || sql.indexOf('{') < 0) {
+            return sql;
+        }
+        MycatServer server = MycatServer.getInstance();
+        CachePool pool = server.getCacheService().getAllCachePools().get(CACHE_POOL);
+        return parseAndRewriteQuery(pool, sql, server.getConfig().getSystem().getSqlRewriteCacheNormalize() == 1);
+    }
+
+    static String parseAndRewriteQuery(CachePool pool, String sql, boolean normalize) {
+        if (pool == null) {
+            return QueryParserUtil.parseAndRewriteQuery(sql);
+        }
+        List<String> literals = new ArrayList<>();
+        String template = normalize ? template(sql, literals) : null;
+        if (template == null) {
+            String rewritten = (String) pool.get(sql);
+            if (rewritten == null) {
+                rewritten = QueryParserUtil.parseAndRewriteQuery(sql);
+                pool.putIfAbsent(sql, rewritten);
+            }
+            return rewritten;
+        }
+        String rewritten = (String) pool.get(template);
+        if (rewritten == null) {
+            rewritten = QueryParserUtil.parseAndRewriteQuery(template);
+            pool.putIfAbsent(template, rewritten);
+        }
+        return fill(rewritten, literals);
+    }
+
+    /**
+     * replace the literals by MARK index MARK, 'x' -> 'MARK0MARK', 12 -> MARK1MARK.
+     * The rewrite only moves literals, except the char of {escape 'c'} which must be one char, it is kept.
+     *
+     * @return null if there is no literal
+     */
+    static String template(String sql, List<String> literals) {
+        if (sql.indexOf(MARK) >= 0) {
+            return null;
+        }
+        int length = sql.length();
+        StringBuilder sb = new StringBuilder(length);
+        boolean keepLiteral = false;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                int close = sql.indexOf(c, i + 1);
+                if (close < 0) {
+                    // no end of the quote, nothing more to replace
+                    sb.append(sql, i, length);
+                    break;
+                }
+                if (c == '"' || keepLiteral) {
+                    sb.append(sql, i, close + 1);
+                } else {
+                    sb.append('\'').append(MARK).append(literals.size()).append(MARK).append('\'');
+                    literals.add(sql.substring(i + 1, close));
+                }
+                keepLiteral = false;
+                i = close + 1;
+            } else if (c >= '0' && c <= '9' && (i == 0 || !isIdentifierPart(sql.charAt(i - 1)))) {
+                int end = i;
+                while (end < length && ((c = sql.charAt(end)) >= '0' && c <= '9' || c == '.')) {
+                    end++;
+                }
+                if (end < length && isIdentifierPart(sql.charAt(end))) {
+                    // 1e5, 2x ..., keep it
+                    sb.append(sql, i, end);
+                } else {
+                    sb.append(MARK).append(literals.size()).append(MARK);
+                    literals.add(sql.substring(i, end));
+                }
+                i = end;
+            } else {
+                if (c == '{') {
+                    keepLiteral = sql.regionMatches(true, i + 1, "escape", 0, 6);
+                }
+                sb.append(c);
+                i++;
+            }
+        }
+        return literals.isEmpty() ? null : sb.toString();
+    }
+
+    static String fill(String template, List<String> literals) {
+        int mark = template.indexOf(MARK);
+        if (mark < 0) {
+            return template;
+        }
+        StringBuilder sb = new StringBuilder(template.length() + 64);
+        int from = 0;
+        while (mark >= 0) {
+            int end = template.indexOf(MARK, mark + 1);
+            sb.append(template, from, mark).append(literals.get(Integer.parseInt(template.substring(mark + 1, end))));
+            from = end + 1;
+            mark = template.indexOf(MARK, from);
+        }
+        sb.append(template, from, template.length());
+        return sb.toString();
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+    }
+}
@@ -6,6 +6,8 @@ import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import io.mycat.backend.mysql.PacketUtil;
 import io.mycat.route.Procedure;
@@ -30,6 +32,7 @@ import io.mycat.net.mysql.RowDataPacket;
 import io.mycat.route.RouteResultsetNode;
 import io.mycat.server.ServerConnection;
 import io.mycat.server.parser.ServerParse;
+import io.mycat.statistic.CancelStat;
 
 public class JDBCConnection implements BackendConnection {
 	protected static final Logger LOGGER = LoggerFactory
@@ -43,7 +46,7 @@ public class JDBCConnection implements BackendConnection {
 	protected byte packetId;
 	protected int txIsolation;
 	protected volatile boolean running = false;
-	protected volatile boolean borrowed;
+	protected final AtomicBoolean borrowed = new AtomicBoolean();
 	protected long id = 0;
 	protected String host;
 	protected int port;
@@ -60,6 +63,10 @@ public class JDBCConnection implements BackendConnection {
 
 	protected NIOProcessor processor;
 	protected boolean setSchemaFail = false;
+	// 执行中的语句, KILL QUERY时cancel
+	protected final AtomicReference<Execution> runningExecution = new AtomicReference<Execution>();
+	// 最近一次执行的语句, 结束后仍用于判断是否被KILL QUERY取消
+	protected volatile Execution lastExecution;
 	
 	
 	
@@ -79,6 +86,88 @@ public class JDBCConnection implements BackendConnection {
 		return con;
 	}
 
+	protected void statementStarted(Statement stmt) {
+		Execution execution = new Execution(stmt);
+		lastExecution = execution;
+		runningExecution.set(execution);
+	}
+
+	protected void statementFinished() {
+		Execution execution = runningExecution.get();
+		if (execution == null) {
+			return;
+		}
+		// 等待进行中的cancel, 之后的KILL QUERY不会再作用于这次执行
+		synchronized (execution) {
+			runningExecution.compareAndSet(execution, null);
+		}
+		long time = execution.cancelTime;
+		if (time != 0) {
+			CancelStat.getInstance().cancelled(System.currentTimeMillis() - time);
+		}
+	}
+
+	/**
+	 * 执行中的语句被KILL QUERY取消, 返回给客户端的错误为ER_QUERY_INTERRUPTED
+	 */
+	public boolean isCancelled() {
+		Execution execution = lastExecution;
+		return execution != null && execution.cancelTime != 0;
+	}
+
+	/**
+	 * KILL QUERY: cancel执行中的Statement, 连接和前端会话保留.
+	 * 只cancel收到KILL时正在执行的那次执行, 已经结束时不影响之后的语句
+	 *
+	 * @return false if no statement is running
+	 */
+	public boolean cancel() {
+		return cancel(runningExecution.get());
+	}
+
+	/**
+	 * 正在执行的语句, 没有时为null. KILL QUERY收到时取得, 之后用cancel(Execution)取消
+	 */
+	public Execution getRunningExecution() {
+		return runningExecution.get();
+	}
+
+	/**
+	 * cancel指定的执行, 已经结束时返回false
+	 */
+	public boolean cancel(Execution execution) {
+		if (execution == null) {
+			return false;
+		}
+		synchronized (execution) {
+			if (runningExecution.get() != execution) {
+				return false;
+			}
+			CancelStat.getInstance().cancelRequested();
+			execution.cancelTime = System.currentTimeMillis();
+			try {
+				execution.stmt.cancel();
+			} catch (SQLException e) {
+				CancelStat.getInstance().cancelFailed();
+				LOGGER.warn("cancel statement of " + this + " failed: " + e.getMessage());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 一次语句执行, 同一个Statement多次执行时每次是不同的Execution
+	 */
+	public static final class Execution {
+		final Statement stmt;
+		// 收到KILL QUERY的时间, 为0时没有被取消
+		volatile long cancelTime;
+
+		Execution(Statement stmt) {
+			this.stmt = stmt;
+		}
+	}
+
 	public void setFrontConn(ServerConnection frontConn) {
 		this.frontConn = frontConn;
 	}
@@ -405,6 +494,7 @@ public class JDBCConnection implements BackendConnection {
 		Statement stmt = null;
 		try {
 			stmt = con.createStatement();
+			statementStarted(stmt);
 			int count = stmt.executeUpdate(sql,Statement.RETURN_GENERATED_KEYS);
 			long lastInsertId = 0;
 			ResultSet generatedKeys = stmt.getGeneratedKeys();
@@ -424,6 +514,7 @@ public class JDBCConnection implements BackendConnection {
 			LOGGER.error("",e);
 			throw e;
 		}finally {
+			statementFinished();
 			if (stmt != null) {
 				try {
 					stmt.close();
@@ -689,93 +780,11 @@ public class JDBCConnection implements BackendConnection {
 
 		try {
 			stmt = con.createStatement();
+			statementStarted(stmt);
 			rs = stmt.executeQuery(sql);
-
-			List<FieldPacket> fieldPks = new LinkedList<FieldPacket>();
-			if (this instanceof HetuConnection) {
-				HetuUtil.resultSetToFieldPacket(sc.getCharset(), fieldPks, rs);
-			}
-			else
-			{
-				ResultSetUtil.resultSetToFieldPacket(sc.getCharset(), fieldPks, rs,
-						this.isSpark);
-			}
-			int colunmCount = fieldPks.size();
-			ByteBuffer byteBuf = sc.allocate();
-			ResultSetHeaderPacket headerPkg = new ResultSetHeaderPacket();
-			headerPkg.fieldCount = fieldPks.size();
-			headerPkg.packetId = ++packetId;
-
-			byteBuf = headerPkg.write(byteBuf, sc, true);
-			byteBuf.flip();
-			byte[] header = new byte[byteBuf.limit()];
-			byteBuf.get(header);
-			byteBuf.clear();
-			List<byte[]> fields = new ArrayList<byte[]>(fieldPks.size());
-			Iterator<FieldPacket> itor = fieldPks.iterator();
-			while (itor.hasNext()) {
-				FieldPacket curField = itor.next();
-				curField.packetId = ++packetId;
-				byteBuf = curField.write(byteBuf, sc, false);
-				byteBuf.flip();
-				byte[] field = new byte[byteBuf.limit()];
-				byteBuf.get(field);
-				byteBuf.clear();
-				fields.add(field);
-			}
-			EOFPacket eofPckg = new EOFPacket();
-			eofPckg.packetId = ++packetId;
-			byteBuf = eofPckg.write(byteBuf, sc, false);
-			byteBuf.flip();
-			byte[] eof = new byte[byteBuf.limit()];
-			byteBuf.get(eof);
-			byteBuf.clear();
-			this.respHandler.fieldEofResponse(header, fields, eof, this);
-
-			// output row
-			while (rs.next()) {
-				RowDataPacket curRow = new RowDataPacket(colunmCount);
-				for (int i = 0; i < colunmCount; i++) {
-					int j = i + 1;
-					if(MysqlDefs.isBianry((byte) fieldPks.get(i).type)) {
-							curRow.add(rs.getBytes(j));
-					} else if(fieldPks.get(i).type == MysqlDefs.FIELD_TYPE_DECIMAL ||
-							fieldPks.get(i).type == (MysqlDefs.FIELD_TYPE_NEW_DECIMAL - 256)) { // field type is unsigned byte
-						// ensure that do not use scientific notation format
-						BigDecimal val = rs.getBigDecimal(j);
-						curRow.add(StringUtil.encode(val != null ? val.toPlainString() : null,
-								sc.getCharset()));
-					} else if(fieldPks.get(i).type == MysqlDefs.FIELD_TYPE_BIT) {
-							//boolean map to bit, cant't use getString()
-							curRow.add(StringUtil.encode(rs.getBoolean(j) ? "1":"0",
-									sc.getCharset()));
-					} else {
-						   curRow.add(StringUtil.encode(rs.getString(j),
-								   sc.getCharset()));
-					}
-
-				}
-				curRow.packetId = ++packetId;
-				byteBuf = curRow.write(byteBuf, sc, false);
-				byteBuf.flip();
-				byte[] row = new byte[byteBuf.limit()];
-				byteBuf.get(row);
-				byteBuf.clear();
-				this.respHandler.rowResponse(row, this);
-			}
-
-			fieldPks.clear();
-
-			// end row
-			eofPckg = new EOFPacket();
-			eofPckg.packetId = ++packetId;
-			byteBuf = eofPckg.write(byteBuf, sc, false);
-			byteBuf.flip();
-			eof = new byte[byteBuf.limit()];
-			byteBuf.get(eof);
-			sc.recycle(byteBuf);
-			this.respHandler.rowEofResponse(eof, this);
+			ouputResultSet(sc, rs);
 		} finally {
+			statementFinished();
 			if (rs != null) {
 				try {
 					rs.close();
@@ -793,6 +802,110 @@ public class JDBCConnection implements BackendConnection {
 		}
 	}
 
+	/**
+	 * 输出结果集的列定义, 行数据和结束包, 由调用者关闭ResultSet
+	 */
+	protected void ouputResultSet(ServerConnection sc, ResultSet rs)
+			throws SQLException {
+		List<FieldPacket> fieldPks = new ArrayList<FieldPacket>();
+		if (this instanceof HetuConnection) {
+			HetuUtil.resultSetToFieldPacket(sc.getCharset(), fieldPks, rs);
+		}
+		else
+		{
+			ResultSetUtil.resultSetToFieldPacket(sc.getCharset(), fieldPks, rs,
+					this.isSpark);
+		}
+		int colunmCount = fieldPks.size();
+		ByteBuffer byteBuf = sc.allocate();
+		ResultSetHeaderPacket headerPkg = new ResultSetHeaderPacket();
+		headerPkg.fieldCount = fieldPks.size();
+		headerPkg.packetId = ++packetId;
+
+		byteBuf = headerPkg.write(byteBuf, sc, true);
+		byteBuf.flip();
+		byte[] header = new byte[byteBuf.limit()];
+		byteBuf.get(header);
+		byteBuf.clear();
+		List<byte[]> fields = new ArrayList<byte[]>(fieldPks.size());
+		Iterator<FieldPacket> itor = fieldPks.iterator();
+		while (itor.hasNext()) {
+			FieldPacket curField = itor.next();
+			curField.packetId = ++packetId;
+			byteBuf = curField.write(byteBuf, sc, false);
+			byteBuf.flip();
+			byte[] field = new byte[byteBuf.limit()];
+			byteBuf.get(field);
+			byteBuf.clear();
+			fields.add(field);
+		}
+		EOFPacket eofPckg = new EOFPacket();
+		eofPckg.packetId = ++packetId;
+		byteBuf = eofPckg.write(byteBuf, sc, false);
+		byteBuf.flip();
+		byte[] eof = new byte[byteBuf.limit()];
+		byteBuf.get(eof);
+		byteBuf.clear();
+		this.respHandler.fieldEofResponse(header, fields, eof, this);
+
+		// output row
+		byteBuf = outputRows(sc, rs, fieldPks, byteBuf);
+
+		fieldPks.clear();
+
+		// end row
+		eofPckg = new EOFPacket();
+		eofPckg.packetId = ++packetId;
+		byteBuf = eofPckg.write(byteBuf, sc, false);
+		byteBuf.flip();
+		eof = new byte[byteBuf.limit()];
+		byteBuf.get(eof);
+		sc.recycle(byteBuf);
+		this.respHandler.rowEofResponse(eof, this);
+	}
+
+	/**
+	 * 输出结果集的行数据, 子类可以改为直接写入前端连接
+	 */
+	protected ByteBuffer outputRows(ServerConnection sc, ResultSet rs,
+			List<FieldPacket> fieldPks, ByteBuffer byteBuf) throws SQLException {
+		int colunmCount = fieldPks.size();
+		while (rs.next()) {
+			RowDataPacket curRow = new RowDataPacket(colunmCount);
+			for (int i = 0; i < colunmCount; i++) {
+				int j = i + 1;
+				if(MysqlDefs.isBianry((byte) fieldPks.get(i).type)) {
+						curRow.add(rs.getBytes(j));
+				} else if(fieldPks.get(i).type == MysqlDefs.FIELD_TYPE_DECIMAL ||
+						fieldPks.get(i).type == (MysqlDefs.FIELD_TYPE_NEW_DECIMAL - 256)) { // field type is unsigned byte
+					// ensure that do not use scientific notation format
+					BigDecimal val = rs.getBigDecimal(j);
+					curRow.add(StringUtil.encode(val != null ? val.toPlainString() : null,
+							sc.getCharset()));
+				} else if(fieldPks.get(i).type == MysqlDefs.FIELD_TYPE_BIT) {
+						//boolean map to bit, cant't use getString()
+						curRow.add(StringUtil.encode(rs.getBoolean(j) ? "1":"0",
+								sc.getCharset()));
+				} else {
+					   curRow.add(StringUtil.encode(rs.getString(j),
+							   sc.getCharset()));
+				}
+
+			}
+			curRow.packetId = ++packetId;
+			byteBuf = curRow.write(byteBuf, sc, false);
+			byteBuf.flip();
+			byte[] row = new byte[byteBuf.limit()];
+			byteBuf.get(row);
+			byteBuf.clear();
+			this.respHandler.rowResponse(row, this);
+			// 前端写队列积压时暂停取数
+			sc.waitWriteQueueDrain();
+		}
+
+		return byteBuf;
+	}
+
 	@Override
 	public void query(final String sql) throws UnsupportedEncodingException {
 		if(respHandler instanceof ConnectionHeartBeatHandler)
@@ -893,13 +1006,20 @@ public class JDBCConnection implements BackendConnection {
 
 	@Override
 	public boolean isBorrowed() {
-		return this.borrowed;
+		return this.borrowed.get();
 	}
 
 	@Override
 	public void setBorrowed(boolean borrowed) {
-		this.borrowed = borrowed;
+		this.borrowed.set(borrowed);
+
+	}
 
+	/**
+	 * 归还连接时只有一方能把borrowed从true改为false
+	 */
+	public boolean compareAndSetBorrowed(boolean expect, boolean update) {
+		return this.borrowed.compareAndSet(expect, update);
 	}
 
 	@Override
@@ -28,6 +28,7 @@ import io.mycat.net.mysql.FieldPacket;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -37,6 +38,7 @@ import java.util.Map;
  * @author mycat, CrazyPig
  */
 public class PreparedStatement {
+    private static final int LONG_DATA_CHUNK = 8192;
 
     private long id;
     private String statement;
@@ -121,6 +123,28 @@ public class PreparedStatement {
     	}
     }
 
+    /**
+     * 追加读缓冲区中的数据, 通过一个小数组分段拷贝, 不再整包复制
+     */
+    public void appendLongData(long paramId, ByteBuffer data) {
+        ByteArrayOutputStream out = getLongData(paramId);
+        if (out == null) {
+            out = new ByteArrayOutputStream(Math.max(32, data.remaining()));
+            longDataMap.put(paramId, out);
+        }
+        if (data.hasArray()) {
+            out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+            return;
+        }
+        byte[] chunk = new byte[Math.min(LONG_DATA_CHUNK, data.remaining())];
+        while (data.hasRemaining()) {
+            int count = Math.min(chunk.length, data.remaining());
+            data.get(chunk, 0, count);
+            out.write(chunk, 0, count);
+        }
+    }
+
     public void setOutFieldPks(List pks) {
         outFieldPks = pks;
     }
@@ -20,6 +20,9 @@
 package io.mycat.backend.mysql.nio.handler;
 
 import io.mycat.backend.BackendConnection;
+import io.mycat.backend.hetu.HetuConnection;
+import io.mycat.backend.mysql.BindValue;
+import io.mycat.backend.mysql.PreparedStatement;
 import io.mycat.route.RouteResultset;
 import io.mycat.server.NonBlockingSession;
 import io.mycat.server.ServerConnection;
@@ -73,4 +76,29 @@ public class HetuSingleNodeHandler
             connectionError(e, null);
         }
     }
+
+    /**
+     * COM_STMT_EXECUTE on the jdbc PreparedStatement kept by the hetu connection
+     */
+    public void executePrepared(PreparedStatement pstmt, BindValue[] bindValues, int[] paramTypes,
+            boolean cursor) {
+        startTime = System.currentTimeMillis();
+        ServerConnection sc = session.getSource();
+        this.isRunning = true;
+        this.packetId = 0;
+        if (session.closed()) {
+            endRunning();
+            session.clearResources(true);
+            return;
+        }
+
+        HetuConnection conn = (HetuConnection) sc.backConn;
+        conn.setResponseHandler(this);
+        try {
+            conn.executePrepared(pstmt, bindValues, paramTypes, sc, cursor);
+        } catch (Exception e) {
+            LOGGER.warn(new StringBuilder().append(sc).append(rrs).toString(), e);
+            connectionError(e, null);
+        }
+    }
 }
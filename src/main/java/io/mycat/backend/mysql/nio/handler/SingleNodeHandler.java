@@ -24,7 +24,11 @@
  */
 package io.mycat.backend.mysql.nio.handler;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -38,7 +42,10 @@ import com.google.common.base.Strings;
 import io.mycat.MycatServer;
 import io.mycat.backend.BackendConnection;
 import io.mycat.backend.datasource.PhysicalDBNode;
+import io.mycat.backend.hetu.HetuResultCache;
+import io.mycat.backend.hetu.RowEncoder;
 import io.mycat.backend.mysql.LoadDataUtil;
+import io.mycat.cache.MysqlDataSetCache;
 import io.mycat.config.ErrorCode;
 import io.mycat.config.MycatConfig;
 import io.mycat.config.model.SchemaConfig;
@@ -91,6 +98,8 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
     private  Set<String> shardingTablesSet;
 	private byte[] header = null;
 	private List<byte[]> fields = null;
+	// 记录写给前端的结果包, 结果完整时放入结果缓存
+	private HetuResultCache.Capture capture;
 
 	protected SingleNodeHandler()
 	{
@@ -256,6 +265,7 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 	public void connectionError(Throwable e, BackendConnection conn) {
 
 		endRunning();
+		abortCapture();
 //		ErrorPacket err = new ErrorPacket();
 //		err.packetId = ++packetId;
 //		err.errno = ErrorCode.ER_NEW_ABORTING_CONNECTION;
@@ -280,6 +290,7 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 
 	private void backConnectionErr(ErrorPacket errPkg, BackendConnection conn) {
 		endRunning();
+		abortCapture();
 		
 		ServerConnection source = session.getSource();
 		String errUser = source.getUser();
@@ -395,6 +406,11 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 
 		eof[3] = ++packetId;
 		buffer = source.writeToBuffer(eof, allocBuffer());
+		if (capture != null) {
+			capture.addPacket(eof);
+			capture.finish();
+			capture = null;
+		}
 		int resultSize = source.getWriteQueue().size()*MycatServer.getInstance().getConfig().getSystem().getBufferPoolPageSize();
 		resultSize=resultSize+buffer.position();
 		MiddlerResultHandler middlerResultHandler = session.getMiddlerResultHandler();
@@ -416,6 +432,21 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 		
 	}
 
+	/**
+	 * COM_STMT_EXECUTE 打开了服务端游标: 只返回列定义(EOF带SERVER_STATUS_CURSOR_EXISTS),
+	 * 行数据由COM_STMT_FETCH读取, 这里结束本次执行
+	 */
+	public void cursorOpened(BackendConnection conn) {
+		ServerConnection source = session.getSource();
+		conn.recordSql(source.getHost(), source.getSchema(), node.getStatement());
+		session.releaseConnectionIfSafe(conn, LOGGER.isDebugEnabled(), false);
+		endRunning();
+		if (!errorRepsponsed.get() && !session.closed() && source.canResponse()) {
+			source.write(allocBuffer());
+		}
+		source.setExecuteSql(null);
+	}
+
 	/**
 	 * lazy create ByteBuffer only when needed
 	 * 
@@ -467,6 +498,13 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 		
 		eof[3] = ++packetId;
 		buffer = source.writeToBuffer(eof, buffer);
+		if (capture != null) {
+			capture.addPacket(header);
+			for (byte[] field : fields) {
+				capture.addPacket(field);
+			}
+			capture.addPacket(eof);
+		}
 
 		if (isDefaultNodeShowTable) {
 			
@@ -532,6 +570,9 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 			MiddlerResultHandler middlerResultHandler = session.getMiddlerResultHandler();
 	        if(null ==middlerResultHandler ){
 	        	 buffer = session.getSource().writeToBuffer(row, allocBuffer());
+	        	 if (capture != null) {
+	        		 capture.addRow(row);
+	        	 }
 			}else{
 		        if(middlerResultHandler instanceof MiddlerQueryResultHandler){
 		        	byte[] rv = ResultSetUtil.getColumnVal(row, fields, 0);
@@ -544,6 +585,100 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 
 	}
 
+	/**
+	 * 行数据是否可以由后端直接编码写入前端buffer(不经过byte[])
+	 * 中间结果/默认节点show tables 仍需要走 rowResponse(byte[], ...)
+	 * prepared 时后端需要用二进制协议编码行数据
+	 */
+	public boolean isDirectRowSupported() {
+		return !isDefaultNodeShowTable && !isDefaultNodeShowFullTable
+				&& session.getMiddlerResultHandler() == null;
+	}
+
+	/**
+	 * select
+	 *
+	 * 将结果集的当前行直接编码写入缓冲区中
+	 */
+	public void rowResponse(ResultSet rs, RowEncoder encoder, BackendConnection conn) throws SQLException {
+		if(errorRepsponsed.get()) {
+			return;
+		}
+
+		// 跨buffer的行在交给前端前按段缓存
+		buffer = encoder.encode(rs, ++packetId, allocBuffer(), session.getSource(), capture);
+		this.netOutBytes += encoder.getLastPacketSize();
+		this.selectRows++;
+	}
+
+	/**
+	 * 只用于文本协议的结果, 由HetuConnection在执行前设置
+	 */
+	public void setCapture(HetuResultCache.Capture capture) {
+		this.capture = capture;
+	}
+
+	private void abortCapture() {
+		HetuResultCache.Capture c = capture;
+		capture = null;
+		if (c != null) {
+			c.abort();
+		}
+	}
+
+	/**
+	 * select
+	 *
+	 * 结果缓存命中: 缓存的包(header到最后的eof, packetId从1开始)直接复制到前端buffer,
+	 * 之后和rowEofResponse一样结束本次执行. 缓存文件打不开时返回false, 由调用者执行sql
+	 */
+	public boolean cachedResponse(MysqlDataSetCache dataSet, BackendConnection conn) {
+		ReadableByteChannel channel;
+		try {
+			channel = dataSet.open();
+		} catch (IOException e) {
+			LOGGER.warn("open cached result failed: " + e.getMessage());
+			return false;
+		}
+		ServerConnection source = session.getSource();
+		session.releaseConnectionIfSafe(conn, LOGGER.isDebugEnabled(), false);
+		endRunning();
+		try {
+			ByteBuffer buf = allocBuffer();
+			buffer = null;
+			while (true) {
+				if (!buf.hasRemaining()) {
+					source.write(buf);
+					buf = source.allocate();
+				}
+				if (channel.read(buf) < 0) {
+					break;
+				}
+			}
+			buffer = buf;
+			if (!session.closed() && source.canResponse()) {
+				source.write(buf);
+			}
+		} catch (IOException e) {
+			// 已经写出了部分结果, 只能关闭连接
+			LOGGER.warn("read cached result failed: " + e.getMessage());
+			source.close("read cached result failed");
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+			}
+		}
+		this.netOutBytes += dataSet.getSize();
+		this.selectRows += dataSet.getTotal();
+		source.setExecuteSql(null);
+		QueryResult queryResult = new QueryResult(source.getUser(), rrs.getSqlType(), rrs.getStatement(),
+				affectedRows, netInBytes, netOutBytes, startTime, System.currentTimeMillis(),
+				(int) Math.min(dataSet.getSize(), Integer.MAX_VALUE), source.getHost());
+		QueryResultDispatcher.dispatchQuery(queryResult);
+		return true;
+	}
+
 	@Override
 	public void writeQueueAvailable() {
 
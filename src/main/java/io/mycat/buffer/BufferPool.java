@@ -20,4 +20,26 @@ public interface BufferPool {
     public int getChunkSize();
     public ConcurrentHashMap<Long,Long> getNetDirectMemoryUsage();
     public BufferArray allocateArray();
+
+    /**
+     * pool扩容/释放page的次数, 不能扩容的pool为0
+     */
+    default long getGrowCount() {
+        return 0;
+    }
+
+    default long getShrinkCount() {
+        return 0;
+    }
+
+    /**
+     * pool不够用而分配堆内存的次数和字节数
+     */
+    default long getHeapFallbackCount() {
+        return 0;
+    }
+
+    default long getHeapFallbackBytes() {
+        return 0;
+    }
 }
@@ -20,6 +20,8 @@ public class ByteBufferPage {
     private final AtomicBoolean allocLockStatus = new AtomicBoolean(false);  //锁
     private final long startAddress;
     private final ConcurrentHashMap<Long, Long> relationBufferThreadId;
+    private volatile long lastUsedTime = System.currentTimeMillis();  //最后一次分配或回收的时间
+    private volatile boolean retired = false;  //已从pool中释放, 不再分配
 
     public ByteBufferPage(ByteBuffer buf, int chunkSize) {
         super();
@@ -32,9 +34,19 @@ public class ByteBufferPage {
     }
 
     public ByteBuffer allocatChunk(int theChunkCount) {
+        return allocatChunk(theChunkCount, false);
+    }
+
+    /**
+     * @param wait 为true时等待锁而不是直接返回null, 扩容前确认page确实不够用
+     */
+    public ByteBuffer allocatChunk(int theChunkCount, boolean wait) {
     	//加锁 成功执行不成功返回
-        if (!allocLockStatus.compareAndSet(false, true)) {
-            return null;
+        while (!allocLockStatus.compareAndSet(false, true)) {
+            if (!wait || retired) {
+                return null;
+            }
+            Thread.yield();
         }
         int startChunk = -1;//从startChunk开始的
         int contiueCount = 0;//连续的chunk个数
@@ -76,6 +88,7 @@ public class ByteBufferPage {
                 //设置chunk为已用
                 markChunksUsed(startChunk, theChunkCount);
                 relationBufferThreadId.put(((DirectBuffer) newBuf).address(), Thread.currentThread().getId());
+                lastUsedTime = System.currentTimeMillis();
 
                 return newBuf;
             } else {
@@ -119,6 +132,7 @@ public class ByteBufferPage {
             //清空已用状态
             try {
                 markChunksUnused(startChunk,chunkCount);
+                lastUsedTime = System.currentTimeMillis();
                 Long threadId = relationBufferThreadId.remove(((DirectBuffer) recycleBuf).address());
                 if (threadId != null) {
                     relatedThreadId.append(threadId);
@@ -131,4 +145,23 @@ public class ByteBufferPage {
         }
         return false;
     }
+
+    /**
+     * 没有已分配的chunk且idleBefore之后没有使用过时标记为释放, 之后保持加锁状态, 分配都返回null
+     */
+    public boolean retireIfIdle(long idleBefore) {
+        if (!allocLockStatus.compareAndSet(false, true)) {
+            return false;
+        }
+        if (!chunkAllocateTrack.isEmpty() || lastUsedTime > idleBefore) {
+            allocLockStatus.set(false);
+            return false;
+        }
+        retired = true;
+        return true;
+    }
+
+    public boolean isRetired() {
+        return retired;
+    }
 }
@@ -5,11 +5,17 @@ import org.slf4j.LoggerFactory;
 import sun.nio.ch.DirectBuffer;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * DirectByteBuffer池，可以分配任意指定大小的DirectByteBuffer，用完需要归还
+ * page不够时在maxPageCount内扩容, 扩容出的page空闲pageIdleTimeout后由releaseIdlePages释放,
+ * 仍然不够时才分配堆内存, 次数和大小记录在heapFallback指标中 (show @@directmemory)
  * @author wuzhih
  * @author zagnix
  */
@@ -17,7 +23,9 @@ import java.util.concurrent.atomic.AtomicLong;
 public class DirectByteBufferPool implements BufferPool{
     private static final Logger LOGGER = LoggerFactory.getLogger(DirectByteBufferPool.class);
     public static final String LOCAL_BUF_THREAD_PREX = "$_";
-    private ByteBufferPage[] allPages;
+    public static final long CHECK_PERIOD = 10 * 1000L;
+    private static final long FALLBACK_WARN_INTERVAL = 60 * 1000L;
+    private volatile ByteBufferPage[] allPages;
     private final int chunkSize;
    // private int prevAllocatedPage = 0;
     //private AtomicInteger prevAllocatedPage;
@@ -25,6 +33,13 @@ public class DirectByteBufferPool implements BufferPool{
     private final  int pageSize;
     private final short pageCount;
     private final int conReadBuferChunk ;
+    private final int maxPageCount;
+    private final long pageIdleTimeout;
+    private final AtomicLong growCount = new AtomicLong();
+    private final AtomicLong shrinkCount = new AtomicLong();
+    private final LongAdder heapFallbackCount = new LongAdder();
+    private final LongAdder heapFallbackBytes = new LongAdder();
+    private volatile long lastFallbackWarnTime = 0;
 
      /**
      * 记录对线程ID->该线程的所使用Direct Buffer的size
@@ -32,7 +47,19 @@ public class DirectByteBufferPool implements BufferPool{
     private final ConcurrentHashMap<Long,Long> memoryUsage;
 
     public DirectByteBufferPool(int pageSize, short chunkSize, short pageCount,int conReadBuferChunk) {
-        allPages = new ByteBufferPage[pageCount];
+        this(pageSize, chunkSize, pageCount, conReadBuferChunk, pageCount, 0);
+    }
+
+    /**
+     * @param pageCount 初始的page数, 不会被释放
+     * @param maxPageCount 最多扩容到的page数, 不大于pageCount时不扩容
+     * @param pageIdleTimeout 扩容出的page空闲多久(毫秒)后释放
+     */
+    public DirectByteBufferPool(int pageSize, short chunkSize, short pageCount, int conReadBuferChunk,
+            int maxPageCount, long pageIdleTimeout) {
+        ByteBufferPage[] allPages = new ByteBufferPage[pageCount];
+        this.maxPageCount = Math.max(pageCount, maxPageCount);
+        this.pageIdleTimeout = pageIdleTimeout;
         this.chunkSize = chunkSize;
         this.pageSize = pageSize;
         this.pageCount = pageCount;
@@ -42,6 +69,7 @@ public class DirectByteBufferPool implements BufferPool{
         for (int i = 0; i < pageCount; i++) {
             allPages[i] = new ByteBufferPage(ByteBuffer.allocateDirect(pageSize), chunkSize);
         }
+        this.allPages = allPages;
         memoryUsage = new ConcurrentHashMap<>();
     }
 
@@ -70,10 +98,14 @@ public class DirectByteBufferPool implements BufferPool{
 
     public ByteBuffer allocate(int size) {
        final int theChunkCount = size / chunkSize + (size % chunkSize == 0 ? 0 : 1);
-        int selectedPage =  (int)(prevAllocatedPage.incrementAndGet() % allPages.length);
-        ByteBuffer byteBuf = allocateBuffer(theChunkCount, 0, selectedPage);
+        ByteBufferPage[] pages = allPages;
+        int selectedPage =  (int)(prevAllocatedPage.incrementAndGet() % pages.length);
+        ByteBuffer byteBuf = allocateBuffer(pages, theChunkCount, 0, selectedPage, false);
         if (byteBuf == null) {
-            byteBuf = allocateBuffer(theChunkCount, selectedPage, allPages.length);
+            byteBuf = allocateBuffer(pages, theChunkCount, selectedPage, pages.length, false);
+        }
+        if (byteBuf == null && size <= pageSize && maxPageCount > pageCount) {
+            byteBuf = grow(theChunkCount);
         }
         final long threadId = Thread.currentThread().getId();
 
@@ -92,11 +124,73 @@ public class DirectByteBufferPool implements BufferPool{
         }
 
         if(byteBuf==null){
+            heapFallback(size);
             return  ByteBuffer.allocate(size);
         }
         return byteBuf;
     }
 
+    /**
+     * 等锁再找一遍, 仍然没有时增加一个page
+     */
+    private synchronized ByteBuffer grow(int theChunkCount) {
+        ByteBufferPage[] pages = allPages;
+        ByteBuffer byteBuf = allocateBuffer(pages, theChunkCount, 0, pages.length, true);
+        if (byteBuf != null || pages.length >= maxPageCount) {
+            return byteBuf;
+        }
+        ByteBufferPage page;
+        try {
+            page = new ByteBufferPage(ByteBuffer.allocateDirect(pageSize), chunkSize);
+        } catch (OutOfMemoryError e) {
+            // 超过了MaxDirectMemorySize
+            LOGGER.warn("can not grow direct buffer pool: " + e.getMessage());
+            return null;
+        }
+        ByteBufferPage[] newPages = Arrays.copyOf(pages, pages.length + 1);
+        newPages[pages.length] = page;
+        allPages = newPages;
+        growCount.incrementAndGet();
+        LOGGER.info("direct buffer pool grows to " + newPages.length + " pages");
+        return page.allocatChunk(theChunkCount, true);
+    }
+
+    /**
+     * 释放扩容出的、空闲超过pageIdleTimeout的page, 初始的page一直保留. 返回释放的个数
+     */
+    public synchronized int releaseIdlePages() {
+        ByteBufferPage[] pages = allPages;
+        if (pages.length <= pageCount) {
+            return 0;
+        }
+        long idleBefore = System.currentTimeMillis() - pageIdleTimeout;
+        List<ByteBufferPage> kept = new ArrayList<>(pages.length);
+        for (int i = 0; i < pages.length; i++) {
+            if (i < pageCount || !pages[i].retireIfIdle(idleBefore)) {
+                kept.add(pages[i]);
+            }
+        }
+        int released = pages.length - kept.size();
+        if (released > 0) {
+            // page的内存在没有引用后由GC回收
+            allPages = kept.toArray(new ByteBufferPage[0]);
+            shrinkCount.addAndGet(released);
+            LOGGER.info("direct buffer pool releases " + released + " idle pages, " + kept.size() + " left");
+        }
+        return released;
+    }
+
+    private void heapFallback(int size) {
+        heapFallbackCount.increment();
+        heapFallbackBytes.add(size);
+        long now = System.currentTimeMillis();
+        if (now - lastFallbackWarnTime > FALLBACK_WARN_INTERVAL) {
+            lastFallbackWarnTime = now;
+            LOGGER.warn("direct buffer pool is exhausted, allocate " + size + " bytes from heap, pages "
+                    + allPages.length + "/" + maxPageCount + ", total fallbacks " + heapFallbackCount.sum());
+        }
+    }
+
     public void recycle(ByteBuffer theBuf) {
     	//堆内buffer直接就清空就好
       	if(theBuf !=null && (!(theBuf instanceof DirectBuffer) )){
@@ -113,8 +207,9 @@ public class DirectByteBufferPool implements BufferPool{
 		int chunkCount = theBuf.capacity() / chunkSize; //chunk的个数
 		DirectBuffer parentBuf = (DirectBuffer) thisNavBuf.attachment(); //page的DirectBuffer
 		int startChunk = (int) ((thisNavBuf.address() - parentBuf.address()) / chunkSize); //开始chunk的序号
-		for (int i = 0; i < allPages.length; i++) { //在所有的页面中查找当前buffer分配的
-            if ((recycled = allPages[i].recycleBuffer((ByteBuffer) parentBuf, theBuf, startChunk, chunkCount,
+		ByteBufferPage[] pages = allPages;
+		for (int i = 0; i < pages.length; i++) { //在所有的页面中查找当前buffer分配的
+            if ((recycled = pages[i].recycleBuffer((ByteBuffer) parentBuf, theBuf, startChunk, chunkCount,
                     relatedThreadId) == true)) {
                 break;
             }
@@ -131,9 +226,10 @@ public class DirectByteBufferPool implements BufferPool{
 
     }
 
-    private ByteBuffer allocateBuffer(int theChunkCount, int startPage, int endPage) {
+    private ByteBuffer allocateBuffer(ByteBufferPage[] pages, int theChunkCount, int startPage, int endPage,
+            boolean wait) {
         for (int i = startPage; i < endPage; i++) {
-            ByteBuffer buffer = allPages[i].allocatChunk(theChunkCount);
+            ByteBuffer buffer = pages[i].allocatChunk(theChunkCount, wait);
             if (buffer != null) {
                 prevAllocatedPage.getAndSet(i);
                 return buffer;
@@ -156,11 +252,15 @@ public class DirectByteBufferPool implements BufferPool{
     }
 
     public short getPageCount() {
-        return pageCount;
+        return (short) allPages.length;
+    }
+
+    public int getMaxPageCount() {
+        return maxPageCount;
     }
 
     public long capacity() {
-	return (long) pageSize * pageCount;
+	return (long) pageSize * allPages.length;
     }
 
     public long size(){
@@ -172,6 +272,26 @@ public class DirectByteBufferPool implements BufferPool{
         return 0;
     }
 
+    @Override
+    public long getGrowCount() {
+        return growCount.get();
+    }
+
+    @Override
+    public long getShrinkCount() {
+        return shrinkCount.get();
+    }
+
+    @Override
+    public long getHeapFallbackCount() {
+        return heapFallbackCount.sum();
+    }
+
+    @Override
+    public long getHeapFallbackBytes() {
+        return heapFallbackBytes.sum();
+    }
+
 
 
     public ByteBufferPage[] getAllPages() {
@@ -0,0 +1,513 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.buffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sun.nio.ch.DirectBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按2的幂次分级的DirectByteBuffer池 (processorBufferPoolType 3)
+ * 每个page是一个buddy allocator, 最小块为chunkSize, 分配和合并都是O(log n),
+ * 回收时由buffer的attachment(page)和地址直接算出块的位置, 不需要遍历page.
+ * chunkSize和4 * chunkSize(默认4K/16K)的buffer先经过线程本地的magazine, 大部分分配和回收不需要加锁.
+ * 线程使用量用每个线程一个LongAdder统计, 已退出线程的magazine和使用量由定时的releaseDeadThreads清理
+ */
+@SuppressWarnings("restriction")
+public class SizeClassBufferPool implements BufferPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SizeClassBufferPool.class);
+    public static final long CHECK_PERIOD = 10 * 1000L;
+
+    /**
+     * magazine缓存的size class (chunkSize << order)
+     */
+    private static final int[] MAGAZINE_ORDERS = {0, 2};
+
+    static final int MAGAZINE_SIZE = 16;
+
+    private final Page[] pages;
+    // 构造后只读, 可以并发访问
+    private final Map<ByteBuffer, Page> pageIndex;
+    private final int chunkSize;
+    private final int pageSize;
+    private final int conReadBuferChunk;
+    private final AtomicLong prevAllocatedPage = new AtomicLong(0);
+
+    /**
+     * 记录对线程ID->该线程的所使用Direct Buffer的size
+     */
+    private final ConcurrentHashMap<Long, ThreadUsage> memoryUsage = new ConcurrentHashMap<>();
+    private final LongAdder heapFallbackCount = new LongAdder();
+    private final LongAdder heapFallbackBytes = new LongAdder();
+
+    private final ThreadLocal<Magazines> magazines = ThreadLocal.withInitial(this::newMagazines);
+    // 线程退出后其magazine中的buffer在定时检查或内存不足时收回
+    private final Queue<Magazines> allMagazines = new ConcurrentLinkedQueue<>();
+
+    public SizeClassBufferPool(int pageSize, short chunkSize, short pageCount, int conReadBuferChunk) {
+        if (pageSize < chunkSize || pageSize % chunkSize != 0) {
+            throw new IllegalArgumentException("pageSize " + pageSize + " must be a multiple of chunkSize "
+                    + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.pageSize = pageSize;
+        this.conReadBuferChunk = conReadBuferChunk;
+        pages = new Page[pageCount];
+        pageIndex = new IdentityHashMap<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            pages[i] = new Page(ByteBuffer.allocateDirect(pageSize), chunkSize);
+            pageIndex.put(pages[i].buf, pages[i]);
+        }
+    }
+
+    @Override
+    public ByteBuffer allocate(int size) {
+        int chunks = Math.max(1, (size + chunkSize - 1) / chunkSize);
+        int order = order(chunks);
+        ByteBuffer buffer = null;
+        if (order <= pages[0].maxOrder) {
+            Magazine magazine = chunks == 1 << order ? magazines.get().get(order) : null;
+            if (magazine != null) {
+                buffer = magazine.pop();
+                if (buffer == null) {
+                    refill(magazine, order);
+                    buffer = magazine.pop();
+                }
+            } else {
+                buffer = allocateBuffer(order, chunks);
+            }
+        }
+        if (buffer == null) {
+            heapFallbackCount.increment();
+            heapFallbackBytes.add(size);
+            return ByteBuffer.allocate(size);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        Page page = pageIndex.get(((DirectBuffer) buffer).attachment());
+        page.setOwner(page.block(buffer), threadId);
+        ThreadUsage usage = memoryUsage.get(threadId);
+        if (usage == null) {
+            usage = memoryUsage.computeIfAbsent(threadId, id -> new ThreadUsage(Thread.currentThread()));
+        }
+        usage.bytes.add(buffer.capacity());
+        return buffer;
+    }
+
+    @Override
+    public void recycle(ByteBuffer theBuf) {
+        //堆内buffer直接就清空就好
+        if (theBuf == null) {
+            return;
+        }
+        if (!(theBuf instanceof DirectBuffer)) {
+            theBuf.clear();
+            return;
+        }
+        Page page = pageIndex.get(((DirectBuffer) theBuf).attachment());
+        if (page == null) {
+            LOGGER.warn("warning ,not recycled buffer " + theBuf);
+            return;
+        }
+
+        int block = page.block(theBuf);
+        int chunks = theBuf.capacity() / chunkSize;
+        ThreadUsage usage = memoryUsage.get(page.owner(block));
+        if (usage != null) {
+            usage.bytes.add(-theBuf.capacity());
+        }
+
+        int order = order(chunks);
+        Magazine magazine = chunks == 1 << order ? magazines.get().get(order) : null;
+        if (magazine == null) {
+            page.free(block, order);
+            return;
+        }
+        theBuf.clear();
+        if (!magazine.push(theBuf)) {
+            // magazine满了, 一半还给page
+            drain(magazine, MAGAZINE_SIZE / 2);
+            magazine.push(theBuf);
+        }
+    }
+
+    private ByteBuffer allocateBuffer(int order, int chunks) {
+        int start = (int) (prevAllocatedPage.incrementAndGet() % pages.length);
+        ByteBuffer buffer = allocateBuffer(order, chunks, start);
+        if (buffer == null && reclaimMagazines()) {
+            buffer = allocateBuffer(order, chunks, start);
+        }
+        return buffer;
+    }
+
+    private ByteBuffer allocateBuffer(int order, int chunks, int start) {
+        for (int i = 0; i < pages.length; i++) {
+            ByteBuffer buffer = pages[(start + i) % pages.length].allocate(order, chunks);
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return null;
+    }
+
+    private void refill(Magazine magazine, int order) {
+        int start = (int) (prevAllocatedPage.incrementAndGet() % pages.length);
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < pages.length && magazine.size < MAGAZINE_SIZE / 2; i++) {
+                pages[(start + i) % pages.length].allocate(order, magazine, MAGAZINE_SIZE / 2);
+            }
+            if (magazine.size > 0 || !reclaimMagazines()) {
+                return;
+            }
+        }
+    }
+
+    private void drain(Magazine magazine, int count) {
+        for (int i = 0; i < count; i++) {
+            ByteBuffer buffer = magazine.pop();
+            if (buffer == null) {
+                return;
+            }
+            Page page = pageIndex.get(((DirectBuffer) buffer).attachment());
+            page.free(page.block(buffer), magazine.order);
+        }
+    }
+
+    /**
+     * 收回已退出线程的magazine, 返回是否收回了buffer
+     */
+    private boolean reclaimMagazines() {
+        boolean reclaimed = false;
+        Iterator<Magazines> it = allMagazines.iterator();
+        while (it.hasNext()) {
+            Magazines threadMagazines = it.next();
+            if (!threadMagazines.thread.isAlive() && allMagazines.remove(threadMagazines)) {
+                for (Magazine magazine : threadMagazines.magazines) {
+                    reclaimed |= magazine.size > 0;
+                    drain(magazine, MAGAZINE_SIZE);
+                }
+            }
+        }
+        return reclaimed;
+    }
+
+    /**
+     * 定时检查: 收回已退出线程的magazine, 并删除它们已经归零的使用量;
+     * 还有buffer未回收的线程等buffer回收后的下一次检查再删除
+     */
+    public void releaseDeadThreads() {
+        reclaimMagazines();
+        for (Map.Entry<Long, ThreadUsage> entry : memoryUsage.entrySet()) {
+            ThreadUsage usage = entry.getValue();
+            if (!usage.thread.isAlive() && usage.bytes.sum() == 0) {
+                memoryUsage.remove(entry.getKey(), usage);
+            }
+        }
+    }
+
+    int getThreadCount() {
+        return allMagazines.size();
+    }
+
+    private Magazines newMagazines() {
+        Magazines threadMagazines = new Magazines(Thread.currentThread());
+        allMagazines.add(threadMagazines);
+        return threadMagazines;
+    }
+
+    /**
+     * 最小的order, 使 1 << order >= chunks
+     */
+    static int order(int chunks) {
+        return chunks <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(chunks - 1);
+    }
+
+    public BufferArray allocateArray() {
+        return new BufferArray(this);
+    }
+
+    @Override
+    public long capacity() {
+        return (long) pageSize * pages.length;
+    }
+
+    @Override
+    public long size() {
+        return (long) pageSize * pages.length;
+    }
+
+    /**
+     * 已分配给各线程的字节数, 不含magazine中缓存的buffer
+     */
+    public long getUsedBytes() {
+        long used = 0;
+        for (ThreadUsage usage : memoryUsage.values()) {
+            used += usage.bytes.sum();
+        }
+        return used;
+    }
+
+    @Override
+    public long getHeapFallbackCount() {
+        return heapFallbackCount.sum();
+    }
+
+    @Override
+    public long getHeapFallbackBytes() {
+        return heapFallbackBytes.sum();
+    }
+
+    @Override
+    public int getConReadBuferChunk() {
+        return conReadBuferChunk;
+    }
+
+    @Override
+    public int getSharedOptsCount() {
+        return 0;
+    }
+
+    @Override
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getPageCount() {
+        return pages.length;
+    }
+
+    @Override
+    public ConcurrentHashMap<Long, Long> getNetDirectMemoryUsage() {
+        ConcurrentHashMap<Long, Long> snapshot = new ConcurrentHashMap<>(memoryUsage.size());
+        for (Map.Entry<Long, ThreadUsage> entry : memoryUsage.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().bytes.sum());
+        }
+        return snapshot;
+    }
+
+    /**
+     * 一个page上的buddy allocator, 块的序号以chunk为单位, 空闲块按order挂在双向链表上
+     */
+    private static final class Page {
+        private final ByteBuffer buf;
+        private final long address;
+        private final int chunkSize;
+        private final int chunkCount;
+        private final int maxOrder;
+        private final int[] heads;
+        private final int[] next;
+        private final int[] prev;
+        // 空闲块的order, 不是空闲块的起始位置时为-1
+        private final byte[] freeOrder;
+        // 分配buffer的线程, 回收时扣减它的使用量; magazine的buffer不经过page锁分配和回收, 读写也要加page锁
+        private final long[] owners;
+
+        Page(ByteBuffer buf, int chunkSize) {
+            this.buf = buf;
+            this.address = ((DirectBuffer) buf).address();
+            this.chunkSize = chunkSize;
+            this.chunkCount = buf.capacity() / chunkSize;
+            this.maxOrder = 31 - Integer.numberOfLeadingZeros(chunkCount);
+            heads = new int[maxOrder + 1];
+            next = new int[chunkCount];
+            prev = new int[chunkCount];
+            freeOrder = new byte[chunkCount];
+            owners = new long[chunkCount];
+            Arrays.fill(heads, -1);
+            Arrays.fill(freeOrder, (byte) -1);
+            // chunk个数不是2的幂次时, 拆成若干个对齐的块
+            int block = 0;
+            while (block < chunkCount) {
+                int order = maxOrder;
+                while (order > 0 && ((block & ((1 << order) - 1)) != 0 || block + (1 << order) > chunkCount)) {
+                    order--;
+                }
+                push(block, order);
+                block += 1 << order;
+            }
+        }
+
+        int block(ByteBuffer buffer) {
+            return (int) ((((DirectBuffer) buffer).address() - address) / chunkSize);
+        }
+
+        synchronized void setOwner(int block, long owner) {
+            owners[block] = owner;
+        }
+
+        synchronized long owner(int block) {
+            return owners[block];
+        }
+
+        synchronized ByteBuffer allocate(int order, int chunks) {
+            int block = allocateBlock(order);
+            return block < 0 ? null : slice(block, chunks);
+        }
+
+        synchronized void allocate(int order, Magazine magazine, int count) {
+            while (magazine.size < count) {
+                int block = allocateBlock(order);
+                if (block < 0) {
+                    return;
+                }
+                magazine.push(slice(block, 1 << order));
+            }
+        }
+
+        synchronized void free(int block, int order) {
+            while (order < maxOrder) {
+                int buddy = block ^ (1 << order);
+                if (buddy + (1 << order) > chunkCount || freeOrder[buddy] != order) {
+                    break;
+                }
+                remove(buddy, order);
+                block = Math.min(block, buddy);
+                order++;
+            }
+            push(block, order);
+        }
+
+        private int allocateBlock(int order) {
+            int k = order;
+            while (k <= maxOrder && heads[k] < 0) {
+                k++;
+            }
+            if (k > maxOrder) {
+                return -1;
+            }
+            int block = heads[k];
+            remove(block, k);
+            // 多余的一半放回低一级的链表
+            while (k > order) {
+                k--;
+                push(block + (1 << k), k);
+            }
+            return block;
+        }
+
+        private ByteBuffer slice(int block, int chunks) {
+            buf.limit(block * chunkSize + chunks * chunkSize);
+            buf.position(block * chunkSize);
+            return buf.slice();
+        }
+
+        private void push(int block, int order) {
+            int head = heads[order];
+            next[block] = head;
+            prev[block] = -1;
+            if (head >= 0) {
+                prev[head] = block;
+            }
+            heads[order] = block;
+            freeOrder[block] = (byte) order;
+        }
+
+        private void remove(int block, int order) {
+            if (prev[block] >= 0) {
+                next[prev[block]] = next[block];
+            } else {
+                heads[order] = next[block];
+            }
+            if (next[block] >= 0) {
+                prev[next[block]] = prev[block];
+            }
+            freeOrder[block] = -1;
+        }
+    }
+
+    /**
+     * 一个线程的Direct Buffer使用量, 记录线程以便定时检查删除已退出的线程
+     */
+    private static final class ThreadUsage {
+        private final Thread thread;
+        private final LongAdder bytes = new LongAdder();
+
+        ThreadUsage(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * 一个线程的magazine, 只有所属线程访问; 线程退出后由reclaimMagazines收回
+     */
+    private static final class Magazines {
+        private final Thread thread;
+        private final Magazine[] magazines;
+
+        Magazines(Thread thread) {
+            this.thread = thread;
+            magazines = new Magazine[MAGAZINE_ORDERS.length];
+            for (int i = 0; i < MAGAZINE_ORDERS.length; i++) {
+                magazines[i] = new Magazine(MAGAZINE_ORDERS[i]);
+            }
+        }
+
+        Magazine get(int order) {
+            for (Magazine magazine : magazines) {
+                if (magazine.order == order) {
+                    return magazine;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Magazine {
+        private final int order;
+        private final ByteBuffer[] buffers = new ByteBuffer[MAGAZINE_SIZE];
+        private int size;
+
+        Magazine(int order) {
+            this.order = order;
+        }
+
+        ByteBuffer pop() {
+            if (size == 0) {
+                return null;
+            }
+            ByteBuffer buffer = buffers[--size];
+            buffers[size] = null;
+            return buffer;
+        }
+
+        boolean push(ByteBuffer buffer) {
+            if (size == MAGAZINE_SIZE) {
+                return false;
+            }
+            buffers[size++] = buffer;
+            return true;
+        }
+    }
+}
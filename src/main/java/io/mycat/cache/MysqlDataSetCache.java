@@ -23,14 +23,24 @@
  */
 package io.mycat.cache;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * cache mysql dataset ,for example "select * from A where .......",cache all
  * result
  * 
+ * the packets are kept in memory until memoryLimit bytes, then the data
+ * spills to dataFile. A finished in-memory dataset is moved off-heap.
+ * 
  * @author wuzhih
  * 
  */
@@ -48,6 +58,24 @@ public class MysqlDataSetCache implements Serializable {
 	private volatile int curCount;
 	private volatile long lastAccesTime;
 	private volatile boolean storing = true;
+	private long size;
+	private int memoryLimit = Integer.MAX_VALUE;
+	// 结果涉及的表, 表上有DML/DDL时删除缓存
+	private Set<String> tables = Collections.emptySet();
+	private transient ByteArrayOutputStream memory;
+	private transient FileOutputStream out;
+	private transient volatile ByteBuffer data;
+
+	public MysqlDataSetCache() {
+
+	}
+
+	public MysqlDataSetCache(String sql, String dataFile, int memoryLimit) {
+		this.sql = sql;
+		this.dataFile = dataFile;
+		this.memoryLimit = memoryLimit;
+		this.createTime = System.currentTimeMillis();
+	}
 
 	public String getSql() {
 		return sql;
@@ -97,25 +125,159 @@ public class MysqlDataSetCache implements Serializable {
 		this.lastAccesTime = lastAccesTime;
 	}
 
+	public Set<String> getTables() {
+		return tables;
+	}
+
+	public void setTables(Set<String> tables) {
+		this.tables = tables;
+	}
+
+	/**
+	 * bytes of all packets stored
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	public boolean isInMemory() {
+		return out == null;
+	}
+
 	public void addHeader(byte[] header) throws IOException  {
-		writeFile(header);
+		write(header, 0, header.length);
 	}
 
-	private void writeFile(byte[] data) throws IOException {
-		FileOutputStream outf = null;
-		try {
-			outf = new FileOutputStream(dataFile, true);
-			outf.write(data);
+	public void appendRecord(byte[] row) throws IOException {
+		write(row, 0, row.length);
+		curCount++;
+	}
 
-		} finally {
-			if (outf != null) {
-				outf.close();
-			}
+	/**
+	 * append a row packet encoded in a buffer, position of the buffer is not changed
+	 */
+	public void appendRecord(ByteBuffer buffer, int offset, int length) throws IOException {
+		appendRecordPart(buffer, offset, length);
+		endRecord();
+	}
+
+	/**
+	 * append a part of a row packet that spans several buffers, endRecord() after the last part
+	 */
+	public void appendRecordPart(ByteBuffer buffer, int offset, int length) throws IOException {
+		if (buffer.hasArray()) {
+			write(buffer.array(), buffer.arrayOffset() + offset, length);
+		} else {
+			byte[] row = new byte[length];
+			ByteBuffer dup = buffer.duplicate();
+			dup.limit(offset + length);
+			dup.position(offset);
+			dup.get(row);
+			write(row, 0, length);
 		}
 	}
 
-	public void appendRecord(byte[] row) throws IOException {
-		writeFile(row);
+	public void endRecord() {
 		curCount++;
 	}
-}
\ No newline at end of file
+
+	private void write(byte[] data, int offset, int length) throws IOException {
+		if (out == null && size + length > memoryLimit) {
+			// 超过内存限制, 已有的数据和后续数据写入文件
+			out = new FileOutputStream(dataFile, true);
+			if (memory != null) {
+				memory.writeTo(out);
+				memory = null;
+			}
+		}
+		if (out != null) {
+			out.write(data, offset, length);
+		} else {
+			if (memory == null) {
+				memory = new ByteArrayOutputStream(Math.max(256, Math.min(memoryLimit, 8192)));
+			}
+			memory.write(data, offset, length);
+		}
+		size += length;
+	}
+
+	/**
+	 * all packets are stored, the dataset can be read from now on
+	 */
+	public void finishStoring() throws IOException {
+		if (out != null) {
+			out.close();
+		} else {
+			ByteBuffer buf = ByteBuffer.allocateDirect((int) size);
+			if (memory != null) {
+				buf.put(memory.toByteArray());
+				memory = null;
+			}
+			buf.flip();
+			data = buf;
+		}
+		total = curCount;
+		storing = false;
+	}
+
+	/**
+	 * a new channel over the stored packets for each reader. A spilled file
+	 * removed by release() can still be read through channels opened before.
+	 */
+	public ReadableByteChannel open() throws IOException {
+		ByteBuffer buf = data;
+		if (buf != null) {
+			return new BufferChannel(buf.duplicate());
+		}
+		return new FileInputStream(dataFile).getChannel();
+	}
+
+	/**
+	 * drop the stored data, an unfinished dataset is discarded as well
+	 */
+	public void release() {
+		memory = null;
+		data = null;
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+			}
+		}
+		if (dataFile != null) {
+			new File(dataFile).delete();
+		}
+	}
+
+	private static final class BufferChannel implements ReadableByteChannel {
+		private final ByteBuffer src;
+		private boolean open = true;
+
+		BufferChannel(ByteBuffer src) {
+			this.src = src;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) {
+			if (!src.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(src.remaining(), dst.remaining());
+			ByteBuffer slice = src.duplicate();
+			slice.limit(slice.position() + n);
+			dst.put(slice);
+			src.position(src.position() + n);
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.cache.impl;
+
+import java.io.File;
+
+import io.mycat.cache.CachePool;
+import io.mycat.cache.CachePoolFactory;
+import io.mycat.config.model.SystemConfig;
+
+/**
+ * pool.NAME=dataset,maxBytes,expireSeconds, a pool of whole result sets bounded by their bytes.
+ * Entries up to maxBytes/256 (64K - 4M) are kept off-heap, larger ones spill to MYCAT_HOME/resultcache,
+ * an entry larger than maxBytes/8 is not cached.
+ */
+public class DataSetCachePooFactory extends CachePoolFactory {
+	private static final int MIN_MEMORY_ENTRY = 64 * 1024;
+	private static final int MAX_MEMORY_ENTRY = 4 * 1024 * 1024;
+
+	@Override
+	public CachePool createCachePool(String poolName, int cacheSize,
+			int expiredSeconds) {
+		int memoryEntryBytes = Math.max(MIN_MEMORY_ENTRY, Math.min(MAX_MEMORY_ENTRY, cacheSize / 256));
+		return new DataSetCachePool(poolName, cacheSize, expiredSeconds, memoryEntryBytes, cacheSize / 8,
+				new File(SystemConfig.getHomePath(), "resultcache"));
+	}
+
+}
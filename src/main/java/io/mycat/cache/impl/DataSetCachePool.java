@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.cache.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.mycat.cache.CachePool;
+import io.mycat.cache.CacheStatic;
+import io.mycat.cache.MysqlDataSetCache;
+
+/**
+ * cache of finished MysqlDataSetCache values bounded by the total bytes of the datasets. Small
+ * datasets are kept off-heap, datasets larger than memoryEntryBytes spill to files of dataDir,
+ * datasets larger than maxEntryBytes are not cached. Every entry expires expireSeconds after it
+ * was created, the least recently used entries are dropped when the pool is full.
+ */
+public class DataSetCachePool implements CachePool {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DataSetCachePool.class);
+
+	private final String name;
+	private final long maxSize;
+	private final long expireMillis;
+	private final int memoryEntryBytes;
+	private final long maxEntryBytes;
+	private final File dataDir;
+	private final LinkedHashMap<Object, MysqlDataSetCache> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes;
+	// removeTables/clearCache 的次数, 存储期间表被修改过的dataset不放入pool
+	private long generation;
+	private long clearGeneration;
+	// 表 -> 最近一次被removeTables的generation
+	private final Map<String, Long> tableGenerations = new HashMap<>();
+	private final AtomicLong fileSeq = new AtomicLong();
+	private final CacheStatic cacheStati = new CacheStatic();
+	private final LongAdder accessTimes = new LongAdder();
+	private final LongAdder hitTimes = new LongAdder();
+	private final LongAdder putTimes = new LongAdder();
+	private volatile long lastAccessTime;
+	private volatile long lastPutTime;
+
+	public DataSetCachePool(String name, long maxSize, int expireSeconds, int memoryEntryBytes,
+			long maxEntryBytes, File dataDir) {
+		this.name = name;
+		this.maxSize = maxSize;
+		this.expireMillis = expireSeconds > 0 ? expireSeconds * 1000L : Long.MAX_VALUE;
+		this.memoryEntryBytes = memoryEntryBytes;
+		this.maxEntryBytes = Math.min(maxEntryBytes, maxSize);
+		this.dataDir = dataDir;
+		cacheStati.setMaxSize(maxSize);
+		// 上次运行留下的文件
+		File[] files = dataDir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (file.getName().startsWith(name + '-')) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * a new dataset to store a result, it is put into the pool after finishStoring()
+	 */
+	public MysqlDataSetCache newDataSet(String sql) {
+		if (!dataDir.exists() && !dataDir.mkdirs()) {
+			LOGGER.warn("can not create cache dir " + dataDir);
+		}
+		String dataFile = new File(dataDir, name + '-' + fileSeq.incrementAndGet() + ".dat").getPath();
+		return new MysqlDataSetCache(sql, dataFile, memoryEntryBytes);
+	}
+
+	public long getMaxEntryBytes() {
+		return maxEntryBytes;
+	}
+
+	/**
+	 * current invalidation generation, taken before the statement whose result is stored runs
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public void putIfAbsent(Object key, Object value) {
+		putIfAbsent(key, (MysqlDataSetCache) value, Long.MAX_VALUE);
+	}
+
+	/**
+	 * put a dataset stored since generation, it is dropped when one of its tables was removed
+	 * (or the pool cleared) after that
+	 */
+	public void putIfAbsent(Object key, MysqlDataSetCache dataSet, long generation) {
+		long now = System.currentTimeMillis();
+		if (dataSet.isStoring() || dataSet.getSize() > maxEntryBytes) {
+			dataSet.release();
+			return;
+		}
+		List<MysqlDataSetCache> evicted = new ArrayList<>();
+		synchronized (this) {
+			MysqlDataSetCache old = entries.get(key);
+			if (isInvalidated(dataSet, generation)) {
+				evicted.add(dataSet);
+			} else if (old != null && !isExpired(old, now)) {
+				evicted.add(dataSet);
+			} else {
+				if (old != null) {
+					remove(key, evicted);
+				}
+				entries.put(key, dataSet);
+				bytes += dataSet.getSize();
+				putTimes.increment();
+				lastPutTime = now;
+				// evict the least recently used
+				Iterator<Map.Entry<Object, MysqlDataSetCache>> it = entries.entrySet().iterator();
+				while (bytes > maxSize && it.hasNext()) {
+					MysqlDataSetCache lru = it.next().getValue();
+					bytes -= lru.getSize();
+					it.remove();
+					evicted.add(lru);
+				}
+			}
+		}
+		release(evicted);
+	}
+
+	@Override
+	public Object get(Object key) {
+		long now = System.currentTimeMillis();
+		accessTimes.increment();
+		lastAccessTime = now;
+		List<MysqlDataSetCache> evicted = new ArrayList<>(1);
+		MysqlDataSetCache dataSet;
+		synchronized (this) {
+			dataSet = entries.get(key);
+			if (dataSet != null && isExpired(dataSet, now)) {
+				remove(key, evicted);
+				dataSet = null;
+			}
+		}
+		release(evicted);
+		if (dataSet == null) {
+			return null;
+		}
+		dataSet.setLastAccesTime(now);
+		hitTimes.increment();
+		return dataSet;
+	}
+
+	/**
+	 * drop the datasets which read one of the tables
+	 */
+	public void removeTables(Collection<String> tables) {
+		List<MysqlDataSetCache> evicted = new ArrayList<>();
+		synchronized (this) {
+			generation++;
+			for (String table : tables) {
+				tableGenerations.put(table, generation);
+			}
+			Iterator<Map.Entry<Object, MysqlDataSetCache>> it = entries.entrySet().iterator();
+			while (it.hasNext()) {
+				MysqlDataSetCache dataSet = it.next().getValue();
+				for (String table : tables) {
+					if (dataSet.getTables().contains(table)) {
+						bytes -= dataSet.getSize();
+						it.remove();
+						evicted.add(dataSet);
+						break;
+					}
+				}
+			}
+		}
+		release(evicted);
+	}
+
+	@Override
+	public void clearCache() {
+		LOGGER.info("clear cache " + name);
+		List<MysqlDataSetCache> evicted;
+		synchronized (this) {
+			evicted = new ArrayList<>(entries.values());
+			entries.clear();
+			bytes = 0;
+			generation++;
+			clearGeneration = generation;
+			tableGenerations.clear();
+		}
+		release(evicted);
+	}
+
+	@Override
+	public void clearCache(String cacheName) {
+		List<MysqlDataSetCache> evicted = new ArrayList<>(1);
+		synchronized (this) {
+			remove(cacheName, evicted);
+		}
+		release(evicted);
+	}
+
+	@Override
+	public CacheStatic getCacheStatic() {
+		synchronized (this) {
+			cacheStati.setItemSize(entries.size());
+			cacheStati.setMemorySize(bytes);
+		}
+		cacheStati.setAccessTimes(accessTimes.sum());
+		cacheStati.setHitTimes(hitTimes.sum());
+		cacheStati.setPutTimes(putTimes.sum());
+		cacheStati.setLastAccesTime(lastAccessTime);
+		cacheStati.setLastPutTime(lastPutTime);
+		return cacheStati;
+	}
+
+	@Override
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	private boolean isInvalidated(MysqlDataSetCache dataSet, long since) {
+		if (clearGeneration > since) {
+			return true;
+		}
+		for (String table : dataSet.getTables()) {
+			Long removed = tableGenerations.get(table);
+			if (removed != null && removed > since) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isExpired(MysqlDataSetCache dataSet, long now) {
+		return now - dataSet.getCreateTime() >= expireMillis;
+	}
+
+	private void remove(Object key, List<MysqlDataSetCache> evicted) {
+		MysqlDataSetCache dataSet = entries.remove(key);
+		if (dataSet != null) {
+			bytes -= dataSet.getSize();
+			evicted.add(dataSet);
+		}
+	}
+
+	// 删除文件不在锁内
+	private static void release(List<MysqlDataSetCache> evicted) {
+		for (MysqlDataSetCache dataSet : evicted) {
+			dataSet.release();
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.cache.impl;
+
+import io.mycat.cache.CachePool;
+import io.mycat.cache.CachePoolFactory;
+
+/**
+ * pool.NAME=lru,maxBytes,expireSeconds, the size of a lru pool is the estimated heap bytes of its
+ * keys and values, not the item count
+ */
+public class LruCachePooFactory extends CachePoolFactory {
+
+	@Override
+	public CachePool createCachePool(String poolName, int cacheSize,
+			int expiredSeconds) {
+		return new LruCachePool(poolName, cacheSize, expiredSeconds);
+	}
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.cache.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.mycat.cache.CachePool;
+import io.mycat.cache.CacheStatic;
+
+/**
+ * in heap lru cache bounded by the estimated bytes of the keys and values. Keys are spread over
+ * segments, each segment is an access ordered LinkedHashMap with its own lock and 1/SEGMENTS of the bytes,
+ * so the lookups of the reactor threads do not wait on one lock. Entries are expired after
+ * expireSeconds without access, the same as time to idle of the ehcache pools.
+ */
+public class LruCachePool implements CachePool {
+	private static final Logger LOGGER = LoggerFactory.getLogger(LruCachePool.class);
+	private static final int SEGMENTS = 16;
+	// object header + hash map entry + linked list pointers
+	private static final int ENTRY_OVERHEAD = 64;
+
+	private final String name;
+	private final long maxSize;
+	private final long expireMillis;
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final CacheStatic cacheStati = new CacheStatic();
+	private final LongAdder accessTimes = new LongAdder();
+	private final LongAdder hitTimes = new LongAdder();
+	private final LongAdder putTimes = new LongAdder();
+	private volatile long lastAccessTime;
+	private volatile long lastPutTime;
+
+	public LruCachePool(String name, long maxSize, int expireSeconds) {
+		this.name = name;
+		this.maxSize = maxSize;
+		this.expireMillis = expireSeconds > 0 ? expireSeconds * 1000L : -1;
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(maxSize / SEGMENTS);
+		}
+		cacheStati.setMaxSize(maxSize);
+	}
+
+	@Override
+	public void putIfAbsent(Object key, Object value) {
+		long now = System.currentTimeMillis();
+		if (segmentFor(key).putIfAbsent(key, value, now)) {
+			putTimes.increment();
+			lastPutTime = now;
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug(name + " add cache ,key:" + key + " value:" + value);
+			}
+		}
+	}
+
+	@Override
+	public Object get(Object key) {
+		long now = System.currentTimeMillis();
+		Object value = segmentFor(key).get(key, now);
+		accessTimes.increment();
+		lastAccessTime = now;
+		if (value != null) {
+			hitTimes.increment();
+		}
+		return value;
+	}
+
+	@Override
+	public void clearCache() {
+		LOGGER.info("clear cache " + name);
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+		accessTimes.reset();
+		hitTimes.reset();
+		putTimes.reset();
+		lastAccessTime = 0;
+		lastPutTime = 0;
+	}
+
+	@Override
+	public CacheStatic getCacheStatic() {
+		long items = 0;
+		long bytes = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				items += segment.size();
+				bytes += segment.bytes;
+			}
+		}
+		cacheStati.setItemSize(items);
+		cacheStati.setMemorySize(bytes);
+		cacheStati.setAccessTimes(accessTimes.sum());
+		cacheStati.setHitTimes(hitTimes.sum());
+		cacheStati.setPutTimes(putTimes.sum());
+		cacheStati.setLastAccesTime(lastAccessTime);
+		cacheStati.setLastPutTime(lastPutTime);
+		return cacheStati;
+	}
+
+	@Override
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	@Override
+	public void clearCache(String cacheName) {
+		if (cacheName != null) {
+			segmentFor(cacheName).remove(cacheName);
+		}
+	}
+
+	private Segment segmentFor(Object key) {
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		return segments[h & (SEGMENTS - 1)];
+	}
+
+	static long weigh(Object key, Object value) {
+		return ENTRY_OVERHEAD + sizeOf(key) + sizeOf(value);
+	}
+
+	private static long sizeOf(Object obj) {
+		if (obj instanceof String) {
+			return 40 + 2L * ((String) obj).length();
+		} else if (obj instanceof byte[]) {
+			return 16 + ((byte[]) obj).length;
+		}
+		return 16;
+	}
+
+	private final class Segment extends LinkedHashMap<Object, Entry> {
+		private static final long serialVersionUID = 1L;
+		private final long maxBytes;
+		private long bytes;
+
+		Segment(long maxBytes) {
+			super(16, 0.75f, true);
+			this.maxBytes = maxBytes;
+		}
+
+		synchronized boolean putIfAbsent(Object key, Object value, long now) {
+			Entry entry = super.get(key);
+			if (entry != null && !entry.isExpired(now)) {
+				return false;
+			}
+			long weight = weigh(key, value);
+			if (weight > maxBytes) {
+				return false;
+			}
+			if (entry != null) {
+				remove(key);
+			}
+			super.put(key, new Entry(value, weight, now));
+			bytes += weight;
+			// evict the least recently used
+			Iterator<Map.Entry<Object, Entry>> it = entrySet().iterator();
+			while (bytes > maxBytes && it.hasNext()) {
+				bytes -= it.next().getValue().weight;
+				it.remove();
+			}
+			return true;
+		}
+
+		synchronized Object get(Object key, long now) {
+			Entry entry = super.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.isExpired(now)) {
+				remove(key);
+				return null;
+			}
+			entry.accessTime = now;
+			return entry.value;
+		}
+
+		@Override
+		public synchronized Entry remove(Object key) {
+			Entry entry = super.remove(key);
+			if (entry != null) {
+				bytes -= entry.weight;
+			}
+			return entry;
+		}
+
+		@Override
+		public synchronized void clear() {
+			super.clear();
+			bytes = 0;
+		}
+	}
+
+	private final class Entry {
+		private final Object value;
+		private final long weight;
+		private long accessTime;
+
+		Entry(Object value, long weight, long accessTime) {
+			this.value = value;
+			this.weight = weight;
+			this.accessTime = accessTime;
+		}
+
+		boolean isExpired(long now) {
+			return expireMillis > 0 && now - accessTime > expireMillis;
+		}
+	}
+}
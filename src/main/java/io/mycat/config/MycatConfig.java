@@ -38,6 +38,7 @@ import io.mycat.config.model.SchemaConfig;
 import io.mycat.config.model.SystemConfig;
 import io.mycat.config.model.UserConfig;
 import io.mycat.net.AbstractConnection;
+import io.mycat.net.NIOSocketWR;
 import io.mycat.util.TimeUtil;
 
 /**
@@ -116,6 +117,14 @@ public class MycatConfig {
 		con.setPacketHeaderSize(system.getPacketHeaderSize());
 		con.setIdleTimeout(system.getIdleTimeout());
 		con.setCharset(system.getCharset());
+		if (con.getSocketWR() instanceof NIOSocketWR) {
+			((NIOSocketWR) con.getSocketWR()).setGatheringWrite(system.getGatheringWriteBufferCount(),
+					system.getGatheringWriteMaxBytes());
+		}
+		if (isFrontChannel) {
+			con.setWriteQueueWaterMark(system.getFrontWriteQueueHighWaterMark(),
+					system.getFrontWriteQueueLowWaterMark());
+		}
 
 	}
 
@@ -81,6 +81,43 @@ public final class SystemConfig {
 	private static final int     DEFAULT_MAX_PREPAREDSTMT_COUNT = 16382;
 	private int maxStringLiteralLength = 65535;
 	private int frontWriteQueueSize = 2048;
+	// 前端写队列流控(字节), 超过高水位时暂停从后端取数据, 降到低水位后恢复, 0表示不限制
+	private int frontWriteQueueHighWaterMark = 16 * 1024 * 1024;
+	private int frontWriteQueueLowWaterMark = 4 * 1024 * 1024;
+	// 一次 gathering write 最多写出的 buffer 个数和字节数, 个数<=1时每个buffer单独write
+	private int gatheringWriteBufferCount = 16;
+	private int gatheringWriteMaxBytes = 1024 * 1024;
+	// 1: COM_STMT_EXECUTE 使用hetu jdbc PreparedStatement绑定参数, 0: 替换参数值后重新执行sql
+	private int serverSidePrepare = 1;
+	// 1: odbc转义sql的改写缓存以去掉字面量后的模板为key, 只有字面量不同的sql共用一个缓存项
+	private int sqlRewriteCacheNormalize = 0;
+	// hetu连接池: 每个(url, user, 连接属性)最多保留的空闲连接数, 0为不复用连接
+	private int hetuPoolMaxIdle = 8;
+	// hetu连接池: 每个分组后台预热保持的空闲连接数
+	private int hetuPoolMinIdle = 0;
+	// hetu连接池: 连接最长使用时间(毫秒), 超过后不再放回连接池
+	private long hetuPoolMaxLifetime = 30 * 60 * 1000L;
+	// hetu连接池: 超过minIdle的空闲连接的空闲超时(毫秒)
+	private long hetuPoolIdleTimeout = 10 * 60 * 1000L;
+	// hetu连接池: 空闲超过该时间(毫秒)的连接借出前先用select 1校验
+	private long hetuPoolValidateIdleTime = 30 * 1000L;
+	// hetu元数据缓存(SHOW CATALOGS/SCHEMAS/TABLES/COLUMNS, DESCRIBE, COM_FIELD_LIST)的有效期(毫秒), 0为不缓存
+	private long metadataCacheTtl = 60 * 1000L;
+	// 缓存项超过该时间(毫秒)后仍然返回缓存结果, 同时在后台重新加载
+	private long metadataCacheRefresh = 30 * 1000L;
+	// hetu元数据缓存的最大缓存项数
+	private int metadataCacheMaxEntries = 10000;
+	// 每个前端连接最多打开的服务端游标(COM_STMT_EXECUTE CURSOR_TYPE_READ_ONLY)个数, 0为不支持游标
+	private int maxOpenCursors = 16;
+	// hetu结果集超过该行数后, 取数据和编码分到两个线程并行(HetuResultPipeline), 0为不使用
+	private int hetuResultPipelineRows = 10000;
+	// 两个阶段之间最多缓存的行数据字节数(估算)
+	private long hetuResultPrefetchBytes = 4 * 1024 * 1024L;
+	// COM_PING在该时间(毫秒)内直接使用hetu后端的已知状态, 超过后才执行select 1校验
+	private long pingValidateTime = 30 * 1000L;
+	// postgres(v3协议)前端的端口, 0为不启动; 客户端没有用 -c server_url= 指定时连接的hetu地址
+	private int postgresPort = 0;
+	private String postgresServerUrl = "localhost:8080";
 	private String bindIp = "0.0.0.0";
 	private String fakeMySQLVersion = null;
 	private int serverPort;
@@ -89,11 +126,17 @@ public final class SystemConfig {
 	private int processors;
 	private int processorExecutor;
 	private int timerExecutor;
+	// 建立、归还hetu连接和KILL QUERY取消语句的线程数, 不占用NIO reactor线程
+	private int connectExecutor;
 	private int managerExecutor;
 	private long idleTimeout;
 	private int catletClassCheckSeconds = 60;
 	// sql execute timeout (second)
 	private long sqlExecuteTimeout = 300;
+	// hetu语句超时(秒), 超时后cancel语句, 0为不限制. 和sqlExecuteTimeout分开, 不改变原来的默认行为
+	private long hetuStatementTimeout = 0;
+	// 按用户/schema配置的hetu语句超时(秒), 例如 etl@*=3600,*@hive.tpch=60, 没有匹配时使用hetuStatementTimeout
+	private String hetuStatementTimeoutRules = "";
 	private long processorCheckPeriod;
 	private long dataNodeIdleCheckPeriod;
 	private long dataNodeHeartbeatPeriod;
@@ -120,6 +163,12 @@ public final class SystemConfig {
 	
 	// buffer pool page number 
 	private short bufferPoolPageNumber;
+
+	// DirectByteBufferPool 不够时最多扩容到的page数, 0表示不扩容
+	private short bufferPoolMaxPageNumber = 0;
+
+	// 扩容出的page空闲多久后释放(毫秒)
+	private long bufferPoolPageIdleTimeout = 60 * 1000L;
 	
 	//大结果集阈值，默认512kb
 	private int maxResultSet=512*1024;
@@ -171,6 +220,12 @@ public final class SystemConfig {
 
 	private String defaultSqlParser = DEFAULT_SQL_PARSER;
 	private int usingAIO = 0;
+
+	// NIO 接收连接的方式 0: 一个acceptor线程, 1: 每个reactor一个SO_REUSEPORT的listening socket
+	private int acceptMode = 0;
+
+	// listening socket 的 backlog
+	private int acceptBacklog = 100;
 	private int packetHeaderSize = 4;
 	private int maxPacketSize = 16 * 1024 * 1024;
 	private int mycatNodeId=1;
@@ -298,6 +353,7 @@ public final class SystemConfig {
 
 		this.processorBufferLocalPercent = 100;
 		this.timerExecutor = 2;
+		this.connectExecutor = Math.max(8, DEFAULT_PROCESSORS * 2);
 		this.idleTimeout = DEFAULT_IDLE_TIMEOUT;
 		this.processorCheckPeriod = DEFAULT_PROCESSOR_CHECK_PERIOD;
 		this.dataNodeIdleCheckPeriod = DEFAULT_DATANODE_IDLE_CHECK_PERIOD;
@@ -475,6 +531,166 @@ public final class SystemConfig {
 		this.frontWriteQueueSize = frontWriteQueueSize;
 	}
 
+	public int getFrontWriteQueueHighWaterMark() {
+		return frontWriteQueueHighWaterMark;
+	}
+
+	public void setFrontWriteQueueHighWaterMark(int frontWriteQueueHighWaterMark) {
+		this.frontWriteQueueHighWaterMark = frontWriteQueueHighWaterMark;
+	}
+
+	public int getFrontWriteQueueLowWaterMark() {
+		return frontWriteQueueLowWaterMark;
+	}
+
+	public void setFrontWriteQueueLowWaterMark(int frontWriteQueueLowWaterMark) {
+		this.frontWriteQueueLowWaterMark = frontWriteQueueLowWaterMark;
+	}
+
+	public int getGatheringWriteBufferCount() {
+		return gatheringWriteBufferCount;
+	}
+
+	public void setGatheringWriteBufferCount(int gatheringWriteBufferCount) {
+		this.gatheringWriteBufferCount = gatheringWriteBufferCount;
+	}
+
+	public int getGatheringWriteMaxBytes() {
+		return gatheringWriteMaxBytes;
+	}
+
+	public void setGatheringWriteMaxBytes(int gatheringWriteMaxBytes) {
+		this.gatheringWriteMaxBytes = gatheringWriteMaxBytes;
+	}
+
+	public int getServerSidePrepare() {
+		return serverSidePrepare;
+	}
+
+	public void setServerSidePrepare(int serverSidePrepare) {
+		this.serverSidePrepare = serverSidePrepare;
+	}
+
+	public int getSqlRewriteCacheNormalize() {
+		return sqlRewriteCacheNormalize;
+	}
+
+	public void setSqlRewriteCacheNormalize(int sqlRewriteCacheNormalize) {
+		this.sqlRewriteCacheNormalize = sqlRewriteCacheNormalize;
+	}
+
+	public int getHetuPoolMaxIdle() {
+		return hetuPoolMaxIdle;
+	}
+
+	public void setHetuPoolMaxIdle(int hetuPoolMaxIdle) {
+		this.hetuPoolMaxIdle = hetuPoolMaxIdle;
+	}
+
+	public int getHetuPoolMinIdle() {
+		return hetuPoolMinIdle;
+	}
+
+	public void setHetuPoolMinIdle(int hetuPoolMinIdle) {
+		this.hetuPoolMinIdle = hetuPoolMinIdle;
+	}
+
+	public long getHetuPoolMaxLifetime() {
+		return hetuPoolMaxLifetime;
+	}
+
+	public void setHetuPoolMaxLifetime(long hetuPoolMaxLifetime) {
+		this.hetuPoolMaxLifetime = hetuPoolMaxLifetime;
+	}
+
+	public long getHetuPoolIdleTimeout() {
+		return hetuPoolIdleTimeout;
+	}
+
+	public void setHetuPoolIdleTimeout(long hetuPoolIdleTimeout) {
+		this.hetuPoolIdleTimeout = hetuPoolIdleTimeout;
+	}
+
+	public long getMetadataCacheTtl() {
+		return metadataCacheTtl;
+	}
+
+	public void setMetadataCacheTtl(long metadataCacheTtl) {
+		this.metadataCacheTtl = metadataCacheTtl;
+	}
+
+	public long getMetadataCacheRefresh() {
+		return metadataCacheRefresh;
+	}
+
+	public void setMetadataCacheRefresh(long metadataCacheRefresh) {
+		this.metadataCacheRefresh = metadataCacheRefresh;
+	}
+
+	public int getMetadataCacheMaxEntries() {
+		return metadataCacheMaxEntries;
+	}
+
+	public void setMetadataCacheMaxEntries(int metadataCacheMaxEntries) {
+		this.metadataCacheMaxEntries = metadataCacheMaxEntries;
+	}
+
+	public int getMaxOpenCursors() {
+		return maxOpenCursors;
+	}
+
+	public void setMaxOpenCursors(int maxOpenCursors) {
+		this.maxOpenCursors = maxOpenCursors;
+	}
+
+	public int getHetuResultPipelineRows() {
+		return hetuResultPipelineRows;
+	}
+
+	public void setHetuResultPipelineRows(int hetuResultPipelineRows) {
+		this.hetuResultPipelineRows = hetuResultPipelineRows;
+	}
+
+	public long getHetuResultPrefetchBytes() {
+		return hetuResultPrefetchBytes;
+	}
+
+	public void setHetuResultPrefetchBytes(long hetuResultPrefetchBytes) {
+		this.hetuResultPrefetchBytes = hetuResultPrefetchBytes;
+	}
+
+	public long getPingValidateTime() {
+		return pingValidateTime;
+	}
+
+	public void setPingValidateTime(long pingValidateTime) {
+		this.pingValidateTime = pingValidateTime;
+	}
+
+	public int getPostgresPort() {
+		return postgresPort;
+	}
+
+	public void setPostgresPort(int postgresPort) {
+		this.postgresPort = postgresPort;
+	}
+
+	public String getPostgresServerUrl() {
+		return postgresServerUrl;
+	}
+
+	public void setPostgresServerUrl(String postgresServerUrl) {
+		this.postgresServerUrl = postgresServerUrl;
+	}
+
+	public long getHetuPoolValidateIdleTime() {
+		return hetuPoolValidateIdleTime;
+	}
+
+	public void setHetuPoolValidateIdleTime(long hetuPoolValidateIdleTime) {
+		this.hetuPoolValidateIdleTime = hetuPoolValidateIdleTime;
+	}
+
 	public String getBindIp() {
 		return bindIp;
 	}
@@ -610,6 +826,14 @@ public final class SystemConfig {
 		this.timerExecutor = timerExecutor;
 	}
 
+	public int getConnectExecutor() {
+		return connectExecutor;
+	}
+
+	public void setConnectExecutor(int connectExecutor) {
+		this.connectExecutor = connectExecutor;
+	}
+
 	public long getIdleTimeout() {
 		return idleTimeout;
 	}
@@ -658,6 +882,22 @@ public final class SystemConfig {
 		this.sqlExecuteTimeout = sqlExecuteTimeout;
 	}
 
+	public long getHetuStatementTimeout() {
+		return hetuStatementTimeout;
+	}
+
+	public void setHetuStatementTimeout(long hetuStatementTimeout) {
+		this.hetuStatementTimeout = hetuStatementTimeout;
+	}
+
+	public String getHetuStatementTimeoutRules() {
+		return hetuStatementTimeoutRules;
+	}
+
+	public void setHetuStatementTimeoutRules(String hetuStatementTimeoutRules) {
+		this.hetuStatementTimeoutRules = hetuStatementTimeoutRules;
+	}
+
 	public String getClusterHeartbeatPass() {
 		return clusterHeartbeatPass;
 	}
@@ -795,6 +1035,22 @@ public final class SystemConfig {
 		this.bufferPoolPageNumber = bufferPoolPageNumber;
 	}
 
+	public short getBufferPoolMaxPageNumber() {
+		return bufferPoolMaxPageNumber;
+	}
+
+	public void setBufferPoolMaxPageNumber(short bufferPoolMaxPageNumber) {
+		this.bufferPoolMaxPageNumber = bufferPoolMaxPageNumber;
+	}
+
+	public long getBufferPoolPageIdleTimeout() {
+		return bufferPoolPageIdleTimeout;
+	}
+
+	public void setBufferPoolPageIdleTimeout(long bufferPoolPageIdleTimeout) {
+		this.bufferPoolPageIdleTimeout = bufferPoolPageIdleTimeout;
+	}
+
 	public int getFrontSocketSoRcvbuf() {
 		return frontSocketSoRcvbuf;
 	}
@@ -899,6 +1155,22 @@ public final class SystemConfig {
 		this.usingAIO = usingAIO;
 	}
 
+	public int getAcceptMode() {
+		return acceptMode;
+	}
+
+	public void setAcceptMode(int acceptMode) {
+		this.acceptMode = acceptMode;
+	}
+
+	public int getAcceptBacklog() {
+		return acceptBacklog;
+	}
+
+	public void setAcceptBacklog(int acceptBacklog) {
+		this.acceptBacklog = acceptBacklog;
+	}
+
 	public int getMycatNodeId() {
 		return mycatNodeId;
 	}
@@ -918,14 +1190,32 @@ public final class SystemConfig {
 				+ frontSocketNoDelay + ", backSocketNoDelay="
 				+ backSocketNoDelay + ", maxStringLiteralLength="
 				+ maxStringLiteralLength + ", frontWriteQueueSize="
-				+ frontWriteQueueSize + ", bindIp=" + bindIp + ", serverPort="
+				+ frontWriteQueueSize + ", frontWriteQueueHighWaterMark="
+				+ frontWriteQueueHighWaterMark + ", frontWriteQueueLowWaterMark="
+				+ frontWriteQueueLowWaterMark + ", gatheringWriteBufferCount="
+				+ gatheringWriteBufferCount + ", gatheringWriteMaxBytes="
+				+ gatheringWriteMaxBytes + ", serverSidePrepare="
+				+ serverSidePrepare + ", sqlRewriteCacheNormalize="
+				+ sqlRewriteCacheNormalize + ", hetuPoolMaxIdle=" + hetuPoolMaxIdle
+				+ ", hetuPoolMinIdle=" + hetuPoolMinIdle + ", hetuPoolMaxLifetime="
+				+ hetuPoolMaxLifetime + ", hetuPoolIdleTimeout=" + hetuPoolIdleTimeout
+				+ ", hetuPoolValidateIdleTime=" + hetuPoolValidateIdleTime
+				+ ", metadataCacheTtl=" + metadataCacheTtl + ", metadataCacheRefresh="
+				+ metadataCacheRefresh + ", metadataCacheMaxEntries=" + metadataCacheMaxEntries
+				+ ", maxOpenCursors=" + maxOpenCursors + ", hetuResultPipelineRows=" + hetuResultPipelineRows
+				+ ", hetuResultPrefetchBytes=" + hetuResultPrefetchBytes + ", pingValidateTime=" + pingValidateTime
+				+ ", postgresPort=" + postgresPort + ", postgresServerUrl=" + postgresServerUrl
+				+ ", bindIp=" + bindIp + ", serverPort="
 				+ serverPort + ", managerPort=" + managerPort + ", charset="
 				+ charset + ", processors=" + processors
 				+ ", processorExecutor=" + processorExecutor
-				+ ", timerExecutor=" + timerExecutor + ", managerExecutor="
+				+ ", timerExecutor=" + timerExecutor + ", connectExecutor="
+				+ connectExecutor + ", managerExecutor="
 				+ managerExecutor + ", idleTimeout=" + idleTimeout
 				+ ", catletClassCheckSeconds=" + catletClassCheckSeconds
 				+ ", sqlExecuteTimeout=" + sqlExecuteTimeout
+				+ ", hetuStatementTimeout=" + hetuStatementTimeout
+				+ ", hetuStatementTimeoutRules=" + hetuStatementTimeoutRules
 				+ ", processorCheckPeriod=" + processorCheckPeriod
 				+ ", dataNodeIdleCheckPeriod=" + dataNodeIdleCheckPeriod
 				+ ", dataNodeHeartbeatPeriod=" + dataNodeHeartbeatPeriod
@@ -939,6 +1229,8 @@ public final class SystemConfig {
 				+ ", bufferPoolPageSize=" + bufferPoolPageSize
 				+ ", bufferPoolChunkSize=" + bufferPoolChunkSize
 				+ ", bufferPoolPageNumber=" + bufferPoolPageNumber
+				+ ", bufferPoolMaxPageNumber=" + bufferPoolMaxPageNumber
+				+ ", bufferPoolPageIdleTimeout=" + bufferPoolPageIdleTimeout
 				+ ", maxResultSet=" +maxResultSet
 				+ ", bigResultSizeSqlCount="+bigResultSizeSqlCount
 				+ ", bufferUsagePercent="+bufferUsagePercent
@@ -952,7 +1244,9 @@ public final class SystemConfig {
 				+ ", mutiNodeLimitType=" + mutiNodeLimitType 
 				+ ", mutiNodePatchSize=" + mutiNodePatchSize 
 				+ ", defaultSqlParser=" + defaultSqlParser
-				+ ", usingAIO=" + usingAIO 
+				+ ", usingAIO=" + usingAIO
+				+ ", acceptMode=" + acceptMode
+				+ ", acceptBacklog=" + acceptBacklog 
 				+ ", packetHeaderSize=" + packetHeaderSize 
 				+ ", maxPacketSize=" + maxPacketSize
 				+ ", mycatNodeId=" + mycatNodeId
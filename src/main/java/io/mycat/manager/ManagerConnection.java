@@ -24,6 +24,7 @@
 package io.mycat.manager;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.NetworkChannel;
 
 import io.mycat.net.FrontendConnection;
@@ -55,4 +56,10 @@ public class ManagerConnection extends FrontendConnection {
 		handler.handle(data);
 	}
 
+	@Override
+	public void handle(ByteBuffer packet) {
+		this.executeSqlId ++;
+		handler.handle(packet);
+	}
+
 }
\ No newline at end of file
@@ -43,6 +43,7 @@ import io.mycat.manager.response.ShowHeartbeatDetail;
 import io.mycat.manager.response.ShowHelp;
 import io.mycat.manager.response.ShowParser;
 import io.mycat.manager.response.ShowProcessor;
+import io.mycat.manager.response.ShowReactor;
 import io.mycat.manager.response.ShowRouter;
 import io.mycat.manager.response.ShowSQL;
 import io.mycat.manager.response.ShowSQLCondition;
@@ -144,6 +145,9 @@ public final class ShowHandler {
 		case ManagerParseShow.ROUTER:
 			ShowRouter.execute(c);
 			break;
+		case ManagerParseShow.REACTOR:
+			ShowReactor.execute(c);
+			break;
 		case ManagerParseShow.SERVER:
 			ShowServer.execute(c);
 			break;
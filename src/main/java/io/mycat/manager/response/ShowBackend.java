@@ -27,12 +27,15 @@ import java.nio.ByteBuffer;
 
 import io.mycat.MycatServer;
 import io.mycat.backend.BackendConnection;
+import io.mycat.backend.hetu.HetuConnection;
+import io.mycat.backend.hetu.HetuConnectionPool;
 import io.mycat.backend.jdbc.JDBCConnection;
 import io.mycat.backend.mysql.PacketUtil;
 import io.mycat.backend.mysql.nio.MySQLConnection;
 import io.mycat.config.Fields;
 import io.mycat.manager.ManagerConnection;
 import io.mycat.net.BackendAIOConnection;
+import io.mycat.net.FrontendConnection;
 import io.mycat.net.NIOProcessor;
 import io.mycat.net.mysql.EOFPacket;
 import io.mycat.net.mysql.FieldPacket;
@@ -50,7 +53,7 @@ import io.mycat.util.TimeUtil;
  */
 public class ShowBackend {
 
-	private static final int FIELD_COUNT = 16;
+	private static final int FIELD_COUNT = 20;
 	private static final ResultSetHeaderPacket header = PacketUtil
 			.getHeader(FIELD_COUNT);
 	private static final FieldPacket[] fields = new FieldPacket[FIELD_COUNT];
@@ -98,6 +101,17 @@ public class ShowBackend {
 		fields[i] = PacketUtil.getField("autocommit",
 				Fields.FIELD_TYPE_VAR_STRING);
 		fields[i++].packetId = ++packetId;
+		fields[i] = PacketUtil.getField("leases", Fields.FIELD_TYPE_LONG);
+		fields[i++].packetId = ++packetId;
+		fields[i] = PacketUtil.getField("pool_reuse_ratio",
+				Fields.FIELD_TYPE_VAR_STRING);
+		fields[i++].packetId = ++packetId;
+		fields[i] = PacketUtil.getField("pool_wait_avg",
+				Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+		fields[i] = PacketUtil.getField("pool_wait_max",
+				Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
 		eof.packetId = ++packetId;
 	}
 
@@ -113,28 +127,46 @@ public class ShowBackend {
 		for (NIOProcessor p : MycatServer.getInstance().getProcessors()) {
 			for (BackendConnection bc : p.getBackends().values()) {
 				if (bc != null) {
-					RowDataPacket row = getRow(bc, charset);
+					RowDataPacket row = getRow(bc, processorName(bc), charset);
+					row.packetId = ++packetId;
+					buffer = row.write(buffer, c, true);
+				}
+			}
+			// hetu连接由前端连接持有, 不在processor的backends中
+			for (FrontendConnection fc : p.getFrontends().values()) {
+				BackendConnection bc = fc.backConn;
+				if (bc instanceof HetuConnection) {
+					RowDataPacket row = getRow(bc, p.getName(), charset);
 					row.packetId = ++packetId;
 					buffer = row.write(buffer, c, true);
 				}
 			}
 		}
+		// 连接池中的空闲hetu连接
+		for (HetuConnection hc : HetuConnectionPool.getInstance().getIdleConnections()) {
+			RowDataPacket row = getRow(hc, "idle", charset);
+			row.packetId = ++packetId;
+			buffer = row.write(buffer, c, true);
+		}
 		EOFPacket lastEof = new EOFPacket();
 		lastEof.packetId = ++packetId;
 		buffer = lastEof.write(buffer, c, true);
 		c.write(buffer);
 	}
 
-	private static RowDataPacket getRow(BackendConnection c, String charset) {
-		RowDataPacket row = new RowDataPacket(FIELD_COUNT);
+	private static String processorName(BackendConnection c) {
 		if (c instanceof BackendAIOConnection) {
-			row.add(((BackendAIOConnection) c).getProcessor().getName()
-					.getBytes());
-		} else if(c instanceof JDBCConnection){
-		    row.add(((JDBCConnection)c).getProcessor().getName().getBytes());
-		}else{
-		    row.add("N/A".getBytes());
+			return ((BackendAIOConnection) c).getProcessor().getName();
+		} else if (c instanceof JDBCConnection && ((JDBCConnection) c).getProcessor() != null) {
+			return ((JDBCConnection) c).getProcessor().getName();
+		} else {
+			return "N/A";
 		}
+	}
+
+	private static RowDataPacket getRow(BackendConnection c, String processor, String charset) {
+		RowDataPacket row = new RowDataPacket(FIELD_COUNT);
+		row.add(processor.getBytes());
 		row.add(LongUtil.toBytes(c.getId()));
 		long threadId = 0;
 		if (c instanceof MySQLConnection) {
@@ -167,11 +199,31 @@ public class ShowBackend {
 			txLevel = mysqlC.getTxIsolation() + "";
 			txAutommit = mysqlC.isAutocommit() + "";
 		}
+		int leases = 0;
+		String reuseRatio = "";
+		long waitAvg = 0;
+		long waitMax = 0;
+		if (c instanceof HetuConnection) {
+			HetuConnection hetuC = (HetuConnection) c;
+			schema = hetuC.getCatalog() + "." + hetuC.getSchema();
+			txAutommit = hetuC.isAutocommit() + "";
+			leases = hetuC.getLeaseCount();
+			HetuConnectionPool.Group group = HetuConnectionPool.getInstance().getGroup(hetuC.getPoolKey());
+			if (group != null) {
+				reuseRatio = String.format("%.4f", group.getReuseRatio());
+				waitAvg = group.getAvgWaitTime();
+				waitMax = group.getMaxWaitTime();
+			}
+		}
 		row.add(IntegerUtil.toBytes(writeQueueSize));
-		row.add(schema.getBytes());
+		row.add(StringUtil.encode(schema, charset));
 		row.add(charsetInf.getBytes());
 		row.add(txLevel.getBytes());
 		row.add(txAutommit.getBytes());
+		row.add(IntegerUtil.toBytes(leases));
+		row.add(reuseRatio.getBytes());
+		row.add(LongUtil.toBytes(waitAvg));
+		row.add(LongUtil.toBytes(waitMax));
 		return row;
 	}
 }
\ No newline at end of file
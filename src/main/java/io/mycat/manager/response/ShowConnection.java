@@ -49,7 +49,7 @@ import io.mycat.util.TimeUtil;
  */
 public final class ShowConnection {
 
-	private static final int FIELD_COUNT = 15;
+	private static final int FIELD_COUNT = 19;
 	private static final ResultSetHeaderPacket header = PacketUtil
 			.getHeader(FIELD_COUNT);
 	private static final FieldPacket[] fields = new FieldPacket[FIELD_COUNT];
@@ -109,6 +109,18 @@ public final class ShowConnection {
 				Fields.FIELD_TYPE_VAR_STRING);
 		fields[i++].packetId = ++packetId;
 
+		fields[i] = PacketUtil.getField("SEND_QUEUE_BYTES", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("HIGH_WATER_MARK", Fields.FIELD_TYPE_LONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("LOW_WATER_MARK", Fields.FIELD_TYPE_LONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("PARKED_TIME(MS)", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+
 		eof.packetId = ++packetId;
 	}
 
@@ -175,6 +187,10 @@ public final class ShowConnection {
 		}
 		row.add(txLevel.getBytes());
 		row.add(txAutommit.getBytes());
+		row.add(LongUtil.toBytes(c.getWriteQueueBytes()));
+		row.add(IntegerUtil.toBytes(c.getWriteQueueHighWaterMark()));
+		row.add(IntegerUtil.toBytes(c.getWriteQueueLowWaterMark()));
+		row.add(LongUtil.toBytes(c.getWriteQueueParkedNanos() / 1000000L));
 
 		return row;
 	}
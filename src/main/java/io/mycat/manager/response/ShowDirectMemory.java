@@ -13,6 +13,7 @@ import io.mycat.net.mysql.EOFPacket;
 import io.mycat.net.mysql.FieldPacket;
 import io.mycat.net.mysql.ResultSetHeaderPacket;
 import io.mycat.net.mysql.RowDataPacket;
+import io.mycat.util.LongUtil;
 import io.netty.buffer.PoolArenaMetric;
 import io.netty.buffer.PoolChunkListMetric;
 import io.netty.buffer.PoolChunkMetric;
@@ -42,7 +43,7 @@ public class ShowDirectMemory {
     private static final EOFPacket detailEof = new EOFPacket();
 
 
-    private static final int TOTAL_FIELD_COUNT = 5;
+    private static final int TOTAL_FIELD_COUNT = 10;
     private static final ResultSetHeaderPacket totalHeader = PacketUtil.getHeader(TOTAL_FIELD_COUNT);
     private static final FieldPacket[] totalFields = new FieldPacket[TOTAL_FIELD_COUNT];
     private static final EOFPacket totalEof = new EOFPacket();
@@ -86,6 +87,21 @@ public class ShowDirectMemory {
 
         totalFields[i] = PacketUtil.getField("DIRECT_MEMORY_RESERVED", Fields.FIELD_TYPE_VAR_STRING);
         totalFields[i++].packetId = ++packetId;
+
+        totalFields[i] = PacketUtil.getField("BUFFER_POOL_SIZE", Fields.FIELD_TYPE_VAR_STRING);
+        totalFields[i++].packetId = ++packetId;
+
+        totalFields[i] = PacketUtil.getField("BUFFER_POOL_GROW_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        totalFields[i++].packetId = ++packetId;
+
+        totalFields[i] = PacketUtil.getField("BUFFER_POOL_SHRINK_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        totalFields[i++].packetId = ++packetId;
+
+        totalFields[i] = PacketUtil.getField("HEAP_FALLBACK_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        totalFields[i++].packetId = ++packetId;
+
+        totalFields[i] = PacketUtil.getField("HEAP_FALLBACK_SIZE", Fields.FIELD_TYPE_VAR_STRING);
+        totalFields[i++].packetId = ++packetId;
         totalEof.packetId = ++packetId;
 
     }
@@ -320,6 +336,15 @@ public class ShowDirectMemory {
 
             row.add(resevedForOs > 0 ? JavaUtils.bytesToString2(resevedForOs).getBytes(c.getCharset()) : "0".getBytes(c.getCharset()));
 
+            /**
+             * buffer pool当前的大小, 扩容/释放page的次数, pool不够时分配堆内存的次数和大小
+             */
+            row.add(JavaUtils.bytesToString2(bufferPool.capacity()).getBytes(c.getCharset()));
+            row.add(LongUtil.toBytes(bufferPool.getGrowCount()));
+            row.add(LongUtil.toBytes(bufferPool.getShrinkCount()));
+            row.add(LongUtil.toBytes(bufferPool.getHeapFallbackCount()));
+            row.add(JavaUtils.bytesToString2(bufferPool.getHeapFallbackBytes()).getBytes(c.getCharset()));
+
             row.packetId = ++packetId;
             buffer = row.write(buffer, c, true);
 
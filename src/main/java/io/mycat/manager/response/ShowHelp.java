@@ -140,6 +140,7 @@ public final class ShowHelp {
         helps.put("show @@sql.sum.table", "Report  Table RW Stat ");
         helps.put("show @@parser", "Report parser status");
         helps.put("show @@router", "Report router status");
+        helps.put("show @@reactor", "Report NIO reactor load, accept and select loop status");
         helps.put("show @@heartbeat", "Report heartbeat status");
         helps.put("show @@heartbeat.detail where name=?", "Report heartbeat current detail");
         helps.put("show @@slow where schema = ?", "Report schema slow sql");
@@ -28,6 +28,7 @@ import io.mycat.backend.mysql.PacketUtil;
 import io.mycat.buffer.BufferPool;
 import io.mycat.buffer.ByteBufferArena;
 import io.mycat.buffer.DirectByteBufferPool;
+import io.mycat.buffer.SizeClassBufferPool;
 import io.mycat.config.Fields;
 import io.mycat.manager.ManagerConnection;
 import io.mycat.net.NIOProcessor;
@@ -47,7 +48,7 @@ import java.nio.ByteBuffer;
  */
 public final class ShowProcessor {
 
-  private static final int FIELD_COUNT = 12;
+  private static final int FIELD_COUNT = 14;
   private static final ResultSetHeaderPacket header = PacketUtil.getHeader(FIELD_COUNT);
   private static final FieldPacket[] fields = new FieldPacket[FIELD_COUNT];
   private static final EOFPacket eof = new EOFPacket();
@@ -93,6 +94,12 @@ public final class ShowProcessor {
     fields[i] = PacketUtil.getField("BC_COUNT", Fields.FIELD_TYPE_LONG);
     fields[i++].packetId = ++packetId;
 
+    fields[i] = PacketUtil.getField("W_SYSCALLS", Fields.FIELD_TYPE_LONGLONG);
+    fields[i++].packetId = ++packetId;
+
+    fields[i] = PacketUtil.getField("W_SYSCALLS_PER_MB", Fields.FIELD_TYPE_LONGLONG);
+    fields[i++].packetId = ++packetId;
+
     eof.packetId = ++packetId;
   }
 
@@ -150,6 +157,12 @@ public final class ShowProcessor {
         free = bufferSize - bufferCapacity;
         bufferSharedOpts = bufferPool.getSharedOptsCount();
         bufferUsagePercent = (long) ((bufferCapacity) * 100.0 / bufferSize);
+      } else if (pool instanceof SizeClassBufferPool) {
+        SizeClassBufferPool bufferPool = (SizeClassBufferPool) pool;
+        bufferSize = bufferPool.size();
+        bufferCapacity = bufferPool.getUsedBytes();
+        free = bufferSize - bufferCapacity;
+        bufferUsagePercent = (long) ((bufferCapacity) * 100.0 / bufferSize);
       } else {
         return row;
       }
@@ -165,6 +178,10 @@ public final class ShowProcessor {
       row.add(LongUtil.toBytes(bufferSharedOpts));
       row.add(IntegerUtil.toBytes(processor.getFrontends().size()));
       row.add(IntegerUtil.toBytes(processor.getBackends().size()));
+      long netOut = processor.getNetOutBytes();
+      long writeSyscalls = processor.getWriteSyscalls();
+      row.add(LongUtil.toBytes(writeSyscalls));
+      row.add(LongUtil.toBytes(netOut == 0 ? 0 : writeSyscalls * 1024 * 1024 / netOut));
     } finally {
       return row;
     }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.manager.response;
+
+import io.mycat.MycatServer;
+import io.mycat.backend.mysql.PacketUtil;
+import io.mycat.config.Fields;
+import io.mycat.manager.ManagerConnection;
+import io.mycat.net.NIOReactor;
+import io.mycat.net.NIOReactorPool;
+import io.mycat.net.mysql.EOFPacket;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.net.mysql.ResultSetHeaderPacket;
+import io.mycat.net.mysql.RowDataPacket;
+import io.mycat.util.LongUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * show @@reactor: 每个NIO reactor的负载(连接数, 写队列积压), 接收连接的数量和速率,
+ * select循环的次数以及等待/处理事件的时间. AIO时没有数据
+ */
+public final class ShowReactor {
+    private static final int FIELD_COUNT = 11;
+    private static final ResultSetHeaderPacket header = PacketUtil.getHeader(FIELD_COUNT);
+    private static final FieldPacket[] fields = new FieldPacket[FIELD_COUNT];
+    private static final EOFPacket eof = new EOFPacket();
+
+    static {
+        int i = 0;
+        byte packetId = 0;
+        header.packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("NAME", Fields.FIELD_TYPE_VAR_STRING);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("CONNECTIONS", Fields.FIELD_TYPE_LONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("QUEUED_BYTES", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("ASSIGN_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("ACCEPT_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("ACCEPT_RATE", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("SELECT_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("SELECT_WAIT_MS", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("PROCESS_MS", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("AVG_PROCESS_US", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("MAX_PROCESS_US", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        eof.packetId = ++packetId;
+    }
+
+    public static void execute(ManagerConnection c) {
+        ByteBuffer buffer = c.allocate();
+
+        // write header
+        buffer = header.write(buffer, c, true);
+
+        // write fields
+        for (FieldPacket field : fields) {
+            buffer = field.write(buffer, c, true);
+        }
+
+        // write eof
+        buffer = eof.write(buffer, c, true);
+
+        // write rows
+        byte packetId = eof.packetId;
+        NIOReactorPool reactorPool = MycatServer.getInstance().getReactorPool();
+        if (reactorPool != null) {
+            for (NIOReactor reactor : reactorPool.getReactors()) {
+                RowDataPacket row = getRow(reactor);
+                row.packetId = ++packetId;
+                buffer = row.write(buffer, c, true);
+            }
+        }
+
+        // write last eof
+        EOFPacket lastEof = new EOFPacket();
+        lastEof.packetId = ++packetId;
+        buffer = lastEof.write(buffer, c, true);
+
+        // write buffer
+        c.write(buffer);
+    }
+
+    private static RowDataPacket getRow(NIOReactor reactor) {
+        long selectCount = reactor.getSelectCount();
+        long processNanos = reactor.getProcessNanos();
+        RowDataPacket row = new RowDataPacket(FIELD_COUNT);
+        row.add(reactor.getName().getBytes());
+        row.add(LongUtil.toBytes(reactor.getConnectionCount()));
+        row.add(LongUtil.toBytes(reactor.getQueuedBytes()));
+        row.add(LongUtil.toBytes(reactor.getAssignCount()));
+        row.add(LongUtil.toBytes(reactor.getAcceptCount()));
+        row.add(LongUtil.toBytes(reactor.getAcceptRate()));
+        row.add(LongUtil.toBytes(selectCount));
+        row.add(LongUtil.toBytes(reactor.getSelectNanos() / 1000000));
+        row.add(LongUtil.toBytes(processNanos / 1000000));
+        row.add(LongUtil.toBytes(selectCount == 0 ? 0 : processNanos / selectCount / 1000));
+        row.add(LongUtil.toBytes(reactor.getMaxProcessNanos() / 1000));
+        return row;
+    }
+}
@@ -33,7 +33,12 @@ import io.mycat.net.mysql.EOFPacket;
 import io.mycat.net.mysql.FieldPacket;
 import io.mycat.net.mysql.ResultSetHeaderPacket;
 import io.mycat.net.mysql.RowDataPacket;
+import io.mycat.statistic.CancelStat;
+import io.mycat.statistic.ConnectStat;
+import io.mycat.statistic.PingStat;
+import io.mycat.statistic.ResultPipelineStat;
 import io.mycat.util.FormatUtil;
+import io.mycat.util.IntegerUtil;
 import io.mycat.util.LongUtil;
 import io.mycat.util.StringUtil;
 import io.mycat.util.TimeUtil;
@@ -46,7 +51,7 @@ import io.mycat.util.TimeUtil;
  */
 public final class ShowServer {
 
-	private static final int FIELD_COUNT = 8;
+	private static final int FIELD_COUNT = 25;
 	private static final ResultSetHeaderPacket header = PacketUtil
 			.getHeader(FIELD_COUNT);
 	private static final FieldPacket[] fields = new FieldPacket[FIELD_COUNT];
@@ -86,6 +91,61 @@ public final class ShowServer {
 		fields[i] = PacketUtil.getField("STATUS", Fields.FIELD_TYPE_VAR_STRING);
 		fields[i++].packetId = ++packetId;
 
+		fields[i] = PacketUtil.getField("LOGINS", Fields.FIELD_TYPE_LONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("MAX_LOGINS", Fields.FIELD_TYPE_LONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("LOGIN_COUNT", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("LOGIN_FAILURE", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+
+		// 10ms, 100ms, 500ms, 1s, 5s, >5s
+		fields[i] = PacketUtil.getField("CONNECT_TIME", Fields.FIELD_TYPE_VAR_STRING);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("LOGIN_TIME", Fields.FIELD_TYPE_VAR_STRING);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("CANCEL_COUNT", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("CANCEL_FAILURE", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("TIMEOUT_COUNT", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+
+		// KILL QUERY到语句返回的耗时
+		fields[i] = PacketUtil.getField("CANCEL_TIME", Fields.FIELD_TYPE_VAR_STRING);
+		fields[i++].packetId = ++packetId;
+
+		// 大结果集两阶段输出的查询数, 行数, 按瓶颈分类的查询数
+		fields[i] = PacketUtil.getField("PIPELINE_QUERIES", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("PIPELINE_ROWS", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("PIPELINE_BOTTLENECK", Fields.FIELD_TYPE_VAR_STRING);
+		fields[i++].packetId = ++packetId;
+
+		// COM_PING次数, 访问hetu校验的次数, 失败次数, 应答耗时
+		fields[i] = PacketUtil.getField("PING_COUNT", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("PING_VALIDATE", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("PING_FAILURE", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+
+		fields[i] = PacketUtil.getField("PING_TIME", Fields.FIELD_TYPE_VAR_STRING);
+		fields[i++].packetId = ++packetId;
+
 		eof.packetId = ++packetId;
 	}
 
@@ -137,6 +197,27 @@ public final class ShowServer {
 		row.add(StringUtil.encode(charset, charset));
 		row.add(StringUtil.encode(MycatServer.getInstance().isOnline() ? "ON"
 				: "OFF", charset));
+		ConnectStat connectStat = ConnectStat.getInstance();
+		row.add(IntegerUtil.toBytes(connectStat.getLogins()));
+		row.add(IntegerUtil.toBytes(connectStat.getMaxLogins()));
+		row.add(LongUtil.toBytes(connectStat.getLoginCount()));
+		row.add(LongUtil.toBytes(connectStat.getFailureCount()));
+		row.add(StringUtil.encode(connectStat.getConnectHistogram().toString(), charset));
+		row.add(StringUtil.encode(connectStat.getLoginHistogram().toString(), charset));
+		CancelStat cancelStat = CancelStat.getInstance();
+		row.add(LongUtil.toBytes(cancelStat.getCancelCount()));
+		row.add(LongUtil.toBytes(cancelStat.getFailureCount()));
+		row.add(LongUtil.toBytes(cancelStat.getTimeoutCount()));
+		row.add(StringUtil.encode(cancelStat.getCancelHistogram().toString(), charset));
+		ResultPipelineStat pipelineStat = ResultPipelineStat.getInstance();
+		row.add(LongUtil.toBytes(pipelineStat.getQueryCount()));
+		row.add(LongUtil.toBytes(pipelineStat.getRowCount()));
+		row.add(StringUtil.encode(pipelineStat.toString(), charset));
+		PingStat pingStat = PingStat.getInstance();
+		row.add(LongUtil.toBytes(pingStat.getPingCount()));
+		row.add(LongUtil.toBytes(pingStat.getValidateCount()));
+		row.add(LongUtil.toBytes(pingStat.getFailureCount()));
+		row.add(StringUtil.encode(pingStat.getPingHistogram().toString(), charset));
 		return row;
 	}
 
@@ -33,11 +33,13 @@ import java.nio.channels.SocketChannel;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Strings;
 
 import io.mycat.backend.mysql.CharsetUtil;
 import io.mycat.util.CompressUtil;
+import io.mycat.util.StringEncoder;
 import io.mycat.util.TimeUtil;
 
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
@@ -55,10 +57,12 @@ public abstract class AbstractConnection implements NIOConnection {
 	protected long id;
 	protected volatile String charset;
 	protected volatile int charsetIndex;
+	private volatile StringEncoder stringEncoder;
 
 	protected final NetworkChannel channel;
 	protected NIOProcessor processor;
-	protected NIOHandler handler;
+	// 认证成功后在 connect executor 中切换
+	protected volatile NIOHandler handler;
 
 	protected int packetHeaderSize;
 	protected int maxPacketSize;
@@ -66,6 +70,17 @@ public abstract class AbstractConnection implements NIOConnection {
 	protected volatile ByteBuffer writeBuffer;
 	
 	protected final ConcurrentLinkedQueue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+
+	// 写队列流控: writeQueue/writeBuffer 中还没写到socket的字节数
+	protected final AtomicLong writeQueueBytes = new AtomicLong();
+	protected volatile int writeQueueHighWaterMark;
+	protected volatile int writeQueueLowWaterMark;
+	private final Object writeQueueLock = new Object();
+	private volatile boolean writeQueueParked;
+	protected volatile long writeQueueParkedCount;
+	// NIO时连接所在的reactor, 关闭时从它的负载中去掉
+	private volatile NIOReactor reactor;
+	protected volatile long writeQueueParkedNanos;
 	
 	protected volatile int readBufferOffset;
 	protected long lastLargeMessageTime;
@@ -80,7 +95,10 @@ public abstract class AbstractConnection implements NIOConnection {
 	
 	protected volatile boolean isSupportCompress = false;
     protected final ConcurrentLinkedQueue<byte[]> decompressUnfinishedDataQueue = new ConcurrentLinkedQueue<byte[]>();
-    protected final ConcurrentLinkedQueue<byte[]> compressUnfinishedDataQueue = new ConcurrentLinkedQueue<byte[]>();
+	protected volatile MySQLPacketCompressor compressor;
+	// readBuffer 的只读视图, readBuffer 换掉时重建
+	private ByteBuffer readView;
+	private ByteBuffer readViewSource;
 
 	private long idleTimeout;
 
@@ -104,6 +122,19 @@ public abstract class AbstractConnection implements NIOConnection {
 		return charset;
 	}
 
+	/**
+	 * 结果集字符串编码用, 字符集改变后重新创建. 同一连接上的语句是串行执行的
+	 */
+	public StringEncoder getStringEncoder() {
+		StringEncoder encoder = stringEncoder;
+		String cs = charset;
+		if (encoder == null || !encoder.getCharset().equals(cs)) {
+			encoder = new StringEncoder(cs);
+			stringEncoder = encoder;
+		}
+		return encoder;
+	}
+
 	public boolean setCharset(String charset) {
 
 		// 修复PHP字符集设置错误, 如： set names 'utf8'
@@ -126,6 +157,9 @@ public abstract class AbstractConnection implements NIOConnection {
 	}
 
 	public void setSupportCompress(boolean isSupportCompress) {
+		if (isSupportCompress && compressor == null && processor != null) {
+			compressor = new MySQLPacketCompressor(processor.getBufferPool(), this::offerWrite);
+		}
 		this.isSupportCompress = isSupportCompress;
 	}
 
@@ -239,10 +273,77 @@ public abstract class AbstractConnection implements NIOConnection {
 		return processor;
 	}
 
+	void setReactor(NIOReactor reactor) {
+		this.reactor = reactor;
+	}
+
 	public ByteBuffer getReadBuffer() {
 		return readBuffer;
 	}
 
+	public void setWriteQueueWaterMark(int highWaterMark, int lowWaterMark) {
+		this.writeQueueHighWaterMark = highWaterMark;
+		this.writeQueueLowWaterMark = Math.min(lowWaterMark, highWaterMark);
+	}
+
+	public int getWriteQueueHighWaterMark() {
+		return writeQueueHighWaterMark;
+	}
+
+	public int getWriteQueueLowWaterMark() {
+		return writeQueueLowWaterMark;
+	}
+
+	public long getWriteQueueBytes() {
+		return writeQueueBytes.get();
+	}
+
+	public long getWriteQueueParkedCount() {
+		return writeQueueParkedCount;
+	}
+
+	public long getWriteQueueParkedNanos() {
+		return writeQueueParkedNanos;
+	}
+
+	/**
+	 * 写队列超过高水位时阻塞调用线程(后端取数据的线程), 直到socket写到低水位或连接关闭.
+	 * 不能在reactor线程里调用.
+	 */
+	public void waitWriteQueueDrain() {
+		int highWaterMark = writeQueueHighWaterMark;
+		if (highWaterMark <= 0 || writeQueueBytes.get() < highWaterMark) {
+			return;
+		}
+		long start = System.nanoTime();
+		synchronized (writeQueueLock) {
+			writeQueueParked = true;
+			try {
+				while (writeQueueBytes.get() > writeQueueLowWaterMark && !isClosed()) {
+					writeQueueLock.wait(1000L);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				writeQueueParked = false;
+			}
+		}
+		writeQueueParkedCount++;
+		writeQueueParkedNanos += System.nanoTime() - start;
+	}
+
+	/**
+	 * socket写出written字节后调用, 到低水位时唤醒取数据的线程
+	 */
+	protected void onWriteQueueWritten(long written) {
+		long remaining = writeQueueBytes.addAndGet(-written);
+		if (writeQueueParked && remaining <= writeQueueLowWaterMark) {
+			synchronized (writeQueueLock) {
+				writeQueueLock.notifyAll();
+			}
+		}
+	}
+
 	public ByteBuffer allocate() {
 		int size = this.processor.getBufferPool().getChunkSize();
 		ByteBuffer buffer = this.processor.getBufferPool().allocate(size);
@@ -260,6 +361,7 @@ public abstract class AbstractConnection implements NIOConnection {
 	@Override
 	public void handle(byte[] data) {
 		if (isSupportCompress()) {
+			resetCompressSequence();
 			List<byte[]> packs = CompressUtil.decompressMysqlPacket(data, decompressUnfinishedDataQueue);
 			for (byte[] pack : packs) {
 				if (pack.length != 0) {
@@ -271,6 +373,16 @@ public abstract class AbstractConnection implements NIOConnection {
 		}
 	}
 
+	/**
+	 * packet is a read-only view [position, limit) of the read buffer, valid until this method returns.
+	 * connections that do not dispatch views copy it and use handle(byte[])
+	 */
+	public void handle(ByteBuffer packet) {
+		byte[] data = new byte[packet.remaining()];
+		packet.get(data);
+		handle(data);
+	}
+
 	@Override
 	public void register() throws IOException {
 
@@ -322,10 +434,7 @@ public abstract class AbstractConnection implements NIOConnection {
 			if (position >= offset + length && readBuffer != null) {
 				
 				// handle this package
-				readBuffer.position(offset);				
-				byte[] data = new byte[length];
-				readBuffer.get(data, 0, length);
-				handle(data);
+				handle(packetView(offset, length));
 				
 				// maybe handle stmt_close
 				if(isClosed()) {
@@ -377,6 +486,16 @@ public abstract class AbstractConnection implements NIOConnection {
 		}
 	}
 	
+	private ByteBuffer packetView(int offset, int length) {
+		if (readViewSource != readBuffer) {
+			readView = readBuffer.asReadOnlyBuffer();
+			readViewSource = readBuffer;
+		}
+		readView.clear();
+		readView.limit(offset + length).position(offset);
+		return readView;
+	}
+
 	private boolean isConReadBuffer(ByteBuffer buffer) {
 		return buffer.capacity() == processor.getBufferPool().getConReadBuferChunk() && buffer.isDirect();
 	}
@@ -427,12 +546,11 @@ public abstract class AbstractConnection implements NIOConnection {
 	}
 
 	private final void writeNotSend(ByteBuffer buffer) {
-		if (isSupportCompress()) {
-			ByteBuffer newBuffer = CompressUtil.compressMysqlPacket(buffer, this, compressUnfinishedDataQueue);
-			writeQueue.offer(newBuffer);
-			
+		MySQLPacketCompressor compressor = this.compressor;
+		if (isSupportCompress() && compressor != null) {
+			compressor.compress(buffer);
 		} else {
-			writeQueue.offer(buffer);
+			offerWrite(buffer);
 		}
 		
         try {
@@ -451,12 +569,11 @@ public abstract class AbstractConnection implements NIOConnection {
 
     @Override
 	public final void write(ByteBuffer buffer) {
-    	
-		if (isSupportCompress()) {
-			ByteBuffer newBuffer = CompressUtil.compressMysqlPacket(buffer, this, compressUnfinishedDataQueue);
-			writeQueue.offer(newBuffer);
+		MySQLPacketCompressor compressor = this.compressor;
+		if (isSupportCompress() && compressor != null) {
+			compressor.compress(buffer);
 		} else {
-			writeQueue.offer(buffer);
+			offerWrite(buffer);
 		}
 
 		// if ansyn write finishe event got lock before me ,then writing
@@ -471,6 +588,21 @@ public abstract class AbstractConnection implements NIOConnection {
 	}
 
 	
+	private void offerWrite(ByteBuffer buffer) {
+		writeQueueBytes.addAndGet(buffer.position());
+		writeQueue.offer(buffer);
+	}
+
+	/**
+	 * 收到压缩帧, 客户端每个命令重新开始压缩序号
+	 */
+	protected void resetCompressSequence() {
+		MySQLPacketCompressor compressor = this.compressor;
+		if (compressor != null) {
+			compressor.resetSequence();
+		}
+	}
+
 	public ByteBuffer checkWriteBuffer(ByteBuffer buffer, int capacity, boolean writeSocketIfFull) {
 		if (capacity > buffer.remaining()) {
 			if (writeSocketIfFull) {
@@ -517,6 +649,9 @@ public abstract class AbstractConnection implements NIOConnection {
 			if (processor != null) {
 				processor.removeConnection(this);
 			}
+			if (reactor != null) {
+				reactor.removeConnection(this);
+			}
 			this.cleanup();
 			isSupportCompress = false;
 
@@ -555,6 +690,8 @@ public abstract class AbstractConnection implements NIOConnection {
 		if (readBuffer != null) {
 			this.recycle(readBuffer);
 			this.readBuffer = null;
+			this.readView = null;
+			this.readViewSource = null;
 			this.readBufferOffset = 0;
 		}
 		
@@ -567,14 +704,17 @@ public abstract class AbstractConnection implements NIOConnection {
 			decompressUnfinishedDataQueue.clear();
 		}
 		
-		if (!compressUnfinishedDataQueue.isEmpty()) {
-			compressUnfinishedDataQueue.clear();
+		if (compressor != null) {
+			compressor.release();
 		}
 		
 		ByteBuffer buffer = null;
 		while ((buffer = writeQueue.poll()) != null) {
 			recycle(buffer);
 		}
+
+		// 唤醒可能还在等待写队列的线程
+		onWriteQueueWritten(writeQueueBytes.get());
 	}
 	
 	protected int getPacketLength(ByteBuffer buffer, int offset) {
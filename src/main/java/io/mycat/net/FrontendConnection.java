@@ -27,19 +27,21 @@ package io.mycat.net;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.NetworkChannel;
 import java.nio.channels.SocketChannel;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.mycat.MycatServer;
 import io.mycat.backend.BackendConnection;
-import io.mycat.backend.hetu.odbc.escapesequences.QueryParserUtil;
+import io.mycat.backend.hetu.odbc.escapesequences.RewrittenSqlCache;
 import io.mycat.backend.mysql.CharsetUtil;
 import io.mycat.backend.mysql.MySQLMessage;
 import io.mycat.config.Capabilities;
@@ -66,11 +68,14 @@ import io.mycat.util.RandomUtil;
 public abstract class FrontendConnection extends AbstractConnection {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(FrontendConnection.class);
+	private static final AtomicReferenceFieldUpdater<FrontendConnection, BackendConnection> BACK_CONN_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(FrontendConnection.class, BackendConnection.class, "backConn");
 
     // add catalog authen
     public String catalog;
 
-    public BackendConnection backConn;
+    // 登录时在 connect executor 中赋值
+    public volatile BackendConnection backConn;
 	protected long idleTimeout;
 	protected byte[] seed;
 	protected String user;
@@ -87,6 +92,7 @@ public abstract class FrontendConnection extends AbstractConnection {
     protected ColumnFieldsHandler columnFieldsHandler;
 	protected boolean isAccepted;
 	protected boolean isAuthenticated;
+	private final MultiPacketAssembler packetAssembler = new MultiPacketAssembler();
 
 	public FrontendConnection(NetworkChannel channel) throws IOException {
 		super(channel);
@@ -204,6 +210,13 @@ public abstract class FrontendConnection extends AbstractConnection {
 		this.catalog = catalog;
 	}
 
+	/**
+	 * 取走backConn交给连接池或关闭, 并发关闭时只有一方拿到
+	 */
+	public BackendConnection takeBackConn() {
+		return BACK_CONN_UPDATER.getAndSet(this, null);
+	}
+
 	public String getExecuteSql() {
 		return executeSql;
 	}
@@ -406,7 +419,7 @@ public abstract class FrontendConnection extends AbstractConnection {
 				return;
 			}
 
-			sql = QueryParserUtil.parseAndRewriteQuery(sql);
+			sql = RewrittenSqlCache.parseAndRewriteQuery(sql);
 
 			// 记录SQL
 			this.setExecuteSql(sql);
@@ -425,6 +438,14 @@ public abstract class FrontendConnection extends AbstractConnection {
 			writeErrMessage(ErrorCode.ER_UNKNOWN_COM_ERROR, "Prepare unsupported!");
 		}
 	}
+
+	public void stmtSendLongData(ByteBuffer packet) {
+		if(prepareHandler != null) {
+			prepareHandler.sendLongData(packet);
+		} else {
+			writeErrMessage(ErrorCode.ER_UNKNOWN_COM_ERROR, "Prepare unsupported!");
+		}
+	}
 	
 	public void stmtReset(byte[] data) {
 		if(prepareHandler != null) {
@@ -459,6 +480,14 @@ public abstract class FrontendConnection extends AbstractConnection {
 		}
 	}
 
+	public void stmtFetch(byte[] data) {
+		if (prepareHandler != null) {
+			prepareHandler.fetch(data);
+		} else {
+			writeErrMessage(ErrorCode.ER_UNKNOWN_COM_ERROR, "Prepare unsupported!");
+		}
+	}
+
 	public boolean ping(boolean sendResponse) {
 		write(writeToBuffer(OkPacket.OK, allocate()));
 		return true;
@@ -526,7 +555,8 @@ public abstract class FrontendConnection extends AbstractConnection {
 	@Override
 	public void handle(final byte[] data) {
 		this.executeSqlId ++;
-		if (isSupportCompress()) {			
+		if (isSupportCompress()) {
+			resetCompressSequence();
 			List<byte[]> packs = CompressUtil.decompressMysqlPacket(data, decompressUnfinishedDataQueue);
 			for (byte[] pack : packs) {
 				if (pack.length != 0) {
@@ -539,21 +569,56 @@ public abstract class FrontendConnection extends AbstractConnection {
 		}
 	}
 
+	/**
+	 * 未压缩的包直接把读缓冲区的视图交给handler, 不再拷贝成byte[]
+	 */
+	@Override
+	public void handle(ByteBuffer packet) {
+		if (isSupportCompress()) {
+			super.handle(packet);
+			return;
+		}
+		this.executeSqlId ++;
+		rawHandle(packet);
+	}
+
 	public void rawHandle(final byte[] data) {
+		rawHandle(ByteBuffer.wrap(data));
+	}
+
+	public void rawHandle(ByteBuffer packet) {
+		// 超过16M的包由多个包组成, 合并后再处理
+		if (packetAssembler.isAssembling() || MultiPacketAssembler.isSplit(packet)) {
+			if (!packetAssembler.append(packet, maxPacketSize)) {
+				return;
+			}
+			try {
+				dispatch(packetAssembler.packet());
+			} finally {
+				packetAssembler.release();
+			}
+			return;
+		}
+		dispatch(packet);
+	}
 
+	private void dispatch(ByteBuffer packet) {
+		int pos = packet.position();
+		int length = packet.remaining();
 		//load data infile  客户端会发空包 长度为4
-		if (data.length == 4 && data[0] == 0 && data[1] == 0 && data[2] == 0) {
+		if (length == 4 && packet.get(pos) == 0 && packet.get(pos + 1) == 0 && packet.get(pos + 2) == 0) {
 			// load in data空包
-			loadDataInfileEnd(data[3]);
+			loadDataInfileEnd(packet.get(pos + 3));
 			return;
 		}
 		//修改quit的判断,当load data infile 分隔符为\001 时可能会出现误判断的bug.
-		if (data.length>4 && data[0] == 1 && data[1] == 0 && data[2]== 0 && data[3] == 0 &&data[4] == MySQLPacket.COM_QUIT) {
+		if (length > 4 && packet.get(pos) == 1 && packet.get(pos + 1) == 0 && packet.get(pos + 2) == 0
+				&& packet.get(pos + 3) == 0 && packet.get(pos + 4) == MySQLPacket.COM_QUIT) {
 			this.getProcessor().getCommands().doQuit();
 			this.close("quit cmd");
 			return;
 		}
-		handler.handle(data);
+		handler.handle(packet);
 	}
 
 	protected int getServerCapabilities() {
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * payloads of 16M - 1 bytes or more are split by the client into packets of 0xffffff bytes followed by a shorter
+ * (maybe empty) one, see https://dev.mysql.com/doc/internals/en/sending-more-than-16mbyte.html.
+ * the payloads are appended to one buffer that doubles when it is full, so the copying stays linear, and the
+ * result is handed out as one packet: the header keeps the length 0xffffff and takes the id of the last packet,
+ * readers must use the buffer limit instead of the header length.
+ */
+public class MultiPacketAssembler {
+    public static final int MAX_PAYLOAD = 0xffffff;
+
+    private static final int HEADER_SIZE = 4;
+
+    private ByteBuffer buffer;
+
+    /**
+     * the packet [position, limit) is the first part of a split payload
+     */
+    public static boolean isSplit(ByteBuffer packet) {
+        int pos = packet.position();
+        return packet.remaining() >= HEADER_SIZE && (packet.get(pos) & 0xff) == 0xff
+                && (packet.get(pos + 1) & 0xff) == 0xff && (packet.get(pos + 2) & 0xff) == 0xff;
+    }
+
+    public boolean isAssembling() {
+        return buffer != null;
+    }
+
+    /**
+     * append the packet, the position of the packet is moved to its limit
+     *
+     * @return true if it was the last packet of the payload
+     */
+    public boolean append(ByteBuffer packet, int maxPacketSize) {
+        int pos = packet.position();
+        int payload = packet.remaining() - HEADER_SIZE;
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(packet.remaining() * 2);
+            buffer.put(packet);
+        } else {
+            long size = (long) buffer.position() + payload;
+            if (size > maxPacketSize) {
+                release();
+                throw new IllegalArgumentException("Packet size over the limit.");
+            }
+            if (buffer.remaining() < payload) {
+                ByteBuffer bigger = ByteBuffer.allocate((int) Math.min(Math.max(size, buffer.capacity() * 2L),
+                        Integer.MAX_VALUE - 8));
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+            buffer.put(3, packet.get(pos + 3));
+            packet.position(pos + HEADER_SIZE);
+            buffer.put(packet);
+        }
+        return payload < MAX_PAYLOAD;
+    }
+
+    /**
+     * read-only view of the assembled packet, valid until {@link #release()}
+     */
+    public ByteBuffer packet() {
+        ByteBuffer packet = buffer.asReadOnlyBuffer();
+        packet.flip();
+        return packet;
+    }
+
+    public void release() {
+        buffer = null;
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.net;
+
+import io.mycat.backend.mysql.BufferUtil;
+import io.mycat.buffer.BufferPool;
+import io.mycat.util.CompressUtil;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+
+/**
+ * per-connection writer of the mysql compressed protocol (see {@link CompressUtil} for the frame layout).
+ * complete packets of the pooled write buffers are coalesced into frames of about FRAME_SIZE bytes and
+ * deflated by one reusable Deflater into pooled output buffers, an unfinished packet at the end of a buffer
+ * is kept until the rest arrives.
+ * the level is adapted every ADAPT_FRAMES frames: incompressible data is sent stored for a while, the level is
+ * lowered when deflate costs more than NANOS_PER_BYTE_BUDGET and raised again when it is cheap.
+ */
+public class MySQLPacketCompressor {
+    static final int FRAME_SIZE = 16 * 1024;
+    static final int MIN_LEVEL = 1;
+    static final int MAX_LEVEL = 6;
+    static final int ADAPT_FRAMES = 16;
+    static final int SKIP_FRAMES = 64;
+
+    // 压缩头中的长度只有3字节
+    private static final int MAX_FRAME_SIZE = 0xffffff;
+    private static final int HEADER_SIZE = 7;
+    // 约20MB/s, 远高于需要压缩的慢速链路带宽
+    private static final long NANOS_PER_BYTE_BUDGET = 50;
+    private static final int INCOMPRESSIBLE_PERCENT = 90;
+
+    private final BufferPool bufferPool;
+    private final Consumer<ByteBuffer> output;
+    private final Deflater deflater = new Deflater(MAX_LEVEL);
+    // Deflater(java 8)只接受byte[], direct buffer 分段拷贝到这里
+    private final byte[] plain = new byte[FRAME_SIZE];
+    private byte[] deflated = new byte[FRAME_SIZE];
+
+    private ByteBuffer pending;
+    private ByteBuffer out;
+    private int sequence = -1;
+    private int level = MAX_LEVEL;
+    private int skipFrames;
+    private boolean released;
+
+    private int frames;
+    private long framePlainBytes;
+    private long frameCompressedBytes;
+    private long frameNanos;
+    private long plainBytes;
+    private long compressedBytes;
+
+    public MySQLPacketCompressor(BufferPool bufferPool, Consumer<ByteBuffer> output) {
+        this.bufferPool = bufferPool;
+        this.output = output;
+    }
+
+    /**
+     * compress the packets in the buffer (write mode) and recycle it, finished output buffers are passed to output
+     */
+    public synchronized void compress(ByteBuffer input) {
+        try {
+            if (released) {
+                return;
+            }
+            input.flip();
+            if (pending != null) {
+                fillPending(input);
+            }
+            int start = input.position();
+            int end = input.limit();
+            int pos = start;
+            while (end - pos >= 4) {
+                int length = packetLength(input, pos);
+                if (end - pos < length) {
+                    break;
+                }
+                pos += length;
+            }
+            if (pos > start) {
+                compressPackets(input, start, pos);
+            }
+            if (pos < end) {
+                // 不完整的包
+                input.limit(end).position(pos);
+                int remaining = input.remaining();
+                pending = bufferPool.allocate(remaining >= 4 ? packetLength(input, pos) : 4);
+                pending.put(input);
+            }
+            flush();
+        } finally {
+            bufferPool.recycle(input);
+        }
+    }
+
+    /**
+     * the client restarts the compressed sequence with every command, called when a compressed frame is read
+     */
+    public synchronized void resetSequence() {
+        sequence = -1;
+    }
+
+    public synchronized void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        deflater.end();
+        if (pending != null) {
+            bufferPool.recycle(pending);
+            pending = null;
+        }
+        if (out != null) {
+            bufferPool.recycle(out);
+            out = null;
+        }
+    }
+
+    public synchronized int getLevel() {
+        return level;
+    }
+
+    public synchronized long getPlainBytes() {
+        return plainBytes;
+    }
+
+    public synchronized long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    private void fillPending(ByteBuffer input) {
+        while (pending.position() < 4 && input.hasRemaining()) {
+            pending.put(input.get());
+        }
+        if (pending.position() < 4) {
+            return;
+        }
+        int length = packetLength(pending, 0);
+        if (pending.capacity() < length) {
+            ByteBuffer buffer = bufferPool.allocate(length);
+            pending.flip();
+            buffer.put(pending);
+            bufferPool.recycle(pending);
+            pending = buffer;
+        }
+        int count = Math.min(length - pending.position(), input.remaining());
+        int limit = input.limit();
+        input.limit(input.position() + count);
+        pending.put(input);
+        input.limit(limit);
+        if (pending.position() == length) {
+            ByteBuffer packet = pending;
+            pending = null;
+            compressPackets(packet, 0, length);
+            bufferPool.recycle(packet);
+        }
+    }
+
+    private void compressPackets(ByteBuffer src, int from, int to) {
+        int frameStart = from;
+        int pos = from;
+        while (pos < to) {
+            int length = packetLength(src, pos);
+            if (pos > frameStart && pos + length - frameStart > FRAME_SIZE) {
+                writeFrames(src, frameStart, pos - frameStart);
+                frameStart = pos;
+            }
+            pos += length;
+        }
+        writeFrames(src, frameStart, to - frameStart);
+    }
+
+    private void writeFrames(ByteBuffer src, int offset, int length) {
+        while (length > MAX_FRAME_SIZE) {
+            // 16M的包要拆到两个帧里
+            writeFrame(src, offset, MAX_FRAME_SIZE);
+            offset += MAX_FRAME_SIZE;
+            length -= MAX_FRAME_SIZE;
+        }
+        writeFrame(src, offset, length);
+    }
+
+    private void writeFrame(ByteBuffer src, int offset, int length) {
+        int seq = sequence < 0 ? src.get(offset + 3) & 0xff : sequence;
+        sequence = (seq + 1) & 0xff;
+        plainBytes += length;
+        if (length <= CompressUtil.NO_COMPRESS_PACKET_LENGTH) {
+            writeStored(src, offset, length, seq);
+            return;
+        }
+        if (skipFrames > 0) {
+            skipFrames--;
+            writeStored(src, offset, length, seq);
+            return;
+        }
+
+        long begin = System.nanoTime();
+        int compressedLength = deflate(src, offset, length);
+        adapt(length, compressedLength, System.nanoTime() - begin);
+        if (compressedLength >= length) {
+            writeStored(src, offset, length, seq);
+        } else {
+            writeHeader(compressedLength, seq, length);
+            int written = 0;
+            while (written < compressedLength) {
+                ensureOutput(1);
+                int count = Math.min(out.remaining(), compressedLength - written);
+                out.put(deflated, written, count);
+                written += count;
+            }
+            compressedBytes += compressedLength;
+        }
+        if (deflated.length > FRAME_SIZE * 4) {
+            // 大包用过的数组不常驻
+            deflated = new byte[FRAME_SIZE];
+        }
+    }
+
+    /**
+     * deflate src[offset, offset + length) into deflated, stops once the output is not smaller than the input
+     */
+    private int deflate(ByteBuffer src, int offset, int length) {
+        deflater.reset();
+        deflater.setLevel(level);
+        int limit = src.limit();
+        int produced = 0;
+        int done = 0;
+        try {
+            while (done < length) {
+                if (src.hasArray()) {
+                    deflater.setInput(src.array(), src.arrayOffset() + offset, length);
+                    done = length;
+                } else {
+                    int count = Math.min(plain.length, length - done);
+                    src.limit(offset + done + count).position(offset + done);
+                    src.get(plain, 0, count);
+                    deflater.setInput(plain, 0, count);
+                    done += count;
+                }
+                if (done == length) {
+                    deflater.finish();
+                }
+                while (done == length ? !deflater.finished() : !deflater.needsInput()) {
+                    if (produced == deflated.length) {
+                        byte[] bigger = new byte[Math.min(deflated.length * 2, length)];
+                        System.arraycopy(deflated, 0, bigger, 0, produced);
+                        deflated = bigger;
+                    }
+                    produced += deflater.deflate(deflated, produced, deflated.length - produced);
+                    if (produced >= length) {
+                        return produced;
+                    }
+                }
+            }
+            return produced;
+        } finally {
+            src.limit(limit);
+        }
+    }
+
+    private void adapt(int length, int compressedLength, long nanos) {
+        framePlainBytes += length;
+        frameCompressedBytes += Math.min(length, compressedLength);
+        frameNanos += nanos;
+        if (++frames < ADAPT_FRAMES) {
+            return;
+        }
+        if (frameCompressedBytes * 100 >= framePlainBytes * INCOMPRESSIBLE_PERCENT) {
+            // 压不动的数据(图片,已压缩的二进制)直接存储, 过一段时间再试
+            level = MIN_LEVEL;
+            skipFrames = SKIP_FRAMES;
+        } else if (frameNanos > framePlainBytes * NANOS_PER_BYTE_BUDGET) {
+            level = Math.max(MIN_LEVEL, level - 1);
+        } else if (frameNanos * 2 < framePlainBytes * NANOS_PER_BYTE_BUDGET) {
+            level = Math.min(MAX_LEVEL, level + 1);
+        }
+        frames = 0;
+        framePlainBytes = 0;
+        frameCompressedBytes = 0;
+        frameNanos = 0;
+    }
+
+    /**
+     * 未压缩的帧, 压缩前的长度为0
+     */
+    private void writeStored(ByteBuffer src, int offset, int length, int seq) {
+        writeHeader(length, seq, 0);
+        int limit = src.limit();
+        int written = 0;
+        while (written < length) {
+            ensureOutput(1);
+            int count = Math.min(out.remaining(), length - written);
+            src.limit(offset + written + count).position(offset + written);
+            out.put(src);
+            written += count;
+        }
+        src.limit(limit);
+        compressedBytes += length;
+    }
+
+    private void writeHeader(int compressedLength, int seq, int length) {
+        ensureOutput(HEADER_SIZE);
+        BufferUtil.writeUB3(out, compressedLength);
+        out.put((byte) seq);
+        BufferUtil.writeUB3(out, length);
+        compressedBytes += HEADER_SIZE;
+    }
+
+    private void ensureOutput(int size) {
+        if (out != null && out.remaining() < size) {
+            flush();
+        }
+        if (out == null) {
+            out = bufferPool.allocate(bufferPool.getChunkSize());
+        }
+    }
+
+    private void flush() {
+        if (out != null && out.position() > 0) {
+            ByteBuffer buffer = out;
+            out = null;
+            output.accept(buffer);
+        }
+    }
+
+    private static int packetLength(ByteBuffer buffer, int offset) {
+        int length = buffer.get(offset) & 0xff;
+        length |= (buffer.get(offset + 1) & 0xff) << 8;
+        length |= (buffer.get(offset + 2) & 0xff) << 16;
+        return length + 4;
+    }
+}
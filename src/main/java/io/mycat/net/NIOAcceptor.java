@@ -56,6 +56,12 @@ public final class NIOAcceptor extends Thread implements SocketAcceptor{
 	public NIOAcceptor(String name, String bindIp,int port, 
 			FrontendConnectionFactory factory, NIOReactorPool reactorPool)
 			throws IOException {
+		this(name, bindIp, port, factory, reactorPool, 100);
+	}
+
+	public NIOAcceptor(String name, String bindIp, int port,
+			FrontendConnectionFactory factory, NIOReactorPool reactorPool, int backlog)
+			throws IOException {
 		super.setName(name);
 		this.port = port;
 		this.selector = Selector.open();
@@ -64,8 +70,7 @@ public final class NIOAcceptor extends Thread implements SocketAcceptor{
 		/** 设置TCP属性 */
 		serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
 		serverChannel.setOption(StandardSocketOptions.SO_RCVBUF, 1024 * 16 * 2);
-		// backlog=100
-		serverChannel.bind(new InetSocketAddress(bindIp, port), 100);
+		serverChannel.bind(new InetSocketAddress(bindIp, port), backlog);
 		this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
 		this.factory = factory;
 		this.reactorPool = reactorPool;
@@ -139,7 +144,7 @@ public final class NIOAcceptor extends Thread implements SocketAcceptor{
 					.nextProcessor();
 			c.setProcessor(processor);
 			
-			NIOReactor reactor = reactorPool.getNextReactor();
+			NIOReactor reactor = reactorPool.getLeastLoadedReactor(null);
 			reactor.postRegister(c);
 
 		} catch (Exception e) {
@@ -148,7 +153,11 @@ public final class NIOAcceptor extends Thread implements SocketAcceptor{
 		}
 	}
 
-	private static void closeChannel(SocketChannel channel) {
+	static long nextId() {
+		return ID_GENERATOR.getId();
+	}
+
+	static void closeChannel(SocketChannel channel) {
 		if (channel == null) {
 			return;
 		}
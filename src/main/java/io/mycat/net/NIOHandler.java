@@ -23,6 +23,8 @@
  */
 package io.mycat.net;
 
+import java.nio.ByteBuffer;
+
 /**
  * @author mycat
  */
@@ -30,4 +32,14 @@ public interface NIOHandler {
 
     void handle(byte[] data);
 
+    /**
+     * packet is a read-only view [position, limit) of the connection read buffer, it is only valid until this
+     * method returns. handlers that keep or parse the packet later use the copying default.
+     */
+    default void handle(ByteBuffer packet) {
+        byte[] data = new byte[packet.remaining()];
+        packet.get(data);
+        handle(data);
+    }
+
 }
\ No newline at end of file
@@ -57,6 +57,7 @@ public final class NIOProcessor {
 	private final CommandCount commands;
 	private long netInBytes;
 	private long netOutBytes;
+	private long writeSyscalls;
 	
 	// TODO: add by zhuam
 	// reload @@config_all 后, 老的backends  全部移往 backends_old, 待检测任务进行销毁
@@ -121,6 +122,14 @@ public final class NIOProcessor {
 		this.netOutBytes += bytes;
 	}
 
+	public long getWriteSyscalls() {
+		return this.writeSyscalls;
+	}
+
+	public void addWriteSyscalls(long count) {
+		this.writeSyscalls += count;
+	}
+
 	public void addFrontend(FrontendConnection c) {
 		this.frontends.put(c.getId(), c);
 		this.frontendsLength.incrementAndGet();
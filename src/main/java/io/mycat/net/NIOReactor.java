@@ -27,9 +27,12 @@ import java.io.IOException;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.mycat.util.SelectorUtil;
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
@@ -47,8 +50,17 @@ import org.slf4j.Logger; import org.slf4j.LoggerFactory;
  */
 public final class NIOReactor {
 	private static final Logger LOGGER = LoggerFactory.getLogger(NIOReactor.class);
+	// 写队列中每这么多字节按多一个连接计算负载
+	static final long QUEUED_BYTES_PER_CONNECTION = 64 * 1024L;
+	private static final long LOAD_UPDATE_INTERVAL = 1000L * 1000 * 1000;
 	private final String name;
 	private final RW reactorR;
+	// 注册到本reactor的连接, 用于按负载分配新连接
+	private final Set<AbstractConnection> connections = ConcurrentHashMap.newKeySet();
+	private final AtomicLong assignCount = new AtomicLong();
+	private final AtomicLong acceptCount = new AtomicLong();
+	private volatile long queuedBytes;
+	private volatile long acceptRate;
 
 	public NIOReactor(String name) throws IOException {
 		this.name = name;
@@ -60,10 +72,86 @@ public final class NIOReactor {
 	}
 
 	final void postRegister(AbstractConnection c) {
+		connections.add(c);
+		assignCount.incrementAndGet();
+		c.setReactor(this);
 		reactorR.registerQueue.offer(c);
 		reactorR.selector.wakeup();
 	}
 
+	/**
+	 * 由本reactor的selector接收listening socket上的连接 (SO_REUSEPORT时每个reactor一个)
+	 */
+	final void postListen(ServerSocketChannel channel, Acceptor acceptor) {
+		reactorR.listenQueue.offer(new Object[] {channel, acceptor});
+		reactorR.selector.wakeup();
+	}
+
+	final void removeConnection(AbstractConnection c) {
+		connections.remove(c);
+	}
+
+	final void accepted() {
+		acceptCount.incrementAndGet();
+	}
+
+	/**
+	 * 连接数加上写队列积压折算的连接数
+	 */
+	final long getLoad() {
+		return connections.size() + queuedBytes / QUEUED_BYTES_PER_CONNECTION;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getConnectionCount() {
+		return connections.size();
+	}
+
+	public long getQueuedBytes() {
+		return queuedBytes;
+	}
+
+	public long getAssignCount() {
+		return assignCount.get();
+	}
+
+	public long getAcceptCount() {
+		return acceptCount.get();
+	}
+
+	/**
+	 * 最近一秒接收的连接数
+	 */
+	public long getAcceptRate() {
+		return acceptRate;
+	}
+
+	public long getSelectCount() {
+		return reactorR.reactCount;
+	}
+
+	/**
+	 * select()中等待的总时间和处理事件的总时间/最大时间(纳秒)
+	 */
+	public long getSelectNanos() {
+		return reactorR.selectNanos;
+	}
+
+	public long getProcessNanos() {
+		return reactorR.processNanos;
+	}
+
+	public long getMaxProcessNanos() {
+		return reactorR.maxProcessNanos;
+	}
+
+	interface Acceptor {
+		void accept();
+	}
+
 	final Queue<AbstractConnection> getRegisterQueue() {
 		return reactorR.registerQueue;
 	}
@@ -75,7 +163,14 @@ public final class NIOReactor {
 	private final class RW implements Runnable {
 		private volatile Selector selector;
 		private final ConcurrentLinkedQueue<AbstractConnection> registerQueue;
-		private long reactCount;
+		private final ConcurrentLinkedQueue<Object[]> listenQueue = new ConcurrentLinkedQueue<Object[]>();
+		// 只由reactor线程写, 其他线程只读
+		private volatile long reactCount;
+		private volatile long selectNanos;
+		private volatile long processNanos;
+		private volatile long maxProcessNanos;
+		private long lastLoadUpdate = System.nanoTime();
+		private long lastAcceptCount;
 
 		private RW() throws IOException {
 			this.selector = Selector.open();
@@ -93,6 +188,8 @@ public final class NIOReactor {
 					long start = System.nanoTime();
 					tSelector.select(500L);
 					long end = System.nanoTime();
+					selectNanos += end - start;
+					listen(tSelector);
 					register(tSelector);
 					keys = tSelector.selectedKeys();
 					if (keys.size() == 0 && (end - start) < SelectorUtil.MIN_SELECT_TIME_IN_NANO_SECONDS )
@@ -106,7 +203,11 @@ public final class NIOReactor {
 							AbstractConnection con = null;
 							try {
 								Object att = key.attachment();
-								if (att != null) {
+								if (att instanceof Acceptor) {
+									if (key.isValid() && key.isAcceptable()) {
+										((Acceptor) att).accept();
+									}
+								} else if (att != null) {
 									con = (AbstractConnection) att;
 									if (key.isValid() && key.isReadable()) {
 										try {
@@ -145,6 +246,14 @@ public final class NIOReactor {
 							}
 						}
 					}
+					long processed = System.nanoTime();
+					processNanos += processed - end;
+					if (processed - end > maxProcessNanos) {
+						maxProcessNanos = processed - end;
+					}
+					if (processed - lastLoadUpdate > LOAD_UPDATE_INTERVAL) {
+						updateLoad(processed);
+					}
 					if (invalidSelectCount > SelectorUtil.REBUILD_COUNT_THRESHOLD)
 					{
 						final Selector rebuildSelector = SelectorUtil.rebuildSelector(this.selector);
@@ -170,12 +279,39 @@ public final class NIOReactor {
 			}
 		}
 
+		private void updateLoad(long now) {
+			long bytes = 0;
+			for (AbstractConnection c : connections) {
+				bytes += c.getWriteQueueBytes();
+			}
+			queuedBytes = bytes;
+			long accepts = acceptCount.get();
+			acceptRate = (accepts - lastAcceptCount) * 1000L * 1000 * 1000 / (now - lastLoadUpdate);
+			lastAcceptCount = accepts;
+			lastLoadUpdate = now;
+		}
+
+		private void listen(Selector selector) {
+			Object[] listen;
+			while ((listen = listenQueue.poll()) != null) {
+				try {
+					((ServerSocketChannel) listen[0]).register(selector, SelectionKey.OP_ACCEPT, listen[1]);
+				} catch (IOException e) {
+					LOGGER.error(name + " can not listen on " + listen[0], e);
+				}
+			}
+		}
+
 		private void register(Selector selector) {
 			AbstractConnection c = null;
 			if (registerQueue.isEmpty()) {
 				return;
 			}
 			while ((c = registerQueue.poll()) != null) {
+				if (c.isClosed()) {
+					connections.remove(c);
+					continue;
+				}
 				try {
 					((NIOSocketWR) c.getSocketWR()).register(selector);
 					c.register();
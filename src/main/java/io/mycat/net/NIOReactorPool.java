@@ -27,4 +27,34 @@ public class NIOReactorPool {
         }
         return reactors[i];
 	}
+
+	/**
+	 * 负载(连接数和写队列积压)最小的reactor, 相同时优先preferred, 其次从轮询位置开始的第一个
+	 */
+	public NIOReactor getLeastLoadedReactor(NIOReactor preferred) {
+		NIOReactor selected = preferred;
+		long minLoad = preferred == null ? Long.MAX_VALUE : preferred.getLoad();
+		int start = getNextIndex();
+		for (int n = 0; n < reactors.length; n++) {
+			NIOReactor reactor = reactors[(start + n) % reactors.length];
+			long load = reactor.getLoad();
+			if (load < minLoad) {
+				minLoad = load;
+				selected = reactor;
+			}
+		}
+		return selected;
+	}
+
+	private int getNextIndex() {
+		int i = ++nextReactor;
+		if (i >= reactors.length) {
+			i = nextReactor = 0;
+		}
+		return i;
+	}
+
+	public NIOReactor[] getReactors() {
+		return reactors;
+	}
 }
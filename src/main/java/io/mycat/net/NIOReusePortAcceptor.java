@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.net;
+
+import io.mycat.MycatServer;
+import io.mycat.net.factory.FrontendConnectionFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 每个reactor一个设置了SO_REUSEPORT的listening socket, 由内核把新连接分散到各个socket,
+ * 连接在各reactor的selector中接收, 再分给负载最小的reactor. 没有单独的acceptor线程.
+ * SO_REUSEPORT 需要 java 9+ 和支持它的系统(linux), 否则用 NIOAcceptor
+ */
+public final class NIOReusePortAcceptor implements SocketAcceptor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NIOReusePortAcceptor.class);
+    // 一次accept事件最多接收的连接数, 避免一个reactor长时间只做accept
+    private static final int MAX_ACCEPT_PER_SELECT = 64;
+    private static final SocketOption<Boolean> SO_REUSEPORT = reusePortOption();
+
+    private final String name;
+    private final int port;
+    private final FrontendConnectionFactory factory;
+    private final NIOReactorPool reactorPool;
+    private final ServerSocketChannel[] channels;
+
+    public NIOReusePortAcceptor(String name, String bindIp, int port, FrontendConnectionFactory factory,
+            NIOReactorPool reactorPool, int backlog) throws IOException {
+        if (!isSupported()) {
+            throw new IOException("SO_REUSEPORT is not supported");
+        }
+        this.name = name;
+        this.port = port;
+        this.factory = factory;
+        this.reactorPool = reactorPool;
+        NIOReactor[] reactors = reactorPool.getReactors();
+        channels = new ServerSocketChannel[reactors.length];
+        try {
+            for (int i = 0; i < reactors.length; i++) {
+                ServerSocketChannel channel = ServerSocketChannel.open();
+                channels[i] = channel;
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                channel.setOption(SO_REUSEPORT, true);
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, 1024 * 16 * 2);
+                channel.bind(new InetSocketAddress(bindIp, port), backlog);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * StandardSocketOptions.SO_REUSEPORT 从 java 9 开始才有
+     */
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> reusePortOption() {
+        try {
+            SocketOption<Boolean> option = (SocketOption<Boolean>) StandardSocketOptions.class
+                    .getField("SO_REUSEPORT").get(null);
+            try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+                return channel.supportedOptions().contains(option) ? option : null;
+            }
+        } catch (NoSuchFieldException | IllegalAccessException | IOException e) {
+            return null;
+        }
+    }
+
+    public static boolean isSupported() {
+        return SO_REUSEPORT != null;
+    }
+
+    @Override
+    public void start() {
+        NIOReactor[] reactors = reactorPool.getReactors();
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i].postListen(channels[i], new Listener(channels[i], reactors[i]));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    private void close() {
+        for (ServerSocketChannel channel : channels) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOGGER.warn(name + " close listening socket error", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 在owner reactor线程中执行
+     */
+    private final class Listener implements NIOReactor.Acceptor {
+        private final ServerSocketChannel serverChannel;
+        private final NIOReactor owner;
+
+        Listener(ServerSocketChannel serverChannel, NIOReactor owner) {
+            this.serverChannel = serverChannel;
+            this.owner = owner;
+        }
+
+        @Override
+        public void accept() {
+            for (int n = 0; n < MAX_ACCEPT_PER_SELECT; n++) {
+                SocketChannel channel = null;
+                try {
+                    channel = serverChannel.accept();
+                    if (channel == null) {
+                        return;
+                    }
+                    owner.accepted();
+                    channel.configureBlocking(false);
+                    FrontendConnection c = factory.make(channel);
+                    c.setAccepted(true);
+                    c.setId(NIOAcceptor.nextId());
+                    NIOProcessor processor = MycatServer.getInstance().nextProcessor();
+                    c.setProcessor(processor);
+
+                    reactorPool.getLeastLoadedReactor(owner).postRegister(c);
+                } catch (Exception e) {
+                    LOGGER.warn(name, e);
+                    NIOAcceptor.closeChannel(channel);
+                }
+            }
+        }
+    }
+}
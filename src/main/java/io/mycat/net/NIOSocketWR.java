@@ -2,9 +2,12 @@ package io.mycat.net;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.mycat.util.TimeUtil;
@@ -20,11 +23,20 @@ public class NIOSocketWR extends SocketWR {
 	private final AtomicBoolean writing = new AtomicBoolean(false);
 	protected static final Logger LOGGER = LoggerFactory.getLogger(NIOSocketWR.class);
 	public static final ByteBuffer EMPTY_BYTEBUFFER  = ByteBuffer.allocate(1);
+	// gathering write, null 表示每个buffer单独write
+	private ByteBuffer[] gatherBuffers;
+	private int gatheringWriteMaxBytes;
+
 	public NIOSocketWR(AbstractConnection con) {
 		this.con = con;
 		this.channel = (SocketChannel) con.channel;
 	}
 
+	public void setGatheringWrite(int bufferCount, int maxBytes) {
+		this.gatherBuffers = bufferCount > 1 ? new ByteBuffer[bufferCount] : null;
+		this.gatheringWriteMaxBytes = maxBytes;
+	}
+
 	public void register(Selector selector) throws IOException {
 		try {
 			processKey = channel.register(selector, SelectionKey.OP_READ, con);
@@ -83,16 +95,21 @@ public class NIOSocketWR extends SocketWR {
 	}
 
 	private boolean write0() throws IOException {
+		if (gatherBuffers != null) {
+			return gatheringWrite0(channel);
+		}
 
 		int written = 0;
 		ByteBuffer buffer = con.writeBuffer;
 		if (buffer != null) {
 			while (buffer.hasRemaining()) {
 				written = channel.write(buffer);
+				con.processor.addWriteSyscalls(1);
 				if (written > 0) {
 					con.netOutBytes += written;
 					con.processor.addNetOutBytes(written);
 					con.lastWriteTime = TimeUtil.currentTimeMillis();
+					con.onWriteQueueWritten(written);
 				} else {
 					break;
 				}
@@ -118,11 +135,13 @@ public class NIOSocketWR extends SocketWR {
 				while (buffer.hasRemaining()) {
 					written = channel.write(buffer);// java.io.IOException:
 									// Connection reset by peer
+					con.processor.addWriteSyscalls(1);
 					if (written > 0) {
 						con.lastWriteTime = TimeUtil.currentTimeMillis();
 						con.netOutBytes += written;
 						con.processor.addNetOutBytes(written);
 						con.lastWriteTime = TimeUtil.currentTimeMillis();
+						con.onWriteQueueWritten(written);
 					} else {
 						break;
 					}
@@ -142,6 +161,92 @@ public class NIOSocketWR extends SocketWR {
 		return true;
 	}
 
+	/**
+	 * 一次 channel.write(ByteBuffer[]) 写出 writeBuffer 和 writeQueue 头部的多个buffer.
+	 * writeQueue 中的buffer只有完全写出后才出队并回收, 只写了一部分的放到 writeBuffer,
+	 * 没有写到的恢复原状留在队列中.
+	 */
+	boolean gatheringWrite0(GatheringByteChannel channel) throws IOException {
+		ByteBuffer[] buffers = gatherBuffers;
+		while (true) {
+			int count = 0;
+			long bytes = 0;
+			ByteBuffer buffer = con.writeBuffer;
+			boolean hasWriteBuffer = buffer != null;
+			if (hasWriteBuffer) {
+				buffers[count++] = buffer;
+				bytes += buffer.remaining();
+			}
+			Iterator<ByteBuffer> it = con.writeQueue.iterator();
+			while (count < buffers.length && bytes < gatheringWriteMaxBytes && it.hasNext()) {
+				buffer = it.next();
+				if (buffer.limit() == 0) {
+					if (count == 0) {
+						con.writeQueue.poll();
+						con.recycle(buffer);
+						con.close("quit send");
+						return true;
+					}
+					break;
+				}
+				buffer.flip();
+				buffers[count++] = buffer;
+				bytes += buffer.remaining();
+			}
+			if (count == 0) {
+				return true;
+			}
+
+			long written;
+			try {
+				written = channel.write(buffers, 0, count);
+			} catch (IOException e) {
+				// 已 flip 的buffer在连接关闭时随队列一起回收
+				Arrays.fill(buffers, 0, count, null);
+				throw e;
+			}
+			con.processor.addWriteSyscalls(1);
+			if (written > 0) {
+				con.netOutBytes += written;
+				con.processor.addNetOutBytes(written);
+				con.lastWriteTime = TimeUtil.currentTimeMillis();
+				con.onWriteQueueWritten(written);
+			}
+
+			// i 停在第一个没有完全写出的buffer上
+			int i = 0;
+			if (hasWriteBuffer && !buffers[0].hasRemaining()) {
+				con.writeBuffer = null;
+				con.recycle(buffers[0]);
+				i = 1;
+			}
+			if (con.writeBuffer == null) {
+				for (; i < count; i++) {
+					buffer = buffers[i];
+					// 队列头就是这个buffer, 只有写线程出队
+					con.writeQueue.poll();
+					if (buffer.hasRemaining()) {
+						con.writeBuffer = buffer;
+						break;
+					}
+					con.recycle(buffer);
+				}
+			}
+			boolean allWritten = i == count;
+			for (int k = i + 1; k < count; k++) {
+				// 还没写的buffer留在队列中, 撤销flip
+				buffer = buffers[k];
+				buffer.position(buffer.limit());
+				buffer.limit(buffer.capacity());
+			}
+			Arrays.fill(buffers, 0, count, null);
+			if (!allWritten) {
+				con.writeAttempts++;
+				return false;
+			}
+		}
+	}
+
 	private void disableWrite() {
 		try {
 			SelectionKey key = this.processKey;
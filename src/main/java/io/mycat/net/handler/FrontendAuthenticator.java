@@ -34,15 +34,18 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
-import io.mycat.backend.jdbc.JDBCConnection;
 import io.mycat.server.ServerConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.mycat.MycatServer;
+import io.mycat.backend.BackendConnection;
 import io.mycat.backend.mysql.SecurityUtil;
-import io.mycat.backend.hetu.HetuConnectionFactory;
+import io.mycat.backend.hetu.HetuConnection;
+import io.mycat.backend.hetu.HetuConnectionPool;
 import io.mycat.config.Capabilities;
 import io.mycat.config.ErrorCode;
 import io.mycat.config.model.DBHostConfig;
@@ -54,6 +57,7 @@ import io.mycat.net.NIOProcessor;
 import io.mycat.net.mysql.AuthPacket;
 import io.mycat.net.mysql.MySQLPacket;
 import io.mycat.net.mysql.QuitPacket;
+import io.mycat.statistic.ConnectStat;
 
 /**
  * 前端认证处理器
@@ -71,8 +75,6 @@ public class FrontendAuthenticator implements NIOHandler {
         this.source = source;
     }
 
-    private HetuConnectionFactory connectionFactory = new HetuConnectionFactory();
-
     private final String serverSchema = "_server_schema";
 
     private final String serverConnectFile = "_server_connect_file";
@@ -93,6 +95,9 @@ public class FrontendAuthenticator implements NIOHandler {
 
     private final int maxMessageLen = 128;
 
+    // 认证在 connect executor 中进行, 客户端在等待结果时不会再发送认证包; 认证失败后清除, 允许客户端重试
+    private volatile boolean authenticating = false;
+
     @Override
     public void handle(byte[] data) {
         // check quit packet
@@ -100,10 +105,52 @@ public class FrontendAuthenticator implements NIOHandler {
             source.close("quit packet");
             return;
         }
+        if (authenticating) {
+            LOGGER.warn(source + " packet received while authenticating, ignored");
+            return;
+        }
+        authenticating = true;
 
-        AuthPacket auth = new AuthPacket();
+        final AuthPacket auth = new AuthPacket();
         auth.read(data);
 
+        // 建立hetu连接和ping可能很慢, 放到 connect executor 中, 不阻塞reactor上的其它连接
+        final long startTime = System.currentTimeMillis();
+        ConnectStat.getInstance().loginStart();
+        try {
+            connectExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean success = false;
+                    try {
+                        success = authenticate(auth);
+                    } catch (RuntimeException e) {
+                        LOGGER.error(source + " authenticate error", e);
+                        source.close("authenticate error");
+                    } finally {
+                        authenticating = false;
+                        ConnectStat.getInstance().loginEnd(System.currentTimeMillis() - startTime, success);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            authenticating = false;
+            ConnectStat.getInstance().loginEnd(System.currentTimeMillis() - startTime, false);
+            failure(ErrorCode.ER_SERVER_SHUTDOWN, "Connect executor rejected the login.");
+        }
+    }
+
+    protected Executor connectExecutor() {
+        return MycatServer.getInstance().getConnectExecutor();
+    }
+
+    /**
+     * 建立hetu连接, ping后返回认证结果, 在 connect executor 中执行
+     *
+     * @param auth auth packet
+     * @return true if OK packet is sent
+     */
+    private boolean authenticate(AuthPacket auth) {
         String url = auth.connectAttrs.get(serverConnectUrl);
 
         try {
@@ -114,7 +161,7 @@ public class FrontendAuthenticator implements NIOHandler {
 
             if (url == null) {
                 failure(ErrorCode.ER_SERVER_SHUTDOWN, "server url is null");
-                return;
+                return false;
             }
 
             String propertyFile = auth.connectAttrs.get(serverConnectFile);
@@ -139,21 +186,35 @@ public class FrontendAuthenticator implements NIOHandler {
             DBHostConfig config = new DBHostConfig(auth.user, ip, port, url, auth.user, null, null);
             config.setDbType("Hetu");
             String schema = auth.connectAttrs.get(serverSchema);
-            source.backConn = connectionFactory.createNewConnection(config, connectProperty, auth.database, schema);
-            JDBCConnection backConn = (JDBCConnection)source.backConn;
+            long connectTime = System.currentTimeMillis();
+            HetuConnection backConn = HetuConnectionPool.getInstance().borrow(config, connectProperty,
+                    auth.database, schema);
+            source.backConn = backConn;
+            ConnectStat.getInstance().connected(System.currentTimeMillis() - connectTime);
             backConn.setFrontConn((ServerConnection) source);
         } catch (SQLException e) {
             failure(ErrorCode.ER_ACCESS_DENIED_ERROR, "Access denied, error info: " + e.getMessage());
-            return;
+            return false;
+        }
+
+        // 客户端在连接建立期间断开了, close可能在backConn赋值前后执行, 谁取走backConn谁归还
+        if (source.isClosed()) {
+            BackendConnection closed = source.takeBackConn();
+            if (closed instanceof HetuConnection) {
+                HetuConnectionPool.getInstance().release((HetuConnection) closed,
+                        "front connection closed while authenticating");
+            }
+            return false;
         }
 
-        // ping DBserver to make sure backend connection setup successfully
-        if (!source.ping(false)) {
+        // ping DBserver to make sure backend connection setup successfully, 连接池中的空闲连接已校验过
+        if (!((HetuConnection) source.backConn).isReused() && !source.ping(false)) {
+            source.backConn.close("ping failed");
             failure(ErrorCode.ER_SERVER_SHUTDOWN, "DBserver shutdown.");
-            return;
+            return false;
         }
         success(auth);
-
+        return true;
     }
 
     /**
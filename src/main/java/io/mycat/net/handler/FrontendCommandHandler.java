@@ -34,6 +34,8 @@ import io.mycat.statistic.CommandCount;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+
 /**
  * 前端命令处理器
  *
@@ -52,6 +54,24 @@ public class FrontendCommandHandler implements NIOHandler
         this.commands = source.getProcessor().getCommands();
     }
 
+    /**
+     * COM_STMT_SEND_LONG_DATA 直接读视图, 其余命令拷贝成byte[]
+     */
+    @Override
+    public void handle(ByteBuffer packet)
+    {
+        int pos = packet.position();
+        boolean loadData = source.getLoadDataInfileHandler() != null
+                && source.getLoadDataInfileHandler().isStartLoadData();
+        if (!loadData && packet.remaining() > 4 && packet.get(pos + 4) == MySQLPacket.COM_STMT_SEND_LONG_DATA)
+        {
+            commands.doStmtSendLongData();
+            source.stmtSendLongData(packet);
+            return;
+        }
+        NIOHandler.super.handle(packet);
+    }
+
     @Override
     public void handle(byte[] data)
     {
@@ -107,6 +127,10 @@ public class FrontendCommandHandler implements NIOHandler
                 commands.doStmtClose();
                 source.stmtClose(data);
                 break;
+            case MySQLPacket.COM_STMT_FETCH:
+                commands.doStmtFetch();
+                source.stmtFetch(data);
+                break;
             case MySQLPacket.COM_HEARTBEAT:
                 commands.doHeartbeat();
                 source.heartbeat(data);
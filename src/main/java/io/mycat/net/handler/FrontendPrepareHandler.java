@@ -23,6 +23,8 @@
  */
 package io.mycat.net.handler;
 
+import java.nio.ByteBuffer;
+
 /**
  * SQL预处理处理器
  * 
@@ -34,12 +36,26 @@ public interface FrontendPrepareHandler {
     
     void sendLongData(byte[] data);
 
+    /**
+     * packet is a read-only view of the read buffer, valid until this method returns
+     */
+    default void sendLongData(ByteBuffer packet) {
+        byte[] data = new byte[packet.remaining()];
+        packet.get(data);
+        sendLongData(data);
+    }
+
     void reset(byte[] data);
     
     void execute(byte[] data);
 
     void close(byte[] data);
 
+    /**
+     * COM_STMT_FETCH, 读取COM_STMT_EXECUTE打开的游标
+     */
+    void fetch(byte[] data);
+
     void clear();
 
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package io.mycat.net.mysql;
 
 import io.mycat.backend.mysql.MySQLMessage;
 
+import java.nio.ByteBuffer;
+
 /**
  * 
  * <pre>
@@ -43,7 +45,21 @@ public class LongDataPacket extends MySQLPacket {
 		assert code == PACKET_FALG;
 		pstmtId = mm.readUB4();
 		paramId = mm.readUB2();
-		this.longData = mm.readBytes(packetLength - (1 + 4 + 2));
+		// 超过16M的包合并后头部长度不准, 读到结尾
+		this.longData = mm.readBytes();
+	}
+
+	/**
+	 * 只读取头部, packet 的 position 停在数据开始处, 数据不拷贝
+	 */
+	public void readHeader(ByteBuffer packet) {
+		packetLength = (packet.get() & 0xff) | (packet.get() & 0xff) << 8 | (packet.get() & 0xff) << 16;
+		packetId = packet.get();
+		byte code = packet.get();
+		assert code == PACKET_FALG;
+		pstmtId = (packet.get() & 0xffL) | (packet.get() & 0xffL) << 8 | (packet.get() & 0xffL) << 16
+				| (packet.get() & 0xffL) << 24;
+		paramId = (packet.get() & 0xff) | (packet.get() & 0xff) << 8;
 	}
 
 	@Override
@@ -23,6 +23,8 @@
  */
 package io.mycat.net.postgres;
 
+import java.nio.ByteBuffer;
+
 /**
  * <pre>
  * AuthenticationCleartextPassword (B)
@@ -34,5 +36,17 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class AuthenticationCleartextPassword extends PostgresPacket {
+    public AuthenticationCleartextPassword() {
+        setType(AUTHENTICATION);
+    }
+
+    @Override
+    protected int calcPacketSize() {
+        return 8;
+    }
 
+    @Override
+    protected void writeBody(ByteBuffer buffer) {
+        buffer.putInt(3);
+    }
 }
\ No newline at end of file
@@ -23,6 +23,8 @@
  */
 package io.mycat.net.postgres;
 
+import java.nio.ByteBuffer;
+
 /**
  * <pre>
  * AuthenticationOk (B) 
@@ -34,5 +36,17 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class AuthenticationOk extends PostgresPacket {
+    public AuthenticationOk() {
+        setType(AUTHENTICATION);
+    }
+
+    @Override
+    protected int calcPacketSize() {
+        return 8;
+    }
 
+    @Override
+    protected void writeBody(ByteBuffer buffer) {
+        buffer.putInt(0);
+    }
 }
\ No newline at end of file
@@ -23,6 +23,8 @@
  */
 package io.mycat.net.postgres;
 
+import java.nio.ByteBuffer;
+
 /**
  * <pre>
  * BackendKeyData (B) 
@@ -37,5 +39,23 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class BackendKeyData extends PostgresPacket {
+    private final int processId;
+    private final int secretKey;
+
+    public BackendKeyData(int processId, int secretKey) {
+        setType(BACKEND_KEY_DATA);
+        this.processId = processId;
+        this.secretKey = secretKey;
+    }
+
+    @Override
+    protected int calcPacketSize() {
+        return 12;
+    }
 
+    @Override
+    protected void writeBody(ByteBuffer buffer) {
+        buffer.putInt(processId);
+        buffer.putInt(secretKey);
+    }
 }
\ No newline at end of file
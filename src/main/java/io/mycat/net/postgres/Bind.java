@@ -55,5 +55,65 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class Bind extends PostgresPacket {
+    private String portal;
+    private String statement;
+    private short[] parameterFormats;
+    private byte[][] parameterValues;
+    private short[] resultFormats;
 
+    public String getPortal() {
+        return portal;
+    }
+
+    public String getStatement() {
+        return statement;
+    }
+
+    /**
+     * format of parameter i: 0 text, 1 binary
+     */
+    public short getParameterFormat(int i) {
+        return format(parameterFormats, i);
+    }
+
+    /**
+     * null for a NULL parameter
+     */
+    public byte[][] getParameterValues() {
+        return parameterValues;
+    }
+
+    /**
+     * format of result column i: 0 text, 1 binary
+     */
+    public short getResultFormat(int i) {
+        return format(resultFormats, i);
+    }
+
+    private static short format(short[] formats, int i) {
+        if (formats.length == 0) {
+            return 0;
+        }
+        return formats.length == 1 ? formats[0] : formats[i];
+    }
+
+    public static Bind read(byte[] data) {
+        Bind packet = new Bind();
+        PostgresMessage mm = new PostgresMessage(data, 5);
+        packet.portal = mm.readString();
+        packet.statement = mm.readString();
+        packet.parameterFormats = new short[mm.readShort()];
+        for (int i = 0; i < packet.parameterFormats.length; i++) {
+            packet.parameterFormats[i] = mm.readShort();
+        }
+        packet.parameterValues = new byte[mm.readShort()][];
+        for (int i = 0; i < packet.parameterValues.length; i++) {
+            packet.parameterValues[i] = mm.readBytes(mm.readInt());
+        }
+        packet.resultFormats = new short[mm.readShort()];
+        for (int i = 0; i < packet.resultFormats.length; i++) {
+            packet.resultFormats[i] = mm.readShort();
+        }
+        return packet;
+    }
 }
\ No newline at end of file
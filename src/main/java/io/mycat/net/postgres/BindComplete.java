@@ -33,5 +33,7 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class BindComplete extends PostgresPacket {
-
+    public BindComplete() {
+        setType(BIND_COMPLETE);
+    }
 }
\ No newline at end of file
@@ -39,5 +39,24 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class CancelRequest extends PostgresPacket {
+    public static final int CODE = 80877102;
 
+    private int processId;
+    private int secretKey;
+
+    public int getProcessId() {
+        return processId;
+    }
+
+    public int getSecretKey() {
+        return secretKey;
+    }
+
+    public static CancelRequest read(byte[] data) {
+        CancelRequest packet = new CancelRequest();
+        PostgresMessage mm = new PostgresMessage(data, 8);
+        packet.processId = mm.readInt();
+        packet.secretKey = mm.readInt();
+        return packet;
+    }
 }
\ No newline at end of file
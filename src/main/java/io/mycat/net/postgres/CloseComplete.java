@@ -33,5 +33,7 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class CloseComplete extends PostgresPacket {
-
+    public CloseComplete() {
+        setType(CLOSE_COMPLETE);
+    }
 }
\ No newline at end of file
@@ -23,6 +23,8 @@
  */
 package io.mycat.net.postgres;
 
+import java.nio.ByteBuffer;
+
 /**
  * <pre>
  * CommandComplete (B)
@@ -43,5 +45,20 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class CommandComplete extends PostgresPacket {
+    private final byte[] tag;
+
+    public CommandComplete(String tag) {
+        setType(COMMAND_COMPLETE);
+        this.tag = toBytes(tag);
+    }
+
+    @Override
+    protected int calcPacketSize() {
+        return 4 + tag.length + 1;
+    }
 
+    @Override
+    protected void writeBody(ByteBuffer buffer) {
+        writeString(buffer, tag);
+    }
 }
\ No newline at end of file
@@ -23,6 +23,8 @@
  */
 package io.mycat.net.postgres;
 
+import java.nio.ByteBuffer;
+
 /**
  * <pre>
  * DataRow (B) 
@@ -40,5 +42,39 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class DataRow extends PostgresPacket {
+    private final byte[][] values;
+
+    /**
+     * a row of text values, null for NULL. Result sets are written by PostgresRowEncoder, this is
+     * for the few rows the gateway answers itself (SHOW)
+     */
+    public DataRow(String... values) {
+        setType(DATA_ROW);
+        this.values = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            this.values[i] = values[i] == null ? null : toBytes(values[i]);
+        }
+    }
+
+    @Override
+    protected int calcPacketSize() {
+        int size = 4 + 2;
+        for (byte[] value : values) {
+            size += 4 + (value == null ? 0 : value.length);
+        }
+        return size;
+    }
 
+    @Override
+    protected void writeBody(ByteBuffer buffer) {
+        buffer.putShort((short) values.length);
+        for (byte[] value : values) {
+            if (value == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(value.length);
+                buffer.put(value);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -36,5 +36,25 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class Describe extends PostgresPacket {
+    private byte kind;
+    private String name;
 
+    /**
+     * 'S' statement or 'P' portal
+     */
+    public byte getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static Describe read(byte[] data) {
+        Describe packet = new Describe();
+        PostgresMessage mm = new PostgresMessage(data, 5);
+        packet.kind = mm.read();
+        packet.name = mm.readString();
+        return packet;
+    }
 }
\ No newline at end of file
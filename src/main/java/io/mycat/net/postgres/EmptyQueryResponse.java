@@ -34,5 +34,7 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class EmptyQueryResponse extends PostgresPacket {
-
+    public EmptyQueryResponse() {
+        setType(EMPTY_QUERY_RESPONSE);
+    }
 }
\ No newline at end of file
@@ -23,6 +23,8 @@
  */
 package io.mycat.net.postgres;
 
+import java.nio.ByteBuffer;
+
 /**
  * <pre>
  * ErrorResponse (B) 
@@ -42,5 +44,39 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class ErrorResponse extends PostgresPacket {
+    public static final String ERROR = "ERROR";
+    public static final String FATAL = "FATAL";
+
+    private final byte[] severity;
+    private final byte[] code;
+    private final byte[] message;
+
+    /**
+     * @param code SQLSTATE, e.g. 57014 for query_canceled
+     */
+    public ErrorResponse(String severity, String code, String message) {
+        setType(ERROR_RESPONSE);
+        this.severity = toBytes(severity);
+        this.code = toBytes(code);
+        this.message = toBytes(message);
+    }
+
+    @Override
+    protected int calcPacketSize() {
+        return 4 + 2 * (1 + severity.length + 1) + 1 + code.length + 1 + 1 + message.length + 1 + 1;
+    }
 
+    @Override
+    protected void writeBody(ByteBuffer buffer) {
+        buffer.put((byte) 'S');
+        writeString(buffer, severity);
+        // non-localized severity, 9.6+
+        buffer.put((byte) 'V');
+        writeString(buffer, severity);
+        buffer.put((byte) 'C');
+        writeString(buffer, code);
+        buffer.put((byte) 'M');
+        writeString(buffer, message);
+        buffer.put((byte) 0);
+    }
 }
\ No newline at end of file
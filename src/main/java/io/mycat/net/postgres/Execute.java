@@ -38,5 +38,25 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class Execute extends PostgresPacket {
+    private String portal;
+    private int maxRows;
 
+    public String getPortal() {
+        return portal;
+    }
+
+    /**
+     * 0 means no limit
+     */
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    public static Execute read(byte[] data) {
+        Execute packet = new Execute();
+        PostgresMessage mm = new PostgresMessage(data, 5);
+        packet.portal = mm.readString();
+        packet.maxRows = mm.readInt();
+        return packet;
+    }
 }
\ No newline at end of file
@@ -33,5 +33,7 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class NoData extends PostgresPacket {
-
+    public NoData() {
+        setType(NO_DATA);
+    }
 }
\ No newline at end of file
@@ -23,6 +23,8 @@
  */
 package io.mycat.net.postgres;
 
+import java.nio.ByteBuffer;
+
 /**
  * <pre>
  * ParameterDescription (B) 
@@ -36,5 +38,23 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class ParameterDescription extends PostgresPacket {
+    private final int[] typeOids;
+
+    public ParameterDescription(int[] typeOids) {
+        setType(PARAMETER_DESCRIPTION);
+        this.typeOids = typeOids;
+    }
+
+    @Override
+    protected int calcPacketSize() {
+        return 4 + 2 + 4 * typeOids.length;
+    }
 
+    @Override
+    protected void writeBody(ByteBuffer buffer) {
+        buffer.putShort((short) typeOids.length);
+        for (int oid : typeOids) {
+            buffer.putInt(oid);
+        }
+    }
 }
\ No newline at end of file
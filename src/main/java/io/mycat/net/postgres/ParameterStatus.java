@@ -23,6 +23,8 @@
  */
 package io.mycat.net.postgres;
 
+import java.nio.ByteBuffer;
+
 /**
  * <pre>
  * ParameterStatus (B) 
@@ -35,5 +37,23 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class ParameterStatus extends PostgresPacket {
+    private final byte[] name;
+    private final byte[] value;
+
+    public ParameterStatus(String name, String value) {
+        setType(PARAMETER_STATUS);
+        this.name = toBytes(name);
+        this.value = toBytes(value);
+    }
+
+    @Override
+    protected int calcPacketSize() {
+        return 4 + name.length + 1 + value.length + 1;
+    }
 
+    @Override
+    protected void writeBody(ByteBuffer buffer) {
+        writeString(buffer, name);
+        writeString(buffer, value);
+    }
 }
\ No newline at end of file
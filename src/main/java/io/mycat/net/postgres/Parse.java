@@ -43,5 +43,34 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class Parse extends PostgresPacket {
+    private String name;
+    private String sql;
+    private int[] parameterTypes;
 
+    public String getName() {
+        return name;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * oids the client specified, 0 means unspecified
+     */
+    public int[] getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public static Parse read(byte[] data) {
+        Parse packet = new Parse();
+        PostgresMessage mm = new PostgresMessage(data, 5);
+        packet.name = mm.readString();
+        packet.sql = mm.readString();
+        packet.parameterTypes = new int[mm.readShort()];
+        for (int i = 0; i < packet.parameterTypes.length; i++) {
+            packet.parameterTypes[i] = mm.readInt();
+        }
+        return packet;
+    }
 }
\ No newline at end of file
@@ -33,5 +33,7 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class ParseComplete extends PostgresPacket {
-
+    public ParseComplete() {
+        setType(PARSE_COMPLETE);
+    }
 }
\ No newline at end of file
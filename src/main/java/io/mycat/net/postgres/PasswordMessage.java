@@ -37,5 +37,16 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class PasswordMessage extends PostgresPacket {
+    private String password;
 
+    public String getPassword() {
+        return password;
+    }
+
+    public static PasswordMessage read(byte[] data) {
+        PasswordMessage packet = new PasswordMessage();
+        PostgresMessage mm = new PostgresMessage(data, 5);
+        packet.password = mm.readString();
+        return packet;
+    }
 }
\ No newline at end of file
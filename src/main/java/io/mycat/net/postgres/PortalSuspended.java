@@ -34,5 +34,7 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class PortalSuspended extends PostgresPacket {
-
+    public PortalSuspended() {
+        setType(PORTAL_SUSPENDED);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.net.postgres;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * read the fields of a postgres frontend message (big endian, strings are null terminated and
+ * utf8 since client_encoding is always UTF8), like MySQLMessage for mysql packets.
+ */
+public class PostgresMessage {
+    private final byte[] data;
+    private int position;
+
+    public PostgresMessage(byte[] data) {
+        this.data = data;
+    }
+
+    public PostgresMessage(byte[] data, int position) {
+        this.data = data;
+        this.position = position;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public boolean hasRemaining() {
+        return position < data.length;
+    }
+
+    public byte read() {
+        return data[position++];
+    }
+
+    public short readShort() {
+        int i = (data[position++] & 0xff) << 8;
+        i |= data[position++] & 0xff;
+        return (short) i;
+    }
+
+    public int readInt() {
+        int i = (data[position++] & 0xff) << 24;
+        i |= (data[position++] & 0xff) << 16;
+        i |= (data[position++] & 0xff) << 8;
+        i |= data[position++] & 0xff;
+        return i;
+    }
+
+    public String readString() {
+        int start = position;
+        while (position < data.length && data[position] != 0) {
+            position++;
+        }
+        String s = new String(data, start, position - start, StandardCharsets.UTF_8);
+        if (position < data.length) {
+            // skip the terminating 0
+            position++;
+        }
+        return s;
+    }
+
+    /**
+     * length bytes, null for -1 (NULL parameter)
+     */
+    public byte[] readBytes(int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        System.arraycopy(data, position, bytes, 0, length);
+        position += length;
+        return bytes;
+    }
+}
@@ -23,6 +23,11 @@
  */
 package io.mycat.net.postgres;
 
+import io.mycat.net.FrontendConnection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * @see http://www.postgresql.org/docs/9.1/interactive/protocol.html
  * @author mycat
@@ -242,6 +247,40 @@ public abstract class PostgresPacket {
     public void setLength(int length) {
         this.length = length;
     }
+
+    /**
+     * write a backend message: type, Int32 length including self, body
+     */
+    public ByteBuffer write(ByteBuffer buffer, FrontendConnection c) {
+        int size = calcPacketSize();
+        buffer = c.checkWriteBuffer(buffer, 1 + size, true);
+        buffer.put(type);
+        buffer.putInt(size);
+        writeBody(buffer);
+        return buffer;
+    }
+
+    /**
+     * length of the message contents including the Int32 length itself
+     */
+    protected int calcPacketSize() {
+        return 4;
+    }
+
+    protected void writeBody(ByteBuffer buffer) {
+    }
+
+    protected static byte[] toBytes(String str) {
+        return str == null ? new byte[0] : str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * String of the protocol: utf8 bytes with a zero terminator
+     */
+    protected static void writeString(ByteBuffer buffer, byte[] str) {
+        buffer.put(str);
+        buffer.put((byte) 0);
+    }
     
     
 
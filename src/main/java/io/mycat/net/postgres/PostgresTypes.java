@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.net.postgres;
+
+import io.mycat.util.HetuUtil;
+import io.mycat.util.MysqlDefs;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+/**
+ * type oids (pg_type) of the postgres frontend. Result columns are described by the mysql type
+ * in the FieldPacket (HetuUtil), so the mapping is from mysql type to oid.
+ * Binary date/time values count from 2000-01-01 (the postgres epoch) and are the local wall
+ * time, like the values of the mysql binary protocol.
+ */
+public final class PostgresTypes {
+    public static final int UNSPECIFIED = 0;
+    public static final int BOOL = 16;
+    public static final int BYTEA = 17;
+    public static final int INT8 = 20;
+    public static final int INT2 = 21;
+    public static final int INT4 = 23;
+    public static final int TEXT = 25;
+    public static final int FLOAT4 = 700;
+    public static final int FLOAT8 = 701;
+    public static final int BPCHAR = 1042;
+    public static final int VARCHAR = 1043;
+    public static final int DATE = 1082;
+    public static final int TIME = 1083;
+    public static final int TIMESTAMP = 1114;
+    public static final int NUMERIC = 1700;
+
+    public static final short FORMAT_TEXT = 0;
+    public static final short FORMAT_BINARY = 1;
+
+    private static final long EPOCH_DAY_2000 = LocalDate.of(2000, 1, 1).toEpochDay();
+    private static final long EPOCH_SECOND_2000 = EPOCH_DAY_2000 * 86400L;
+
+    private static final short NUMERIC_POS = 0x0000;
+    private static final short NUMERIC_NEG = 0x4000;
+
+    private PostgresTypes() {
+    }
+
+    public static int oid(int mysqlType) {
+        int type = mysqlType & 0xff;
+        if (MysqlDefs.isBianry((byte) type)) {
+            return BYTEA;
+        }
+        switch (type) {
+            case MysqlDefs.FIELD_TYPE_TINY:
+            case MysqlDefs.FIELD_TYPE_SHORT:
+                return INT2;
+            case MysqlDefs.FIELD_TYPE_LONG:
+            case MysqlDefs.FIELD_TYPE_INT24:
+                return INT4;
+            case MysqlDefs.FIELD_TYPE_LONGLONG:
+                return INT8;
+            case MysqlDefs.FIELD_TYPE_FLOAT:
+                return FLOAT4;
+            case MysqlDefs.FIELD_TYPE_DOUBLE:
+                return FLOAT8;
+            case MysqlDefs.FIELD_TYPE_DECIMAL:
+            case MysqlDefs.FIELD_TYPE_NEW_DECIMAL:
+                return NUMERIC;
+            case MysqlDefs.FIELD_TYPE_BIT:
+                return BOOL;
+            case MysqlDefs.FIELD_TYPE_DATE:
+                return DATE;
+            case MysqlDefs.FIELD_TYPE_TIME:
+                return TIME;
+            case MysqlDefs.FIELD_TYPE_DATETIME:
+            case MysqlDefs.FIELD_TYPE_TIMESTAMP:
+                return TIMESTAMP;
+            case MysqlDefs.FIELD_TYPE_STRING:
+                return BPCHAR;
+            case MysqlDefs.FIELD_TYPE_VAR_STRING:
+                return VARCHAR;
+            default:
+                return TEXT;
+        }
+    }
+
+    /**
+     * pg_type.typlen, -1 for variable width
+     */
+    public static short typeSize(int oid) {
+        switch (oid) {
+            case BOOL:
+                return 1;
+            case INT2:
+                return 2;
+            case INT4:
+            case FLOAT4:
+            case DATE:
+                return 4;
+            case INT8:
+            case FLOAT8:
+            case TIME:
+            case TIMESTAMP:
+                return 8;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * mysql type to bind a parameter of the oid with HetuParameterBinder
+     */
+    public static int mysqlType(int oid) {
+        switch (oid) {
+            case BOOL:
+                return MysqlDefs.FIELD_TYPE_BIT;
+            case BYTEA:
+                return MysqlDefs.FIELD_TYPE_BLOB;
+            case INT2:
+                return MysqlDefs.FIELD_TYPE_SHORT;
+            case INT4:
+                return MysqlDefs.FIELD_TYPE_LONG;
+            case INT8:
+                return MysqlDefs.FIELD_TYPE_LONGLONG;
+            case FLOAT4:
+                return MysqlDefs.FIELD_TYPE_FLOAT;
+            case FLOAT8:
+                return MysqlDefs.FIELD_TYPE_DOUBLE;
+            case NUMERIC:
+                return MysqlDefs.FIELD_TYPE_NEW_DECIMAL;
+            case DATE:
+                return MysqlDefs.FIELD_TYPE_DATE;
+            case TIME:
+                return MysqlDefs.FIELD_TYPE_TIME;
+            case TIMESTAMP:
+                return MysqlDefs.FIELD_TYPE_TIMESTAMP;
+            case UNSPECIFIED:
+                return MysqlDefs.FIELD_TYPE_UNKNOWN & 0xff;
+            default:
+                return MysqlDefs.FIELD_TYPE_VAR_STRING;
+        }
+    }
+
+    /**
+     * mysql type of a DESCRIBE INPUT type, e.g. "decimal(10,2)" or "varchar"
+     */
+    public static int mysqlType(String hetuType) {
+        int index = hetuType.indexOf('(');
+        return HetuUtil.serverTypeMysqlStr(index < 0 ? hetuType.trim() : hetuType.substring(0, index).trim()) & 0xff;
+    }
+
+    /**
+     * value of a parameter sent in binary format, as the java object HetuParameterBinder expects
+     */
+    public static Object decodeBinary(int oid, byte[] value) {
+        ByteBuffer buf = ByteBuffer.wrap(value);
+        switch (oid) {
+            case BOOL:
+                return value[0] != 0;
+            case INT2:
+                return buf.getShort();
+            case INT4:
+                return buf.getInt();
+            case INT8:
+                return buf.getLong();
+            case FLOAT4:
+                return buf.getFloat();
+            case FLOAT8:
+                return buf.getDouble();
+            case NUMERIC:
+                return decodeNumeric(buf);
+            case DATE:
+                return Date.valueOf(toLocalDate(buf.getInt()));
+            case TIME:
+                return Time.valueOf(LocalTime.ofNanoOfDay(buf.getLong() * 1000L));
+            case TIMESTAMP:
+                return Timestamp.valueOf(toLocalDateTime(buf.getLong()));
+            case BYTEA:
+                return value;
+            default:
+                return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    public static int toPostgresDays(LocalDate date) {
+        return (int) (date.toEpochDay() - EPOCH_DAY_2000);
+    }
+
+    public static LocalDate toLocalDate(int days) {
+        return LocalDate.ofEpochDay(EPOCH_DAY_2000 + days);
+    }
+
+    public static long toPostgresMicros(LocalDateTime time) {
+        long seconds = time.toEpochSecond(ZoneOffset.UTC) - EPOCH_SECOND_2000;
+        return seconds * 1000000L + time.getNano() / 1000;
+    }
+
+    public static LocalDateTime toLocalDateTime(long micros) {
+        long seconds = Math.floorDiv(micros, 1000000L);
+        int nanos = (int) Math.floorMod(micros, 1000000L) * 1000;
+        return LocalDateTime.ofEpochSecond(seconds + EPOCH_SECOND_2000, nanos, ZoneOffset.UTC);
+    }
+
+    /**
+     * binary numeric: Int16 ndigits, Int16 weight, Int16 sign, Int16 dscale, Int16[ndigits]
+     * base 10000 digits, the first one is multiplied by 10000^weight
+     */
+    public static void writeNumeric(ByteBuffer buffer, BigDecimal v) {
+        short[] digits = numericDigits(v);
+        int weight = digits[0];
+        int ndigits = digits.length - 1;
+        buffer.putShort((short) ndigits);
+        buffer.putShort((short) weight);
+        buffer.putShort(v.signum() < 0 ? NUMERIC_NEG : NUMERIC_POS);
+        buffer.putShort((short) Math.max(v.scale(), 0));
+        for (int i = 1; i < digits.length; i++) {
+            buffer.putShort(digits[i]);
+        }
+    }
+
+    public static int numericSize(BigDecimal v) {
+        return 8 + 2 * (numericDigits(v).length - 1);
+    }
+
+    /**
+     * weight followed by the base 10000 digits, leading and trailing zero digits are stripped
+     */
+    private static short[] numericDigits(BigDecimal v) {
+        String plain = v.abs().toPlainString();
+        int point = plain.indexOf('.');
+        String intPart = point < 0 ? plain : plain.substring(0, point);
+        String fracPart = point < 0 ? "" : plain.substring(point + 1);
+        int intGroups = (intPart.length() + 3) / 4;
+        int fracGroups = (fracPart.length() + 3) / 4;
+        short[] groups = new short[intGroups + fracGroups];
+        // 整数部分左侧补0, 小数部分右侧补0, 按4位一组
+        int pad = intGroups * 4 - intPart.length();
+        for (int i = 0; i < intPart.length(); i++) {
+            int g = (pad + i) / 4;
+            groups[g] = (short) (groups[g] * 10 + (intPart.charAt(i) - '0'));
+        }
+        for (int i = 0; i < fracGroups * 4; i++) {
+            int g = intGroups + i / 4;
+            int d = i < fracPart.length() ? fracPart.charAt(i) - '0' : 0;
+            groups[g] = (short) (groups[g] * 10 + d);
+        }
+        int first = 0;
+        while (first < groups.length && groups[first] == 0) {
+            first++;
+        }
+        int last = groups.length;
+        while (last > first && groups[last - 1] == 0) {
+            last--;
+        }
+        short[] digits = new short[1 + last - first];
+        digits[0] = (short) (first == last ? 0 : intGroups - 1 - first);
+        System.arraycopy(groups, first, digits, 1, last - first);
+        return digits;
+    }
+
+    private static BigDecimal decodeNumeric(ByteBuffer buf) {
+        int ndigits = buf.getShort();
+        int weight = buf.getShort();
+        int sign = buf.getShort() & 0xffff;
+        int dscale = buf.getShort();
+        BigDecimal v = BigDecimal.ZERO;
+        for (int i = 0; i < ndigits; i++) {
+            v = v.add(BigDecimal.valueOf(buf.getShort()).scaleByPowerOfTen(4 * (weight - i)));
+        }
+        v = v.setScale(dscale, RoundingMode.HALF_UP);
+        return sign == NUMERIC_NEG ? v.negate() : v;
+    }
+}
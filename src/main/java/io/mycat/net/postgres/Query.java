@@ -34,5 +34,16 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class Query extends PostgresPacket {
+    private String sql;
 
+    public String getSql() {
+        return sql;
+    }
+
+    public static Query read(byte[] data) {
+        Query packet = new Query();
+        PostgresMessage mm = new PostgresMessage(data, 5);
+        packet.sql = mm.readString();
+        return packet;
+    }
 }
\ No newline at end of file
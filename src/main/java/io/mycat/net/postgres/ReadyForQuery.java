@@ -23,6 +23,8 @@
  */
 package io.mycat.net.postgres;
 
+import java.nio.ByteBuffer;
+
 /**
  * <pre>
  * ReadyForQuery (B) 
@@ -38,5 +40,24 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class ReadyForQuery extends PostgresPacket {
+    public static final byte IDLE = (byte) 'I';
+    public static final byte IN_TRANSACTION = (byte) 'T';
+    public static final byte FAILED_TRANSACTION = (byte) 'E';
+
+    private final byte status;
+
+    public ReadyForQuery(byte status) {
+        setType(READY_FOR_QUERY);
+        this.status = status;
+    }
+
+    @Override
+    protected int calcPacketSize() {
+        return 5;
+    }
 
+    @Override
+    protected void writeBody(ByteBuffer buffer) {
+        buffer.put(status);
+    }
 }
\ No newline at end of file
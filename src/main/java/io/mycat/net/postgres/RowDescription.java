@@ -23,6 +23,10 @@
  */
 package io.mycat.net.postgres;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * <pre>
  * RowDescription (B) 
@@ -48,5 +52,57 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class RowDescription extends PostgresPacket {
+    private final List<Field> fields = new ArrayList<>();
+
+    public RowDescription() {
+        setType(ROW_DESCRIPTION);
+    }
+
+    public void addField(String name, int typeOid, short typeSize, int typeModifier, short format) {
+        fields.add(new Field(toBytes(name), typeOid, typeSize, typeModifier, format));
+    }
+
+    public int getFieldCount() {
+        return fields.size();
+    }
+
+    @Override
+    protected int calcPacketSize() {
+        int size = 4 + 2;
+        for (Field field : fields) {
+            size += field.name.length + 1 + 18;
+        }
+        return size;
+    }
+
+    @Override
+    protected void writeBody(ByteBuffer buffer) {
+        buffer.putShort((short) fields.size());
+        for (Field field : fields) {
+            writeString(buffer, field.name);
+            // not a column of a specific table
+            buffer.putInt(0);
+            buffer.putShort((short) 0);
+            buffer.putInt(field.typeOid);
+            buffer.putShort(field.typeSize);
+            buffer.putInt(field.typeModifier);
+            buffer.putShort(field.format);
+        }
+    }
+
+    private static class Field {
+        private final byte[] name;
+        private final int typeOid;
+        private final short typeSize;
+        private final int typeModifier;
+        private final short format;
 
+        Field(byte[] name, int typeOid, short typeSize, int typeModifier, short format) {
+            this.name = name;
+            this.typeOid = typeOid;
+            this.typeSize = typeSize;
+            this.typeModifier = typeModifier;
+            this.format = format;
+        }
+    }
 }
\ No newline at end of file
@@ -36,5 +36,11 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class SSLRequest extends PostgresPacket {
+    public static final int CODE = 80877103;
 
+    /**
+     * GSSENCRequest (postgres 12+) has the same layout, 1234 in the most significant 16 bits
+     * and 5680 in the least
+     */
+    public static final int GSSENC_CODE = 80877104;
 }
\ No newline at end of file
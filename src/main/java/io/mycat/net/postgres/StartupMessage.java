@@ -23,6 +23,9 @@
  */
 package io.mycat.net.postgres;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * <pre>
  * StartupMessage (F) 
@@ -50,5 +53,41 @@ package io.mycat.net.postgres;
  * @author mycat
  */
 public class StartupMessage extends PostgresPacket {
+    public static final int PROTOCOL_3 = 196608;
+
+    private int protocol;
+    private final Map<String, String> parameters = new LinkedHashMap<>();
+
+    public int getProtocol() {
+        return protocol;
+    }
+
+    public String getParameter(String name) {
+        return parameters.get(name);
+    }
+
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * the code after the length, protocol version or the SSLRequest/CancelRequest code
+     */
+    public static int readCode(byte[] data) {
+        return new PostgresMessage(data, 4).readInt();
+    }
 
+    public static StartupMessage read(byte[] data) {
+        StartupMessage packet = new StartupMessage();
+        PostgresMessage mm = new PostgresMessage(data, 4);
+        packet.protocol = mm.readInt();
+        while (mm.hasRemaining()) {
+            String name = mm.readString();
+            if (name.isEmpty()) {
+                break;
+            }
+            packet.parameters.put(name, mm.readString());
+        }
+        return packet;
+    }
 }
\ No newline at end of file
@@ -82,6 +82,7 @@ public final class ManagerParseShow {
     public static final int DIRECTMEMORY_DETAILl = 46;
 
     public static final int CHECK_GLOBAL = 47;
+    public static final int REACTOR = 48;
 
     public static int parse(String stmt, int offset) {
         int i = offset;
@@ -524,8 +525,39 @@ public final class ManagerParseShow {
         return OTHER;
     }
 
-    // SHOW @@ROUTER
+    // SHOW @@R
     static int show2RCheck(String stmt, int offset) {
+        if (stmt.length() > offset + 1) {
+            char c = stmt.charAt(offset + 1);
+            if (c == 'E' || c == 'e') {
+                return show2ReCheck(stmt, offset);
+            }
+        }
+        return show2RoCheck(stmt, offset);
+    }
+
+    // SHOW @@REACTOR
+    static int show2ReCheck(String stmt, int offset) {
+        if (stmt.length() > offset + "EACTOR".length()) {
+            char c1 = stmt.charAt(++offset);
+            char c2 = stmt.charAt(++offset);
+            char c3 = stmt.charAt(++offset);
+            char c4 = stmt.charAt(++offset);
+            char c5 = stmt.charAt(++offset);
+            char c6 = stmt.charAt(++offset);
+            if ((c1 == 'E' || c1 == 'e') && (c2 == 'A' || c2 == 'a') && (c3 == 'C' || c3 == 'c')
+                    && (c4 == 'T' || c4 == 't') && (c5 == 'O' || c5 == 'o') && (c6 == 'R' || c6 == 'r')) {
+                if (stmt.length() > ++offset && stmt.charAt(offset) != ' ') {
+                    return OTHER;
+                }
+                return REACTOR;
+            }
+        }
+        return OTHER;
+    }
+
+    // SHOW @@ROUTER
+    static int show2RoCheck(String stmt, int offset) {
         if (stmt.length() > offset + "OUTER".length()) {
             char c1 = stmt.charAt(++offset);
             char c2 = stmt.charAt(++offset);
@@ -33,6 +33,7 @@ import java.sql.Statement;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import io.mycat.backend.BackendConnection;
 import io.mycat.backend.jdbc.JDBCConnection;
 import io.mycat.net.mysql.OkPacket;
 import org.slf4j.Logger;
@@ -41,6 +42,10 @@ import org.slf4j.LoggerFactory;
 import io.mycat.MycatServer;
 import io.mycat.backend.mysql.nio.handler.HetuSingleNodeHandler;
 import io.mycat.backend.hetu.HetuConnection;
+import io.mycat.backend.hetu.HetuConnectionPool;
+import io.mycat.backend.hetu.HetuLiveness;
+import io.mycat.backend.mysql.BindValue;
+import io.mycat.backend.mysql.PreparedStatement;
 import io.mycat.config.ErrorCode;
 import io.mycat.config.model.SchemaConfig;
 import io.mycat.net.FrontendConnection;
@@ -52,6 +57,7 @@ import io.mycat.server.response.Heartbeat;
 import io.mycat.server.response.InformationSchemaProfiling;
 import io.mycat.server.response.Ping;
 import io.mycat.server.util.SchemaUtil;
+import io.mycat.statistic.PingStat;
 import io.mycat.util.SplitUtil;
 import io.mycat.util.TimeUtil;
 
@@ -179,6 +185,22 @@ public class ServerConnection extends FrontendConnection {
             }
             return true;
         }
+        if (sendResponse && backConn instanceof HetuConnection) {
+            // 根据后端的已知状态应答, 需要校验时在connect executor中执行, 不阻塞网络线程
+            final long start = System.nanoTime();
+            HetuLiveness.getInstance().ping((HetuConnection) backConn, new HetuLiveness.Callback() {
+                @Override
+                public void done(boolean alive) {
+                    PingStat.getInstance().pinged(System.nanoTime() - start, alive);
+                    if (alive) {
+                        write(writeToBuffer(OkPacket.OK, allocate()));
+                    } else {
+                        writeErrMessage(ErrorCode.ER_SERVER_SHUTDOWN, "DBServer shutdown.");
+                    }
+                }
+            });
+            return true;
+        }
 
         Connection con = ((JDBCConnection)backConn).getCon();
         ResultSet rsOutput = null;
@@ -187,8 +209,12 @@ public class ServerConnection extends FrontendConnection {
         boolean isActive = true;
 
         try {
-            con.setCatalog(catalog);
-            con.setSchema(schema);
+            if (backConn instanceof HetuConnection) {
+                ((HetuConnection) backConn).syncSession(catalog, schema, -1);
+            } else {
+                con.setCatalog(catalog);
+                con.setSchema(schema);
+            }
 
             stmtOutput =  con.createStatement();
             rsOutput   = stmtOutput.executeQuery(executeSql);
@@ -363,6 +389,44 @@ public class ServerConnection extends FrontendConnection {
         }
     }
 
+    /**
+     * COM_STMT_EXECUTE with the values bound on the hetu connection, the sql is not rebuilt.
+     * cursor: the client asked for a read only cursor, rows are sent by COM_STMT_FETCH
+     */
+    public void executePrepared(PreparedStatement pstmt, BindValue[] bindValues, int[] paramTypes, int type,
+            boolean cursor) {
+        // 连接状态检查
+        if (this.isClosed()) {
+            LOGGER.warn("ignore execute ,server connection is closed " + this);
+            return;
+        }
+        // 事务状态检查
+        if (txInterrupted) {
+            writeErrMessage(ErrorCode.ER_YES, "Transaction error, need to rollback." + txInterrputMsg);
+            return;
+        }
+
+        String sql = pstmt.getStatement();
+        this.setExecuteSql(sql);
+        // 防火墙策略, 检查的是带占位符的sql
+        if (!privileges.checkFirewallSQLPolicy(user, sql)) {
+            writeErrMessage(ErrorCode.ERR_WRONG_USED,
+                "The statement is unsafe SQL, reject for user '" + user + "'");
+            return;
+        }
+
+        RouteResultset result = new RouteResultset(sql, type);
+        RouteResultsetNode[] nodes = new RouteResultsetNode[1];
+        nodes[0] = new RouteResultsetNode("dataNode", result.getSqlType(), sql);
+        nodes[0].setSource(result);
+        result.setNodes(nodes);
+        result.setFinishedRoute(true);
+
+        HetuSingleNodeHandler single = new HetuSingleNodeHandler(result, session);
+        single.setPrepared(true);
+        single.executePrepared(pstmt, bindValues, paramTypes, cursor);
+    }
+
     private boolean isNormalSql(int type) {
         return ServerParse.SELECT == type || ServerParse.INSERT == type || ServerParse.UPDATE == type
             || ServerParse.DELETE == type || ServerParse.DDL == type;
@@ -526,7 +590,13 @@ public class ServerConnection extends FrontendConnection {
 		{
 			getLoadDataInfileHandler().clear();
 		}
-        this.backConn.close(reason);
+        // 认证完成前关闭时还没有backConn, hetu连接重置后归还连接池; 重复close时已被取走
+        BackendConnection backConn = takeBackConn();
+        if (backConn instanceof HetuConnection) {
+            HetuConnectionPool.getInstance().release((HetuConnection) backConn, reason);
+        } else if (backConn != null) {
+            backConn.close(reason);
+        }
 	}
 
 	/**
@@ -107,10 +107,8 @@ public class ServerQueryHandler implements FrontendQueryHandler {
 		case ServerParse.KILL:
 			KillHandler.handle(sql, rs >>> 8, c);
 			break;
-		//不支持KILL_Query
 		case ServerParse.KILL_QUERY:
-			LOGGER.warn(new StringBuilder().append("Unsupported command:").append(sql).toString());
-			c.writeErrMessage(ErrorCode.ER_UNKNOWN_COM_ERROR,"Unsupported command");
+			KillHandler.handleQuery(sql, rs >>> 8, c);
 			break;
 		case ServerParse.USE:
 			UseHandler.handle(sql, c, rs >>> 8);
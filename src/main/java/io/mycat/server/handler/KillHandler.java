@@ -24,6 +24,8 @@
 package io.mycat.server.handler;
 
 import io.mycat.MycatServer;
+import io.mycat.backend.BackendConnection;
+import io.mycat.backend.jdbc.JDBCConnection;
 import io.mycat.config.ErrorCode;
 import io.mycat.net.FrontendConnection;
 import io.mycat.net.NIOProcessor;
@@ -31,11 +33,77 @@ import io.mycat.net.mysql.OkPacket;
 import io.mycat.server.ServerConnection;
 import io.mycat.util.StringUtil;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * @author mycat
  */
 public class KillHandler {
 
+    /**
+     * KILL QUERY: cancel正在执行的hetu语句, 被kill的会话保留. Statement.cancel 需要请求hetu coordinator,
+     * 在connect executor中执行后再返回OK
+     */
+    public static void handleQuery(String stmt, int offset, final ServerConnection c) {
+        String id = stmt.substring(offset).trim();
+        if (StringUtil.isEmpty(id)) {
+            c.writeErrMessage(ErrorCode.ER_NO_SUCH_THREAD, "NULL connection id");
+            return;
+        }
+        long value;
+        try {
+            value = Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            c.writeErrMessage(ErrorCode.ER_NO_SUCH_THREAD, "Invalid connection id:" + id);
+            return;
+        }
+
+        FrontendConnection fc = findFrontend(value);
+        if (fc == null) {
+            c.writeErrMessage(ErrorCode.ER_NO_SUCH_THREAD, "Unknown connection id:" + id);
+            return;
+        }
+        BackendConnection backConn = fc.backConn;
+        if (!(backConn instanceof JDBCConnection)) {
+            getOkPacket().write(c);
+            return;
+        }
+        cancelQuery((JDBCConnection) backConn, c, MycatServer.getInstance().getConnectExecutor());
+    }
+
+    /**
+     * 在收到KILL时取得正在执行的语句, 排队的cancel只取消这次执行, 不会作用于之后开始的语句
+     */
+    static void cancelQuery(final JDBCConnection backConn, final ServerConnection c, Executor executor) {
+        final JDBCConnection.Execution execution = backConn.getRunningExecution();
+        if (execution == null) {
+            getOkPacket().write(c);
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    backConn.cancel(execution);
+                    getOkPacket().write(c);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            c.writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, "Too many requests, kill query rejected");
+        }
+    }
+
+    private static FrontendConnection findFrontend(long id) {
+        for (NIOProcessor p : MycatServer.getInstance().getProcessors()) {
+            FrontendConnection fc = p.getFrontends().get(id);
+            if (fc != null) {
+                return fc;
+            }
+        }
+        return null;
+    }
+
     public static void handle(String stmt, int offset, ServerConnection c) {
         String id = stmt.substring(offset).trim();
         if (StringUtil.isEmpty(id)) {
@@ -58,13 +126,7 @@ public class KillHandler {
             }
 
             // get connection and close it
-            FrontendConnection fc = null;
-            NIOProcessor[] processors = MycatServer.getInstance().getProcessors();
-            for (NIOProcessor p : processors) {
-                if ((fc = p.getFrontends().get(value)) != null) {
-                    break;
-                }
-            }
+            FrontendConnection fc = findFrontend(value);
             if (fc != null) {
                 fc.close("killed");
                 getOkPacket().write(c);
@@ -29,6 +29,7 @@ import com.google.common.escape.Escaper;
 import com.google.common.escape.Escapers;
 import com.google.common.escape.Escapers.Builder;
 
+import io.mycat.MycatServer;
 import io.mycat.backend.BackendConnection;
 import io.mycat.backend.hetu.HetuConnection;
 import io.mycat.backend.mysql.BindValue;
@@ -45,9 +46,11 @@ import io.mycat.net.mysql.OkPacket;
 import io.mycat.net.mysql.ResetPacket;
 import io.mycat.server.ServerConnection;
 import io.mycat.server.parser.ServerParse;
+import io.mycat.server.parser.ServerParseSelect;
 import io.mycat.server.response.PreparedStmtResponse;
 import io.mycat.util.HexFormatUtil;
 import io.mycat.util.HetuUtil;
+import io.mycat.util.MysqlDefs;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +58,7 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -88,6 +92,9 @@ public class ServerPrepareHandler implements FrontendPrepareHandler {
 
     private Map<Long, int[]> parameterForId = new ConcurrentHashMap<>();
 
+    // 可以在hetu连接的jdbc PreparedStatement上绑定参数执行的语句, value为sqlType
+    private Map<Long, Integer> serverSideForId = new ConcurrentHashMap<>();
+
     private volatile byte packetId;
 
     public ServerPrepareHandler(ServerConnection source, int maxPreparedStmtCount) {
@@ -116,6 +123,9 @@ public class ServerPrepareHandler implements FrontendPrepareHandler {
         if (sqlType == ServerParse.INSERT || sqlType == ServerParse.UPDATE || sqlType == ServerParse.DELETE) {
             pstmt.setColumnsNumber(0);
         }
+        if (isServerSidePrepared(sql, sqlType)) {
+            serverSideForId.put(pstmt.getId(), sqlType & 0xff);
+        }
 
         int[] ParameterTypes = parameterForId.get(pstmt.getId());
         if (ParameterTypes != null) {
@@ -142,6 +152,22 @@ public class ServerPrepareHandler implements FrontendPrepareHandler {
         }
     }
 
+    /**
+     * 数据直接从读缓冲区追加到参数中
+     */
+    @Override
+    public void sendLongData(ByteBuffer packet) {
+        LongDataPacket longData = new LongDataPacket();
+        longData.readHeader(packet);
+        PreparedStatement pstmt = pstmtForId.get(longData.getPstmtId());
+        if (pstmt != null) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("send long data to prepare sql : " + pstmt);
+            }
+            pstmt.appendLongData(longData.getParamId(), packet);
+        }
+    }
+
     @Override
     public void reset(byte[] data) {
         ResetPacket packet = new ResetPacket();
@@ -153,6 +179,9 @@ public class ServerPrepareHandler implements FrontendPrepareHandler {
                 LOGGER.debug("reset prepare sql : " + pstmtForId.get(pstmtId));
             }
             pstmt.resetLongData();
+            if (source.backConn instanceof HetuConnection) {
+                ((HetuConnection) source.backConn).closeCursor(pstmtId);
+            }
             source.write(OkPacket.OK);
         } else {
             source.writeErrMessage(ErrorCode.ERR_FOUND_EXCEPTION,
@@ -181,6 +210,24 @@ public class ServerPrepareHandler implements FrontendPrepareHandler {
                 return;
             }
             BindValue[] bindValues = packet.values;
+            int[] paramTypes = parameterForId.get(pstmtId);
+            Integer sqlType = serverSideForId.get(pstmtId);
+            if (sqlType != null && paramTypes != null && source.backConn instanceof HetuConnection
+                    && MycatServer.getInstance().getConfig().getSystem().getServerSidePrepare() == 1) {
+                // long data 会在下面被reset, 执行是异步的, 先复制出来
+                for (BindValue bindValue : bindValues) {
+                    if (bindValue.value instanceof ByteArrayOutputStream) {
+                        bindValue.value = ((ByteArrayOutputStream) bindValue.value).toByteArray();
+                    }
+                }
+                // 只有select打开游标, 其他语句和mysql一样忽略游标标志
+                boolean cursor = (packet.flags & MysqlDefs.OPEN_CURSOR_FLAG) != 0
+                        && sqlType == ServerParse.SELECT
+                        && MycatServer.getInstance().getConfig().getSystem().getMaxOpenCursors() > 0;
+                source.executePrepared(pstmt, bindValues, paramTypes, sqlType, cursor);
+                pstmt.resetLongData();
+                return;
+            }
             // 还原sql中的动态参数为实际参数值
             String sql = prepareStmtBindValue(pstmt, bindValues);
             // 执行sql
@@ -199,15 +246,52 @@ public class ServerPrepareHandler implements FrontendPrepareHandler {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("close prepare stmt, stmtId = " + pstmtId);
         }
-        // PreparedStatement pstmt = pstmtForId.remove(pstmtId);
-        // parameterForId.remove(pstmtId);
-        clear();
+        // 只关闭这一个语句, 同一连接上的其它prepared语句和游标保留
+        pstmtForId.remove(pstmtId);
+        parameterForId.remove(pstmtId);
+        serverSideForId.remove(pstmtId);
+        if (source.backConn instanceof HetuConnection) {
+            ((HetuConnection) source.backConn).closePrepared(pstmtId);
+        }
+    }
+
+    @Override
+    public void fetch(byte[] data) {
+        long pstmtId = ByteUtil.readUB4(data, 5);
+        long numRows = ByteUtil.readUB4(data, 9);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("fetch prepare stmt, stmtId = " + pstmtId + ", rows = " + numRows);
+        }
+        if (!(source.backConn instanceof HetuConnection) || !((HetuConnection) source.backConn).hasCursor(pstmtId)) {
+            source.writeErrMessage(ErrorCode.ER_STMT_HAS_NO_OPEN_CURSOR,
+                    "The statement (" + pstmtId + ") has no open cursor.");
+            return;
+        }
+        ((HetuConnection) source.backConn).fetchCursor(pstmtId, numRows, source);
     }
 
     @Override
     public void clear() {
         this.pstmtForId.clear();
         this.parameterForId.clear();
+        this.serverSideForId.clear();
+        if (source.backConn instanceof HetuConnection) {
+            ((HetuConnection) source.backConn).closeAllPrepared();
+        }
+    }
+
+    // select @@xxx, select database() 等由网关自己应答的语句仍然替换参数后走普通查询
+    private static boolean isServerSidePrepared(String sql, int rs) {
+        switch (rs & 0xff) {
+            case ServerParse.SELECT:
+                return ServerParseSelect.parse(sql, rs >>> 8) == ServerParseSelect.OTHER;
+            case ServerParse.INSERT:
+            case ServerParse.UPDATE:
+            case ServerParse.DELETE:
+                return true;
+            default:
+                return false;
+        }
     }
 
     // TODO 获取预处理语句中column的个数
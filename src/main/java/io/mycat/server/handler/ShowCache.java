@@ -27,6 +27,7 @@ import java.nio.ByteBuffer;
 import java.util.Map;
 
 import io.mycat.MycatServer;
+import io.mycat.backend.hetu.HetuMetadataCache;
 import io.mycat.backend.mysql.PacketUtil;
 import io.mycat.cache.CachePool;
 import io.mycat.cache.CacheService;
@@ -43,7 +44,7 @@ import io.mycat.util.StringUtil;
 
 public class ShowCache {
 
-	private static final int FIELD_COUNT = 8;
+	private static final int FIELD_COUNT = 10;
 	private static final ResultSetHeaderPacket header = PacketUtil
 			.getHeader(FIELD_COUNT);
 	private static final FieldPacket[] fields = new FieldPacket[FIELD_COUNT];
@@ -69,6 +70,10 @@ public class ShowCache {
 		fields[i++].packetId = ++packetId;
 		fields[i] = PacketUtil.getField("LAST_PUT", Fields.FIELD_TYPE_LONG);
 		fields[i++].packetId = ++packetId;
+		fields[i] = PacketUtil.getField("MEMORY", Fields.FIELD_TYPE_LONG);
+		fields[i++].packetId = ++packetId;
+		fields[i] = PacketUtil.getField("HIT_RATIO", Fields.FIELD_TYPE_DOUBLE);
+		fields[i++].packetId = ++packetId;
 		eof.packetId = ++packetId;
 	}
 
@@ -109,6 +114,11 @@ public class ShowCache {
 				buffer = row.write(buffer, c,true);
 			}
 		}
+		// hetu元数据缓存不是CachePool, 单独统计
+		RowDataPacket metadataRow = getRow(HetuMetadataCache.CACHE_NAME,
+				HetuMetadataCache.getInstance().getCacheStatic(), c.getCharset());
+		metadataRow.packetId = ++packetId;
+		buffer = metadataRow.write(buffer, c,true);
 
 		// write last eof
 		EOFPacket lastEof = new EOFPacket();
@@ -131,6 +141,10 @@ public class ShowCache {
 		row.add(LongUtil.toBytes(cacheStatic.getPutTimes()));
 		row.add(LongUtil.toBytes(cacheStatic.getLastAccesTime()));
 		row.add(LongUtil.toBytes(cacheStatic.getLastPutTime()));
+		row.add(LongUtil.toBytes(cacheStatic.getMemorySize()));
+		long access = cacheStatic.getAccessTimes();
+		double hitRatio = access == 0 ? 0 : (double) cacheStatic.getHitTimes() / access;
+		row.add(StringUtil.encode(String.valueOf(Math.round(hitRatio * 10000) / 10000.0), charset));
 		return row;
 	}
 
@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.server.postgres;
+
+import io.mycat.MycatServer;
+import io.mycat.backend.hetu.HetuConnection;
+import io.mycat.backend.hetu.HetuConnectionPool;
+import io.mycat.config.model.DBHostConfig;
+import io.mycat.config.model.SystemConfig;
+import io.mycat.net.FrontendConnection;
+import io.mycat.net.NIOHandler;
+import io.mycat.net.NIOProcessor;
+import io.mycat.net.postgres.AuthenticationCleartextPassword;
+import io.mycat.net.postgres.AuthenticationOk;
+import io.mycat.net.postgres.BackendKeyData;
+import io.mycat.net.postgres.CancelRequest;
+import io.mycat.net.postgres.ErrorResponse;
+import io.mycat.net.postgres.ParameterStatus;
+import io.mycat.net.postgres.PasswordMessage;
+import io.mycat.net.postgres.PostgresPacket;
+import io.mycat.net.postgres.ReadyForQuery;
+import io.mycat.net.postgres.SSLRequest;
+import io.mycat.net.postgres.StartupMessage;
+import io.mycat.statistic.ConnectStat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * startup of a postgres connection: SSL is refused, the password is requested in clear text and
+ * passed to hetu, then a hetu connection is borrowed like FrontendAuthenticator does.
+ * database is "catalog" or "catalog.schema", the hetu server can be chosen with
+ * options='-c server_url=host:port' and defaults to postgresServerUrl of server.xml.
+ */
+public class PostgresAuthenticator implements NIOHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgresAuthenticator.class);
+
+    public static final String SERVER_VERSION = "9.6.0";
+
+    private static final String OPTION_SERVER_URL = "server_url";
+    private static final String OPTION_SCHEMA = "schema";
+    private static final String OPTION_SEARCH_PATH = "search_path";
+    private static final int DEFAULT_PORT = 8080;
+
+    private final PostgresConnection source;
+    private final Executor connectExecutor;
+    private StartupMessage startup;
+    // 认证在 connect executor 中进行, 客户端在等待结果时不会再发送消息
+    private boolean authenticating = false;
+
+    public PostgresAuthenticator(PostgresConnection source) {
+        this(source, MycatServer.getInstance().getConnectExecutor());
+    }
+
+    PostgresAuthenticator(PostgresConnection source, Executor connectExecutor) {
+        this.source = source;
+        this.connectExecutor = connectExecutor;
+    }
+
+    @Override
+    public void handle(byte[] data) {
+        if (startup == null) {
+            handleStartup(data);
+            return;
+        }
+        if (data[0] == PostgresPacket.TERMINATE) {
+            source.close("terminate");
+            return;
+        }
+        if (data[0] != PostgresPacket.PASSWORD_MESSAGE || authenticating) {
+            fatal("08P01", "unexpected message while authenticating");
+            return;
+        }
+        authenticating = true;
+        final String password = PasswordMessage.read(data).getPassword();
+
+        // 建立hetu连接可能很慢, 放到 connect executor 中, 不阻塞reactor上的其它连接
+        final long startTime = System.currentTimeMillis();
+        ConnectStat.getInstance().loginStart();
+        try {
+            connectExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean success = false;
+                    try {
+                        success = authenticate(password);
+                    } catch (RuntimeException e) {
+                        LOGGER.error(source + " authenticate error", e);
+                        source.close("authenticate error");
+                    } finally {
+                        ConnectStat.getInstance().loginEnd(System.currentTimeMillis() - startTime, success);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            ConnectStat.getInstance().loginEnd(System.currentTimeMillis() - startTime, false);
+            fatal("53300", "Connect executor rejected the login.");
+        }
+    }
+
+    private void handleStartup(byte[] data) {
+        int code = StartupMessage.readCode(data);
+        if (code == SSLRequest.CODE || code == SSLRequest.GSSENC_CODE) {
+            // 不支持SSL/GSS加密, 客户端继续用明文发送StartupMessage
+            ByteBuffer buffer = source.allocate();
+            buffer.put((byte) 'N');
+            source.write(buffer);
+            return;
+        }
+        if (code == CancelRequest.CODE) {
+            cancel(CancelRequest.read(data));
+            return;
+        }
+        if (code != StartupMessage.PROTOCOL_3) {
+            fatal("0A000", "unsupported frontend protocol " + (code >>> 16) + "." + (code & 0xffff));
+            return;
+        }
+        startup = StartupMessage.read(data);
+        source.startupDone();
+        if (startup.getParameter("user") == null) {
+            fatal("28000", "no user name specified");
+            return;
+        }
+        source.write(new AuthenticationCleartextPassword().write(source.allocate(), source));
+    }
+
+    /**
+     * CancelRequest comes on a new connection which is closed afterwards without a response
+     */
+    private void cancel(CancelRequest request) {
+        FrontendConnection fc = findFrontend(request.getProcessId());
+        if (fc instanceof PostgresConnection) {
+            final PostgresConnection target = (PostgresConnection) fc;
+            final int key = request.getSecretKey();
+            try {
+                connectExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!target.cancel(key)) {
+                            LOGGER.info("cancel request for " + target + " ignored, no statement running");
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("cancel request for " + target + " rejected");
+            }
+        }
+        source.close("cancel request");
+    }
+
+    FrontendConnection findFrontend(long id) {
+        for (NIOProcessor p : MycatServer.getInstance().getProcessors()) {
+            FrontendConnection fc = p.getFrontends().get(id);
+            if (fc != null) {
+                return fc;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * borrow the hetu connection and send the startup responses, in the connect executor
+     *
+     * @return true if ReadyForQuery is sent
+     */
+    private boolean authenticate(String password) {
+        String user = startup.getParameter("user");
+        Map<String, String> options = parseOptions(startup.getParameter("options"));
+        String catalog = startup.getParameter("database");
+        String schema = options.get(OPTION_SCHEMA);
+        if (schema == null) {
+            schema = options.get(OPTION_SEARCH_PATH);
+        }
+        if (catalog != null && catalog.indexOf('.') > 0 && schema == null) {
+            schema = catalog.substring(catalog.indexOf('.') + 1);
+            catalog = catalog.substring(0, catalog.indexOf('.'));
+        }
+        if (catalog != null && (catalog.isEmpty() || catalog.equals(user))) {
+            // psql 默认database为用户名
+            catalog = null;
+        }
+
+        SystemConfig sys = MycatServer.getInstance().getConfig().getSystem();
+        String serverUrl = options.get(OPTION_SERVER_URL);
+        if (serverUrl == null) {
+            serverUrl = sys.getPostgresServerUrl();
+        }
+        String ip = serverUrl;
+        int port = DEFAULT_PORT;
+        int index = serverUrl.indexOf(':');
+        if (index >= 0) {
+            ip = serverUrl.substring(0, index).trim();
+            int end = index + 1;
+            while (end < serverUrl.length() && Character.isDigit(serverUrl.charAt(end))) {
+                end++;
+            }
+            if (end > index + 1) {
+                port = Integer.parseInt(serverUrl.substring(index + 1, end));
+            }
+        }
+
+        Properties connectProperty = new Properties();
+        connectProperty.setProperty("user", user);
+        if (password != null && !password.isEmpty()) {
+            connectProperty.setProperty("password", password);
+        }
+        String url = sys.getJdbcUrlPrefix() + serverUrl;
+        try {
+            DBHostConfig config = new DBHostConfig(user, ip, port, url, user, null, null);
+            config.setDbType("Hetu");
+            long connectTime = System.currentTimeMillis();
+            source.backConn = HetuConnectionPool.getInstance().borrow(config, connectProperty, catalog, schema);
+            ConnectStat.getInstance().connected(System.currentTimeMillis() - connectTime);
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.error(source + " login failed: " + e.getMessage());
+            fatal("28P01", "Access denied, error info: " + e.getMessage());
+            return false;
+        }
+
+        HetuConnection backConn = (HetuConnection) source.backConn;
+        // 客户端在连接建立期间断开了, close时还没有backConn
+        if (source.isClosed()) {
+            HetuConnectionPool.getInstance().release(backConn, "front connection closed while authenticating");
+            return false;
+        }
+        // 连接池中的空闲连接已校验过
+        if (!backConn.isReused() && !backConn.validate()) {
+            source.backConn = null;
+            backConn.close("validate failed");
+            fatal("08006", "DBserver shutdown.");
+            return false;
+        }
+        success(user, catalog, schema);
+        return true;
+    }
+
+    private void success(String user, String catalog, String schema) {
+        source.catalog = catalog;
+        source.setAuthenticated(true);
+        source.setUser(user);
+        source.setCatalog(catalog);
+        source.setSchema(schema);
+        source.setCharset("utf8");
+
+        Map<String, String> status = new LinkedHashMap<>();
+        status.put("server_version", SERVER_VERSION);
+        status.put("server_encoding", "UTF8");
+        status.put("client_encoding", "UTF8");
+        status.put("DateStyle", "ISO, MDY");
+        status.put("integer_datetimes", "on");
+        status.put("standard_conforming_strings", "on");
+        status.put("TimeZone", TimeZone.getDefault().getID());
+        String applicationName = startup.getParameter("application_name");
+        status.put("application_name", applicationName == null ? "" : applicationName);
+
+        // 其它启动参数(如extra_float_digits)作为会话参数, SHOW时返回
+        Map<String, String> parameters = new LinkedHashMap<>(startup.getParameters());
+        parameters.remove("user");
+        parameters.remove("database");
+        parameters.remove("options");
+        parameters.putAll(status);
+        PostgresCommandHandler handler = new PostgresCommandHandler(source, parameters);
+        source.setCommandHandler(handler);
+        source.setHandler(handler);
+        LOGGER.info(source + "'" + user + "' login success (postgres)");
+
+        ByteBuffer buffer = source.allocate();
+        buffer = new AuthenticationOk().write(buffer, source);
+        for (Map.Entry<String, String> entry : status.entrySet()) {
+            buffer = new ParameterStatus(entry.getKey(), entry.getValue()).write(buffer, source);
+        }
+        buffer = new BackendKeyData((int) source.getId(), source.getSecretKey()).write(buffer, source);
+        buffer = new ReadyForQuery(ReadyForQuery.IDLE).write(buffer, source);
+        source.write(buffer);
+    }
+
+    /**
+     * "-c name=value" pairs of the options startup parameter, "--name=value" is accepted as well
+     */
+    static Map<String, String> parseOptions(String options) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (options == null) {
+            return result;
+        }
+        String[] tokens = options.trim().split("\\s+");
+        for (int i = 0; i < tokens.length; i++) {
+            String token = tokens[i];
+            if ("-c".equals(token) && i + 1 < tokens.length) {
+                token = tokens[++i];
+            } else if (token.startsWith("--")) {
+                token = token.substring(2);
+            } else if (token.startsWith("-c")) {
+                token = token.substring(2);
+            } else {
+                continue;
+            }
+            int eq = token.indexOf('=');
+            if (eq > 0) {
+                result.put(token.substring(0, eq).replace('-', '_'), token.substring(eq + 1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * like FrontendAuthenticator.failure(), the client closes the connection after a FATAL error
+     */
+    private void fatal(String code, String msg) {
+        LOGGER.error(source.toString() + msg);
+        source.writeError(ErrorResponse.FATAL, code, msg);
+    }
+}
@@ -0,0 +1,938 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.server.postgres;
+
+import io.mycat.MycatServer;
+import io.mycat.backend.BackendConnection;
+import io.mycat.backend.hetu.HetuConnection;
+import io.mycat.backend.hetu.HetuConnectionPool;
+import io.mycat.backend.hetu.HetuParameterBinder;
+import io.mycat.backend.hetu.PostgresRowEncoder;
+import io.mycat.backend.mysql.BindValue;
+import io.mycat.net.NIOHandler;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.net.postgres.Bind;
+import io.mycat.net.postgres.BindComplete;
+import io.mycat.net.postgres.Close;
+import io.mycat.net.postgres.CloseComplete;
+import io.mycat.net.postgres.CommandComplete;
+import io.mycat.net.postgres.DataRow;
+import io.mycat.net.postgres.Describe;
+import io.mycat.net.postgres.EmptyQueryResponse;
+import io.mycat.net.postgres.ErrorResponse;
+import io.mycat.net.postgres.Execute;
+import io.mycat.net.postgres.NoData;
+import io.mycat.net.postgres.ParameterDescription;
+import io.mycat.net.postgres.ParameterStatus;
+import io.mycat.net.postgres.Parse;
+import io.mycat.net.postgres.ParseComplete;
+import io.mycat.net.postgres.PortalSuspended;
+import io.mycat.net.postgres.PostgresPacket;
+import io.mycat.net.postgres.PostgresTypes;
+import io.mycat.net.postgres.Query;
+import io.mycat.net.postgres.ReadyForQuery;
+import io.mycat.net.postgres.RowDescription;
+import io.mycat.util.HetuUtil;
+import io.mycat.util.MysqlDefs;
+
+import io.netty.util.Timeout;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * simple and extended query protocol of a postgres connection. The messages are queued and
+ * executed one after another in the business executor (jdbc calls block), the responses are
+ * buffered and written at Sync, Flush or the end of a simple Query.
+ * Transaction control, SET/SHOW of the parameters drivers use and USE are answered by the
+ * gateway, other statements are executed by the HetuConnection with the statement timeout and
+ * cancel (CancelRequest) of the mysql frontend.
+ */
+public class PostgresCommandHandler implements NIOHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgresCommandHandler.class);
+
+    static final String INTERNAL_ERROR = "XX000";
+    private static final String QUERY_CANCELED = "57014";
+    private static final String PROTOCOL_VIOLATION = "08P01";
+    private static final String FEATURE_NOT_SUPPORTED = "0A000";
+    private static final String IN_FAILED_TRANSACTION = "25P02";
+    private static final String INVALID_STATEMENT_NAME = "26000";
+    private static final String INVALID_CURSOR_NAME = "34000";
+    private static final String DUPLICATE_STATEMENT = "42P05";
+    private static final String DUPLICATE_CURSOR = "42P03";
+    private static final String INVALID_TEXT_REPRESENTATION = "22P02";
+
+    private static final String CHARSET = "utf8";
+
+    // SET 后用 ParameterStatus 通知客户端的参数(GUC_REPORT)
+    private static final Set<String> REPORTED = new HashSet<>(
+            Arrays.asList("application_name", "DateStyle", "TimeZone", "IntervalStyle"));
+
+    private static final Pattern SET_PATTERN = Pattern.compile(
+            "^SET\\s+(?:LOCAL\\s+)?(TIME\\s+ZONE|[\\w.]+)\\s*(?:TO\\s+|=\\s*)?(.*?)\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final PostgresConnection source;
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<byte[]> messages = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean released = new AtomicBoolean();
+    private volatile String closeReason;
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    // 以下状态只在执行消息的线程中访问, 同一连接的消息按顺序串行执行
+    private final Map<String, String> parameters = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, PostgresStatement> statements = new HashMap<>();
+    private final Map<String, PostgresPortal> portals = new HashMap<>();
+    private ByteBuffer buffer;
+    private boolean skipUntilSync;
+    private boolean inTransaction;
+    private boolean failedTransaction;
+    private long nextStatementId;
+
+    /**
+     * @param parameters run-time parameters reported at startup, answered by SHOW
+     */
+    public PostgresCommandHandler(PostgresConnection source, Map<String, String> parameters) {
+        this(source, parameters, MycatServer.getInstance().getBusinessExecutor());
+    }
+
+    PostgresCommandHandler(PostgresConnection source, Map<String, String> parameters, Executor executor) {
+        this.source = source;
+        this.executor = executor;
+        this.parameters.putAll(parameters);
+    }
+
+    @Override
+    public void handle(byte[] data) {
+        messages.offer(data);
+        schedule();
+    }
+
+    private void schedule() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(drainTask);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            if (closeReason != null) {
+                release();
+            } else {
+                LOGGER.warn(source + " business executor rejected the postgres message");
+                source.close("business executor rejected");
+            }
+        }
+    }
+
+    private void drain() {
+        for (;;) {
+            byte[] data;
+            while (closeReason == null && (data = messages.poll()) != null) {
+                try {
+                    process(data);
+                } catch (RuntimeException e) {
+                    LOGGER.error(source + " postgres message error", e);
+                    source.close("postgres message error");
+                }
+            }
+            if (closeReason != null) {
+                release();
+                draining.set(false);
+                return;
+            }
+            draining.set(false);
+            // handle()在清除draining之前放入的消息
+            if (messages.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * the frontend is closed: cancel the running statement, the portals are closed and the hetu
+     * connection is released after the current message in the executor
+     */
+    public void close(String reason) {
+        closeReason = reason == null ? "" : reason;
+        BackendConnection backConn = source.backConn;
+        if (backConn instanceof HetuConnection && ((HetuConnection) backConn).isRunning()) {
+            final HetuConnection conn = (HetuConnection) backConn;
+            try {
+                // cancel需要请求hetu coordinator
+                MycatServer.getInstance().getConnectExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        conn.cancel();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("cancel of " + conn + " rejected");
+            }
+        }
+        schedule();
+    }
+
+    private void release() {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+        messages.clear();
+        for (PostgresPortal portal : portals.values()) {
+            portal.close();
+        }
+        portals.clear();
+        statements.clear();
+        if (buffer != null) {
+            source.recycle(buffer);
+            buffer = null;
+        }
+        BackendConnection backConn = source.backConn;
+        if (backConn instanceof HetuConnection) {
+            HetuConnection conn = (HetuConnection) backConn;
+            if (inTransaction) {
+                try {
+                    conn.getCon().rollback();
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    LOGGER.warn("rollback of " + conn + " on close failed: " + e.getMessage());
+                }
+            }
+            HetuConnectionPool.getInstance().release(conn, closeReason);
+        }
+    }
+
+    private void process(byte[] data) {
+        byte type = data[0];
+        if (type == PostgresPacket.TERMINATE) {
+            source.close("terminate");
+            return;
+        }
+        if (skipUntilSync && type != PostgresPacket.SYNC) {
+            return;
+        }
+        switch (type) {
+            case PostgresPacket.QUERY:
+                query(Query.read(data).getSql());
+                break;
+            case PostgresPacket.PARSE:
+            case PostgresPacket.BIND:
+            case PostgresPacket.DESCRIBE:
+            case PostgresPacket.EXECUTE:
+            case PostgresPacket.CLOSE:
+                extended(data, type);
+                break;
+            case PostgresPacket.SYNC:
+                sync();
+                break;
+            case PostgresPacket.FLUSH:
+                flush();
+                break;
+            default:
+                writeError(FEATURE_NOT_SUPPORTED, "unsupported message type '" + (char) type + "'");
+                write(new ReadyForQuery(transactionStatus()));
+                flush();
+                break;
+        }
+    }
+
+    private void extended(byte[] data, byte type) {
+        try {
+            switch (type) {
+                case PostgresPacket.PARSE:
+                    parse(Parse.read(data));
+                    break;
+                case PostgresPacket.BIND:
+                    bind(Bind.read(data));
+                    break;
+                case PostgresPacket.DESCRIBE:
+                    describe(Describe.read(data));
+                    break;
+                case PostgresPacket.EXECUTE:
+                    Execute execute = Execute.read(data);
+                    execute(portal(execute.getPortal()), execute.getMaxRows());
+                    break;
+                default:
+                    close(Close.read(data));
+                    break;
+            }
+        } catch (SQLException e) {
+            error(e);
+            // 出错后忽略消息直到Sync
+            skipUntilSync = true;
+        }
+    }
+
+    /**
+     * simple query: each statement is executed with the text format, an error stops the rest
+     */
+    private void query(String sql) {
+        closePortal("");
+        List<String> sqls = PostgresStatement.split(sql);
+        if (sqls.isEmpty()) {
+            write(new EmptyQueryResponse());
+        }
+        for (String s : sqls) {
+            PostgresStatement statement = new PostgresStatement("", s, new int[0], nextStatementId++);
+            PostgresPortal portal = new PostgresPortal("", statement, null);
+            try {
+                open(portal);
+                // simple query只在返回行时发送RowDescription, 没有NoData
+                if (portal.getFieldPks() != null || portal.getLocalRow() != null) {
+                    describePortal(portal);
+                }
+                execute(portal, 0);
+            } catch (SQLException e) {
+                error(e);
+                break;
+            } finally {
+                portal.close();
+            }
+        }
+        write(new ReadyForQuery(transactionStatus()));
+        flush();
+    }
+
+    private void parse(Parse parse) throws SQLException {
+        String name = parse.getName();
+        if (!name.isEmpty() && statements.containsKey(name)) {
+            throw new SQLException("prepared statement \"" + name + "\" already exists", DUPLICATE_STATEMENT);
+        }
+        statements.put(name, new PostgresStatement(name, parse.getSql(), parse.getParameterTypes(),
+                nextStatementId++));
+        write(new ParseComplete());
+    }
+
+    private void bind(Bind bind) throws SQLException {
+        PostgresStatement statement = statements.get(bind.getStatement());
+        if (statement == null) {
+            throw new SQLException("prepared statement \"" + bind.getStatement() + "\" does not exist",
+                    INVALID_STATEMENT_NAME);
+        }
+        String name = bind.getPortal();
+        if (name.isEmpty()) {
+            closePortal(name);
+        } else if (portals.containsKey(name)) {
+            throw new SQLException("portal \"" + name + "\" already exists", DUPLICATE_CURSOR);
+        }
+        if (bind.getParameterValues().length != statement.getParameterCount()) {
+            throw new SQLException("bind message supplies " + bind.getParameterValues().length
+                    + " parameters, but prepared statement \"" + statement.getName() + "\" requires "
+                    + statement.getParameterCount(), PROTOCOL_VIOLATION);
+        }
+        portals.put(name, new PostgresPortal(name, statement, bind));
+        write(new BindComplete());
+    }
+
+    private void describe(Describe describe) throws SQLException {
+        if (describe.getKind() == 'P') {
+            PostgresPortal portal = portal(describe.getName());
+            if (!portal.isOpened()) {
+                open(portal);
+            }
+            describePortal(portal);
+            return;
+        }
+        PostgresStatement statement = statements.get(describe.getName());
+        if (statement == null) {
+            throw new SQLException("prepared statement \"" + describe.getName() + "\" does not exist",
+                    INVALID_STATEMENT_NAME);
+        }
+        if (isLocal(statement)) {
+            write(new ParameterDescription(new int[statement.getParameterCount()]));
+            String show = localShow(statement);
+            if (show != null) {
+                write(textRowDescription(show));
+            } else {
+                write(new NoData());
+            }
+            return;
+        }
+        if (statement.getMetadata() == null && (statement.getParameterCount() > 0 || statement.returnsRows())) {
+            describeInput(statement);
+        }
+        write(new ParameterDescription(parameterTypes(statement)));
+        List<FieldPacket> fieldPks = statement.getMetadata() == null || !statement.returnsRows()
+                ? new ArrayList<FieldPacket>() : statement.getMetadata().copyFieldPks();
+        if (fieldPks.isEmpty()) {
+            write(new NoData());
+        } else {
+            // statement的Describe还不知道结果格式, 都是text
+            write(rowDescription(fieldPks, null));
+        }
+    }
+
+    /**
+     * oids of the parameters: the one given by Parse, otherwise the DESCRIBE INPUT type
+     */
+    private static int[] parameterTypes(PostgresStatement statement) {
+        int[] oids = new int[statement.getParameterCount()];
+        List<String> inputTypes = statement.getMetadata() == null ? null : statement.getMetadata().getParameters();
+        int[] order = statement.getParameterOrder();
+        for (int p = 0; p < oids.length; p++) {
+            oids[p] = statement.getClientType(p);
+            if (oids[p] != PostgresTypes.UNSPECIFIED) {
+                continue;
+            }
+            oids[p] = PostgresTypes.TEXT;
+            for (int i = 0; i < order.length; i++) {
+                if (order[i] == p && inputTypes != null && i < inputTypes.size()) {
+                    int type = PostgresTypes.mysqlType(inputTypes.get(i));
+                    if (type != (MysqlDefs.FIELD_TYPE_UNKNOWN & 0xff)) {
+                        oids[p] = PostgresTypes.oid(type);
+                    }
+                    break;
+                }
+            }
+        }
+        return oids;
+    }
+
+    private void close(Close close) {
+        if (close.getKind() == 'S') {
+            statements.remove(close.getName());
+        } else {
+            closePortal(close.getName());
+        }
+        write(new CloseComplete());
+    }
+
+    private void sync() {
+        skipUntilSync = false;
+        if (!inTransaction) {
+            // 隐式事务在Sync时结束, portal随之关闭
+            closePortals(null);
+        }
+        write(new ReadyForQuery(transactionStatus()));
+        flush();
+    }
+
+    private PostgresPortal portal(String name) throws SQLException {
+        PostgresPortal portal = portals.get(name);
+        if (portal == null) {
+            throw new SQLException("portal \"" + name + "\" does not exist", INVALID_CURSOR_NAME);
+        }
+        return portal;
+    }
+
+    private void closePortal(String name) {
+        PostgresPortal portal = portals.remove(name);
+        if (portal != null) {
+            portal.close();
+        }
+    }
+
+    /**
+     * close all portals except current (the one executing COMMIT)
+     */
+    private void closePortals(PostgresPortal current) {
+        Iterator<PostgresPortal> it = portals.values().iterator();
+        while (it.hasNext()) {
+            PostgresPortal portal = it.next();
+            if (portal != current) {
+                portal.close();
+                it.remove();
+            }
+        }
+    }
+
+    private HetuConnection backConn() throws SQLException {
+        BackendConnection backConn = source.backConn;
+        if (!(backConn instanceof HetuConnection)) {
+            throw new SQLException("no backend connection", INTERNAL_ERROR);
+        }
+        return (HetuConnection) backConn;
+    }
+
+    private void describeInput(PostgresStatement statement) throws SQLException {
+        statement.setMetadata(backConn().describe(statement.getJdbcSql(), statement.getId(), CHARSET));
+    }
+
+    /**
+     * execute the statement of the portal, the rows are fetched by execute()
+     */
+    private void open(PostgresPortal portal) throws SQLException {
+        PostgresStatement statement = portal.getStatement();
+        source.setExecuteSql(statement.getSql());
+        if (failedTransaction && !isTransactionEnd(statement.getKeyword())) {
+            throw new SQLException("current transaction is aborted, commands ignored until end of transaction block",
+                    IN_FAILED_TRANSACTION);
+        }
+        if (isLocal(statement)) {
+            runLocal(portal);
+            return;
+        }
+
+        HetuConnection backConn = backConn();
+        Bind bind = portal.getBind();
+        Statement stmt;
+        if (bind == null) {
+            stmt = backConn.getCon().createStatement();
+        } else {
+            if (statement.getMetadata() == null && statement.needsInputTypes()) {
+                describeInput(statement);
+            }
+            PreparedStatement ps = backConn.getCon().prepareStatement(statement.getJdbcSql());
+            try {
+                bindParameters(ps, statement, bind);
+            } catch (SQLException | RuntimeException e) {
+                ps.close();
+                throw e;
+            }
+            stmt = ps;
+        }
+
+        Timeout deadline = null;
+        boolean success = false;
+        try {
+            deadline = backConn.beginStatement(source.getUser(), source.getCatalog(), source.getSchema(), stmt);
+            boolean hasResult = bind == null ? stmt.execute(statement.getSql()) : ((PreparedStatement) stmt).execute();
+            if (hasResult) {
+                ResultSet rs = stmt.getResultSet();
+                List<FieldPacket> fieldPks = new ArrayList<>();
+                HetuUtil.resultSetToFieldPacket(CHARSET, fieldPks, rs);
+                short[] formats = new short[fieldPks.size()];
+                for (int i = 0; i < formats.length; i++) {
+                    formats[i] = bind == null ? PostgresTypes.FORMAT_TEXT : bind.getResultFormat(i);
+                }
+                portal.opened(stmt, rs, fieldPks, new PostgresRowEncoder(fieldPks, formats), null);
+            } else {
+                int count = stmt.getUpdateCount();
+                stmt.close();
+                backConn.recordSessionProperty(statement.getSql());
+                portal.opened(null, null, null, null, commandTag(statement.getKeyword(), statement.getSql(), count));
+            }
+            success = true;
+        } catch (SQLException e) {
+            stmt.close();
+            throw translate(backConn, e);
+        } finally {
+            backConn.endStatement(deadline, success);
+        }
+    }
+
+    private static void bindParameters(PreparedStatement ps, PostgresStatement statement, Bind bind)
+            throws SQLException {
+        int[] order = statement.getParameterOrder();
+        byte[][] values = bind.getParameterValues();
+        List<String> inputTypes = statement.getMetadata() == null ? null : statement.getMetadata().getParameters();
+        for (int i = 0; i < order.length; i++) {
+            int p = order[i];
+            int oid = statement.getClientType(p);
+            int paramType = PostgresTypes.mysqlType(oid);
+            if (PostgresStatement.isUntyped(oid) && inputTypes != null && i < inputTypes.size()) {
+                paramType = PostgresTypes.mysqlType(inputTypes.get(i));
+            }
+            BindValue bv = new BindValue();
+            bv.isSet = true;
+            byte[] value = values[p];
+            if (value == null) {
+                bv.isNull = true;
+                bv.type = MysqlDefs.FIELD_TYPE_VAR_STRING;
+            } else if (bind.getParameterFormat(p) == PostgresTypes.FORMAT_BINARY) {
+                bv.value = PostgresTypes.decodeBinary(oid, value);
+                bv.type = PostgresTypes.mysqlType(oid);
+            } else {
+                bv.value = textValue(new String(value, StandardCharsets.UTF_8), paramType);
+                bv.type = MysqlDefs.FIELD_TYPE_VAR_STRING;
+            }
+            try {
+                HetuParameterBinder.bind(ps, i + 1, paramType, bv, CHARSET);
+            } catch (IllegalArgumentException e) {
+                throw new SQLException("invalid input value for parameter $" + (p + 1) + ": " + e.getMessage(),
+                        INVALID_TEXT_REPRESENTATION);
+            }
+        }
+    }
+
+    /**
+     * text values postgres accepts but HetuParameterBinder does not, e.g. 't' for a boolean
+     */
+    static String textValue(String value, int paramType) {
+        if ((paramType & 0xff) == MysqlDefs.FIELD_TYPE_BIT) {
+            String v = value.trim().toLowerCase(Locale.ROOT);
+            if (v.equals("t") || v.equals("y") || v.equals("yes") || v.equals("on")) {
+                return "true";
+            }
+        }
+        return value;
+    }
+
+    private void describePortal(PostgresPortal portal) {
+        if (portal.getFieldPks() != null) {
+            write(rowDescription(portal.getFieldPks(), portal.getEncoder()));
+        } else if (portal.getLocalRow() != null) {
+            write(textRowDescription(portal.getLocalRow()[0]));
+        } else {
+            write(new NoData());
+        }
+    }
+
+    /**
+     * send up to maxRows (0: all) rows of the portal. PortalSuspended if the limit is reached,
+     * the next Execute continues with the open ResultSet
+     */
+    private void execute(PostgresPortal portal, int maxRows) throws SQLException {
+        if (!portal.isOpened()) {
+            open(portal);
+        }
+        if (portal.getLocalRow() != null) {
+            write(new DataRow(portal.getLocalRow()[1]));
+            portal.finish(portal.getTag());
+        }
+        ResultSet rs = portal.getResultSet();
+        if (rs == null) {
+            write(new CommandComplete(portal.getTag()));
+            return;
+        }
+
+        HetuConnection backConn = backConn();
+        PostgresRowEncoder encoder = portal.getEncoder();
+        long limit = maxRows > 0 ? maxRows : Long.MAX_VALUE;
+        long n = 0;
+        boolean more = true;
+        Timeout deadline = null;
+        boolean success = false;
+        try {
+            // 分页取数据时hetu可能还在执行, 超时和cancel同样适用
+            deadline = backConn.beginStatement(source.getUser(), source.getCatalog(), source.getSchema(),
+                    portal.getJdbcStatement());
+            while (n < limit) {
+                if (!rs.next()) {
+                    more = false;
+                    break;
+                }
+                buffer = encoder.encode(rs, (byte) 0, out(), source);
+                n++;
+                // stop fetching while the client is slower than hetu
+                source.waitWriteQueueDrain();
+            }
+            success = true;
+        } catch (SQLException e) {
+            portal.close();
+            throw translate(backConn, e);
+        } finally {
+            backConn.endStatement(deadline, success);
+        }
+        long rows = portal.addRows(n);
+        if (more) {
+            write(new PortalSuspended());
+        } else {
+            portal.finish("SELECT " + rows);
+            write(new CommandComplete(portal.getTag()));
+        }
+    }
+
+    private static boolean isTransactionEnd(String keyword) {
+        return keyword.equals("COMMIT") || keyword.equals("END") || keyword.equals("ROLLBACK")
+                || keyword.equals("ABORT");
+    }
+
+    /**
+     * statements answered by the gateway: hetu has no BEGIN, and drivers send SET/SHOW/RESET of
+     * postgres parameters hetu does not know. SET/RESET SESSION, SET ROLE and other SHOWs go to hetu.
+     */
+    private boolean isLocal(PostgresStatement statement) {
+        switch (statement.getKeyword()) {
+            case "BEGIN":
+            case "START":
+            case "COMMIT":
+            case "END":
+            case "ROLLBACK":
+            case "ABORT":
+            case "DISCARD":
+            case "USE":
+                return true;
+            case "RESET":
+                return !secondWord(statement.getSql()).equals("SESSION");
+            case "SET":
+                String second = secondWord(statement.getSql());
+                return !second.equals("SESSION") && !second.equals("ROLE") && !second.equals("PATH")
+                        || statement.getSql().toUpperCase(Locale.ROOT).contains("CHARACTERISTICS");
+            case "SHOW":
+                return localShow(statement) != null;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * name of the parameter if the statement is SHOW of a local parameter
+     */
+    private String localShow(PostgresStatement statement) {
+        if (!statement.getKeyword().equals("SHOW")) {
+            return null;
+        }
+        String name = rest(statement.getSql());
+        if (name.equalsIgnoreCase("search_path") || parameters.containsKey(name)) {
+            return name;
+        }
+        return null;
+    }
+
+    private void runLocal(PostgresPortal portal) throws SQLException {
+        PostgresStatement statement = portal.getStatement();
+        String sql = statement.getSql();
+        String tag;
+        String[] row = null;
+        switch (statement.getKeyword()) {
+            case "BEGIN":
+            case "START":
+                if (!inTransaction) {
+                    backConn().setAutoCommit(false);
+                    inTransaction = true;
+                }
+                tag = "BEGIN";
+                break;
+            case "COMMIT":
+            case "END":
+                tag = failedTransaction ? "ROLLBACK" : "COMMIT";
+                endTransaction(portal, !failedTransaction);
+                break;
+            case "ROLLBACK":
+            case "ABORT":
+                tag = "ROLLBACK";
+                endTransaction(portal, false);
+                break;
+            case "SET":
+                tag = "SET";
+                set(sql);
+                break;
+            case "SHOW":
+                tag = "SHOW";
+                String name = localShow(statement);
+                String value = name.equalsIgnoreCase("search_path") ? source.getSchema() : parameters.get(name);
+                row = new String[] {name, value};
+                break;
+            case "USE":
+                tag = "USE";
+                String target = unquote(rest(sql));
+                int dot = target.indexOf('.');
+                if (dot > 0) {
+                    source.setCatalog(target.substring(0, dot));
+                    source.setSchema(target.substring(dot + 1));
+                } else {
+                    source.setSchema(target);
+                }
+                break;
+            case "DISCARD":
+                tag = "DISCARD ALL";
+                closePortals(portal);
+                statements.clear();
+                break;
+            default:
+                tag = statement.getKeyword();
+                break;
+        }
+        portal.openedLocal(tag, row);
+    }
+
+    private void endTransaction(PostgresPortal current, boolean commit) throws SQLException {
+        if (!inTransaction) {
+            return;
+        }
+        HetuConnection backConn = backConn();
+        try {
+            if (commit) {
+                backConn.getCon().commit();
+            } else {
+                backConn.getCon().rollback();
+            }
+        } finally {
+            inTransaction = false;
+            failedTransaction = false;
+            closePortals(current);
+            backConn.setAutoCommit(true);
+        }
+    }
+
+    private void set(String sql) {
+        Matcher matcher = SET_PATTERN.matcher(sql.trim());
+        if (!matcher.find() || sql.toUpperCase(Locale.ROOT).contains("CHARACTERISTICS")) {
+            // SET SESSION CHARACTERISTICS AS TRANSACTION ... 忽略
+            return;
+        }
+        String name = matcher.group(1).toUpperCase(Locale.ROOT).startsWith("TIME")
+                ? "TimeZone" : matcher.group(1);
+        String value = unquote(matcher.group(2));
+        if (name.equalsIgnoreCase("search_path") || name.equalsIgnoreCase("schema")) {
+            int comma = value.indexOf(',');
+            source.setSchema(unquote(comma < 0 ? value : value.substring(0, comma)));
+            return;
+        }
+        if (name.equalsIgnoreCase("client_encoding")) {
+            // 结果总是utf8
+            return;
+        }
+        parameters.put(name, value);
+        for (String reported : REPORTED) {
+            if (reported.equalsIgnoreCase(name)) {
+                write(new ParameterStatus(reported, value));
+            }
+        }
+    }
+
+    private static String secondWord(String sql) {
+        String[] words = sql.trim().split("\\s+", 3);
+        return words.length < 2 ? "" : words[1].toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * the statement without its first word and the trailing ;
+     */
+    private static String rest(String sql) {
+        String[] words = sql.trim().split("\\s+", 2);
+        String rest = words.length < 2 ? "" : words[1].trim();
+        return rest.endsWith(";") ? rest.substring(0, rest.length() - 1).trim() : rest;
+    }
+
+    private static String unquote(String value) {
+        String v = value.trim();
+        if (v.length() >= 2 && (v.charAt(0) == '\'' || v.charAt(0) == '"') && v.charAt(v.length() - 1) == v.charAt(0)) {
+            return v.substring(1, v.length() - 1);
+        }
+        return v;
+    }
+
+    static String commandTag(String keyword, String sql, int count) {
+        switch (keyword) {
+            case "INSERT":
+                return "INSERT 0 " + Math.max(count, 0);
+            case "UPDATE":
+            case "DELETE":
+            case "MERGE":
+                return keyword + " " + Math.max(count, 0);
+            case "CREATE":
+            case "DROP":
+            case "ALTER":
+                return keyword + " " + secondWord(sql);
+            default:
+                return keyword;
+        }
+    }
+
+    private static RowDescription rowDescription(List<FieldPacket> fieldPks, PostgresRowEncoder encoder) {
+        RowDescription description = new RowDescription();
+        int i = 0;
+        for (FieldPacket fieldPk : fieldPks) {
+            int oid = PostgresTypes.oid(fieldPk.type);
+            short format = encoder == null ? PostgresTypes.FORMAT_TEXT : encoder.getFormat(i);
+            String name = fieldPk.name == null ? "" : new String(fieldPk.name, StandardCharsets.UTF_8);
+            description.addField(name, oid, PostgresTypes.typeSize(oid), -1, format);
+            i++;
+        }
+        return description;
+    }
+
+    private static RowDescription textRowDescription(String name) {
+        RowDescription description = new RowDescription();
+        description.addField(name, PostgresTypes.TEXT, (short) -1, -1, PostgresTypes.FORMAT_TEXT);
+        return description;
+    }
+
+    private byte transactionStatus() {
+        if (failedTransaction) {
+            return ReadyForQuery.FAILED_TRANSACTION;
+        }
+        return inTransaction ? ReadyForQuery.IN_TRANSACTION : ReadyForQuery.IDLE;
+    }
+
+    /**
+     * cancel and statement timeout are reported as query_canceled like postgres does
+     */
+    private static SQLException translate(HetuConnection backConn, SQLException e) {
+        if (backConn.isTimedOut()) {
+            return new SQLException("canceling statement due to statement timeout", QUERY_CANCELED, e);
+        }
+        if (backConn.isCancelled()) {
+            return new SQLException("canceling statement due to user request", QUERY_CANCELED, e);
+        }
+        return e;
+    }
+
+    private void error(SQLException e) {
+        String state = e.getSQLState();
+        if (state == null || state.length() != 5) {
+            state = INTERNAL_ERROR;
+        }
+        LOGGER.info(source + " postgres statement error: " + e.getMessage());
+        writeError(state, e.getMessage() == null ? e.toString() : e.getMessage());
+        if (inTransaction) {
+            failedTransaction = true;
+        }
+    }
+
+    private void writeError(String code, String msg) {
+        write(new ErrorResponse(ErrorResponse.ERROR, code, msg));
+    }
+
+    private ByteBuffer out() {
+        if (buffer == null) {
+            buffer = source.allocate();
+        }
+        return buffer;
+    }
+
+    private void write(PostgresPacket packet) {
+        buffer = packet.write(out(), source);
+    }
+
+    private void flush() {
+        ByteBuffer buf = buffer;
+        buffer = null;
+        if (buf == null) {
+            return;
+        }
+        if (buf.position() > 0) {
+            source.write(buf);
+        } else {
+            source.recycle(buf);
+        }
+    }
+}
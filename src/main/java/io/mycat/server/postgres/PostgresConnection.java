@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.server.postgres;
+
+import io.mycat.backend.jdbc.JDBCConnection;
+import io.mycat.net.FrontendConnection;
+import io.mycat.net.postgres.ErrorResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+import java.security.SecureRandom;
+
+/**
+ * frontend connection of the postgres (v3 protocol) listener. The statements are executed by
+ * the same HetuConnection as the mysql frontend, see PostgresCommandHandler.
+ */
+public class PostgresConnection extends FrontendConnection {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // StartupMessage/SSLRequest/CancelRequest 没有类型字节, 之后的消息都有
+    private volatile boolean startupDone;
+    private final int secretKey = RANDOM.nextInt();
+    private PostgresCommandHandler commandHandler;
+
+    public PostgresConnection(NetworkChannel channel) throws IOException {
+        super(channel);
+    }
+
+    /**
+     * the client speaks first, no handshake is sent
+     */
+    @Override
+    public void register() throws IOException {
+        if (!isClosed.get()) {
+            this.asynRead();
+        }
+    }
+
+    /**
+     * startup phase: Int32 length including self. afterwards: Byte1 type, Int32 length
+     * including self but not the type
+     */
+    @Override
+    protected int getPacketLength(ByteBuffer buffer, int offset) {
+        int headerSize = startupDone ? 5 : 4;
+        if (buffer.position() < offset + headerSize) {
+            return -1;
+        }
+        int length = startupDone ? buffer.getInt(offset + 1) : buffer.getInt(offset);
+        if (length < 4) {
+            throw new IllegalArgumentException("invalid postgres message length " + length);
+        }
+        return startupDone ? length + 1 : length;
+    }
+
+    @Override
+    public void handle(byte[] data) {
+        handler.handle(data);
+    }
+
+    @Override
+    public void handle(ByteBuffer packet) {
+        handler.handle(packet);
+    }
+
+    public void startupDone() {
+        this.startupDone = true;
+    }
+
+    public int getSecretKey() {
+        return secretKey;
+    }
+
+    public PostgresCommandHandler getCommandHandler() {
+        return commandHandler;
+    }
+
+    public void setCommandHandler(PostgresCommandHandler commandHandler) {
+        this.commandHandler = commandHandler;
+    }
+
+    @Override
+    public void writeErrMessage(int errno, String msg) {
+        writeErrMessage((byte) 0, errno, msg);
+    }
+
+    @Override
+    public void writeErrMessage(byte id, int errno, String msg) {
+        writeError(ErrorResponse.ERROR, PostgresCommandHandler.INTERNAL_ERROR, msg);
+    }
+
+    public void writeError(String severity, String code, String msg) {
+        ByteBuffer buffer = new ErrorResponse(severity, code, msg).write(allocate(), this);
+        write(buffer);
+    }
+
+    /**
+     * CancelRequest: cancel the running statement if the secret key matches
+     */
+    public boolean cancel(int key) {
+        if (key != secretKey || !(backConn instanceof JDBCConnection)) {
+            return false;
+        }
+        return ((JDBCConnection) backConn).cancel();
+    }
+
+    @Override
+    public void close(String reason) {
+        super.close(reason);
+        PostgresCommandHandler handler = commandHandler;
+        if (handler != null) {
+            handler.close(reason);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.server.postgres;
+
+import io.mycat.MycatServer;
+import io.mycat.config.MycatPrivileges;
+import io.mycat.net.FrontendConnection;
+import io.mycat.net.factory.FrontendConnectionFactory;
+
+import java.io.IOException;
+import java.nio.channels.NetworkChannel;
+
+/**
+ * connections of the postgres listener (postgresPort)
+ */
+public class PostgresConnectionFactory extends FrontendConnectionFactory {
+    @Override
+    protected FrontendConnection getConnection(NetworkChannel channel) throws IOException {
+        PostgresConnection c = new PostgresConnection(channel);
+        MycatServer.getInstance().getConfig().setSocketParams(c, true);
+        c.setPrivileges(MycatPrivileges.instance());
+        c.setHandler(new PostgresAuthenticator(c));
+        return c;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.server.postgres;
+
+import io.mycat.backend.hetu.PostgresRowEncoder;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.net.postgres.Bind;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * portal of the extended query protocol (Bind). The statement is executed when the portal is
+ * described or executed the first time, Execute with a row limit then fetches the next rows of
+ * the open ResultSet, so a portal is a cursor that lives until Close, Sync (outside of a
+ * transaction block) or the end of the transaction.
+ */
+final class PostgresPortal {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgresPortal.class);
+
+    private final String name;
+    private final PostgresStatement statement;
+    private final Bind bind;
+
+    private boolean opened;
+    private Statement stmt;
+    private ResultSet rs;
+    private List<FieldPacket> fieldPks;
+    private PostgresRowEncoder encoder;
+    private long rows;
+    // 不返回结果集的语句的CommandComplete tag
+    private String tag;
+    // SHOW 本地参数的结果: name, value
+    private String[] localRow;
+
+    PostgresPortal(String name, PostgresStatement statement, Bind bind) {
+        this.name = name;
+        this.statement = statement;
+        this.bind = bind;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    PostgresStatement getStatement() {
+        return statement;
+    }
+
+    Bind getBind() {
+        return bind;
+    }
+
+    boolean isOpened() {
+        return opened;
+    }
+
+    void opened(Statement stmt, ResultSet rs, List<FieldPacket> fieldPks, PostgresRowEncoder encoder, String tag) {
+        this.opened = true;
+        this.stmt = stmt;
+        this.rs = rs;
+        this.fieldPks = fieldPks;
+        this.encoder = encoder;
+        this.tag = tag;
+    }
+
+    /**
+     * a statement answered by the gateway, row is null or the name and value of SHOW
+     */
+    void openedLocal(String tag, String[] row) {
+        this.opened = true;
+        this.tag = tag;
+        this.localRow = row;
+    }
+
+    ResultSet getResultSet() {
+        return rs;
+    }
+
+    Statement getJdbcStatement() {
+        return stmt;
+    }
+
+    List<FieldPacket> getFieldPks() {
+        return fieldPks;
+    }
+
+    String[] getLocalRow() {
+        return localRow;
+    }
+
+    PostgresRowEncoder getEncoder() {
+        return encoder;
+    }
+
+    String getTag() {
+        return tag;
+    }
+
+    long addRows(long n) {
+        rows += n;
+        return rows;
+    }
+
+    /**
+     * all rows are sent, the ResultSet is closed and a further Execute returns no rows
+     */
+    void finish(String finalTag) {
+        this.tag = finalTag;
+        closeJdbc();
+    }
+
+    void close() {
+        closeJdbc();
+    }
+
+    private void closeJdbc() {
+        ResultSet resultSet = rs;
+        Statement statement = stmt;
+        rs = null;
+        stmt = null;
+        encoder = null;
+        localRow = null;
+        try {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("close portal " + name + " error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.server.postgres;
+
+import io.mycat.backend.hetu.PreparedMetadata;
+import io.mycat.net.postgres.PostgresTypes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * prepared statement of the extended query protocol (Parse). $n parameters are replaced with ?
+ * for jdbc, parameterOrder keeps the postgres parameter of each ?, so $1 can be used twice.
+ * Hetu is not contacted by Parse, DESCRIBE INPUT/OUTPUT is done when the types are needed.
+ */
+final class PostgresStatement {
+    private final String name;
+    private final String sql;
+    private final String jdbcSql;
+    private final String keyword;
+    private final int[] parameterOrder;
+    private final int[] parameterTypes;
+    private final long id;
+    private PreparedMetadata metadata;
+
+    PostgresStatement(String name, String sql, int[] clientTypes, long id) {
+        this.name = name;
+        this.sql = sql;
+        this.id = id;
+        this.keyword = keyword(sql);
+        List<Integer> order = new ArrayList<>();
+        this.jdbcSql = toJdbc(sql, order);
+        this.parameterOrder = new int[order.size()];
+        int count = clientTypes.length;
+        for (int i = 0; i < parameterOrder.length; i++) {
+            parameterOrder[i] = order.get(i);
+            count = Math.max(count, parameterOrder[i] + 1);
+        }
+        this.parameterTypes = new int[count];
+        System.arraycopy(clientTypes, 0, parameterTypes, 0, clientTypes.length);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    String getJdbcSql() {
+        return jdbcSql;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    /**
+     * first word of the statement in upper case
+     */
+    String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * number of postgres parameters ($n), the Bind message must send this many values
+     */
+    int getParameterCount() {
+        return parameterTypes.length;
+    }
+
+    /**
+     * postgres parameter (0-based) of the jdbc parameter (0-based)
+     */
+    int[] getParameterOrder() {
+        return parameterOrder;
+    }
+
+    /**
+     * oid specified by Parse, 0 if unspecified
+     */
+    int getClientType(int parameter) {
+        return parameterTypes[parameter];
+    }
+
+    PreparedMetadata getMetadata() {
+        return metadata;
+    }
+
+    void setMetadata(PreparedMetadata metadata) {
+        this.metadata = metadata;
+    }
+
+    /**
+     * DESCRIBE INPUT is needed for parameters whose type the client left open (0) or sent as
+     * text, hetu does not convert a varchar to the column type
+     */
+    boolean needsInputTypes() {
+        for (int jdbcIndex = 0; jdbcIndex < parameterOrder.length; jdbcIndex++) {
+            if (isUntyped(parameterTypes[parameterOrder[jdbcIndex]])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isUntyped(int oid) {
+        return oid == PostgresTypes.UNSPECIFIED || oid == PostgresTypes.TEXT || oid == PostgresTypes.VARCHAR
+                || oid == PostgresTypes.BPCHAR;
+    }
+
+    /**
+     * whether the statement returns rows, Describe of other statements (DDL, INSERT) is NoData
+     */
+    boolean returnsRows() {
+        switch (keyword) {
+            case "SELECT":
+            case "WITH":
+            case "VALUES":
+            case "TABLE":
+            case "SHOW":
+            case "DESCRIBE":
+            case "EXPLAIN":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * replace $n outside of quotes and comments with ?, order gets n - 1 for each of them
+     */
+    static String toJdbc(String sql, List<Integer> order) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            int end = skipQuoteOrComment(sql, i);
+            if (end > i) {
+                sb.append(sql, i, end);
+                i = end;
+                continue;
+            }
+            char c = sql.charAt(i);
+            if (c == '$' && i + 1 < length && Character.isDigit(sql.charAt(i + 1))
+                    && (i == 0 || !Character.isJavaIdentifierPart(sql.charAt(i - 1)))) {
+                int j = i + 1;
+                while (j < length && Character.isDigit(sql.charAt(j))) {
+                    j++;
+                }
+                order.add(Integer.parseInt(sql.substring(i + 1, j)) - 1);
+                sb.append('?');
+                i = j;
+                continue;
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * statements of a simple Query message, split at ; outside of quotes and comments. blank
+     * statements are dropped.
+     */
+    static List<String> split(String sql) {
+        List<String> statements = new ArrayList<>();
+        int start = 0;
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            int end = skipQuoteOrComment(sql, i);
+            if (end > i) {
+                i = end;
+                continue;
+            }
+            if (sql.charAt(i) == ';') {
+                addStatement(statements, sql.substring(start, i));
+                start = i + 1;
+            }
+            i++;
+        }
+        addStatement(statements, sql.substring(start));
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, String sql) {
+        if (!isOnlyComments(sql)) {
+            statements.add(sql.trim());
+        }
+    }
+
+    /**
+     * true for a blank statement or one with comments only
+     */
+    private static boolean isOnlyComments(String sql) {
+        int i = 0;
+        while (i < sql.length()) {
+            int end = skipQuoteOrComment(sql, i);
+            if (end > i && sql.charAt(i) != '\'' && sql.charAt(i) != '"') {
+                i = end;
+            } else if (Character.isWhitespace(sql.charAt(i))) {
+                i++;
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * end of the quoted string or comment starting at i, i if there is none
+     */
+    private static int skipQuoteOrComment(String sql, int i) {
+        int length = sql.length();
+        char c = sql.charAt(i);
+        if (c == '\'' || c == '"') {
+            int j = i + 1;
+            while (j < length) {
+                if (sql.charAt(j) == c) {
+                    // '' 是转义的引号
+                    if (j + 1 < length && sql.charAt(j + 1) == c) {
+                        j += 2;
+                        continue;
+                    }
+                    return j + 1;
+                }
+                j++;
+            }
+            return length;
+        }
+        if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+            int j = sql.indexOf('\n', i);
+            return j < 0 ? length : j + 1;
+        }
+        if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+            int j = sql.indexOf("*/", i + 2);
+            return j < 0 ? length : j + 2;
+        }
+        return i;
+    }
+
+    /**
+     * first word after whitespace, comments and opening parentheses, in upper case
+     */
+    static String keyword(String sql) {
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c) || c == '(') {
+                i++;
+                continue;
+            }
+            int end = skipQuoteOrComment(sql, i);
+            if (end > i && c != '\'' && c != '"') {
+                i = end;
+                continue;
+            }
+            break;
+        }
+        int start = i;
+        while (i < length && Character.isLetter(sql.charAt(i))) {
+            i++;
+        }
+        return sql.substring(start, i).toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.statistic;
+
+import io.mycat.statistic.stat.Histogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * KILL QUERY和语句超时统计: 取消的查询数, 取消失败数, 超时数, 从KILL QUERY到hetu语句返回的耗时分布, show @@server 输出
+ */
+public final class CancelStat {
+    private static final CancelStat INSTANCE = new CancelStat();
+
+    private final AtomicLong cancelCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final Histogram cancelHistogram = new Histogram(ConnectStat.RANGES);
+
+    private CancelStat() {
+    }
+
+    public static CancelStat getInstance() {
+        return INSTANCE;
+    }
+
+    public void cancelRequested() {
+        cancelCount.incrementAndGet();
+    }
+
+    public void cancelFailed() {
+        failureCount.incrementAndGet();
+    }
+
+    public void timedOut() {
+        timeoutCount.incrementAndGet();
+    }
+
+    /**
+     * @param cancelMillis time from KILL QUERY until the cancelled statement returned
+     */
+    public void cancelled(long cancelMillis) {
+        cancelHistogram.record(ConnectStat.range(cancelMillis));
+    }
+
+    public long getCancelCount() {
+        return cancelCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public Histogram getCancelHistogram() {
+        return cancelHistogram;
+    }
+}
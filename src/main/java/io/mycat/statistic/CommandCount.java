@@ -35,6 +35,7 @@ public class CommandCount {
     private long stmtReset;
     private long stmtExecute;
     private long stmtClose;
+    private long stmtFetch;
     private long ping;
     private long kill;
     private long quit;
@@ -99,6 +100,14 @@ public class CommandCount {
         return stmtClose;
     }
 
+    public void doStmtFetch() {
+        ++stmtFetch;
+    }
+
+    public long stmtFetchCount() {
+        return stmtFetch;
+    }
+
     public void doPing() {
         ++ping;
     }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.statistic;
+
+import io.mycat.statistic.stat.Histogram;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 前端登录统计: 正在登录的连接数(gauge), hetu连接建立耗时和整个登录耗时(含排队)的分布, show @@server 输出
+ */
+public final class ConnectStat {
+    // 耗时区间(ms): <=10, <=100, <=500, <=1000, <=5000, >5000
+    static final long[] RANGES = {10, 100, 500, 1000, 5000, Long.MAX_VALUE};
+
+    private static final ConnectStat INSTANCE = new ConnectStat();
+
+    private final AtomicInteger logins = new AtomicInteger();
+    private final AtomicInteger maxLogins = new AtomicInteger();
+    private final AtomicLong loginCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final Histogram connectHistogram = new Histogram(RANGES);
+    private final Histogram loginHistogram = new Histogram(RANGES);
+
+    private ConnectStat() {
+    }
+
+    public static ConnectStat getInstance() {
+        return INSTANCE;
+    }
+
+    public void loginStart() {
+        int current = logins.incrementAndGet();
+        int max = maxLogins.get();
+        while (current > max && !maxLogins.compareAndSet(max, current)) {
+            max = maxLogins.get();
+        }
+    }
+
+    public void loginEnd(long loginMillis, boolean success) {
+        logins.decrementAndGet();
+        loginCount.incrementAndGet();
+        if (!success) {
+            failureCount.incrementAndGet();
+        }
+        loginHistogram.record(range(loginMillis));
+    }
+
+    public void connected(long connectMillis) {
+        connectHistogram.record(range(connectMillis));
+    }
+
+    static long range(long millis) {
+        for (long range : RANGES) {
+            if (millis <= range) {
+                return range;
+            }
+        }
+        return RANGES[RANGES.length - 1];
+    }
+
+    public int getLogins() {
+        return logins.get();
+    }
+
+    public int getMaxLogins() {
+        return maxLogins.get();
+    }
+
+    public long getLoginCount() {
+        return loginCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public Histogram getConnectHistogram() {
+        return connectHistogram;
+    }
+
+    public Histogram getLoginHistogram() {
+        return loginHistogram;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.statistic;
+
+import io.mycat.statistic.stat.Histogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * COM_PING统计: ping次数, 需要访问hetu校验的次数, 失败次数, 应答耗时分布, show @@server 输出
+ */
+public final class PingStat {
+    // 1ms, 10ms, 100ms, 1s, 5s, >5s
+    static final long[] RANGES = {1, 10, 100, 1000, 5000, Long.MAX_VALUE};
+
+    private static final PingStat INSTANCE = new PingStat();
+
+    private final AtomicLong pingCount = new AtomicLong();
+    private final AtomicLong validateCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final Histogram pingHistogram = new Histogram(RANGES);
+
+    private PingStat() {
+    }
+
+    public static PingStat getInstance() {
+        return INSTANCE;
+    }
+
+    public void validated() {
+        validateCount.incrementAndGet();
+    }
+
+    /**
+     * @param pingNanos time from COM_PING until the response is written
+     */
+    public void pinged(long pingNanos, boolean alive) {
+        pingCount.incrementAndGet();
+        if (!alive) {
+            failureCount.incrementAndGet();
+        }
+        long millis = pingNanos / 1000000L;
+        for (long range : RANGES) {
+            if (millis < range) {
+                pingHistogram.record(range);
+                return;
+            }
+        }
+    }
+
+    public long getPingCount() {
+        return pingCount.get();
+    }
+
+    public long getValidateCount() {
+        return validateCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public Histogram getPingHistogram() {
+        return pingHistogram;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.statistic;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * hetu大结果集两阶段输出(HetuResultPipeline)的统计: 查询数, 行数, 字节数, 按瓶颈(hetu/编码/客户端)分类的查询数,
+ * show @@server 输出. 每个查询的速率和各阶段等待时间记录在日志中
+ */
+public final class ResultPipelineStat {
+    public static final String HETU = "hetu";
+    public static final String ENCODE = "encode";
+    public static final String CLIENT = "client";
+
+    private static final ResultPipelineStat INSTANCE = new ResultPipelineStat();
+
+    private final AtomicLong queryCount = new AtomicLong();
+    private final AtomicLong rowCount = new AtomicLong();
+    private final AtomicLong byteCount = new AtomicLong();
+    private final AtomicLong hetuBound = new AtomicLong();
+    private final AtomicLong encodeBound = new AtomicLong();
+    private final AtomicLong clientBound = new AtomicLong();
+
+    private ResultPipelineStat() {
+    }
+
+    public static ResultPipelineStat getInstance() {
+        return INSTANCE;
+    }
+
+    public void finished(long rows, long bytes, String bottleneck) {
+        queryCount.incrementAndGet();
+        rowCount.addAndGet(rows);
+        byteCount.addAndGet(bytes);
+        if (HETU.equals(bottleneck)) {
+            hetuBound.incrementAndGet();
+        } else if (CLIENT.equals(bottleneck)) {
+            clientBound.incrementAndGet();
+        } else {
+            encodeBound.incrementAndGet();
+        }
+    }
+
+    public long getQueryCount() {
+        return queryCount.get();
+    }
+
+    public long getRowCount() {
+        return rowCount.get();
+    }
+
+    public long getByteCount() {
+        return byteCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return HETU + ":" + hetuBound.get() + ", " + ENCODE + ":" + encodeBound.get() + ", " + CLIENT + ":"
+                + clientBound.get();
+    }
+}
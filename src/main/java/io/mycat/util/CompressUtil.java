@@ -2,9 +2,7 @@ package io.mycat.util;
 
 import com.google.common.collect.Lists;
 
-import io.mycat.backend.mysql.BufferUtil;
 import io.mycat.backend.mysql.MySQLMessage;
-import io.mycat.net.AbstractConnection;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -38,88 +36,13 @@ import java.util.zip.Inflater;
  * 	 Q:为什么消息体是 压缩内容 或者未压缩内容?
  *   A:这是因为mysql内部有一个约定，如果查询语句payload小于50字节时， 对内容不压缩而保持原貌的方式，而mysql此举是为了减少CPU性能开销
  * 
+ * 发送方向由每个连接的 {@link io.mycat.net.MySQLPacketCompressor} 完成
  */
 public class CompressUtil {
 
 	public static final int MINI_LENGTH_TO_COMPRESS = 50;
 	public static final int NO_COMPRESS_PACKET_LENGTH =  MINI_LENGTH_TO_COMPRESS + 4;
 
-	
-	/**
-	 * 压缩数据包
-	 * @param input
-	 * @param con
-	 * @param compressUnfinishedDataQueue
-	 * @return
-	 */
-	public static ByteBuffer compressMysqlPacket(ByteBuffer input, AbstractConnection con,
-			ConcurrentLinkedQueue<byte[]> compressUnfinishedDataQueue) {
-		
-		byte[] byteArrayFromBuffer = getByteArrayFromBuffer(input);
-		con.recycle(input);
-		
-		byteArrayFromBuffer = mergeBytes(byteArrayFromBuffer, compressUnfinishedDataQueue);
-		return compressMysqlPacket(byteArrayFromBuffer, con, compressUnfinishedDataQueue);
-	}
-
-	
-	/**
-	 * 压缩数据包
-	 * @param data
-	 * @param con
-	 * @param compressUnfinishedDataQueue
-	 * @return
-	 */
-	private static ByteBuffer compressMysqlPacket(byte[] data, AbstractConnection con,
-			ConcurrentLinkedQueue<byte[]> compressUnfinishedDataQueue) {
-
-		ByteBuffer byteBuf = con.allocate();
-		byteBuf = con.checkWriteBuffer(byteBuf, data.length, false); //TODO: 数据量大的时候, 此处是是性能的堵点
-		
-		MySQLMessage msg = new MySQLMessage(data);
-		while ( msg.hasRemaining() ) {
-			
-			//包体的长度
-			int packetLength = 0;
-			
-			//可读的长度
-			int readLength = msg.length() - msg.position();
-			if ( readLength > 3 ) {
-				packetLength = msg.readUB3();
-				msg.move(-3);
-			}
-			
-			//校验数据包完整性
-			if ( readLength < packetLength + 4 ) {
-				byte[] packet = msg.readBytes(readLength);
-				if (packet.length != 0) {
-					compressUnfinishedDataQueue.add(packet);		//不完整的包
-				}
-			} else {
-				
-				byte[] packet = msg.readBytes(packetLength + 4);
-				if ( packet.length != 0 ) {
-					
-					if ( packet.length <= NO_COMPRESS_PACKET_LENGTH ) {
-						BufferUtil.writeUB3(byteBuf, packet.length);    //压缩长度
-						byteBuf.put(packet[3]);			 		 		//压缩序号
-						BufferUtil.writeUB3(byteBuf, 0);  				//压缩前的长度设置为0
-						byteBuf.put(packet);							//包体
-
-					} else {						
-						
-						byte[] compress = compress(packet);				//压缩
-						
-						BufferUtil.writeUB3(byteBuf, compress.length);
-						byteBuf.put(packet[3]);
-						BufferUtil.writeUB3(byteBuf, packet.length);
-						byteBuf.put(compress);
-					}
-				}
-			}
-		}
-		return byteBuf;
-	}
 
 	/**
 	 * 解压数据包,同时做分包处理
@@ -24,6 +24,7 @@
 package io.mycat.util;
 
 import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.SynchronousQueue;
 
 /**
  * @author mycat
@@ -39,5 +40,13 @@ public class ExecutorUtil {
         return new NameableExecutor(name, size, new LinkedTransferQueue<Runnable>(), factory);
     }
 
+    /**
+     * 任务不排队, 没有空闲线程时新建, 空闲60秒的线程退出. 用于会一直阻塞到另一个任务结束的任务
+     */
+    public static final NameableExecutor createCached(String name) {
+        NameableThreadFactory factory = new NameableThreadFactory(name, true);
+        return new NameableExecutor(name, 0, Integer.MAX_VALUE, 60L, new SynchronousQueue<Runnable>(), factory);
+    }
+
    
 }
\ No newline at end of file
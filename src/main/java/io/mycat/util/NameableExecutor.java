@@ -40,6 +40,12 @@ public class NameableExecutor extends ThreadPoolExecutor {
         this.name = name;
     }
 
+    public NameableExecutor(String name, int coreSize, int maxSize, long keepAliveSeconds,
+            BlockingQueue<Runnable> queue, ThreadFactory factory) {
+        super(coreSize, maxSize, keepAliveSeconds, TimeUnit.SECONDS, queue, factory);
+        this.name = name;
+    }
+
     public String getName() {
         return name;
     }
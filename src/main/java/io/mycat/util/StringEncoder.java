@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.util;
+
+import io.mycat.backend.mysql.BufferUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * encode result strings with the charset of a frontend connection without String.getBytes(name)
+ * per cell. The Charset and CharsetEncoder are looked up once, characters below directLimit
+ * (ascii, or all of latin1) are copied as they are, other strings are encoded by the
+ * CharsetEncoder. Both use char/byte scratch arrays that are reused, the bytes go into the
+ * (direct) buffer with one bulk put. Not thread safe, one instance per connection.
+ */
+public final class StringEncoder {
+    // 超过该长度的字符串使用临时数组, 避免scratch一直占用大块内存
+    private static final int MAX_SCRATCH_SIZE = 64 * 1024;
+
+    private final String charset;
+    private final CharsetEncoder encoder;
+    private final int directLimit;
+    private char[] chars = new char[256];
+    private CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private byte[] bytes = new byte[256];
+    private ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+
+    public StringEncoder(String charset) {
+        this.charset = charset;
+        Charset cs;
+        try {
+            cs = Charset.forName(charset);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            // 和 String.getBytes() 一样使用默认字符集
+            cs = Charset.defaultCharset();
+        }
+        this.encoder = cs.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.directLimit = directLimit(cs);
+    }
+
+    /**
+     * 0x100 if every char below it is encoded as the same single byte (latin1), 0x80 if the
+     * charset is ascii compatible (utf8, gbk...), otherwise 0
+     */
+    private static int directLimit(Charset cs) {
+        if (!cs.canEncode()) {
+            return 0;
+        }
+        char[] chars = new char[0x100];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) i;
+        }
+        if (sameBytes(cs, chars, 0x100)) {
+            return 0x100;
+        }
+        return sameBytes(cs, chars, 0x80) ? 0x80 : 0;
+    }
+
+    private static boolean sameBytes(Charset cs, char[] chars, int length) {
+        byte[] bytes = new String(chars, 0, length).getBytes(cs);
+        if (bytes.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((bytes[i] & 0xff) != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getCharset() {
+        return charset;
+    }
+
+    /**
+     * whether putDirect() can be tried at all for this charset
+     */
+    public boolean hasDirectPath() {
+        return directLimit > 0;
+    }
+
+    /**
+     * write s as a length-encoded string if each char is one byte in this charset. the caller
+     * makes sure that BufferUtil.getLength(s.length()) + s.length() bytes remain. returns false
+     * with the buffer unchanged when s needs encode().
+     */
+    public boolean putDirect(String s, ByteBuffer buffer) {
+        int length = s.length();
+        if (!toDirectBytes(s, length)) {
+            return false;
+        }
+        BufferUtil.writeLength(buffer, length);
+        buffer.put(bytes, 0, length);
+        return true;
+    }
+
+    /**
+     * like putDirect() without the length, for protocols that write their own length prefix
+     * (which is s.length() when true is returned)
+     */
+    public boolean putDirectBytes(String s, ByteBuffer buffer) {
+        int length = s.length();
+        if (!toDirectBytes(s, length)) {
+            return false;
+        }
+        buffer.put(bytes, 0, length);
+        return true;
+    }
+
+    private boolean toDirectBytes(String s, int length) {
+        if (length > MAX_SCRATCH_SIZE) {
+            // 只用于可以复用的scratch, 大字符串走encode()
+            return false;
+        }
+        char[] cs = chars(length);
+        byte[] bs = bytes(length);
+        s.getChars(0, length, cs, 0);
+        int limit = directLimit;
+        for (int i = 0; i < length; i++) {
+            char c = cs[i];
+            if (c >= limit) {
+                return false;
+            }
+            bs[i] = (byte) c;
+        }
+        return true;
+    }
+
+    /**
+     * encode s, the result is valid until the next call. position 0, limit at the end.
+     */
+    public ByteBuffer encode(String s) {
+        int length = s.length();
+        int max = (int) Math.ceil(length * (double) encoder.maxBytesPerChar());
+        char[] cs = chars(length);
+        s.getChars(0, length, cs, 0);
+        CharBuffer in = cs == chars ? charBuffer : CharBuffer.wrap(cs);
+        in.clear();
+        in.limit(length);
+        byte[] bs = bytes(max);
+        ByteBuffer out = bs == bytes ? byteBuffer : ByteBuffer.wrap(bs);
+        out.clear();
+        encoder.reset();
+        encoder.encode(in, out, true);
+        encoder.flush(out);
+        out.flip();
+        return out;
+    }
+
+    private char[] chars(int length) {
+        if (length <= chars.length) {
+            return chars;
+        }
+        char[] cs = new char[length];
+        if (length <= MAX_SCRATCH_SIZE) {
+            chars = cs;
+            charBuffer = CharBuffer.wrap(cs);
+        }
+        return cs;
+    }
+
+    private byte[] bytes(int length) {
+        if (length <= bytes.length) {
+            return bytes;
+        }
+        byte[] bs = new byte[length];
+        if (length <= MAX_SCRATCH_SIZE) {
+            bytes = bs;
+            byteBuffer = ByteBuffer.wrap(bs);
+        }
+        return bs;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+
+/**
+ * ResultSet over in-memory rows, only the getters used by the row encoders are supported
+ */
+public class FakeResultSet implements InvocationHandler {
+    private final Object[][] rows;
+    private final boolean cycle;
+    private int rowIndex = -1;
+    private Object last;
+
+    private FakeResultSet(Object[][] rows, boolean cycle) {
+        this.rows = rows;
+        this.cycle = cycle;
+    }
+
+    public static ResultSet create(Object[]... rows) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, new FakeResultSet(rows, true));
+    }
+
+    /**
+     * next() returns false after the last row
+     */
+    public static ResultSet once(Object[]... rows) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, new FakeResultSet(rows, false));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        if ("next".equals(name)) {
+            if (!cycle) {
+                return ++rowIndex < rows.length;
+            }
+            // 循环使用同一批行, 方便做性能测试
+            rowIndex = (rowIndex + 1) % rows.length;
+            return true;
+        } else if ("wasNull".equals(name)) {
+            return last == null;
+        } else if ("close".equals(name) || "setFetchSize".equals(name)) {
+            return null;
+        }
+
+        if (rowIndex < 0) {
+            rowIndex = 0;
+        }
+        last = rows[rowIndex][(Integer) args[0] - 1];
+        Object v = last;
+        switch (name) {
+            case "getLong":
+                return v == null ? 0L : ((Number) v).longValue();
+            case "getInt":
+                return v == null ? 0 : ((Number) v).intValue();
+            case "getShort":
+                return v == null ? (short) 0 : ((Number) v).shortValue();
+            case "getByte":
+                return v == null ? (byte) 0 : ((Number) v).byteValue();
+            case "getDouble":
+                return v == null ? 0d : ((Number) v).doubleValue();
+            case "getFloat":
+                return v == null ? 0f : ((Number) v).floatValue();
+            case "getBoolean":
+                return v == null ? false : v;
+            case "getString":
+                return v == null ? null : v.toString();
+            default:
+                return v;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.net.mysql.BinaryRowDataPacket;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.net.mysql.RowDataPacket;
+import io.mycat.util.MysqlDefs;
+
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * prepared result rows: text row + BinaryRowDataPacket.convert() (what SingleNodeHandler does
+ * when prepared) compared with BinaryRowEncoder
+ */
+public class RowEncoderPerfMain {
+    private static final int[] TYPES = {MysqlDefs.FIELD_TYPE_LONGLONG, MysqlDefs.FIELD_TYPE_LONG,
+        MysqlDefs.FIELD_TYPE_DOUBLE, MysqlDefs.FIELD_TYPE_VAR_STRING, MysqlDefs.FIELD_TYPE_DATE,
+        MysqlDefs.FIELD_TYPE_TIMESTAMP};
+
+    public static void main(String[] args) throws Exception {
+        List<FieldPacket> fieldPks = new ArrayList<>();
+        for (int type : TYPES) {
+            FieldPacket fieldPacket = new FieldPacket();
+            fieldPacket.type = type;
+            fieldPks.add(fieldPacket);
+        }
+        ResultSet rs = FakeResultSet.create(
+            new Object[] {1234567890123L, 42, 10.2d, "openLooKeng", Date.valueOf("2020-06-03"),
+                Timestamp.valueOf("2020-06-03 10:11:12")},
+            new Object[] {-1L, null, -0.5d, "hetu odbc gateway", Date.valueOf("1999-12-31"),
+                Timestamp.valueOf("1999-12-31 23:59:59")});
+
+        long loop = 1000 * 1000;
+        for (int i = 0; i < 3; i++) {
+            textAndConvert(rs, fieldPks, loop);
+            binary(rs, fieldPks, loop);
+        }
+    }
+
+    private static void textAndConvert(ResultSet rs, List<FieldPacket> fieldPks, long loop) throws Exception {
+        TextRowEncoder encoder = new TextRowEncoder(fieldPks, "utf8");
+        ByteBuffer textBuf = ByteBuffer.allocate(1024);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        long t1 = System.currentTimeMillis();
+        for (long i = 0; i < loop; ++i) {
+            rs.next();
+            textBuf.clear();
+            textBuf = encoder.encode(rs, (byte) 1, textBuf, null);
+            byte[] row = new byte[textBuf.position()];
+            textBuf.flip();
+            textBuf.get(row);
+
+            RowDataPacket rowDataPk = new RowDataPacket(fieldPks.size());
+            rowDataPk.read(row);
+            BinaryRowDataPacket binRowDataPk = new BinaryRowDataPacket();
+            binRowDataPk.read(fieldPks, rowDataPk);
+            buffer.clear();
+            buffer.put(binRowDataPk.nullBitMap);
+            for (byte[] fv : binRowDataPk.fieldValues) {
+                if (fv != null) {
+                    buffer.put(fv);
+                }
+            }
+        }
+        long t2 = System.currentTimeMillis();
+        System.out.println("text + convert: " + (((t2 - t1) * 1000 * 1000) / loop) + " ns/row.");
+    }
+
+    private static void binary(ResultSet rs, List<FieldPacket> fieldPks, long loop) throws Exception {
+        BinaryRowEncoder encoder = new BinaryRowEncoder(fieldPks, "utf8");
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        long t1 = System.currentTimeMillis();
+        for (long i = 0; i < loop; ++i) {
+            rs.next();
+            buffer.clear();
+            buffer = encoder.encode(rs, (byte) 1, buffer, null);
+        }
+        long t2 = System.currentTimeMillis();
+        System.out.println("binary encoder: " + (((t2 - t1) * 1000 * 1000) / loop) + " ns/row.");
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.backend.mysql.BufferUtil;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.MysqlDefs;
+import io.mycat.util.StringUtil;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * varchar rows of mixed width and content (codes, names, comments, chinese text):
+ * String.getBytes(charset) per cell compared with the StringEncoder of TextRowEncoder.
+ * prints ns/row and allocated bytes/row (hotspot only).
+ */
+public class StringEncoderPerfMain {
+    private static final Object[][] ROWS = {
+        {"A1", "openLooKeng", "ok", "2020-06-03 10:11:12.123"},
+        {"B20", "hetu odbc gateway", "the quick brown fox jumps over the lazy dog, again and again", "1"},
+        {"C300", "开源数据库", "查询结果按列编码 mixed text",
+            "shanghai"},
+        {"", "café", "a somewhat longer ascii comment that is typical for a description column of a dim"
+            + " table, used by bi tools", "NULL"},
+    };
+
+    public static void main(String[] args) throws Exception {
+        List<FieldPacket> fieldPks = new ArrayList<>();
+        for (int i = 0; i < ROWS[0].length; i++) {
+            FieldPacket fieldPacket = new FieldPacket();
+            fieldPacket.type = (byte) MysqlDefs.FIELD_TYPE_VAR_STRING;
+            fieldPks.add(fieldPacket);
+        }
+        ResultSet rs = FakeResultSet.create(ROWS);
+
+        long loop = 2000 * 1000;
+        for (String charset : new String[] {"utf8", "gbk", "latin1"}) {
+            for (int i = 0; i < 3; i++) {
+                getBytes(rs, charset, loop);
+                encoder(rs, fieldPks, charset, loop);
+            }
+        }
+    }
+
+    private static void getBytes(ResultSet rs, String charset, long loop) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        int columns = ROWS[0].length;
+        long a1 = allocatedBytes();
+        long t1 = System.nanoTime();
+        for (long i = 0; i < loop; ++i) {
+            rs.next();
+            buffer.clear();
+            for (int j = 1; j <= columns; j++) {
+                BufferUtil.writeWithLength(buffer, StringUtil.encode(rs.getString(j), charset));
+            }
+        }
+        long t2 = System.nanoTime();
+        long a2 = allocatedBytes();
+        System.out.println(charset + " getBytes: " + ((t2 - t1) / loop) + " ns/row, " + ((a2 - a1) / loop)
+            + " bytes/row.");
+    }
+
+    private static void encoder(ResultSet rs, List<FieldPacket> fieldPks, String charset, long loop)
+            throws Exception {
+        TextRowEncoder encoder = new TextRowEncoder(fieldPks, charset);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        long a1 = allocatedBytes();
+        long t1 = System.nanoTime();
+        for (long i = 0; i < loop; ++i) {
+            rs.next();
+            buffer.clear();
+            buffer = encoder.encode(rs, (byte) 1, buffer, null);
+        }
+        long t2 = System.nanoTime();
+        long a2 = allocatedBytes();
+        System.out.println(charset + " encoder:  " + ((t2 - t1) / loop) + " ns/row, " + ((a2 - a1) / loop)
+            + " bytes/row.");
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
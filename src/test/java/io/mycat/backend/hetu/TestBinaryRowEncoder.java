@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.MysqlDefs;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test Binary Row Encoder
+ */
+public class TestBinaryRowEncoder {
+    @Test
+    public void testEncodeRow() throws Exception {
+        List<FieldPacket> fieldPks = new ArrayList<>();
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_LONGLONG));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_LONG));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_DOUBLE));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_VAR_STRING));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_DATE));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_TIMESTAMP));
+
+        Object[] values = {1L, null, 10.2d, "foo", Date.valueOf("2020-06-03"),
+            Timestamp.valueOf("2020-06-03 10:11:12.5")};
+        BinaryRowEncoder encoder = new BinaryRowEncoder(fieldPks, "utf8");
+        ByteBuffer buffer = encoder.encode(FakeResultSet.create(values), (byte) 3, ByteBuffer.allocate(1024), null);
+
+        byte[] expected = {
+            0x27, 0x00, 0x00, 0x03, // packet header
+            0x00, // row header
+            0x08, // NULL-bitmap, 2nd column
+            0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, // 1
+            0x66, 0x66, 0x66, 0x66, 0x66, 0x66, 0x24, 0x40, // 10.2
+            0x03, 'f', 'o', 'o',
+            0x04, (byte) 0xe4, 0x07, 0x06, 0x03, // 2020-06-03
+            0x0b, (byte) 0xe4, 0x07, 0x06, 0x03, 0x0a, 0x0b, 0x0c, 0x20, (byte) 0xa1, 0x07, 0x00 // 10:11:12.500000
+        };
+        byte[] packet = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(packet);
+        assertArrayEquals(expected, packet);
+        assertEquals(expected.length, encoder.getLastPacketSize());
+    }
+
+    private static FieldPacket field(int type) {
+        FieldPacket fieldPacket = new FieldPacket();
+        fieldPacket.type = (byte) (type & 0xff);
+        return fieldPacket;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.statistic.CancelStat;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test Hetu Connection Cancel
+ */
+public class TestHetuConnectionCancel {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+
+    private final Statement statement = (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+            new Class<?>[] {Statement.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+                    if ("executeUpdate".equals(method.getName())) {
+                        if (started.getCount() == 0) {
+                            throw new SQLException("Table not found");
+                        }
+                        started.countDown();
+                        cancelled.await(10, TimeUnit.SECONDS);
+                        throw new SQLException("Query was canceled");
+                    } else if ("cancel".equals(method.getName())) {
+                        cancelled.countDown();
+                    }
+                    return null;
+                }
+            });
+
+    private final Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return "createStatement".equals(method.getName()) ? statement : null;
+                }
+            });
+
+    @Test
+    public void testCancelRunningStatement() throws Exception {
+        final HetuConnection c = new HetuConnection();
+        c.setCon(connection);
+        assertFalse(c.cancel());
+
+        long cancelCount = CancelStat.getInstance().getCancelCount();
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    c.executeddl(null, "insert into t select * from big");
+                } catch (Exception e) {
+                    error.set(e);
+                }
+            }
+        });
+        thread.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        assertTrue(c.cancel());
+        thread.join(10000);
+        assertTrue(error.get() instanceof SQLException);
+        assertTrue(c.isCancelled());
+        assertEquals(cancelCount + 1, CancelStat.getInstance().getCancelCount());
+        // 语句已经结束
+        assertFalse(c.cancel());
+
+        // 之后的语句失败不是被KILL QUERY取消的
+        try {
+            c.executeddl(null, "insert into t select * from missing");
+            fail();
+        } catch (SQLException e) {
+            assertEquals("Table not found", e.getMessage());
+        }
+        assertFalse(c.isCancelled());
+        assertFalse(c.cancel());
+        assertEquals(cancelCount + 1, CancelStat.getInstance().getCancelCount());
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.backend.BackendConnection;
+import io.mycat.config.model.DBHostConfig;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Hetu Connection Pool
+ */
+public class TestHetuConnectionPool {
+    private static final long LONG_TIME = 60 * 60 * 1000L;
+
+    private final Executor direct = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final List<FakeConnection> created = new ArrayList<>();
+
+    private final HetuConnectionFactory factory = new HetuConnectionFactory() {
+        @Override
+        public BackendConnection createNewConnection(DBHostConfig cfg, Properties properties, String catalog,
+                String schema) {
+            FakeConnection fake = new FakeConnection();
+            fake.catalog = catalog;
+            fake.schema = schema;
+            created.add(fake);
+            HetuConnection c = new HetuConnection();
+            c.setCatalog(catalog);
+            c.setSchema(schema);
+            c.setDefaultCatalogAndSchema(catalog, schema);
+            c.setCon(fake.proxy());
+            return c;
+        }
+    };
+
+    private final DBHostConfig cfg = new DBHostConfig("test", "127.0.0.1", 8080,
+            "jdbc:lk://127.0.0.1:8080", "test", null, null);
+
+    @Test
+    public void testReuse() throws Exception {
+        HetuConnectionPool pool = new HetuConnectionPool(factory, direct, 2, 0, LONG_TIME, LONG_TIME, LONG_TIME);
+        HetuConnection c1 = pool.borrow(cfg, properties("pwd"), "hive", "tpch");
+        assertFalse(c1.isReused());
+        pool.release(c1, "quit");
+        assertEquals(1, pool.getIdleConnections().size());
+
+        HetuConnection c2 = pool.borrow(cfg, properties("pwd"), "tpcds", "sf1");
+        assertSame(c1, c2);
+        assertTrue(c2.isReused());
+        assertEquals(2, c2.getLeaseCount());
+        assertEquals("tpcds", c2.getCatalog());
+        assertEquals("tpcds", created.get(0).catalog);
+        assertEquals("sf1", created.get(0).schema);
+
+        // 密码不同不共用连接
+        HetuConnection c3 = pool.borrow(cfg, properties("other"), "hive", "tpch");
+        assertNotSame(c1, c3);
+
+        HetuConnectionPool.Group group = pool.getGroup(c1.getPoolKey());
+        assertEquals(2, group.getBorrowCount());
+        assertEquals(1, group.getReuseCount());
+        assertEquals(0.5d, group.getReuseRatio(), 0.0001d);
+        assertEquals(1, group.getCreateCount());
+    }
+
+    @Test
+    public void testResetOnRelease() throws Exception {
+        HetuConnectionPool pool = new HetuConnectionPool(factory, direct, 2, 0, LONG_TIME, LONG_TIME, LONG_TIME);
+        HetuConnection c = pool.borrow(cfg, properties("pwd"), "hive", "tpch");
+        FakeConnection fake = created.get(0);
+        c.recordSessionProperty("set session query_max_run_time = '1h'");
+        c.recordSessionProperty("SET SESSION hive.orc_bloom_filters_enabled = true");
+        c.recordSessionProperty("RESET SESSION hive.orc_bloom_filters_enabled");
+        c.addPrepareIdInfo("my_select", 0);
+        fake.catalog = "tpcds";
+        fake.autoCommit = false;
+
+        pool.release(c, "quit");
+        assertEquals(1, pool.getIdleConnections().size());
+        assertTrue(fake.rollback);
+        assertTrue(fake.autoCommit);
+        assertEquals("hive", fake.catalog);
+        assertTrue(fake.executed.contains("RESET SESSION query_max_run_time"));
+        assertTrue(fake.executed.contains("DEALLOCATE PREPARE my_select"));
+        assertEquals(2, fake.executed.size());
+    }
+
+    @Test
+    public void testReleaseTwice() throws Exception {
+        HetuConnectionPool pool = new HetuConnectionPool(factory, direct, 2, 0, LONG_TIME, LONG_TIME, LONG_TIME);
+        HetuConnection c = pool.borrow(cfg, properties("pwd"), "hive", "tpch");
+        // KILL 和 IO 错误同时关闭前端
+        pool.release(c, "kill");
+        pool.release(c, "io error");
+        assertEquals(1, pool.getGroup(c.getPoolKey()).getIdleCount());
+
+        HetuConnection c1 = pool.borrow(cfg, properties("pwd"), "hive", "tpch");
+        HetuConnection c2 = pool.borrow(cfg, properties("pwd"), "hive", "tpch");
+        assertSame(c, c1);
+        assertNotSame(c1, c2);
+    }
+
+    @Test
+    public void testNotReusable() throws Exception {
+        HetuConnectionPool pool = new HetuConnectionPool(factory, direct, 2, 0, LONG_TIME, LONG_TIME, LONG_TIME);
+        // 前端关闭时还在执行
+        HetuConnection running = pool.borrow(cfg, properties("pwd"), "hive", "tpch");
+        running.setRunning(true);
+        pool.release(running, "quit");
+        assertTrue(created.get(0).closed);
+        assertEquals(0, pool.getIdleConnections().size());
+
+        // 超过maxLifetime
+        HetuConnectionPool expired = new HetuConnectionPool(factory, direct, 2, 0, 0, LONG_TIME, LONG_TIME);
+        expired.release(expired.borrow(cfg, properties("pwd"), "hive", "tpch"), "quit");
+        assertTrue(created.get(1).closed);
+
+        // 借出前校验失败
+        HetuConnectionPool validate = new HetuConnectionPool(factory, direct, 2, 0, LONG_TIME, LONG_TIME, 0);
+        HetuConnection c = validate.borrow(cfg, properties("pwd"), "hive", "tpch");
+        validate.release(c, "quit");
+        created.get(2).broken = true;
+        HetuConnection next = validate.borrow(cfg, properties("pwd"), "hive", "tpch");
+        assertNotSame(c, next);
+        assertFalse(next.isReused());
+        assertTrue(created.get(2).closed);
+        assertEquals(1, validate.getGroup(c.getPoolKey()).getValidateFailure());
+    }
+
+    @Test
+    public void testPrewarm() throws Exception {
+        HetuConnectionPool pool = new HetuConnectionPool(factory, direct, 4, 2, LONG_TIME, 0, LONG_TIME);
+        HetuConnection c = pool.borrow(cfg, properties("pwd"), "hive", "tpch");
+        assertEquals(2, pool.getIdleConnections().size());
+        assertEquals(3, created.size());
+        assertTrue(created.get(1).executed.contains("/* ping */ select 1"));
+
+        // 空闲超时只回收minIdle以外的连接
+        pool.release(c, "quit");
+        assertEquals(3, pool.getIdleConnections().size());
+        pool.check();
+        assertEquals(2, pool.getIdleConnections().size());
+
+        HetuConnection reused = pool.borrow(cfg, properties("pwd"), "hive", "tpch");
+        assertTrue(reused.isReused());
+        assertEquals(2, pool.getIdleConnections().size());
+    }
+
+    private static Properties properties(String password) {
+        Properties properties = new Properties();
+        properties.setProperty("user", "test");
+        properties.setProperty("password", password);
+        return properties;
+    }
+
+    private static class FakeConnection {
+        private String catalog;
+        private String schema;
+        private boolean autoCommit = true;
+        private boolean rollback;
+        private boolean closed;
+        private boolean broken;
+        private final List<String> executed = new ArrayList<>();
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            switch (method.getName()) {
+                                case "setCatalog":
+                                    catalog = (String) args[0];
+                                    return null;
+                                case "setSchema":
+                                    schema = (String) args[0];
+                                    return null;
+                                case "getAutoCommit":
+                                    return autoCommit;
+                                case "setAutoCommit":
+                                    autoCommit = (Boolean) args[0];
+                                    return null;
+                                case "rollback":
+                                    rollback = true;
+                                    return null;
+                                case "close":
+                                    closed = true;
+                                    return null;
+                                case "isClosed":
+                                    return closed;
+                                case "createStatement":
+                                    return statement();
+                                default:
+                                    return null;
+                            }
+                        }
+                    });
+        }
+
+        private Statement statement() {
+            return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                    new Class<?>[] {Statement.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                            switch (method.getName()) {
+                                case "execute":
+                                    executed.add((String) args[0]);
+                                    return false;
+                                case "executeQuery":
+                                    if (broken) {
+                                        throw new SQLException("server shutdown");
+                                    }
+                                    executed.add((String) args[0]);
+                                    return resultSet();
+                                default:
+                                    return null;
+                            }
+                        }
+                    });
+        }
+
+        private static ResultSet resultSet() {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[] {ResultSet.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            return "next".equals(method.getName()) ? Boolean.TRUE : null;
+                        }
+                    });
+        }
+    }
+}
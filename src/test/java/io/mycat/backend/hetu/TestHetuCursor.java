@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.MysqlDefs;
+import io.mycat.util.StringEncoder;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Hetu Cursor
+ */
+public class TestHetuCursor {
+    @Test
+    public void testFetchInBatches() throws Exception {
+        ResultSet rs = FakeResultSet.once(new Object[] {1L}, new Object[] {2L}, new Object[] {3L});
+        HetuCursor cursor = new HetuCursor(null, rs, fields(), new StringEncoder("utf8"));
+
+        ByteBuffer buffer = cursor.fetch(2, ByteBuffer.allocate(1024), null);
+        assertEquals(2, cursor.getPacketId());
+        assertEquals(2, countPackets(buffer));
+        assertFalse(cursor.isExhausted());
+        assertEquals(HetuCursor.SERVER_STATUS_AUTOCOMMIT | HetuCursor.SERVER_STATUS_CURSOR_EXISTS,
+                cursor.getStatus());
+
+        buffer = cursor.fetch(2, ByteBuffer.allocate(1024), null);
+        assertEquals(1, cursor.getPacketId());
+        assertEquals(1, countPackets(buffer));
+        assertTrue(cursor.isExhausted());
+        assertTrue((cursor.getStatus() & HetuCursor.SERVER_STATUS_LAST_ROW_SENT) != 0);
+    }
+
+    @Test
+    public void testFetchExactSize() throws Exception {
+        ResultSet rs = FakeResultSet.once(new Object[] {1L}, new Object[] {2L});
+        HetuCursor cursor = new HetuCursor(null, rs, fields(), new StringEncoder("utf8"));
+
+        // 行数正好等于fetch大小时, 下一次fetch才知道已经读完
+        cursor.fetch(2, ByteBuffer.allocate(1024), null);
+        assertFalse(cursor.isExhausted());
+        ByteBuffer buffer = cursor.fetch(2, ByteBuffer.allocate(1024), null);
+        assertEquals(0, cursor.getPacketId());
+        assertEquals(0, buffer.position());
+        assertTrue(cursor.isExhausted());
+    }
+
+    private static List<FieldPacket> fields() {
+        FieldPacket fieldPacket = new FieldPacket();
+        fieldPacket.type = MysqlDefs.FIELD_TYPE_LONGLONG;
+        List<FieldPacket> fieldPks = new ArrayList<>();
+        fieldPks.add(fieldPacket);
+        return fieldPks;
+    }
+
+    private static int countPackets(ByteBuffer buffer) {
+        int count = 0;
+        int pos = 0;
+        while (pos < buffer.position()) {
+            int size = (buffer.get(pos) & 0xff) | (buffer.get(pos + 1) & 0xff) << 8 | (buffer.get(pos + 2) & 0xff) << 16;
+            assertEquals(count + 1, buffer.get(pos + 3));
+            pos += 4 + size;
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.statistic.PingStat;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Hetu Liveness
+ */
+public class TestHetuLiveness {
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final AtomicInteger validations = new AtomicInteger();
+    private volatile boolean backendAlive = true;
+
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+    };
+
+    private final Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return "isClosed".equals(method.getName()) ? Boolean.FALSE : null;
+                }
+            });
+
+    private final HetuLiveness liveness = new HetuLiveness(60000L, executor) {
+        @Override
+        boolean validate(HetuConnection c) {
+            validations.incrementAndGet();
+            return backendAlive;
+        }
+    };
+
+    @Test
+    public void testPingAnsweredFromState() {
+        HetuConnection c = connection();
+        final List<Boolean> answers = new ArrayList<>();
+        HetuLiveness.Callback callback = new HetuLiveness.Callback() {
+            @Override
+            public void done(boolean alive) {
+                answers.add(alive);
+            }
+        };
+        long validateCount = PingStat.getInstance().getValidateCount();
+
+        // 状态未知, 在executor中校验后应答
+        liveness.ping(c, callback);
+        assertTrue(answers.isEmpty());
+        runTasks();
+        assertEquals(1, validations.get());
+        assertEquals(validateCount + 1, PingStat.getInstance().getValidateCount());
+        assertEquals(Boolean.TRUE, answers.get(0));
+
+        // 状态未过期, 不访问hetu
+        backendAlive = false;
+        liveness.ping(c, callback);
+        assertTrue(tasks.isEmpty());
+        assertEquals(2, answers.size());
+        assertEquals(Boolean.TRUE, answers.get(1));
+        assertEquals(1, validations.get());
+    }
+
+    @Test
+    public void testStatementConfirmsLiveness() {
+        HetuConnection c = connection();
+        final List<Boolean> answers = new ArrayList<>();
+        liveness.alive(c.getUrl());
+        liveness.ping(c, new HetuLiveness.Callback() {
+            @Override
+            public void done(boolean alive) {
+                answers.add(alive);
+            }
+        });
+        assertTrue(tasks.isEmpty());
+        assertEquals(0, validations.get());
+        assertEquals(Boolean.TRUE, answers.get(0));
+    }
+
+    @Test
+    public void testBackgroundCheck() {
+        final HetuConnection pooled = connection();
+        final List<HetuConnection> validated = new ArrayList<>();
+        final List<HetuConnection> released = new ArrayList<>();
+        HetuLiveness shortLiveness = new HetuLiveness(HetuLiveness.CHECK_PERIOD, executor) {
+            @Override
+            boolean validate(HetuConnection c) {
+                validations.incrementAndGet();
+                validated.add(c);
+                return backendAlive;
+            }
+
+            @Override
+            HetuConnection borrow(String poolKey, String catalog, String schema) {
+                assertEquals("key", poolKey);
+                assertEquals("hive", catalog);
+                return pooled;
+            }
+
+            @Override
+            void release(HetuConnection c) {
+                released.add(c);
+            }
+        };
+        HetuConnection c = connection();
+        final List<Boolean> answers = new ArrayList<>();
+        HetuLiveness.Callback callback = new HetuLiveness.Callback() {
+            @Override
+            public void done(boolean alive) {
+                answers.add(alive);
+            }
+        };
+        shortLiveness.alive(c.getUrl());
+        shortLiveness.ping(c, callback);
+        assertEquals(Boolean.TRUE, answers.get(0));
+
+        // 被ping过的后端在状态过期前由后台校验, 之后的ping直接得到结果
+        backendAlive = false;
+        shortLiveness.check();
+        assertEquals(1, tasks.size());
+        shortLiveness.check();
+        assertEquals(1, tasks.size());
+        runTasks();
+        assertEquals(1, validations.get());
+        // 用连接池的连接校验, 客户端的连接不被使用
+        assertEquals(1, validated.size());
+        assertTrue(validated.get(0) == pooled);
+        assertEquals(validated, released);
+        shortLiveness.ping(c, callback);
+        assertTrue(tasks.isEmpty());
+        assertFalse(answers.get(1));
+    }
+
+    @Test
+    public void testBackgroundCheckBorrowFailed() throws Exception {
+        HetuLiveness shortLiveness = new HetuLiveness(HetuLiveness.CHECK_PERIOD, executor) {
+            @Override
+            HetuConnection borrow(String poolKey, String catalog, String schema) throws SQLException {
+                throw new SQLException("Connection refused");
+            }
+        };
+        HetuConnection c = connection();
+        final List<Boolean> answers = new ArrayList<>();
+        HetuLiveness.Callback callback = new HetuLiveness.Callback() {
+            @Override
+            public void done(boolean alive) {
+                answers.add(alive);
+            }
+        };
+        shortLiveness.alive(c.getUrl());
+        shortLiveness.ping(c, callback);
+        shortLiveness.check();
+        runTasks();
+        shortLiveness.ping(c, callback);
+        assertEquals(Boolean.TRUE, answers.get(0));
+        assertFalse(answers.get(1));
+    }
+
+    private HetuConnection connection() {
+        HetuConnection c = new HetuConnection();
+        c.setServer("jdbc:lk://localhost:8080", "test");
+        c.setCon(connection);
+        c.setPoolKey("key");
+        c.setCatalog("hive");
+        return c;
+    }
+
+    private void runTasks() {
+        List<Runnable> copy = new ArrayList<>(tasks);
+        tasks.clear();
+        for (Runnable task : copy) {
+            task.run();
+        }
+    }
+}
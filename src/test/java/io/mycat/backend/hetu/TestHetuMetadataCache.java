@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.net.mysql.FieldPacket;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Hetu Metadata Cache
+ */
+public class TestHetuMetadataCache {
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+    };
+
+    @Test
+    public void testCacheable() {
+        HetuMetadataCache cache = new HetuMetadataCache(60000, 30000, 100, executor);
+        assertTrue(cache.isCacheable("show tables from hive.tpch like 'n%'"));
+        assertTrue(cache.isCacheable("  SHOW COLUMNS FROM orders"));
+        assertTrue(cache.isCacheable("show catalogs"));
+        assertTrue(cache.isCacheable("DESCRIBE orders"));
+        assertTrue(cache.isCacheable("desc orders"));
+        assertFalse(cache.isCacheable("describe input stmt1"));
+        assertFalse(cache.isCacheable("DESCRIBE OUTPUT stmt1"));
+        assertFalse(cache.isCacheable("show session"));
+        assertFalse(cache.isCacheable("select * from orders"));
+        assertFalse(new HetuMetadataCache(0, 0, 100, executor).isCacheable("show tables"));
+
+        assertEquals(HetuMetadataCache.cacheKey("url", "u", "hive", "tpch", "utf8", "show  tables"),
+                HetuMetadataCache.cacheKey("url", "u", "hive", "tpch", "utf8", " show\ttables "));
+    }
+
+    @Test
+    public void testGetAndExpire() throws Exception {
+        HetuMetadataCache cache = new HetuMetadataCache(50, 0, 100, executor);
+        HetuMetadataCache.Metadata metadata = metadata();
+        cache.put("k1", metadata);
+        assertSame(metadata, cache.get("k1"));
+        assertNull(cache.get("k2"));
+        assertNotSame(metadata.copyFieldPks().get(0), metadata.copyFieldPks().get(0));
+
+        Thread.sleep(80);
+        assertNull(cache.get("k1"));
+        assertEquals(0, cache.size());
+        assertEquals(3, cache.getCacheStatic().getAccessTimes());
+        assertEquals(1, cache.getCacheStatic().getHitTimes());
+        assertEquals(1, cache.getCacheStatic().getPutTimes());
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        HetuMetadataCache cache = new HetuMetadataCache(60000, 30000, 2, executor);
+        cache.put("k1", metadata());
+        Thread.sleep(5);
+        cache.put("k2", metadata());
+        cache.put("k3", metadata());
+        assertEquals(2, cache.size());
+        // 最早加载的一项被删除
+        assertNull(cache.get("k1"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        HetuMetadataCache cache = new HetuMetadataCache(60000, 30000, 100, executor);
+        String k1 = HetuMetadataCache.cacheKey("jdbc:lk://a:8080", "u1", "hive", "tpch", "utf8", "show tables");
+        String k2 = HetuMetadataCache.cacheKey("jdbc:lk://a:8080", "u2", "tpcds", "sf1", "utf8", "show tables");
+        String k3 = HetuMetadataCache.cacheKey("jdbc:lk://b:8080", "u1", "hive", "tpch", "utf8", "show tables");
+        cache.put(k1, metadata());
+        cache.put(k2, metadata());
+        cache.put(k3, metadata());
+
+        cache.invalidate("jdbc:lk://a:8080");
+        assertNull(cache.get(k1));
+        assertNull(cache.get(k2));
+        assertTrue(cache.get(k3) != null);
+        assertEquals(1, cache.getInvalidateCount());
+    }
+
+    @Test
+    public void testLoadAcrossInvalidate() {
+        HetuMetadataCache cache = new HetuMetadataCache(60000, 30000, 100, executor);
+        String key = HetuMetadataCache.cacheKey("jdbc:lk://a:8080", "u1", "hive", "tpch", "utf8", "show tables");
+        // 加载开始后执行了DDL, DDL之前的结果不放入缓存
+        long generation = cache.getGeneration();
+        cache.invalidate("jdbc:lk://a:8080");
+        cache.put(key, metadata(), generation);
+        assertNull(cache.get(key));
+        assertEquals(0, cache.size());
+
+        generation = cache.getGeneration();
+        cache.put(key, metadata(), generation);
+        assertTrue(cache.get(key) != null);
+    }
+
+    @Test
+    public void testRefreshScheduledOnce() throws Exception {
+        HetuMetadataCache cache = new HetuMetadataCache(60000, 10, 100, executor);
+        HetuMetadataCache.Metadata metadata = metadata();
+        cache.put("k1", metadata);
+        cache.refreshIfNeeded("k1", metadata, "pool");
+        assertEquals(0, tasks.size());
+
+        Thread.sleep(30);
+        cache.refreshIfNeeded("k1", metadata, "pool");
+        cache.refreshIfNeeded("k1", metadata, "pool");
+        assertEquals(1, tasks.size());
+        // 没有连接池的连接不刷新
+        cache.refreshIfNeeded("k1", metadata(), null);
+        assertEquals(1, tasks.size());
+    }
+
+    private static HetuMetadataCache.Metadata metadata() {
+        FieldPacket fieldPacket = new FieldPacket();
+        fieldPacket.name = "Table".getBytes();
+        List<FieldPacket> fieldPks = Collections.singletonList(fieldPacket);
+        List<byte[][]> rows = new ArrayList<>();
+        rows.add(new byte[][] {"orders".getBytes()});
+        return new HetuMetadataCache.Metadata("show tables", "hive", "tpch", "utf8", true, fieldPks, rows);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.backend.mysql.BindValue;
+import io.mycat.util.MysqlDefs;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Test Hetu Parameter Binder
+ */
+public class TestHetuParameterBinder {
+    private final List<String> calls = new ArrayList<>();
+    private final List<Object> values = new ArrayList<>();
+
+    private final PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(
+            PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class},
+            new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    calls.add(method.getName() + "(" + args[0] + ")");
+                    values.add(args[1]);
+                    return null;
+                }
+            });
+
+    @Test
+    public void testBindByHetuType() throws Exception {
+        HetuParameterBinder.bind(ps, 1, MysqlDefs.FIELD_TYPE_LONGLONG, value(MysqlDefs.FIELD_TYPE_LONG, 42), "utf8");
+        HetuParameterBinder.bind(ps, 2, MysqlDefs.FIELD_TYPE_LONG, value(MysqlDefs.FIELD_TYPE_VAR_STRING, " 7 "),
+                "utf8");
+        HetuParameterBinder.bind(ps, 3, (byte) MysqlDefs.FIELD_TYPE_NEW_DECIMAL,
+                value(MysqlDefs.FIELD_TYPE_VAR_STRING, "1.50"), "utf8");
+        HetuParameterBinder.bind(ps, 4, MysqlDefs.FIELD_TYPE_DATE,
+                value(MysqlDefs.FIELD_TYPE_VAR_STRING, "2020-06-03"), "utf8");
+        HetuParameterBinder.bind(ps, 5, MysqlDefs.FIELD_TYPE_TIMESTAMP,
+                value(MysqlDefs.FIELD_TYPE_DATETIME, Timestamp.valueOf("2020-06-03 10:11:12")), "utf8");
+        HetuParameterBinder.bind(ps, 6, MysqlDefs.FIELD_TYPE_BIT, value(MysqlDefs.FIELD_TYPE_TINY, (byte) 1), "utf8");
+        HetuParameterBinder.bind(ps, 7, (byte) MysqlDefs.FIELD_TYPE_VAR_STRING,
+                value(MysqlDefs.FIELD_TYPE_VAR_STRING, "it's"), "utf8");
+        HetuParameterBinder.bind(ps, 8, (byte) MysqlDefs.FIELD_TYPE_TINY_BLOB,
+                value(MysqlDefs.FIELD_TYPE_BLOB, new byte[] {1, 2}), "utf8");
+
+        assertEquals("setLong(1)", calls.get(0));
+        assertEquals(42L, values.get(0));
+        assertEquals("setInt(2)", calls.get(1));
+        assertEquals(7, values.get(1));
+        assertEquals("setBigDecimal(3)", calls.get(2));
+        assertEquals(new BigDecimal("1.50"), values.get(2));
+        assertEquals("setDate(4)", calls.get(3));
+        assertEquals(Date.valueOf("2020-06-03"), values.get(3));
+        assertEquals("setTimestamp(5)", calls.get(4));
+        assertEquals(Timestamp.valueOf("2020-06-03 10:11:12"), values.get(4));
+        assertEquals("setBoolean(6)", calls.get(5));
+        assertEquals(true, values.get(5));
+        assertEquals("setString(7)", calls.get(6));
+        assertEquals("it's", values.get(6));
+        assertEquals("setBytes(8)", calls.get(7));
+        assertArrayEquals(new byte[] {1, 2}, (byte[]) values.get(7));
+    }
+
+    @Test
+    public void testBindNullAndUnknown() throws Exception {
+        BindValue nullValue = value(MysqlDefs.FIELD_TYPE_VAR_STRING, null);
+        nullValue.isNull = true;
+        HetuParameterBinder.bind(ps, 1, MysqlDefs.FIELD_TYPE_LONG, nullValue, "utf8");
+        // DESCRIBE INPUT returns unknown, the type sent by the client is used
+        HetuParameterBinder.bind(ps, 2, (byte) MysqlDefs.FIELD_TYPE_UNKNOWN,
+                value(MysqlDefs.FIELD_TYPE_DOUBLE, 0.5d), "utf8");
+
+        assertEquals("setNull(1)", calls.get(0));
+        assertEquals(Types.INTEGER, values.get(0));
+        assertEquals("setDouble(2)", calls.get(1));
+        assertEquals(0.5d, values.get(1));
+    }
+
+    @Test
+    public void testIntegerRange() throws Exception {
+        HetuParameterBinder.bind(ps, 1, MysqlDefs.FIELD_TYPE_TINY, value(MysqlDefs.FIELD_TYPE_LONGLONG, -128L), "utf8");
+        HetuParameterBinder.bind(ps, 2, MysqlDefs.FIELD_TYPE_SHORT, value(MysqlDefs.FIELD_TYPE_DOUBLE, 300d), "utf8");
+        HetuParameterBinder.bind(ps, 3, MysqlDefs.FIELD_TYPE_LONG,
+                value(MysqlDefs.FIELD_TYPE_VAR_STRING, "2147483647"), "utf8");
+        assertEquals((byte) -128, values.get(0));
+        assertEquals((short) 300, values.get(1));
+        assertEquals(Integer.MAX_VALUE, values.get(2));
+
+        assertRejected(MysqlDefs.FIELD_TYPE_TINY, value(MysqlDefs.FIELD_TYPE_LONGLONG, 300L), "22003");
+        assertRejected(MysqlDefs.FIELD_TYPE_SHORT, value(MysqlDefs.FIELD_TYPE_LONG, 40000), "22003");
+        assertRejected(MysqlDefs.FIELD_TYPE_LONG, value(MysqlDefs.FIELD_TYPE_LONGLONG, 1L << 31), "22003");
+        assertRejected(MysqlDefs.FIELD_TYPE_INT24, value(MysqlDefs.FIELD_TYPE_VAR_STRING, "-2147483649"), "22003");
+        assertRejected(MysqlDefs.FIELD_TYPE_LONGLONG, value(MysqlDefs.FIELD_TYPE_DOUBLE, 1e19), "22003");
+        assertRejected(MysqlDefs.FIELD_TYPE_LONGLONG,
+                value(MysqlDefs.FIELD_TYPE_VAR_STRING, "9223372036854775808"), "22003");
+        assertRejected(MysqlDefs.FIELD_TYPE_LONG, value(MysqlDefs.FIELD_TYPE_DOUBLE, 2.5d), "22018");
+        assertRejected(MysqlDefs.FIELD_TYPE_TINY, value(MysqlDefs.FIELD_TYPE_VAR_STRING, "abc"), "22018");
+        assertRejected(MysqlDefs.FIELD_TYPE_TINY, value(MysqlDefs.FIELD_TYPE_DOUBLE, Double.NaN), "22018");
+        assertEquals(3, calls.size());
+    }
+
+    private void assertRejected(int paramType, BindValue bv, String sqlState) {
+        try {
+            HetuParameterBinder.bind(ps, 1, paramType, bv, "utf8");
+            fail();
+        } catch (SQLException e) {
+            assertEquals(sqlState, e.getSQLState());
+        }
+    }
+
+    private static BindValue value(int type, Object value) {
+        BindValue bindValue = new BindValue();
+        bindValue.type = type;
+        bindValue.value = value;
+        bindValue.isSet = true;
+        return bindValue;
+    }
+}
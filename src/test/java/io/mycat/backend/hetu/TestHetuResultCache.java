@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.buffer.DirectByteBufferPool;
+import io.mycat.cache.MysqlDataSetCache;
+import io.mycat.cache.impl.DataSetCachePool;
+import io.mycat.net.FrontendConnection;
+import io.mycat.net.NIOProcessor;
+import io.mycat.net.NIOSocketWR;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.MysqlDefs;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Hetu Result Cache
+ */
+public class TestHetuResultCache {
+    @Test
+    public void testHint() {
+        assertTrue(HetuResultCache.isNoCache("select SQL_NO_CACHE * from t"));
+        assertFalse(HetuResultCache.isNoCache("SELECT SQL_CACHE * from t"));
+        assertFalse(HetuResultCache.isNoCache("select * from sql_no_cache"));
+        assertEquals("select * from t", HetuResultCache.stripHint("select SQL_NO_CACHE * from t"));
+        assertEquals(" SELECT a from t", HetuResultCache.stripHint(" SELECT sql_cache  a from t"));
+        assertEquals("select * from t", HetuResultCache.stripHint("select * from t"));
+    }
+
+    @Test
+    public void testSelectTables() {
+        assertEquals(new HashSet<>(Arrays.asList("hive.tpch.orders", "hive.tpch.lineitem", "tpcds.sf1.store")),
+                HetuResultCache.selectTables("select * from orders o join \"Lineitem\" l on o.k = l.k "
+                        + "where x in (select y from tpcds.sf1.store)", "hive", "tpch"));
+        assertEquals(Collections.singleton("hive.other.t"),
+                HetuResultCache.selectTables("with w as (select * from other.t) select * from w", "hive", "tpch"));
+        // 结果会变化或无法解析的sql不缓存
+        assertNull(HetuResultCache.selectTables("select now(), a from t", "hive", "tpch"));
+        assertNull(HetuResultCache.selectTables("select * from t where d > current_date", "hive", "tpch"));
+        assertNull(HetuResultCache.selectTables("select 1", "hive", "tpch"));
+        assertNull(HetuResultCache.selectTables("select * from", "hive", "tpch"));
+    }
+
+    @Test
+    public void testWrittenTables() {
+        assertEquals(new HashSet<>(Arrays.asList("hive.tpch.t", "hive.tpch.t4")),
+                HetuResultCache.tables("insert into t select * from t4", "hive", "tpch", false));
+        assertEquals(Collections.singleton("hive.s.t6"),
+                HetuResultCache.tables("update s.t6 set a = 1", "hive", "tpch", false));
+        assertEquals(Collections.singleton("hive.tpch.t7"),
+                HetuResultCache.tables("drop table t7", "hive", "tpch", false));
+    }
+
+    @Test
+    public void testCapture() throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "hetu-result-cache-test");
+        DataSetCachePool pool = new DataSetCachePool("test", 1024 * 1024, 1800, 64, 100, dir);
+        HetuResultCache.Capture capture = new HetuResultCache.Capture(pool, "k1", "select * from t",
+                Collections.singleton("hive.tpch.t"));
+        capture.addPacket(new byte[] {1, 0, 0, 1, 1});
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        buffer.put(new byte[] {9, 9, 2, 0, 0, 2, 7, 7});
+        capture.rowSegment(buffer, 2, 6);
+        capture.rowEnd();
+        capture.finish();
+        assertEquals(11, ((MysqlDataSetCache) pool.get("k1")).getSize());
+        assertEquals(1, ((MysqlDataSetCache) pool.get("k1")).getTotal());
+
+        // 超过单个结果的大小限制
+        capture = new HetuResultCache.Capture(pool, "k2", "select * from t", Collections.singleton("hive.tpch.t"));
+        capture.addRow(new byte[60]);
+        capture.addRow(new byte[60]);
+        capture.finish();
+        assertNull(pool.get("k2"));
+    }
+
+    @Test
+    public void testCaptureInvalidatedWhileRunning() throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "hetu-result-cache-test");
+        DataSetCachePool pool = new DataSetCachePool("test", 1024 * 1024, 1800, 64, 1024, dir);
+        HetuResultCache.Capture stale = new HetuResultCache.Capture(pool, "k5", "select * from t",
+                Collections.singleton("hive.tpch.t"));
+        HetuResultCache.Capture other = new HetuResultCache.Capture(pool, "k6", "select * from t2",
+                Collections.singleton("hive.tpch.t2"));
+        stale.addRow(new byte[8]);
+        other.addRow(new byte[8]);
+        // SELECT执行期间UPDATE t
+        pool.removeTables(Collections.singleton("hive.tpch.t"));
+        stale.finish();
+        other.finish();
+        assertNull(pool.get("k5"));
+        assertEquals(1, ((MysqlDataSetCache) pool.get("k6")).getTotal());
+
+        // 之后开始的SELECT可以缓存
+        HetuResultCache.Capture fresh = new HetuResultCache.Capture(pool, "k5", "select * from t",
+                Collections.singleton("hive.tpch.t"));
+        fresh.addRow(new byte[8]);
+        fresh.finish();
+        assertEquals(1, ((MysqlDataSetCache) pool.get("k5")).getTotal());
+
+        // 无法解析的DML清空整个pool
+        HetuResultCache.Capture cleared = new HetuResultCache.Capture(pool, "k7", "select * from t2",
+                Collections.singleton("hive.tpch.t2"));
+        cleared.addRow(new byte[8]);
+        pool.clearCache();
+        cleared.finish();
+        assertNull(pool.get("k7"));
+    }
+
+    @Test
+    public void testCaptureRowsAcrossChunks() throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "hetu-result-cache-test");
+        DataSetCachePool pool = new DataSetCachePool("test", 1024 * 1024, 1800, 64, 100 * 1024, dir);
+        HetuResultCache.Capture capture = new HetuResultCache.Capture(pool, "k3", "select * from t",
+                Collections.singleton("hive.tpch.t"));
+
+        FieldPacket fieldPk = new FieldPacket();
+        fieldPk.type = (byte) MysqlDefs.FIELD_TYPE_VAR_STRING;
+        List<FieldPacket> fieldPks = Collections.singletonList(fieldPk);
+        // 每行700字节左右, 跨3个256字节的chunk
+        Object[][] rows = new Object[5][];
+        for (int i = 0; i < rows.length; i++) {
+            char[] chars = new char[700 + i];
+            Arrays.fill(chars, (char) ('a' + i));
+            rows[i] = new Object[] {new String(chars)};
+        }
+        ByteBuffer expected = ByteBuffer.allocate(8192);
+        TextRowEncoder plain = new TextRowEncoder(fieldPks, "utf8");
+        for (int i = 0; i < rows.length; i++) {
+            expected = plain.encode(FakeResultSet.create(rows[i]), (byte) (i + 2), expected, null);
+        }
+        expected.flip();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open();
+             Selector selector = Selector.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                 SocketChannel channel = server.accept()) {
+                channel.configureBlocking(false);
+                FrontendConnection source = new FrontendConnection(channel) {
+                };
+                source.setProcessor(new NIOProcessor("test",
+                        new DirectByteBufferPool(256 * 64, (short) 256, (short) 2, 0), null));
+                ((NIOSocketWR) source.getSocketWR()).register(selector);
+
+                TextRowEncoder encoder = new TextRowEncoder(fieldPks, "utf8");
+                ByteBuffer buffer = source.allocate();
+                for (int i = 0; i < rows.length; i++) {
+                    buffer = encoder.encode(FakeResultSet.create(rows[i]), (byte) (i + 2), buffer, source, capture);
+                }
+                source.write(buffer);
+                capture.finish();
+
+                // 客户端收到的和缓存的一样
+                ByteBuffer received = ByteBuffer.allocate(expected.remaining());
+                while (received.hasRemaining() && client.read(received) >= 0) {
+                    // read all
+                }
+                received.flip();
+                assertEquals(expected, received);
+            }
+        }
+
+        MysqlDataSetCache dataSet = (MysqlDataSetCache) pool.get("k3");
+        assertEquals(rows.length, dataSet.getTotal());
+        assertEquals(expected.remaining(), dataSet.getSize());
+        ByteBuffer cached = ByteBuffer.allocate((int) dataSet.getSize());
+        try (ReadableByteChannel in = dataSet.open()) {
+            while (cached.hasRemaining() && in.read(cached) >= 0) {
+                // read all
+            }
+        }
+        cached.flip();
+        assertEquals(expected, cached);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.MysqlDefs;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test Hetu Result Pipeline
+ */
+public class TestHetuResultPipeline {
+    private static final int[] TYPES = {MysqlDefs.FIELD_TYPE_LONGLONG, MysqlDefs.FIELD_TYPE_LONG,
+        MysqlDefs.FIELD_TYPE_DOUBLE, MysqlDefs.FIELD_TYPE_NEW_DECIMAL, MysqlDefs.FIELD_TYPE_VAR_STRING,
+        MysqlDefs.FIELD_TYPE_DATE, MysqlDefs.FIELD_TYPE_TIMESTAMP, MysqlDefs.FIELD_TYPE_BIT};
+
+    private static final Executor THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            new Thread(command).start();
+        }
+    };
+
+    @Test
+    public void testPerSecond() {
+        assertEquals(500, HetuResultPipeline.perSecond(1000, 2000000000L));
+        // 20GB 的导出, bytes * 1e9 超过long的范围
+        assertEquals(10000000000L, HetuResultPipeline.perSecond(20000000000L, 2000000000L));
+        assertEquals(5000000000000000L, HetuResultPipeline.perSecond(5000000L, 1));
+    }
+
+    @Test
+    public void testSameBytesAsDirect() throws Exception {
+        List<FieldPacket> fieldPks = fields();
+        Object[][] rows = rows(1000);
+        for (boolean binary : new boolean[] {true, false}) {
+            byte[] direct = encode(FakeResultSet.once(rows), encoder(fieldPks, binary));
+
+            RowEncoder encoder = encoder(fieldPks, binary);
+            // 很小的缓存, 分成很多批
+            HetuResultPipeline pipeline = new HetuResultPipeline(FakeResultSet.once(rows), encoder, 4096);
+            pipeline.start(THREAD);
+            assertArrayEquals(direct, encode(pipeline, encoder));
+            assertFalse(pipeline.next());
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void testFetchError() throws Exception {
+        final Object[][] rows = rows(100);
+        ResultSet failing = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, new InvocationHandler() {
+                    private final ResultSet rs = FakeResultSet.once(rows);
+                    private int count;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("next".equals(method.getName()) && ++count > 70) {
+                            throw new SQLException("Query was canceled", "", 1317);
+                        }
+                        return method.invoke(rs, args);
+                    }
+                });
+        RowEncoder encoder = encoder(fields(), true);
+        HetuResultPipeline pipeline = new HetuResultPipeline(failing, encoder, 4096);
+        pipeline.start(THREAD);
+        int count = 0;
+        try {
+            while (pipeline.next()) {
+                count++;
+            }
+            fail("error of the fetch stage is not thrown");
+        } catch (SQLException e) {
+            assertEquals(1317, e.getErrorCode());
+        }
+        assertEquals(70, count);
+    }
+
+    @Test
+    public void testCloseWaitsForFetch() throws Exception {
+        final Object[][] rows = rows(100000);
+        final AtomicInteger inNext = new AtomicInteger();
+        final AtomicInteger nextCount = new AtomicInteger();
+        ResultSet slow = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, new InvocationHandler() {
+                    private final ResultSet rs = FakeResultSet.once(rows);
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (!"next".equals(method.getName())) {
+                            return method.invoke(rs, args);
+                        }
+                        inNext.incrementAndGet();
+                        try {
+                            // 等待hetu的下一页
+                            Thread.sleep(nextCount.incrementAndGet() % 50 == 0 ? 20 : 0);
+                            return method.invoke(rs, args);
+                        } finally {
+                            inNext.decrementAndGet();
+                        }
+                    }
+                });
+        HetuResultPipeline pipeline = new HetuResultPipeline(slow, encoder(fields(), true), 4096);
+        pipeline.start(THREAD);
+        assertTrue(pipeline.next());
+        pipeline.close();
+        // 取数线程已经结束, 之后不会再调用rs.next()
+        assertEquals(0, inNext.get());
+        int count = nextCount.get();
+        Thread.sleep(100);
+        assertEquals(count, nextCount.get());
+    }
+
+    @Test
+    public void testCloseCancelsBlockedFetch() throws Exception {
+        final CountDownLatch fetching = new CountDownLatch(1);
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        final Statement statement = (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[] {Statement.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("cancel".equals(method.getName())) {
+                            cancelled.countDown();
+                        }
+                        return null;
+                    }
+                });
+        final Object[][] rows = rows(1);
+        ResultSet blocked = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, new InvocationHandler() {
+                    private final ResultSet rs = FakeResultSet.once(rows);
+                    private int count;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("getStatement".equals(method.getName())) {
+                            return statement;
+                        }
+                        if ("next".equals(method.getName()) && ++count > 1) {
+                            // hetu没有返回下一页, 直到语句被cancel
+                            fetching.countDown();
+                            cancelled.await();
+                            throw new SQLException("Query was canceled");
+                        }
+                        return method.invoke(rs, args);
+                    }
+                });
+        HetuResultPipeline pipeline = new HetuResultPipeline(blocked, encoder(fields(), true), 4096);
+        pipeline.start(THREAD);
+        assertTrue(fetching.await(10, TimeUnit.SECONDS));
+        long start = System.currentTimeMillis();
+        pipeline.close();
+        assertEquals(0, cancelled.getCount());
+        assertTrue(System.currentTimeMillis() - start >= HetuResultPipeline.CLOSE_CANCEL_MILLIS);
+    }
+
+    @Test
+    public void testBatchRowsFollowRowWidth() throws Exception {
+        char[] wide = new char[2000];
+        Arrays.fill(wide, 'x');
+        Object[][] rows = new Object[2000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[] {(long) i, 1, 0.5d, BigDecimal.ONE, new String(wide), null, null, true};
+        }
+        RowEncoder encoder = encoder(fields(), true);
+        HetuResultPipeline pipeline = new HetuResultPipeline(FakeResultSet.once(rows), encoder, 1024 * 1024);
+        pipeline.start(THREAD);
+        long count = 0;
+        while (pipeline.next()) {
+            count++;
+        }
+        assertEquals(rows.length, count);
+        // 一批256K, 每行约2K字节
+        assertTrue(pipeline.getBatchRows() <= 256 * 1024 / 2000);
+    }
+
+    private static byte[] encode(ResultSet rs, RowEncoder encoder) throws SQLException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+        byte packetId = 0;
+        while (rs.next()) {
+            buffer = encoder.encode(rs, ++packetId, buffer, null);
+        }
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static RowEncoder encoder(List<FieldPacket> fieldPks, boolean binary) {
+        return binary ? new BinaryRowEncoder(fieldPks, "utf8") : new TextRowEncoder(fieldPks, "utf8");
+    }
+
+    private static List<FieldPacket> fields() {
+        List<FieldPacket> fieldPks = new ArrayList<>();
+        for (int type : TYPES) {
+            FieldPacket fieldPacket = new FieldPacket();
+            fieldPacket.type = type;
+            fieldPks.add(fieldPacket);
+        }
+        return fieldPks;
+    }
+
+    private static Object[][] rows(int count) {
+        Object[][] rows = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            rows[i] = i % 7 == 0
+                ? new Object[] {null, null, null, null, null, null, null, null}
+                : new Object[] {(long) i * 1000003L, i, i / 3d, new BigDecimal(i).movePointLeft(2), "row " + i,
+                    Date.valueOf("2020-06-03"), new Timestamp(1591150272000L + i), i % 2 == 0};
+        }
+        return rows;
+    }
+}
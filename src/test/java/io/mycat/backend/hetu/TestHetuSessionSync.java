@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.config.Isolations;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Hetu Session Sync
+ */
+public class TestHetuSessionSync {
+    private final List<String> calls = new ArrayList<>();
+
+    private final Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    calls.add(method.getName() + (args == null ? "" : "(" + args[0] + ")"));
+                    switch (method.getName()) {
+                        case "getTransactionIsolation":
+                            return Connection.TRANSACTION_READ_COMMITTED;
+                        case "getAutoCommit":
+                            return true;
+                        default:
+                            return null;
+                    }
+                }
+            });
+
+    @Test
+    public void testOnlyDeltasAreApplied() throws Exception {
+        HetuConnection c = new HetuConnection();
+        c.setCon(connection);
+        long avoided = HetuConnection.getSyncAvoided();
+
+        c.syncSession("hive", "tpch", Isolations.READ_COMMITTED);
+        assertEquals(3, calls.size());
+        for (int i = 0; i < 1000; i++) {
+            c.syncSession("hive", "tpch", Isolations.READ_COMMITTED);
+        }
+        assertEquals(3, calls.size());
+        assertEquals(avoided + 3000, HetuConnection.getSyncAvoided());
+
+        c.syncSession("hive", "sf1", Isolations.READ_COMMITTED);
+        assertEquals("setSchema(sf1)", calls.get(3));
+        c.syncSession("tpcds", "sf1", Isolations.READ_COMMITTED);
+        assertEquals("setCatalog(tpcds)", calls.get(4));
+        assertEquals(5, calls.size());
+
+        assertTrue(c.getAutoCommit());
+        c.setAutoCommit(true);
+        c.setAutoCommit(false);
+        assertFalse(c.isAutocommit());
+        assertEquals("getAutoCommit", calls.get(5));
+        assertEquals("setAutoCommit(false)", calls.get(6));
+        assertEquals(7, calls.size());
+    }
+
+    @Test
+    public void testNullSchemaApplied() throws Exception {
+        HetuConnection c = new HetuConnection();
+        c.setCon(connection);
+        c.syncSession("hive", null, -1);
+        assertEquals(2, calls.size());
+        assertEquals("setSchema(null)", calls.get(1));
+        // 没有schema的连接也只设置一次
+        c.syncSession("hive", null, -1);
+        assertEquals(2, calls.size());
+        c.syncSession("hive", "tpch", -1);
+        assertEquals("setSchema(tpch)", calls.get(2));
+        assertEquals(3, calls.size());
+    }
+
+    @Test
+    public void testSessionProperties() {
+        HetuConnection c = new HetuConnection();
+        assertFalse(c.isAppliedSessionProperty("SET SESSION query_max_run_time = '1h'"));
+        c.recordSessionProperty("SET SESSION query_max_run_time = '1h'");
+        assertTrue(c.isAppliedSessionProperty("set session query_max_run_time='1h';"));
+        assertFalse(c.isAppliedSessionProperty("SET SESSION query_max_run_time = '2h'"));
+        c.recordSessionProperty("RESET SESSION query_max_run_time");
+        assertFalse(c.isAppliedSessionProperty("SET SESSION query_max_run_time = '1h'"));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.net.postgres.PostgresTypes;
+import io.mycat.util.MysqlDefs;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test Postgres Row Encoder
+ */
+public class TestPostgresRowEncoder {
+    @Test
+    public void testTextRow() throws Exception {
+        List<FieldPacket> fieldPks = fields(MysqlDefs.FIELD_TYPE_LONGLONG, MysqlDefs.FIELD_TYPE_NEW_DECIMAL,
+                MysqlDefs.FIELD_TYPE_BIT, MysqlDefs.FIELD_TYPE_VAR_STRING, MysqlDefs.FIELD_TYPE_TINY_BLOB,
+                MysqlDefs.FIELD_TYPE_VAR_STRING);
+        Object[] values = {-42L, new BigDecimal("1E+3"), true, "h\u00e9tu", new byte[] {1, (byte) 0xab}, null};
+        PostgresRowEncoder encoder = new PostgresRowEncoder(fieldPks, new short[values.length]);
+
+        ByteBuffer buffer = encode(encoder, values);
+        assertEquals('D', buffer.get());
+        assertEquals(buffer.limit() - 1, buffer.getInt());
+        assertEquals(values.length, buffer.getShort());
+        assertEquals("-42", text(buffer));
+        assertEquals("1000", text(buffer));
+        assertEquals("t", text(buffer));
+        assertEquals("h\u00e9tu", text(buffer));
+        assertEquals("\\x01ab", text(buffer));
+        assertEquals(-1, buffer.getInt());
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void testBinaryRow() throws Exception {
+        List<FieldPacket> fieldPks = fields(MysqlDefs.FIELD_TYPE_LONG, MysqlDefs.FIELD_TYPE_LONGLONG,
+                MysqlDefs.FIELD_TYPE_DOUBLE, MysqlDefs.FIELD_TYPE_NEW_DECIMAL, MysqlDefs.FIELD_TYPE_DATE,
+                MysqlDefs.FIELD_TYPE_TIMESTAMP, MysqlDefs.FIELD_TYPE_VAR_STRING, MysqlDefs.FIELD_TYPE_LONG);
+        Object[] values = {7, Long.MAX_VALUE, 0.5d, new BigDecimal("-12345.678"), Date.valueOf("2000-01-02"),
+            Timestamp.valueOf("2000-01-01 00:00:01.5"), "abc", null};
+        short[] formats = new short[values.length];
+        Arrays.fill(formats, PostgresTypes.FORMAT_BINARY);
+        PostgresRowEncoder encoder = new PostgresRowEncoder(fieldPks, formats);
+
+        ByteBuffer buffer = encode(encoder, values);
+        buffer.position(5);
+        assertEquals(values.length, buffer.getShort());
+        assertEquals(4, buffer.getInt());
+        assertEquals(7, buffer.getInt());
+        assertEquals(8, buffer.getInt());
+        assertEquals(Long.MAX_VALUE, buffer.getLong());
+        assertEquals(8, buffer.getInt());
+        assertEquals(0.5d, buffer.getDouble(), 0d);
+        // numeric: 1 2345 . 6780 -> ndigits 3, weight 1, negative, dscale 3
+        assertEquals(14, buffer.getInt());
+        assertEquals(3, buffer.getShort());
+        assertEquals(1, buffer.getShort());
+        assertEquals(0x4000, buffer.getShort());
+        assertEquals(3, buffer.getShort());
+        assertEquals(1, buffer.getShort());
+        assertEquals(2345, buffer.getShort());
+        assertEquals(6780, buffer.getShort());
+        assertEquals(4, buffer.getInt());
+        assertEquals(1, buffer.getInt());
+        assertEquals(8, buffer.getInt());
+        assertEquals(1500000L, buffer.getLong());
+        assertEquals("abc", text(buffer));
+        assertEquals(-1, buffer.getInt());
+        assertEquals(0, buffer.remaining());
+    }
+
+    private static ByteBuffer encode(PostgresRowEncoder encoder, Object[] values) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer = encoder.encode(FakeResultSet.create(values), (byte) 0, buffer, null);
+        assertEquals(buffer.position(), encoder.getLastPacketSize());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String text(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<FieldPacket> fields(int... types) {
+        List<FieldPacket> fieldPks = new ArrayList<>();
+        for (int type : types) {
+            FieldPacket fieldPacket = new FieldPacket();
+            fieldPacket.type = type;
+            fieldPks.add(fieldPacket);
+        }
+        return fieldPks;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.MysqlDefs;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test Prepared Metadata
+ */
+public class TestPreparedMetadata {
+    @Test
+    public void testNormalize() {
+        assertEquals("select * from t where a = ?",
+                PreparedMetadata.normalize("  select *\n\tfrom t  where a =   ? "));
+        assertEquals("select 'a  b', \"C  d\" from t",
+                PreparedMetadata.normalize("select   'a  b',  \"C  d\"   from t"));
+        assertEquals(PreparedMetadata.cacheKey("url", "u", "hive", "tpch", "utf8", "select 1"),
+                PreparedMetadata.cacheKey("url", "u", "hive", "tpch", "utf8", " select\n1 "));
+        assertFalse(PreparedMetadata.cacheKey("url", "u", "hive", "tpch", "utf8", "select 1")
+                .equals(PreparedMetadata.cacheKey("url", "u2", "hive", "tpch", "utf8", "select 1")));
+        assertFalse(PreparedMetadata.cacheKey("url", "u", "hive", "tpch", "utf8", "select 1")
+                .equals(PreparedMetadata.cacheKey("url2", "u", "hive", "tpch", "utf8", "select 1")));
+    }
+
+    @Test
+    public void testCopyFieldPks() {
+        FieldPacket fieldPacket = new FieldPacket();
+        fieldPacket.name = "c1".getBytes();
+        fieldPacket.type = MysqlDefs.FIELD_TYPE_LONG;
+        fieldPacket.packetId = 7;
+        List<FieldPacket> fieldPks = new ArrayList<>();
+        fieldPks.add(fieldPacket);
+
+        PreparedMetadata metadata = new PreparedMetadata(Arrays.asList("integer"), fieldPks);
+        List<FieldPacket> copy = metadata.copyFieldPks();
+        assertEquals(1, metadata.getColumnsNumber());
+        assertEquals(Arrays.asList("integer"), metadata.getParameters());
+        assertNotSame(fieldPacket, copy.get(0));
+        assertSame(fieldPacket.name, copy.get(0).name);
+        assertEquals(MysqlDefs.FIELD_TYPE_LONG, copy.get(0).type);
+        assertEquals(0, copy.get(0).packetId);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test Statement Timeout
+ */
+public class TestStatementTimeout {
+    @Test
+    public void testTimeoutSeconds() {
+        StatementTimeout timeout = new StatementTimeout(300,
+                " etl@*=3600, etl@hive=1800,*@hive.tpch=60 ,bi@Hive.TPCH=0, *@tpcds=120");
+        assertEquals(3600, timeout.timeoutSeconds("etl", "tpcds", "sf1"));
+        assertEquals(1800, timeout.timeoutSeconds("etl", "hive", "tpch"));
+        assertEquals(60, timeout.timeoutSeconds("alice", "hive", "tpch"));
+        // 0为不限制
+        assertEquals(0, timeout.timeoutSeconds("bi", "hive", "tpch"));
+        assertEquals(120, timeout.timeoutSeconds("alice", "tpcds", "sf1"));
+        assertEquals(300, timeout.timeoutSeconds("alice", "hive", "default"));
+        assertEquals(300, timeout.timeoutSeconds(null, null, null));
+    }
+
+    @Test
+    public void testInvalidRules() {
+        assertEquals(0, StatementTimeout.parseRules("etl=10,@,x@y=abc,").size());
+        assertEquals(10, new StatementTimeout(10, null).timeoutSeconds("etl", "hive", "tpch"));
+    }
+}
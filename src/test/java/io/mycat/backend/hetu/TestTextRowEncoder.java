@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu;
+
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.net.mysql.RowDataPacket;
+import io.mycat.util.MysqlDefs;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test Text Row Encoder
+ */
+public class TestTextRowEncoder {
+    @Test
+    public void testEncodeRow() throws Exception {
+        List<FieldPacket> fieldPks = new ArrayList<>();
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_LONGLONG));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_LONGLONG));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_LONG));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_NEW_DECIMAL));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_BIT));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_VAR_STRING));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_VAR_STRING));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_VAR_STRING));
+
+        Object[] values = {Long.MIN_VALUE, 0L, null, new BigDecimal("1E+3"), true, "hetu", "", null};
+        TextRowEncoder encoder = new TextRowEncoder(fieldPks, "utf8");
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.put((byte) 9);
+        buffer = encoder.encode(FakeResultSet.create(values), (byte) 5, buffer, null);
+        assertEquals(buffer.position() - 1, encoder.getLastPacketSize());
+
+        byte[] packet = new byte[encoder.getLastPacketSize()];
+        buffer.flip();
+        buffer.get();
+        buffer.get(packet);
+
+        RowDataPacket row = new RowDataPacket(values.length);
+        row.read(packet);
+        assertEquals(5, row.packetId);
+        assertEquals(packet.length - 4, row.packetLength);
+        assertEquals(String.valueOf(Long.MIN_VALUE), new String(row.fieldValues.get(0)));
+        assertEquals("0", new String(row.fieldValues.get(1)));
+        assertNull(row.fieldValues.get(2));
+        assertEquals("1000", new String(row.fieldValues.get(3)));
+        assertEquals("1", new String(row.fieldValues.get(4)));
+        assertEquals("hetu", new String(row.fieldValues.get(5)));
+        assertArrayEquals(new byte[0], row.fieldValues.get(6));
+        assertNull(row.fieldValues.get(7));
+    }
+
+    @Test
+    public void testEncodeStringCharset() throws Exception {
+        List<FieldPacket> fieldPks = new ArrayList<>();
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_VAR_STRING));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_VAR_STRING));
+        fieldPks.add(field(MysqlDefs.FIELD_TYPE_VAR_STRING));
+
+        char[] chars = new char[300];
+        Arrays.fill(chars, 'x');
+        Object[] values = {"hetu \u6570\u636e", new String(chars), "caf\u00e9"};
+        for (String charset : new String[] {"utf8", "gbk", "latin1"}) {
+            TextRowEncoder encoder = new TextRowEncoder(fieldPks, charset);
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            buffer = encoder.encode(FakeResultSet.create(values), (byte) 1, buffer, null);
+            byte[] packet = new byte[encoder.getLastPacketSize()];
+            buffer.flip();
+            buffer.get(packet);
+
+            RowDataPacket row = new RowDataPacket(values.length);
+            row.read(packet);
+            for (int i = 0; i < values.length; i++) {
+                assertArrayEquals(((String) values[i]).getBytes(charset), row.fieldValues.get(i));
+            }
+        }
+    }
+
+    private static FieldPacket field(int type) {
+        FieldPacket fieldPacket = new FieldPacket();
+        fieldPacket.type = (byte) (type & 0xff);
+        return fieldPacket;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu.odbc.escapesequences;
+
+/**
+ * per statement cost of QueryParserUtil on sql generated by BI tools through the odbc driver
+ */
+public class QueryParserPerfMain {
+    private static final String PLAIN = "SELECT testorders_orc.ee AS ee, testorders_orc.hh AS hh, "
+            + "SUM(testorders_orc.ii) AS sum_ii_ok FROM hxtest.testorders_orc testorders_orc "
+            + "WHERE testorders_orc.name = 'a{b}' GROUP BY 1, 2";
+
+    private static final String ESCAPED = "SELECT testorders_orc.ee AS ee, '{fn gtr''(dri''ve)}', "
+            + "{t '00:''00:00'}, testorders_orc.hh AS hh, "
+            + "{fn TIMESTAMPDIFF(SQL_TSI_YEAR, {fn CURDATE()}, HIRE_DATE)}, testorders_orc.ii AS ii, "
+            + "CAST({fn TRUNCATE(EXTRACT(YEAR FROM testorders_orc.jj),0)} AS INTEGER) AS yr_jj_ok, "
+            + "{fn CONVERT({fn UCASE(testorders_orc.kk)}, SQL_VARCHAR)} AS kk "
+            + "FROM hxtest.testorders_orc testorders_orc WHERE testorders_orc.dd >= {d '2020-06-01'} "
+            + "AND testorders_orc.ts < {ts '2020-06-05 10:11:12'} "
+            + "AND Name LIKE '\\%A''$A''A%' {escape '\\'} GROUP BY 1, 2, 3, 4";
+
+    public static void main(String[] args) {
+        long loop = 1000 * 1000;
+        for (int i = 0; i < 3; i++) {
+            run("plain", PLAIN, loop);
+            run("escaped", ESCAPED, loop / 10);
+        }
+    }
+
+    private static void run(String name, String sql, long loop) {
+        long length = 0;
+        long t1 = System.nanoTime();
+        for (long i = 0; i < loop; ++i) {
+            length += QueryParserUtil.parseAndRewriteQuery(sql).length();
+        }
+        long t2 = System.nanoTime();
+        System.out.println(name + ": " + ((t2 - t1) / loop) + " ns/statement. " + length);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu.odbc.escapesequences;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test Query Parser Rewrite, the quote handling and the nesting of the single pass rewriter
+ */
+public class TestQueryParserRewrite {
+    @Test
+    public void testNoEscape() {
+        String sql = "select a, b from t where c = 'x'";
+        assertSame(sql, QueryParserUtil.parseAndRewriteQuery(sql));
+    }
+
+    @Test
+    public void testEscapeInStringLiteral() {
+        assertEquals("select '{fn ucase(a)}' from t", QueryParserUtil.parseAndRewriteQuery("select '{fn ucase(a)}' from t"));
+        assertEquals("select '{d ''2020-01-01''}',  upper( a)  from t",
+                QueryParserUtil.parseAndRewriteQuery("select '{d ''2020-01-01''}', {fn ucase(a)} from t"));
+    }
+
+    @Test
+    public void testBraceInQuotedIdentifier() {
+        assertEquals("select \"a{b\" from t where c =  upper( x) ",
+                QueryParserUtil.parseAndRewriteQuery("select \"a{b\" from t where c = {fn ucase(x)}"));
+        assertEquals("select \"a}b\",  upper( x)  from t",
+                QueryParserUtil.parseAndRewriteQuery("select \"a}b\", {fn ucase(x)} from t"));
+    }
+
+    @Test
+    public void testDoubledQuote() {
+        assertEquals("select 'it''s {fn x()}',  upper( a)  from t",
+                QueryParserUtil.parseAndRewriteQuery("select 'it''s {fn x()}', {fn ucase(a)} from t"));
+        assertEquals("select  CONCAT('it''s', b)  from t",
+                QueryParserUtil.parseAndRewriteQuery("select {fn concat('it''s', b)} from t"));
+    }
+
+    @Test
+    public void testCommaAndParenthesisInStringArgument() {
+        assertEquals("select  CONCAT('a,b', 'c)d')  from t",
+                QueryParserUtil.parseAndRewriteQuery("select {fn concat('a,b', 'c)d')} from t"));
+        assertEquals("select  strpos('(', b)  from t",
+                QueryParserUtil.parseAndRewriteQuery("select {fn locate('(', b)} from t"));
+        assertEquals("select  CONCAT(\"a,(b\", c)  from t",
+                QueryParserUtil.parseAndRewriteQuery("select {fn concat(\"a,(b\", c)} from t"));
+    }
+
+    @Test
+    public void testUnknownOuterFrame() {
+        // 不认识的外层保留, 内层照常改写
+        assertEquals("select {foo  X() } from t", QueryParserUtil.parseAndRewriteQuery("select {foo {fn x()}} from t"));
+        assertEquals("select {foo  upper( a) },  lower(b)  from t",
+                QueryParserUtil.parseAndRewriteQuery("select {foo {fn ucase(a)}}, {fn lcase(b)} from t"));
+        // 保留的frame的外层也保留
+        assertEquals("select {fn concat({foo  upper( a) }, b)} from t",
+                QueryParserUtil.parseAndRewriteQuery("select {fn concat({foo {fn ucase(a)}}, b)} from t"));
+    }
+
+    @Test
+    public void testNestedFn() {
+        // 内层{fn}改写一次, 外层原样作为参数, 和最外层的结果相同(去掉前后的空格)
+        assertEquals("select  upper( a)  from t", QueryParserUtil.parseAndRewriteQuery("select {fn ucase(a)} from t"));
+        assertEquals("select  CONCAT(upper( a), 'x')  from t",
+                QueryParserUtil.parseAndRewriteQuery("select {fn concat({fn ucase(a)}, 'x')} from t"));
+        assertEquals("select  CONCAT(upper( a), CONCAT(lower(b), 'c'))  from t",
+                QueryParserUtil.parseAndRewriteQuery(
+                        "select {fn concat({fn ucase(a)}, {fn concat({fn lcase(b)}, 'c')})} from t"));
+        // 不会再翻译一次, 否则是 length(rtrim(RTRIM(a)))
+        assertEquals("select  CONCAT(length(rtrim(a)), 'x')  from t",
+                QueryParserUtil.parseAndRewriteQuery("select {fn concat({fn length(a)}, 'x')} from t"));
+        // {fn}中没有转义的函数仍然翻译
+        assertEquals("select  upper( lower(a))  from t",
+                QueryParserUtil.parseAndRewriteQuery("select {fn ucase(lcase(a))} from t"));
+        assertEquals("select  upper( lower(a))  from t",
+                QueryParserUtil.parseAndRewriteQuery("select {fn ucase({fn lcase(a)})} from t"));
+    }
+
+    @Test
+    public void testUnterminatedQuote() {
+        // 没有结束的引号是普通字符
+        assertEquals("select 'abc  upper( a)  from t",
+                QueryParserUtil.parseAndRewriteQuery("select 'abc {fn ucase(a)} from t"));
+        assertEquals("select  upper( a)  from t where b = \"c",
+                QueryParserUtil.parseAndRewriteQuery("select {fn ucase(a)} from t where b = \"c"));
+        assertEquals("select  upper( 'ab)  from t", QueryParserUtil.parseAndRewriteQuery("select {fn ucase('ab)} from t"));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.backend.hetu.odbc.escapesequences;
+
+import io.mycat.cache.impl.LruCachePool;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test Rewritten Sql Cache
+ */
+public class TestRewrittenSqlCache {
+    @Test
+    public void testTemplate() {
+        List<String> literals = new ArrayList<>();
+        String template = RewrittenSqlCache.template(
+                "select t1.c2, {fn LEFT(name, 3)} from t1 where d >= {d '2020-06-01'} and n like 'a''b' {escape 'x'} "
+                        + "and \"c 1\" = -1.5 and x = 1e5", literals);
+        assertEquals(Arrays.asList("3", "2020-06-01", "a", "b", "1.5"), literals);
+        assertEquals("select t1.c2, {fn LEFT(name, \uE0000\uE000)} from t1 where d >= {d '\uE0001\uE000'} "
+                + "and n like '\uE0002\uE000''\uE0003\uE000' {escape 'x'} and \"c 1\" = -\uE0004\uE000 and x = 1e5",
+                template);
+        assertEquals("select t1.c2,  substr(name, 3, 1)  from t1 where d >=  date '2020-06-01'  "
+                + "and n  like 'a''b' escape 'x'  and \"c 1\" = -1.5 and x = 1e5",
+                RewrittenSqlCache.fill(QueryParserUtil.parseAndRewriteQuery(template), literals));
+        assertNull(RewrittenSqlCache.template("select {fn CURDATE()}", new ArrayList<>()));
+    }
+
+    @Test
+    public void testCache() {
+        LruCachePool pool = new LruCachePool(RewrittenSqlCache.CACHE_POOL, 1024 * 1024, 1800);
+        String sql1 = "select {fn UCASE(name)} from t where d = {d '2020-06-01'}";
+        String sql2 = "select {fn UCASE(name)} from t where d = {d '2020-06-02'}";
+        assertEquals(QueryParserUtil.parseAndRewriteQuery(sql1), RewrittenSqlCache.parseAndRewriteQuery(pool, sql1, false));
+        assertEquals(QueryParserUtil.parseAndRewriteQuery(sql1), RewrittenSqlCache.parseAndRewriteQuery(pool, sql1, false));
+        assertEquals(QueryParserUtil.parseAndRewriteQuery(sql2), RewrittenSqlCache.parseAndRewriteQuery(pool, sql2, false));
+        assertEquals(1, pool.getCacheStatic().getHitTimes());
+        assertEquals(2, pool.getCacheStatic().getItemSize());
+
+        pool.clearCache();
+        assertEquals(QueryParserUtil.parseAndRewriteQuery(sql1), RewrittenSqlCache.parseAndRewriteQuery(pool, sql1, true));
+        assertEquals(QueryParserUtil.parseAndRewriteQuery(sql2), RewrittenSqlCache.parseAndRewriteQuery(pool, sql2, true));
+        assertEquals(1, pool.getCacheStatic().getHitTimes());
+        assertEquals(1, pool.getCacheStatic().getItemSize());
+    }
+}
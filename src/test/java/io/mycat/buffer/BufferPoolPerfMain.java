@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * allocate/recycle throughput of DirectByteBufferPool and SizeClassBufferPool with 1/8/32 threads.
+ * each thread keeps a few buffers alive and mixes the common 4K/16K sizes with larger ones.
+ */
+public class BufferPoolPerfMain {
+    private static final int PAGE_SIZE = 512 * 1024 * 4;
+    private static final short CHUNK_SIZE = 4096;
+    private static final short PAGE_COUNT = 64;
+    private static final int[] SIZES = {4096, 4096, 16384, 4096, 100, 16384, 32768, 4096};
+    private static final int OPERATIONS = 1000000;
+
+    public static void main(String[] args) throws Exception {
+        for (int round = 0; round < 3; round++) {
+            for (int threads : new int[] {1, 8, 32}) {
+                run("DirectByteBufferPool", new DirectByteBufferPool(PAGE_SIZE, CHUNK_SIZE, PAGE_COUNT, 0), threads);
+                run("SizeClassBufferPool", new SizeClassBufferPool(PAGE_SIZE, CHUNK_SIZE, PAGE_COUNT, 0), threads);
+            }
+        }
+    }
+
+    private static void run(String name, BufferPool pool, int threads) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        int perThread = OPERATIONS / threads;
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                ByteBuffer[] live = new ByteBuffer[4];
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        int slot = i & 3;
+                        if (live[slot] != null) {
+                            pool.recycle(live[slot]);
+                        }
+                        live[slot] = pool.allocate(SIZES[i & 7]);
+                    }
+                    for (ByteBuffer buffer : live) {
+                        pool.recycle(buffer);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long used = System.nanoTime() - begin;
+        System.out.println(name + " threads " + threads + ": " + (used / (perThread * threads)) + " ns/op");
+    }
+}
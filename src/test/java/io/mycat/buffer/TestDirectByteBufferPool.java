@@ -122,6 +122,51 @@ public class TestDirectByteBufferPool {
         Assert.assertEquals("Should out of memory when i = " + 8, i, 8);
     }
 
+    @Test
+    public void testGrowAndReleaseIdlePages() {
+        int size = 256;
+        int pageSize = size * 4;
+        // 初始1个page, 最多扩容到3个, 空闲即释放
+        DirectByteBufferPool pool = new DirectByteBufferPool(pageSize, (short) 256, (short) 1, 0, 3, 0);
+        List<ByteBuffer> buffs = new ArrayList<ByteBuffer>();
+        for (int i = 0; i < 12; i++) {
+            ByteBuffer byteBuffer = pool.allocate(size);
+            Assert.assertTrue(byteBuffer instanceof DirectBuffer);
+            buffs.add(byteBuffer);
+        }
+        Assert.assertEquals(3, pool.getPageCount());
+        Assert.assertEquals(2, pool.getGrowCount());
+        Assert.assertEquals(0, pool.getHeapFallbackCount());
+
+        ByteBuffer heapBuffer = pool.allocate(size);
+        Assert.assertFalse(heapBuffer instanceof DirectBuffer);
+        Assert.assertEquals(1, pool.getHeapFallbackCount());
+        Assert.assertEquals(size, pool.getHeapFallbackBytes());
+
+        // 还有buffer在使用的page不释放
+        Assert.assertEquals(0, pool.releaseIdlePages());
+        for (ByteBuffer buff : buffs) {
+            pool.recycle(buff);
+        }
+        Assert.assertEquals(2, pool.releaseIdlePages());
+        Assert.assertEquals(1, pool.getPageCount());
+        Assert.assertEquals(2, pool.getShrinkCount());
+        Assert.assertEquals(pageSize, pool.capacity());
+        Assert.assertTrue(pool.allocate(size) instanceof DirectBuffer);
+    }
+
+    @Test
+    public void testKeepPagesUntilIdleTimeout() {
+        DirectByteBufferPool pool = new DirectByteBufferPool(1024, (short) 256, (short) 1, 0, 2, 60 * 1000L);
+        ByteBuffer first = pool.allocate(1024);
+        ByteBuffer second = pool.allocate(1024);
+        Assert.assertEquals(2, pool.getPageCount());
+        pool.recycle(first);
+        pool.recycle(second);
+        Assert.assertEquals(0, pool.releaseIdlePages());
+        Assert.assertEquals(2, pool.getPageCount());
+    }
+
     @Test
     public  void testExpandBuffer(){
         int size = 512;
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.buffer;
+
+import org.junit.Test;
+import sun.nio.ch.DirectBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Size Class Buffer Pool
+ */
+@SuppressWarnings("restriction")
+public class TestSizeClassBufferPool {
+    @Test
+    public void testOrder() {
+        assertEquals(0, SizeClassBufferPool.order(1));
+        assertEquals(1, SizeClassBufferPool.order(2));
+        assertEquals(2, SizeClassBufferPool.order(3));
+        assertEquals(2, SizeClassBufferPool.order(4));
+        assertEquals(3, SizeClassBufferPool.order(5));
+    }
+
+    @Test
+    public void testAllocateUntilExhausted() {
+        // 两个page, 每个4个chunk, 两个chunk的buffer不经过magazine
+        SizeClassBufferPool pool = new SizeClassBufferPool(1024, (short) 256, (short) 2, 0);
+        List<ByteBuffer> buffers = new ArrayList<>();
+        Set<Long> addresses = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            ByteBuffer buffer = pool.allocate(300);
+            assertTrue(buffer.isDirect());
+            assertEquals(512, buffer.capacity());
+            assertTrue(addresses.add(((DirectBuffer) buffer).address()));
+            buffers.add(buffer);
+        }
+        assertEquals(2048, pool.getUsedBytes());
+        assertFalse(pool.allocate(300).isDirect());
+
+        for (ByteBuffer buffer : buffers) {
+            pool.recycle(buffer);
+        }
+        assertEquals(0, pool.getUsedBytes());
+        // 回收后buddy合并, 可以分配整页
+        assertTrue(pool.allocate(1024).isDirect());
+        assertTrue(pool.allocate(1024).isDirect());
+        assertFalse(pool.allocate(1024).isDirect());
+        assertFalse(pool.allocate(2048).isDirect());
+    }
+
+    @Test
+    public void testExactCapacity() {
+        SizeClassBufferPool pool = new SizeClassBufferPool(4096, (short) 256, (short) 1, 768);
+        // 3个chunk占用4个chunk的块, 但capacity和原来的pool一样是chunk的整数倍
+        ByteBuffer buffer = pool.allocate(pool.getConReadBuferChunk());
+        assertEquals(768, buffer.capacity());
+        ByteBuffer other = pool.allocate(512);
+        assertEquals(1024, ((DirectBuffer) other).address() - ((DirectBuffer) buffer).address());
+        pool.recycle(buffer);
+        pool.recycle(other);
+        assertTrue(pool.allocate(4096).isDirect());
+    }
+
+    @Test
+    public void testMagazine() {
+        SizeClassBufferPool pool = new SizeClassBufferPool(64 * 256, (short) 256, (short) 1, 0);
+        ByteBuffer buffer = pool.allocate(100);
+        assertEquals(256, buffer.capacity());
+        buffer.put((byte) 1);
+        pool.recycle(buffer);
+        ByteBuffer again = pool.allocate(256);
+        assertSame(buffer, again);
+        assertEquals(0, again.position());
+        assertEquals(256, again.limit());
+        pool.recycle(again);
+        assertEquals(0, pool.getUsedBytes());
+    }
+
+    @Test
+    public void testRecycleByOtherThread() throws Exception {
+        SizeClassBufferPool pool = new SizeClassBufferPool(64 * 256, (short) 256, (short) 1, 0);
+        ByteBuffer buffer = pool.allocate(1024);
+        long threadId = Thread.currentThread().getId();
+        assertEquals(Long.valueOf(1024), pool.getNetDirectMemoryUsage().get(threadId));
+
+        Thread thread = new Thread(() -> pool.recycle(buffer));
+        thread.start();
+        thread.join();
+        assertEquals(Long.valueOf(0), pool.getNetDirectMemoryUsage().get(threadId));
+    }
+
+    @Test
+    public void testReclaimMagazineOfExitedThread() throws Exception {
+        // 一个page只有一个16K的块
+        SizeClassBufferPool pool = new SizeClassBufferPool(4 * 256, (short) 256, (short) 1, 0);
+        Thread thread = new Thread(() -> pool.recycle(pool.allocate(1024)));
+        thread.start();
+        thread.join();
+        assertTrue(pool.allocate(1024).isDirect());
+    }
+
+    @Test
+    public void testReleaseDeadThreads() throws Exception {
+        SizeClassBufferPool pool = new SizeClassBufferPool(64 * 256, (short) 256, (short) 1, 0);
+        ByteBuffer[] kept = new ByteBuffer[1];
+        Thread recycled = new Thread(() -> pool.recycle(pool.allocate(1024)));
+        Thread leaked = new Thread(() -> kept[0] = pool.allocate(256));
+        recycled.start();
+        recycled.join();
+        leaked.start();
+        leaked.join();
+        assertEquals(2, pool.getThreadCount());
+        assertEquals(2, pool.getNetDirectMemoryUsage().size());
+
+        pool.releaseDeadThreads();
+        assertEquals(0, pool.getThreadCount());
+        // 还有buffer未回收的线程保留使用量
+        assertFalse(pool.getNetDirectMemoryUsage().containsKey(recycled.getId()));
+        assertEquals(Long.valueOf(256), pool.getNetDirectMemoryUsage().get(leaked.getId()));
+
+        pool.recycle(kept[0]);
+        pool.releaseDeadThreads();
+        assertTrue(pool.getNetDirectMemoryUsage().isEmpty());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import io.mycat.cache.impl.DataSetCachePool;
+
+public class DataSetCachePoolTest {
+	private final File dir = new File(System.getProperty("java.io.tmpdir"), "dataset-cache-test");
+
+	@Test
+	public void testMemoryAndSpill() throws IOException {
+		DataSetCachePool pool = new DataSetCachePool("test", 1024 * 1024, 1800, 64, 4096, dir);
+		MysqlDataSetCache small = dataSet(pool, "t1", 3, 10);
+		MysqlDataSetCache large = dataSet(pool, "t2", 20, 10);
+		assertTrue(small.isInMemory());
+		assertFalse(large.isInMemory());
+		assertTrue(new File(large.getDataFile()).exists());
+		assertEquals(20, large.getTotal());
+
+		pool.putIfAbsent("small", small);
+		pool.putIfAbsent("large", large);
+		assertSame(small, pool.get("small"));
+		assertArrayEquals(expected(3, 10), read(small));
+		assertArrayEquals(expected(20, 10), read((MysqlDataSetCache) pool.get("large")));
+
+		CacheStatic statics = pool.getCacheStatic();
+		assertEquals(2, statics.getItemSize());
+		assertEquals(small.getSize() + large.getSize(), statics.getMemorySize());
+
+		pool.clearCache();
+		assertNull(pool.get("large"));
+		assertFalse(new File(large.getDataFile()).exists());
+	}
+
+	@Test
+	public void testLimits() throws IOException {
+		DataSetCachePool pool = new DataSetCachePool("test", 100, 1800, 64, 60, dir);
+		// larger than the max entry size
+		MysqlDataSetCache tooLarge = dataSet(pool, "t1", 7, 10);
+		pool.putIfAbsent("k0", tooLarge);
+		assertNull(pool.get("k0"));
+		assertFalse(new File(tooLarge.getDataFile()).exists());
+
+		pool.putIfAbsent("k1", dataSet(pool, "t1", 4, 10));
+		pool.putIfAbsent("k2", dataSet(pool, "t2", 4, 10));
+		pool.putIfAbsent("k3", dataSet(pool, "t3", 4, 10));
+		// the least recently used is dropped
+		assertNull(pool.get("k1"));
+		assertEquals(2, pool.getCacheStatic().getItemSize());
+	}
+
+	@Test
+	public void testRemoveTables() throws IOException {
+		DataSetCachePool pool = new DataSetCachePool("test", 1024 * 1024, 1800, 64, 4096, dir);
+		MysqlDataSetCache join = dataSet(pool, "t1", 1, 10);
+		join.setTables(new HashSet<>(Arrays.asList("hive.tpch.orders", "hive.tpch.lineitem")));
+		pool.putIfAbsent("join", join);
+		pool.putIfAbsent("nation", dataSet(pool, "hive.tpch.nation", 1, 10));
+
+		pool.removeTables(Collections.singleton("hive.tpch.lineitem"));
+		assertNull(pool.get("join"));
+		assertTrue(pool.get("nation") != null);
+	}
+
+	@Test
+	public void testExpire() throws Exception {
+		DataSetCachePool pool = new DataSetCachePool("test", 1024 * 1024, 1, 64, 4096, dir);
+		pool.putIfAbsent("k1", dataSet(pool, "t1", 1, 10));
+		assertTrue(pool.get("k1") != null);
+		Thread.sleep(1100);
+		assertNull(pool.get("k1"));
+	}
+
+	private static MysqlDataSetCache dataSet(DataSetCachePool pool, String table, int rows, int rowSize)
+			throws IOException {
+		MysqlDataSetCache dataSet = pool.newDataSet("select * from " + table);
+		dataSet.setTables(Collections.singleton(table));
+		for (int i = 0; i < rows; i++) {
+			dataSet.appendRecord(row(i, rowSize));
+		}
+		dataSet.finishStoring();
+		return dataSet;
+	}
+
+	private static byte[] row(int i, int rowSize) {
+		byte[] row = new byte[rowSize];
+		Arrays.fill(row, (byte) i);
+		return row;
+	}
+
+	private static byte[] expected(int rows, int rowSize) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < rows; i++) {
+			out.write(row(i, rowSize), 0, rowSize);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] read(MysqlDataSetCache dataSet) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteBuffer buf = ByteBuffer.allocate(7);
+		try (ReadableByteChannel channel = dataSet.open()) {
+			while (channel.read(buf) >= 0) {
+				buf.flip();
+				out.write(buf.array(), 0, buf.limit());
+				buf.clear();
+			}
+		}
+		return out.toByteArray();
+	}
+}
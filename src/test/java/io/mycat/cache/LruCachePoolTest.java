@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.mycat.cache.impl.LruCachePool;
+
+public class LruCachePoolTest {
+
+	@Test
+	public void testBasic() {
+		LruCachePool pool = new LruCachePool("test", 1024 * 1024, 1800);
+		pool.putIfAbsent("2", "dn2");
+		pool.putIfAbsent("1", "dn1");
+		pool.putIfAbsent("1", "dn3");
+
+		assertEquals("dn2", pool.get("2"));
+		assertEquals("dn1", pool.get("1"));
+		assertNull(pool.get("3"));
+
+		CacheStatic statics = pool.getCacheStatic();
+		assertEquals(2, statics.getItemSize());
+		assertEquals(2, statics.getPutTimes());
+		assertEquals(3, statics.getAccessTimes());
+		assertEquals(2, statics.getHitTimes());
+		assertTrue(statics.getMemorySize() > 0);
+
+		pool.clearCache("1");
+		assertNull(pool.get("1"));
+		pool.clearCache();
+		assertEquals(0, pool.getCacheStatic().getItemSize());
+		assertEquals(0, pool.getCacheStatic().getMemorySize());
+	}
+
+	@Test
+	public void testBytesLimit() {
+		// 16 segments of 1k bytes, about 6 entries of 100 chars each
+		LruCachePool pool = new LruCachePool("test", 16 * 1024, 1800);
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			value.append('x');
+		}
+		for (int i = 0; i < 1000; i++) {
+			pool.putIfAbsent("key" + i, value.toString());
+		}
+		CacheStatic statics = pool.getCacheStatic();
+		assertTrue(statics.getMemorySize() <= 16 * 1024);
+		assertTrue(statics.getItemSize() > 0 && statics.getItemSize() < 1000);
+		// the latest is kept, the eldest is evicted
+		assertEquals(value.toString(), pool.get("key999"));
+		assertNull(pool.get("key0"));
+
+		// larger than a segment, not cached
+		StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 1024; i++) {
+			large.append('x');
+		}
+		pool.putIfAbsent("large", large.toString());
+		assertNull(pool.get("large"));
+	}
+
+	@Test
+	public void testExpire() throws InterruptedException {
+		LruCachePool pool = new LruCachePool("test", 1024 * 1024, 1);
+		pool.putIfAbsent("1", "dn1");
+		Thread.sleep(1100);
+		assertNull(pool.get("1"));
+		assertEquals(0, pool.getCacheStatic().getItemSize());
+	}
+}
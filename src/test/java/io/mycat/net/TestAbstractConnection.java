@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.net;
+
+import io.mycat.buffer.DirectByteBufferPool;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Abstract Connection
+ */
+public class TestAbstractConnection {
+    private AbstractConnection con;
+
+    @Before
+    public void setUp() throws Exception {
+        con = new AbstractConnection(null) {
+        };
+        con.setProcessor(new NIOProcessor("test", new DirectByteBufferPool(4096, (short) 256, (short) 1, 0), null));
+        con.setWriteQueueWaterMark(1000, 200);
+    }
+
+    @Test
+    public void testWaitWriteQueueDrain() throws Exception {
+        // 没到高水位不阻塞
+        fill(900);
+        con.waitWriteQueueDrain();
+        assertEquals(0, con.getWriteQueueParkedCount());
+
+        fill(300);
+        Thread waiter = startWaiter();
+        // 还在低水位之上, 继续等
+        con.onWriteQueueWritten(800);
+        waiter.join(200);
+        assertTrue(waiter.isAlive());
+
+        con.onWriteQueueWritten(300);
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+        assertEquals(100, con.getWriteQueueBytes());
+        assertEquals(1, con.getWriteQueueParkedCount());
+    }
+
+    @Test
+    public void testCloseWhileWaiting() throws Exception {
+        fill(1200);
+        Thread waiter = startWaiter();
+
+        con.close("test");
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+        assertEquals(0, con.getWriteQueueBytes());
+        assertTrue(con.writeQueue.isEmpty());
+        assertEquals(1, con.getWriteQueueParkedCount());
+    }
+
+    private void fill(int bytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        buffer.position(bytes);
+        con.writeQueueBytes.addAndGet(bytes);
+        con.writeQueue.offer(buffer);
+    }
+
+    /**
+     * 启动一个写超过高水位的线程, 等它阻塞在写队列上
+     */
+    private Thread startWaiter() throws InterruptedException {
+        Thread waiter = new Thread(con::waitWriteQueueDrain);
+        waiter.start();
+        while (waiter.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue(waiter.isAlive());
+            Thread.sleep(10);
+        }
+        return waiter;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.net;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test Multi Packet Assembler
+ */
+public class TestMultiPacketAssembler {
+    private static final int MAX = MultiPacketAssembler.MAX_PAYLOAD;
+
+    @Test
+    public void testAssemble() {
+        MultiPacketAssembler assembler = new MultiPacketAssembler();
+        ByteBuffer first = packet(MAX, (byte) 0, (byte) 'a');
+        assertTrue(MultiPacketAssembler.isSplit(first));
+        assertFalse(assembler.append(first, Integer.MAX_VALUE));
+        assertTrue(assembler.isAssembling());
+
+        ByteBuffer last = packet(10, (byte) 1, (byte) 'b');
+        assertFalse(MultiPacketAssembler.isSplit(last));
+        assertTrue(assembler.append(last, Integer.MAX_VALUE));
+
+        ByteBuffer packet = assembler.packet();
+        assertEquals(4 + MAX + 10, packet.remaining());
+        assertEquals(1, packet.get(3));
+        assertEquals('a', packet.get(4));
+        assertEquals('a', packet.get(3 + MAX));
+        assertEquals('b', packet.get(4 + MAX));
+        assertEquals('b', packet.get(3 + MAX + 10));
+        assembler.release();
+        assertFalse(assembler.isAssembling());
+    }
+
+    @Test
+    public void testEmptyLastPacket() {
+        MultiPacketAssembler assembler = new MultiPacketAssembler();
+        assertFalse(assembler.append(packet(MAX, (byte) 0, (byte) 'a'), Integer.MAX_VALUE));
+        assertTrue(assembler.append(packet(0, (byte) 1, (byte) 0), Integer.MAX_VALUE));
+        assertEquals(4 + MAX, assembler.packet().remaining());
+        assembler.release();
+    }
+
+    @Test
+    public void testOverMaxPacketSize() {
+        MultiPacketAssembler assembler = new MultiPacketAssembler();
+        assembler.append(packet(MAX, (byte) 0, (byte) 'a'), MAX + 100);
+        try {
+            assembler.append(packet(200, (byte) 1, (byte) 'b'), MAX + 100);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertFalse(assembler.isAssembling());
+        }
+    }
+
+    private static ByteBuffer packet(int payload, byte id, byte fill) {
+        ByteBuffer buffer = ByteBuffer.allocate(payload + 4);
+        buffer.put((byte) payload).put((byte) (payload >>> 8)).put((byte) (payload >>> 16)).put(id);
+        while (buffer.hasRemaining()) {
+            buffer.put(fill);
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.net;
+
+import io.mycat.buffer.BufferPool;
+import io.mycat.buffer.DirectByteBufferPool;
+import io.mycat.util.CompressUtil;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test MySQL Packet Compressor
+ */
+public class TestMySQLPacketCompressor {
+    private final BufferPool pool = new DirectByteBufferPool(1024 * 1024, (short) 4096, (short) 2, 0);
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    private final MySQLPacketCompressor compressor = new MySQLPacketCompressor(pool, buffer -> {
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        written.write(bytes, 0, bytes.length);
+        pool.recycle(buffer);
+    });
+    private final List<int[]> frames = new ArrayList<>();
+
+    @Test
+    public void testCoalesceAndSplitPackets() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        byte id = 1;
+        for (int i = 0; i < 100; i++) {
+            packet(stream, id++, ("row " + i + " of a compressible result set ").getBytes());
+        }
+        byte[] big = new byte[40000];
+        for (int i = 0; i < big.length; i++) {
+            big[i] = (byte) ('a' + i % 7);
+        }
+        packet(stream, id, big);
+        byte[] data = stream.toByteArray();
+
+        // 按1000字节切分, 包会跨越输入buffer
+        for (int offset = 0; offset < data.length; offset += 1000) {
+            ByteBuffer buffer = pool.allocate(1000);
+            buffer.put(data, offset, Math.min(1000, data.length - offset));
+            compressor.compress(buffer);
+        }
+
+        assertArrayEquals(data, decode());
+        assertTrue(frames.size() < 101);
+        for (int i = 0; i < frames.size(); i++) {
+            assertEquals(1 + i, frames.get(i)[0]);
+        }
+        assertTrue(compressor.getCompressedBytes() < compressor.getPlainBytes());
+        compressor.release();
+    }
+
+    @Test
+    public void testStoreIncompressible() {
+        Random random = new Random(7);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        byte id = 1;
+        for (int i = 0; i < 8 * (MySQLPacketCompressor.ADAPT_FRAMES + 4); i++) {
+            byte[] payload = new byte[2000];
+            random.nextBytes(payload);
+            packet(stream, id++, payload);
+        }
+        byte[] data = stream.toByteArray();
+        ByteBuffer buffer = pool.allocate(data.length);
+        buffer.put(data);
+        compressor.compress(buffer);
+
+        assertArrayEquals(data, decode());
+        assertEquals(MySQLPacketCompressor.MIN_LEVEL, compressor.getLevel());
+        for (int[] frame : frames) {
+            assertEquals(0, frame[1]);
+        }
+        compressor.release();
+    }
+
+    @Test
+    public void testResetSequence() {
+        write((byte) 5, new byte[10]);
+        write((byte) 0, new byte[10]);
+        compressor.resetSequence();
+        write((byte) 1, new byte[10]);
+
+        decode();
+        assertEquals(5, frames.get(0)[0]);
+        assertEquals(6, frames.get(1)[0]);
+        assertEquals(1, frames.get(2)[0]);
+        compressor.release();
+    }
+
+    private void write(byte id, byte[] payload) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        packet(stream, id, payload);
+        ByteBuffer buffer = pool.allocate(payload.length + 4);
+        buffer.put(stream.toByteArray());
+        compressor.compress(buffer);
+    }
+
+    private static void packet(ByteArrayOutputStream stream, byte id, byte[] payload) {
+        stream.write(payload.length & 0xff);
+        stream.write((payload.length >>> 8) & 0xff);
+        stream.write((payload.length >>> 16) & 0xff);
+        stream.write(id);
+        stream.write(payload, 0, payload.length);
+    }
+
+    /**
+     * frames: {seq, uncompressed length}
+     */
+    private byte[] decode() {
+        byte[] bytes = written.toByteArray();
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        int pos = 0;
+        while (pos < bytes.length) {
+            int length = ub3(bytes, pos);
+            int seq = bytes[pos + 3] & 0xff;
+            int plainLength = ub3(bytes, pos + 4);
+            frames.add(new int[] {seq, plainLength});
+            pos += 7;
+            if (plainLength == 0) {
+                plain.write(bytes, pos, length);
+            } else {
+                byte[] inflated = CompressUtil.decompress(bytes, pos, length);
+                assertEquals(plainLength, inflated.length);
+                plain.write(inflated, 0, inflated.length);
+            }
+            pos += length;
+        }
+        return plain.toByteArray();
+    }
+
+    private static int ub3(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8 | (bytes[offset + 2] & 0xff) << 16;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.net;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test NIO Reactor Pool
+ */
+public class TestNIOReactorPool {
+    private final List<SocketChannel> channels = new ArrayList<>();
+
+    @After
+    public void tearDown() throws Exception {
+        for (SocketChannel channel : channels) {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void testLeastLoadedReactor() throws Exception {
+        NIOReactorPool pool = new NIOReactorPool("TestReactor", 2);
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+            NIOReactor first = pool.getLeastLoadedReactor(null);
+            AbstractConnection c1 = connect(server);
+            first.postRegister(c1);
+            assertEquals(1, first.getConnectionCount());
+
+            NIOReactor second = pool.getLeastLoadedReactor(null);
+            assertNotSame(first, second);
+            second.postRegister(connect(server));
+
+            // 负载相同时优先preferred
+            assertSame(first, pool.getLeastLoadedReactor(first));
+            assertSame(second, pool.getLeastLoadedReactor(second));
+
+            c1.close("test");
+            assertEquals(0, first.getConnectionCount());
+            assertSame(first, pool.getLeastLoadedReactor(second));
+            assertEquals(1, first.getAssignCount());
+        }
+    }
+
+    private AbstractConnection connect(ServerSocketChannel server) throws Exception {
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel channel = server.accept();
+        channels.add(client);
+        channels.add(channel);
+        channel.configureBlocking(false);
+        return new AbstractConnection(channel) {
+        };
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.net;
+
+import io.mycat.buffer.DirectByteBufferPool;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test NIO Socket WR
+ */
+public class TestNIOSocketWR {
+    private final List<ByteBuffer> recycled = new ArrayList<>();
+    private AbstractConnection con;
+    private NIOSocketWR socketWR;
+
+    @Before
+    public void setUp() throws Exception {
+        con = new AbstractConnection(null) {
+        };
+        con.setProcessor(new NIOProcessor("test", new DirectByteBufferPool(4096, (short) 256, (short) 1, 0) {
+            @Override
+            public void recycle(ByteBuffer theBuf) {
+                recycled.add(theBuf);
+            }
+        }, null));
+        socketWR = (NIOSocketWR) con.socketWR;
+        socketWR.setGatheringWrite(8, 1024 * 1024);
+    }
+
+    @Test
+    public void testPartialWrite() throws Exception {
+        ByteBuffer b0 = offer(0, 100);
+        ByteBuffer b1 = offer(100, 100);
+        ByteBuffer b2 = offer(200, 100);
+        FakeChannel channel = new FakeChannel(150);
+
+        assertFalse(socketWR.gatheringWrite0(channel));
+        assertEquals(1, channel.calls);
+        // 只回收完全写出的b0, 写了一半的b1放到writeBuffer
+        assertEquals(Arrays.asList(b0), recycled);
+        assertSame(b1, con.writeBuffer);
+        assertEquals(50, b1.remaining());
+        assertEquals(150, con.getWriteQueueBytes());
+        // 没有写到的b2留在队列中, 撤销flip
+        assertEquals(Arrays.asList(b2), new ArrayList<>(con.writeQueue));
+        assertEquals(100, b2.position());
+        assertEquals(b2.capacity(), b2.limit());
+
+        assertTrue(socketWR.gatheringWrite0(channel));
+        assertEquals(Arrays.asList(b0, b1, b2), recycled);
+        assertNull(con.writeBuffer);
+        assertTrue(con.writeQueue.isEmpty());
+        assertEquals(0, con.getWriteQueueBytes());
+        assertArrayEquals(bytes(0, 300), channel.out.toByteArray());
+    }
+
+    @Test
+    public void testNothingWritten() throws Exception {
+        ByteBuffer b0 = offer(0, 100);
+        ByteBuffer b1 = offer(100, 100);
+        FakeChannel channel = new FakeChannel(0);
+
+        assertFalse(socketWR.gatheringWrite0(channel));
+        assertTrue(recycled.isEmpty());
+        // 第一个没写完的b0保持flip放到writeBuffer, 后面的恢复原状留在队列中
+        assertSame(b0, con.writeBuffer);
+        assertEquals(100, b0.remaining());
+        assertEquals(Arrays.asList(b1), new ArrayList<>(con.writeQueue));
+        assertEquals(100, b1.position());
+        assertEquals(b1.capacity(), b1.limit());
+        assertEquals(200, con.getWriteQueueBytes());
+
+        channel.accept = 1000;
+        assertTrue(socketWR.gatheringWrite0(channel));
+        assertEquals(Arrays.asList(b0, b1), recycled);
+        assertArrayEquals(bytes(0, 200), channel.out.toByteArray());
+    }
+
+    @Test
+    public void testWriteBufferWrittenFirst() throws Exception {
+        ByteBuffer pending = ByteBuffer.wrap(bytes(0, 100));
+        pending.position(60);
+        con.writeBuffer = pending;
+        con.writeQueueBytes.addAndGet(40);
+        ByteBuffer b0 = offer(100, 100);
+        FakeChannel channel = new FakeChannel(30);
+
+        assertFalse(socketWR.gatheringWrite0(channel));
+        assertSame(pending, con.writeBuffer);
+        assertEquals(10, pending.remaining());
+        assertTrue(recycled.isEmpty());
+        assertEquals(Arrays.asList(b0), new ArrayList<>(con.writeQueue));
+        assertEquals(100, b0.position());
+        assertEquals(b0.capacity(), b0.limit());
+
+        channel.accept = 60;
+        assertFalse(socketWR.gatheringWrite0(channel));
+        assertEquals(Arrays.asList(pending), recycled);
+        assertSame(b0, con.writeBuffer);
+        assertEquals(50, b0.remaining());
+        assertTrue(con.writeQueue.isEmpty());
+    }
+
+    private ByteBuffer offer(int from, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.put(bytes(from, length));
+        con.writeQueueBytes.addAndGet(buffer.position());
+        con.writeQueue.offer(buffer);
+        return buffer;
+    }
+
+    private static byte[] bytes(int from, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (from + i);
+        }
+        return bytes;
+    }
+
+    /**
+     * 每次write最多接受accept个字节
+     */
+    private static class FakeChannel implements GatheringByteChannel {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int accept;
+        private int calls;
+
+        FakeChannel(int accept) {
+            this.accept = accept;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            calls++;
+            long written = 0;
+            for (int i = offset; i < offset + length && written < accept; i++) {
+                ByteBuffer src = srcs[i];
+                while (src.hasRemaining() && written < accept) {
+                    out.write(src.get());
+                    written++;
+                }
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            return (int) write(new ByteBuffer[] {src}, 0, 1);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.net.handler;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.mycat.config.ErrorCode;
+import io.mycat.net.mysql.AuthPacket;
+
+/** Test FrontendAuthenticator */
+public class TestFrontendAuthenticator {
+
+    private static class RecordingAuthenticator extends FrontendAuthenticator {
+        private final Executor executor;
+        private final List<Integer> failures = new ArrayList<>();
+
+        RecordingAuthenticator(Executor executor) {
+            super(null);
+            this.executor = executor;
+        }
+
+        @Override
+        protected Executor connectExecutor() {
+            return executor;
+        }
+
+        @Override
+        protected void failure(int errno, String info) {
+            failures.add(errno);
+        }
+    }
+
+    private static byte[] authPacket() throws Exception {
+        AuthPacket auth = new AuthPacket();
+        auth.packetId = 1;
+        auth.user = "test";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        auth.write(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testRetryAfterFailure() throws Exception {
+        // 没有 server url, 认证失败; 之后的认证包仍需处理
+        RecordingAuthenticator authenticator = new RecordingAuthenticator(Runnable::run);
+        authenticator.handle(authPacket());
+        authenticator.handle(authPacket());
+        Assert.assertEquals(2, authenticator.failures.size());
+        Assert.assertEquals(ErrorCode.ER_SERVER_SHUTDOWN, authenticator.failures.get(1).intValue());
+    }
+
+    @Test
+    public void testRetryAfterRejected() throws Exception {
+        RecordingAuthenticator authenticator = new RecordingAuthenticator(command -> {
+            throw new RejectedExecutionException();
+        });
+        authenticator.handle(authPacket());
+        authenticator.handle(authPacket());
+        Assert.assertEquals(2, authenticator.failures.size());
+    }
+
+    @Test
+    public void testIgnoredWhileAuthenticating() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        RecordingAuthenticator authenticator = new RecordingAuthenticator(queued::add);
+        authenticator.handle(authPacket());
+        authenticator.handle(authPacket());
+        Assert.assertEquals(1, queued.size());
+
+        queued.get(0).run();
+        authenticator.handle(authPacket());
+        Assert.assertEquals(2, queued.size());
+        Assert.assertEquals(1, authenticator.failures.size());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.net.postgres;
+
+import io.mycat.util.MysqlDefs;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test Postgres Types
+ */
+public class TestPostgresTypes {
+    @Test
+    public void testNumericRoundTrip() {
+        String[] values = {"0", "1", "-1", "10000", "0.0001", "-12345.678", "123456789012345678.90", "0.00"};
+        for (String value : values) {
+            BigDecimal v = new BigDecimal(value);
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            PostgresTypes.writeNumeric(buffer, v);
+            assertEquals(PostgresTypes.numericSize(v), buffer.position());
+            byte[] bytes = new byte[buffer.position()];
+            buffer.flip();
+            buffer.get(bytes);
+            assertEquals(v, PostgresTypes.decodeBinary(PostgresTypes.NUMERIC, bytes));
+        }
+    }
+
+    @Test
+    public void testDateTime() {
+        assertEquals(0, PostgresTypes.toPostgresDays(LocalDate.of(2000, 1, 1)));
+        assertEquals(-1, PostgresTypes.toPostgresDays(LocalDate.of(1999, 12, 31)));
+        LocalDateTime time = LocalDateTime.of(1999, 12, 31, 23, 59, 59, 999000);
+        assertEquals(-999001L, PostgresTypes.toPostgresMicros(time));
+        assertEquals(time, PostgresTypes.toLocalDateTime(PostgresTypes.toPostgresMicros(time)));
+
+        assertEquals(Date.valueOf("2000-01-03"),
+                PostgresTypes.decodeBinary(PostgresTypes.DATE, ByteBuffer.allocate(4).putInt(2).array()));
+        assertEquals(Timestamp.valueOf("2000-01-01 00:00:01.5"),
+                PostgresTypes.decodeBinary(PostgresTypes.TIMESTAMP, ByteBuffer.allocate(8).putLong(1500000L).array()));
+    }
+
+    @Test
+    public void testTypeMapping() {
+        assertEquals(PostgresTypes.INT8, PostgresTypes.oid(MysqlDefs.FIELD_TYPE_LONGLONG));
+        assertEquals(PostgresTypes.BYTEA, PostgresTypes.oid(MysqlDefs.FIELD_TYPE_TINY_BLOB));
+        assertEquals(PostgresTypes.VARCHAR, PostgresTypes.oid(MysqlDefs.FIELD_TYPE_VAR_STRING));
+        assertEquals(MysqlDefs.FIELD_TYPE_NEW_DECIMAL, PostgresTypes.mysqlType("decimal(10,2)"));
+        assertEquals(MysqlDefs.FIELD_TYPE_LONGLONG, PostgresTypes.mysqlType("bigint"));
+        assertEquals(MysqlDefs.FIELD_TYPE_LONG, PostgresTypes.mysqlType(PostgresTypes.INT4));
+        assertEquals(-8L, PostgresTypes.decodeBinary(PostgresTypes.INT8, ByteBuffer.allocate(8).putLong(-8L).array()));
+    }
+
+    @Test
+    public void testReadBind() {
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        buffer.put(PostgresPacket.BIND).putInt(0);
+        buffer.put("p1\0s1\0".getBytes(StandardCharsets.UTF_8));
+        // one format code for all parameters: binary
+        buffer.putShort((short) 1).putShort((short) 1);
+        buffer.putShort((short) 2).putInt(4).putInt(42).putInt(-1);
+        buffer.putShort((short) 0);
+        byte[] data = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(data);
+
+        Bind bind = Bind.read(data);
+        assertEquals("p1", bind.getPortal());
+        assertEquals("s1", bind.getStatement());
+        assertEquals(PostgresTypes.FORMAT_BINARY, bind.getParameterFormat(1));
+        assertArrayEquals(new byte[] {0, 0, 0, 42}, bind.getParameterValues()[0]);
+        assertNull(bind.getParameterValues()[1]);
+        assertEquals(PostgresTypes.FORMAT_TEXT, bind.getResultFormat(3));
+    }
+
+    @Test
+    public void testReadStartup() {
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        buffer.putInt(0).putInt(StartupMessage.PROTOCOL_3);
+        buffer.put("user\0hetu\0database\0hive.tpch\0\0".getBytes(StandardCharsets.UTF_8));
+        byte[] data = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(data);
+
+        assertEquals(StartupMessage.PROTOCOL_3, StartupMessage.readCode(data));
+        StartupMessage startup = StartupMessage.read(data);
+        assertEquals("hetu", startup.getParameter("user"));
+        assertEquals("hive.tpch", startup.getParameter("database"));
+        assertEquals(2, startup.getParameters().size());
+    }
+}
@@ -150,6 +150,9 @@ public class ManagerParserTest {
         Assert.assertEquals(ManagerParseShow.ROUTER, ManagerParseShow.parse("show @@router", 5));
         Assert.assertEquals(ManagerParseShow.ROUTER, ManagerParseShow.parse("SHOW @@ROUTER", 5));
         Assert.assertEquals(ManagerParseShow.ROUTER, ManagerParseShow.parse("show @@ROUTER", 5));
+        Assert.assertEquals(ManagerParseShow.REACTOR, ManagerParseShow.parse("show @@reactor", 5));
+        Assert.assertEquals(ManagerParseShow.REACTOR, ManagerParseShow.parse("SHOW @@REACTOR", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@reactors", 5));
     }
 
     @Test
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.server.handler;
+
+import io.mycat.backend.hetu.HetuConnection;
+import io.mycat.buffer.DirectByteBufferPool;
+import io.mycat.net.NIOProcessor;
+import io.mycat.net.NIOSocketWR;
+import io.mycat.server.ServerConnection;
+import io.netty.util.Timeout;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Kill Handler
+ */
+public class TestKillHandler {
+    private final List<Runnable> queued = new ArrayList<>();
+    private ServerSocketChannel server;
+    private SocketChannel client;
+    private SocketChannel channel;
+    private Selector selector;
+    private ServerConnection front;
+    private HetuConnection hetu;
+
+    @Before
+    public void setUp() throws Exception {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = SocketChannel.open(server.getLocalAddress());
+        channel = server.accept();
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        front = new ServerConnection(channel);
+        front.setProcessor(new NIOProcessor("test", new DirectByteBufferPool(4096, (short) 256, (short) 1, 0), null));
+        ((NIOSocketWR) front.getSocketWR()).register(selector);
+
+        hetu = new HetuConnection();
+        hetu.setCon((Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                }));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        selector.close();
+        channel.close();
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testCancelRunningStatement() throws Exception {
+        AtomicInteger cancels = new AtomicInteger();
+        Timeout deadline = hetu.beginStatement(null, "hive", null, statement(cancels));
+        KillHandler.cancelQuery(hetu, front, queued::add);
+        queued.get(0).run();
+        assertEquals(1, cancels.get());
+        hetu.endStatement(deadline, false);
+        assertTrue(hetu.isCancelled());
+        assertOkWritten();
+    }
+
+    @Test
+    public void testQueuedCancelSkipsLaterStatement() throws Exception {
+        AtomicInteger firstCancels = new AtomicInteger();
+        AtomicInteger secondCancels = new AtomicInteger();
+        Timeout first = hetu.beginStatement(null, "hive", null, statement(firstCancels));
+        KillHandler.cancelQuery(hetu, front, queued::add);
+        assertEquals(1, queued.size());
+
+        // cancel还在排队时第一条语句结束, 第二条语句开始
+        hetu.endStatement(first, true);
+        Timeout second = hetu.beginStatement(null, "hive", null, statement(secondCancels));
+        queued.get(0).run();
+        assertEquals(0, firstCancels.get());
+        assertEquals(0, secondCancels.get());
+        hetu.endStatement(second, true);
+        assertFalse(hetu.isCancelled());
+        assertOkWritten();
+    }
+
+    @Test
+    public void testNothingRunning() throws Exception {
+        KillHandler.cancelQuery(hetu, front, queued::add);
+        assertTrue(queued.isEmpty());
+        assertOkWritten();
+    }
+
+    private static Statement statement(final AtomicInteger cancels) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[] {Statement.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("cancel".equals(method.getName())) {
+                            cancels.incrementAndGet();
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private void assertOkWritten() throws Exception {
+        ByteBuffer packet = ByteBuffer.allocate(64);
+        client.read(packet);
+        assertTrue(packet.position() > 4);
+        assertEquals(1, packet.get(3));
+        assertEquals(0, packet.get(4));
+    }
+}
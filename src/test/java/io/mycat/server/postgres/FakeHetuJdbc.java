@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.server.postgres;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * jdbc Connection of a fake hetu server: select returns the rows (one varchar column n), sql
+ * containing "missing" fails, sql containing "sleep" blocks until the statement is cancelled,
+ * other statements return an update count. sql, parameters and transaction calls are recorded.
+ */
+public class FakeHetuJdbc {
+    final List<String> calls = new CopyOnWriteArrayList<>();
+    final CountDownLatch sleeping = new CountDownLatch(1);
+    volatile Object[][] rows = {{"a"}, {"b"}};
+
+    public Connection connection() {
+        return proxy(Connection.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "createStatement":
+                        return statement(Statement.class, null);
+                    case "prepareStatement":
+                        calls.add("prepare " + args[0]);
+                        return statement(PreparedStatement.class, (String) args[0]);
+                    case "commit":
+                    case "rollback":
+                        calls.add(method.getName());
+                        return null;
+                    case "setAutoCommit":
+                        calls.add("autocommit " + args[0]);
+                        return null;
+                    case "getAutoCommit":
+                        return true;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            }
+        });
+    }
+
+    private <T extends Statement> T statement(Class<T> type, final String preparedSql) {
+        return proxy(type, new InvocationHandler() {
+            private final CountDownLatch cancelled = new CountDownLatch(1);
+            private ResultSet rs;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+                String name = method.getName();
+                if (name.equals("execute")) {
+                    return run(args == null ? preparedSql : (String) args[0]);
+                } else if (name.equals("getResultSet")) {
+                    return rs;
+                } else if (name.equals("getUpdateCount")) {
+                    return rs == null ? 0 : -1;
+                } else if (name.equals("cancel")) {
+                    calls.add("cancel");
+                    cancelled.countDown();
+                    return null;
+                } else if (name.startsWith("set") && args != null && args.length == 2) {
+                    calls.add(name + " " + args[0] + " " + args[1]);
+                    return null;
+                }
+                return defaultValue(method.getReturnType());
+            }
+
+            private boolean run(String sql) throws Exception {
+                calls.add(sql);
+                if (sql.contains("sleep")) {
+                    sleeping.countDown();
+                    cancelled.await(10, TimeUnit.SECONDS);
+                    throw new SQLException("Query was canceled");
+                }
+                if (sql.contains("missing")) {
+                    throw new SQLException("Table hive.tpch.missing does not exist");
+                }
+                if (sql.trim().toLowerCase(Locale.ROOT).startsWith("select")) {
+                    rs = resultSet(rows);
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    private static ResultSet resultSet(final Object[][] rows) {
+        final ResultSetMetaData metaData = proxy(ResultSetMetaData.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getColumnCount":
+                        return 1;
+                    case "getColumnLabel":
+                    case "getColumnName":
+                        return "n";
+                    case "getColumnType":
+                        return Types.VARCHAR;
+                    case "getColumnTypeName":
+                        return "varchar";
+                    case "getColumnDisplaySize":
+                        return 64;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            }
+        });
+        return proxy(ResultSet.class, new InvocationHandler() {
+            private int rowIndex = -1;
+            private Object last;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "next":
+                        return ++rowIndex < rows.length;
+                    case "getMetaData":
+                        return metaData;
+                    case "wasNull":
+                        return last == null;
+                    case "getString":
+                        last = rows[rowIndex][(Integer) args[0] - 1];
+                        return last == null ? null : last.toString();
+                    case "getBytes":
+                        last = rows[rowIndex][(Integer) args[0] - 1];
+                        return last == null ? null : last.toString().getBytes(StandardCharsets.UTF_8);
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            }
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == double.class) {
+            return 0d;
+        } else if (type == String.class) {
+            return "";
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakeHetuJdbc.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+}
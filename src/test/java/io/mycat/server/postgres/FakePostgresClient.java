@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.server.postgres;
+
+import io.mycat.buffer.DirectByteBufferPool;
+import io.mycat.net.NIOProcessor;
+import io.mycat.net.NIOSocketWR;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * a loopback socket whose server side is a PostgresConnection, the client side reads the
+ * backend messages the handlers write. frontend messages are built with message() and passed
+ * to the handler directly.
+ */
+public class FakePostgresClient implements Closeable {
+    private static final DirectByteBufferPool BUFFER_POOL = new DirectByteBufferPool(4096 * 64, (short) 4096,
+            (short) 2, 0);
+
+    final PostgresConnection conn;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Socket client;
+    private final DataInputStream in;
+
+    public FakePostgresClient(long id) throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = new Socket();
+        client.connect(server.getLocalAddress());
+        client.setSoTimeout(10000);
+        in = new DataInputStream(client.getInputStream());
+        SocketChannel channel = server.accept();
+        channel.configureBlocking(false);
+        conn = new PostgresConnection(channel);
+        conn.setId(id);
+        conn.setProcessor(new NIOProcessor("test", BUFFER_POOL, null));
+        selector = Selector.open();
+        ((NIOSocketWR) conn.getSocketWR()).register(selector);
+    }
+
+    /**
+     * Byte1 type, Int32 length, fields: String (null terminated), Short (Int16), Integer (Int32)
+     * or byte[] (as is)
+     */
+    public static byte[] message(char type, Object... fields) throws IOException {
+        byte[] body = body(fields);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(type);
+        data.writeInt(body.length + 4);
+        data.write(body);
+        return out.toByteArray();
+    }
+
+    /**
+     * messages of the startup phase have no type byte
+     */
+    public static byte[] startupMessage(Object... fields) throws IOException {
+        byte[] body = body(fields);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(body.length + 4);
+        data.write(body);
+        return out.toByteArray();
+    }
+
+    private static byte[] body(Object... fields) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        for (Object field : fields) {
+            if (field instanceof String) {
+                data.write(((String) field).getBytes(StandardCharsets.UTF_8));
+                data.writeByte(0);
+            } else if (field instanceof Short) {
+                data.writeShort((Short) field);
+            } else if (field instanceof Integer) {
+                data.writeInt((Integer) field);
+            } else {
+                data.write((byte[]) field);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public int readByte() throws IOException {
+        return in.read();
+    }
+
+    public Message read() throws IOException {
+        char type = (char) in.readUnsignedByte();
+        byte[] body = new byte[in.readInt() - 4];
+        in.readFully(body);
+        return new Message(type, body);
+    }
+
+    /**
+     * messages up to and including ReadyForQuery
+     */
+    public List<Message> readUntilReady() throws IOException {
+        List<Message> messages = new ArrayList<>();
+        Message m;
+        do {
+            m = read();
+            messages.add(m);
+        } while (m.type != 'Z');
+        return messages;
+    }
+
+    public static String types(List<Message> messages) {
+        StringBuilder sb = new StringBuilder();
+        for (Message m : messages) {
+            sb.append(m.type);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * true if the server closed the connection
+     */
+    public boolean isEof() throws IOException {
+        InputStream stream = client.getInputStream();
+        return stream.read() < 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        conn.close("test end");
+        client.close();
+        selector.close();
+        server.close();
+    }
+
+    /**
+     * a backend message
+     */
+    public static class Message {
+        final char type;
+        final byte[] body;
+
+        Message(char type, byte[] body) {
+            this.type = type;
+            this.body = body;
+        }
+
+        /**
+         * CommandComplete tag
+         */
+        String tag() {
+            return new String(body, 0, body.length - 1, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * ReadyForQuery transaction status
+         */
+        char status() {
+            return (char) body[0];
+        }
+
+        /**
+         * field of an ErrorResponse, e.g. 'C' for the SQLSTATE
+         */
+        String field(char code) {
+            int i = 0;
+            while (i < body.length && body[i] != 0) {
+                int end = i + 1;
+                while (body[end] != 0) {
+                    end++;
+                }
+                if (body[i] == code) {
+                    return new String(body, i + 1, end - i - 1, StandardCharsets.UTF_8);
+                }
+                i = end + 1;
+            }
+            return null;
+        }
+
+        /**
+         * the text value of the single column of a DataRow
+         */
+        String value() {
+            int length = intAt(2);
+            return length < 0 ? null : new String(body, 6, length, StandardCharsets.UTF_8);
+        }
+
+        int intAt(int offset) {
+            return ((body[offset] & 0xff) << 24) | ((body[offset + 1] & 0xff) << 16)
+                    | ((body[offset + 2] & 0xff) << 8) | (body[offset + 3] & 0xff);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.server.postgres;
+
+import io.mycat.backend.hetu.HetuConnection;
+import io.mycat.net.FrontendConnection;
+import io.mycat.net.postgres.CancelRequest;
+import io.mycat.net.postgres.SSLRequest;
+import io.mycat.net.postgres.StartupMessage;
+import io.mycat.server.postgres.FakePostgresClient.Message;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static io.mycat.server.postgres.FakePostgresClient.message;
+import static io.mycat.server.postgres.FakePostgresClient.startupMessage;
+import static io.mycat.server.postgres.FakePostgresClient.types;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Postgres Authenticator
+ */
+public class TestPostgresAuthenticator {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void testStartup() throws Exception {
+        try (FakePostgresClient client = new FakePostgresClient(1)) {
+            PostgresAuthenticator authenticator = new PostgresAuthenticator(client.conn, DIRECT);
+            // 拒绝SSL, 客户端继续用明文
+            authenticator.handle(startupMessage(SSLRequest.CODE));
+            assertEquals('N', client.readByte());
+
+            authenticator.handle(startupMessage(StartupMessage.PROTOCOL_3, "user", "u", "database", "hive", ""));
+            Message m = client.read();
+            assertEquals('R', m.type);
+            // AuthenticationCleartextPassword
+            assertEquals(3, m.intAt(0));
+
+            // 等待密码时的其它消息
+            authenticator.handle(message('Q', "select 1"));
+            m = client.read();
+            assertEquals('E', m.type);
+            assertEquals("FATAL", m.field('S'));
+            assertEquals("08P01", m.field('C'));
+        }
+    }
+
+    @Test
+    public void testInvalidStartup() throws Exception {
+        try (FakePostgresClient client = new FakePostgresClient(1)) {
+            new PostgresAuthenticator(client.conn, DIRECT).handle(startupMessage(StartupMessage.PROTOCOL_3, ""));
+            assertEquals("28000", client.read().field('C'));
+        }
+        try (FakePostgresClient client = new FakePostgresClient(1)) {
+            new PostgresAuthenticator(client.conn, DIRECT).handle(startupMessage(2 << 16, "user", "u", ""));
+            assertEquals("0A000", client.read().field('C'));
+        }
+    }
+
+    @Test
+    public void testCancelRequest() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (FakePostgresClient target = new FakePostgresClient(7)) {
+            FakeHetuJdbc hetu = new FakeHetuJdbc();
+            HetuConnection backConn = new HetuConnection();
+            backConn.setCon(hetu.connection());
+            target.conn.backConn = backConn;
+            target.conn.startupDone();
+            PostgresCommandHandler handler = new PostgresCommandHandler(target.conn,
+                    Collections.<String, String>emptyMap(), executor);
+            handler.handle(message('Q', "select sleep(60)"));
+            assertTrue(hetu.sleeping.await(10, TimeUnit.SECONDS));
+
+            // secret key不对时忽略, 发送CancelRequest的连接被关闭
+            cancel(target, target.conn.getSecretKey() + 1);
+            assertFalse(hetu.calls.contains("cancel"));
+
+            cancel(target, target.conn.getSecretKey());
+            assertTrue(hetu.calls.contains("cancel"));
+            List<Message> messages = target.readUntilReady();
+            assertEquals("EZ", types(messages));
+            assertEquals("57014", messages.get(0).field('C'));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void cancel(final FakePostgresClient target, int key) throws Exception {
+        try (FakePostgresClient client = new FakePostgresClient(8)) {
+            PostgresAuthenticator authenticator = new PostgresAuthenticator(client.conn, DIRECT) {
+                @Override
+                FrontendConnection findFrontend(long id) {
+                    return id == target.conn.getId() ? target.conn : null;
+                }
+            };
+            authenticator.handle(startupMessage(CancelRequest.CODE, (int) target.conn.getId(), key));
+            assertTrue(client.isEof());
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.server.postgres;
+
+import io.mycat.backend.hetu.HetuConnection;
+import io.mycat.net.postgres.PostgresTypes;
+import io.mycat.server.postgres.FakePostgresClient.Message;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static io.mycat.server.postgres.FakePostgresClient.message;
+import static io.mycat.server.postgres.FakePostgresClient.types;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Postgres Command Handler
+ */
+public class TestPostgresCommandHandler {
+    // 消息在调用handle()的线程中执行
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private FakePostgresClient client;
+    private FakeHetuJdbc hetu;
+    private PostgresCommandHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        client = new FakePostgresClient(1);
+        hetu = new FakeHetuJdbc();
+        HetuConnection backConn = new HetuConnection();
+        backConn.setCon(hetu.connection());
+        PostgresConnection conn = client.conn;
+        conn.backConn = backConn;
+        conn.setUser("u");
+        conn.setCatalog("hive");
+        conn.setSchema("tpch");
+        conn.startupDone();
+        handler = new PostgresCommandHandler(conn, Collections.singletonMap("extra_float_digits", "3"), DIRECT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+    }
+
+    @Test
+    public void testSimpleQuery() throws Exception {
+        handler.handle(message('Q', "select n from t"));
+        List<Message> messages = client.readUntilReady();
+        assertEquals("TDDCZ", types(messages));
+        assertEquals("a", messages.get(1).value());
+        assertEquals("b", messages.get(2).value());
+        assertEquals("SELECT 2", messages.get(3).tag());
+        assertEquals('I', messages.get(4).status());
+
+        handler.handle(message('Q', "show extra_float_digits"));
+        messages = client.readUntilReady();
+        assertEquals("TDCZ", types(messages));
+        assertEquals("3", messages.get(1).value());
+    }
+
+    @Test
+    public void testExtendedQuery() throws Exception {
+        handler.handle(message('P', "s1", "select n from t where id = $1", (short) 1, PostgresTypes.INT8));
+        handler.handle(message('B', "", "s1", (short) 0, (short) 1, 1, "7".getBytes(), (short) 0));
+        handler.handle(message('D', new byte[] {'P'}, ""));
+        handler.handle(message('E', "", 0));
+        handler.handle(message('S'));
+        List<Message> messages = client.readUntilReady();
+        assertEquals("12TDDCZ", types(messages));
+        assertEquals("SELECT 2", messages.get(5).tag());
+        assertTrue(hetu.calls.contains("prepare select n from t where id = ?"));
+        assertTrue(hetu.calls.contains("setLong 1 7"));
+
+        // 命名语句可以再次Bind, 结果为text格式时不需要Describe
+        handler.handle(message('B', "", "s1", (short) 0, (short) 1, 1, "8".getBytes(), (short) 0));
+        handler.handle(message('E', "", 0));
+        handler.handle(message('C', new byte[] {'S'}, "s1"));
+        handler.handle(message('S'));
+        assertEquals("2DDC3Z", types(client.readUntilReady()));
+        assertTrue(hetu.calls.contains("setLong 1 8"));
+    }
+
+    @Test
+    public void testSkipUntilSync() throws Exception {
+        handler.handle(message('P', "s1", "select n from t", (short) 0));
+        handler.handle(message('B', "", "nope", (short) 0, (short) 0, (short) 0));
+        // 出错后到Sync之前的消息被忽略
+        handler.handle(message('E', "", 0));
+        handler.handle(message('P', "s2", "select n from t", (short) 0));
+        handler.handle(message('S'));
+        List<Message> messages = client.readUntilReady();
+        assertEquals("1EZ", types(messages));
+        assertEquals("26000", messages.get(1).field('C'));
+        assertEquals('I', messages.get(2).status());
+        assertFalse(hetu.calls.contains("select n from t"));
+
+        // Sync之后恢复正常, s2没有被创建
+        handler.handle(message('B', "", "s1", (short) 0, (short) 0, (short) 0));
+        handler.handle(message('E', "", 0));
+        handler.handle(message('B', "", "s2", (short) 0, (short) 0, (short) 0));
+        handler.handle(message('S'));
+        messages = client.readUntilReady();
+        assertEquals("2DDCEZ", types(messages));
+        assertEquals("26000", messages.get(4).field('C'));
+    }
+
+    @Test
+    public void testPortalSuspended() throws Exception {
+        hetu.rows = new Object[][] {{"a"}, {"b"}, {"c"}};
+        handler.handle(message('P', "", "select n from t", (short) 0));
+        handler.handle(message('B', "p1", "", (short) 0, (short) 0, (short) 0));
+        handler.handle(message('E', "p1", 2));
+        handler.handle(message('H'));
+        List<Message> messages = readMessages(5);
+        assertEquals("12DDs", types(messages));
+
+        // 下一次Execute从打开的ResultSet继续
+        handler.handle(message('E', "p1", 2));
+        handler.handle(message('S'));
+        messages = client.readUntilReady();
+        assertEquals("DCZ", types(messages));
+        assertEquals("c", messages.get(0).value());
+        assertEquals("SELECT 3", messages.get(1).tag());
+        assertEquals(1, count(hetu.calls, "select n from t"));
+
+        // 隐式事务在Sync时结束, portal被关闭
+        handler.handle(message('E', "p1", 0));
+        handler.handle(message('S'));
+        messages = client.readUntilReady();
+        assertEquals("EZ", types(messages));
+        assertEquals("34000", messages.get(0).field('C'));
+    }
+
+    @Test
+    public void testLocalTransaction() throws Exception {
+        handler.handle(message('Q', "BEGIN"));
+        List<Message> messages = client.readUntilReady();
+        assertEquals("CZ", types(messages));
+        assertEquals("BEGIN", messages.get(0).tag());
+        assertEquals('T', messages.get(1).status());
+        assertTrue(hetu.calls.contains("autocommit false"));
+        assertFalse(hetu.calls.contains("BEGIN"));
+
+        handler.handle(message('Q', "insert into t values ('x')"));
+        messages = client.readUntilReady();
+        assertEquals("INSERT 0 0", messages.get(0).tag());
+        assertEquals('T', messages.get(1).status());
+
+        handler.handle(message('Q', "COMMIT"));
+        messages = client.readUntilReady();
+        assertEquals("COMMIT", messages.get(0).tag());
+        assertEquals('I', messages.get(1).status());
+        assertTrue(hetu.calls.contains("commit"));
+        assertTrue(hetu.calls.contains("autocommit true"));
+    }
+
+    @Test
+    public void testFailedTransaction() throws Exception {
+        handler.handle(message('Q', "BEGIN; select n from missing"));
+        List<Message> messages = client.readUntilReady();
+        assertEquals("CEZ", types(messages));
+        assertEquals('E', messages.get(2).status());
+
+        handler.handle(message('Q', "select n from t"));
+        messages = client.readUntilReady();
+        assertEquals("EZ", types(messages));
+        assertEquals("25P02", messages.get(0).field('C'));
+
+        // 失败的事务COMMIT时回滚
+        handler.handle(message('Q', "COMMIT"));
+        messages = client.readUntilReady();
+        assertEquals("ROLLBACK", messages.get(0).tag());
+        assertEquals('I', messages.get(1).status());
+        assertTrue(hetu.calls.contains("rollback"));
+        assertFalse(hetu.calls.contains("commit"));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        // RESET SESSION和SET SESSION一样发给hetu, 其它RESET由网关应答
+        handler.handle(message('Q', "RESET SESSION query_max_memory"));
+        List<Message> messages = client.readUntilReady();
+        assertEquals("CZ", types(messages));
+        assertTrue(hetu.calls.contains("RESET SESSION query_max_memory"));
+
+        handler.handle(message('Q', "RESET extra_float_digits"));
+        messages = client.readUntilReady();
+        assertEquals("RESET", messages.get(0).tag());
+        assertFalse(hetu.calls.contains("RESET extra_float_digits"));
+    }
+
+    private List<Message> readMessages(int n) throws Exception {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            messages.add(client.read());
+        }
+        return messages;
+    }
+
+    private static int count(List<String> calls, String call) {
+        int n = 0;
+        for (String c : calls) {
+            if (c.equals(call)) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.server.postgres;
+
+import io.mycat.net.postgres.PostgresTypes;
+import io.mycat.util.MysqlDefs;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Postgres Statement
+ */
+public class TestPostgresStatement {
+    @Test
+    public void testParameters() {
+        List<Integer> order = new ArrayList<>();
+        assertEquals("select ? , '$1', \"$2\" from t where a = ? and b = ? -- $4\n",
+                PostgresStatement.toJdbc("select $2 , '$1', \"$2\" from t where a = $1 and b = $2 -- $4\n", order));
+        assertEquals(Arrays.asList(1, 0, 1), order);
+
+        PostgresStatement statement = new PostgresStatement("s1", "select * from t where a = $2",
+                new int[] {PostgresTypes.INT4}, 1);
+        assertEquals(2, statement.getParameterCount());
+        assertArrayEquals(new int[] {1}, statement.getParameterOrder());
+        assertEquals(PostgresTypes.INT4, statement.getClientType(0));
+        assertTrue(statement.needsInputTypes());
+        assertTrue(statement.returnsRows());
+        assertFalse(new PostgresStatement("", "insert into t values ($1)", new int[] {PostgresTypes.INT8}, 2)
+                .needsInputTypes());
+    }
+
+    @Test
+    public void testSplit() {
+        assertEquals(Arrays.asList("select 1", "select ';'", "/* a; */ select 2"),
+                PostgresStatement.split("select 1; select ';' ;/* a; */ select 2;;"));
+        assertTrue(PostgresStatement.split(" ; -- nothing").isEmpty());
+        assertEquals("SELECT", PostgresStatement.keyword(" /* c */ (select 1)"));
+        assertEquals("BEGIN", PostgresStatement.keyword("-- c\nbegin;"));
+    }
+
+    @Test
+    public void testCommandTag() {
+        assertEquals("INSERT 0 3", PostgresCommandHandler.commandTag("INSERT", "insert into t select 1", 3));
+        assertEquals("DELETE 0", PostgresCommandHandler.commandTag("DELETE", "delete from t", -1));
+        assertEquals("CREATE TABLE", PostgresCommandHandler.commandTag("CREATE", "create table t (a int)", 0));
+        assertEquals("true", PostgresCommandHandler.textValue("t", MysqlDefs.FIELD_TYPE_BIT));
+        assertEquals("t", PostgresCommandHandler.textValue("t", MysqlDefs.FIELD_TYPE_VAR_STRING));
+    }
+
+    @Test
+    public void testStartupOptions() {
+        Map<String, String> options = PostgresAuthenticator.parseOptions(
+                "-c server_url=10.0.0.1:8080 -cschema=tpch --search-path=x -X");
+        assertEquals("10.0.0.1:8080", options.get("server_url"));
+        assertEquals("tpch", options.get("schema"));
+        assertEquals("x", options.get("search_path"));
+        assertEquals(3, options.size());
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.statistic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test Connect Stat
+ */
+public class TestConnectStat {
+    @Test
+    public void testRange() {
+        assertEquals(10, ConnectStat.range(0));
+        assertEquals(10, ConnectStat.range(10));
+        assertEquals(100, ConnectStat.range(11));
+        assertEquals(5000, ConnectStat.range(5000));
+        assertEquals(Long.MAX_VALUE, ConnectStat.range(60000));
+    }
+
+    @Test
+    public void testLogins() {
+        ConnectStat stat = ConnectStat.getInstance();
+        int logins = stat.getLogins();
+        long count = stat.getLoginCount();
+        long failures = stat.getFailureCount();
+        long slow = stat.getLoginHistogram().get(5);
+
+        stat.loginStart();
+        stat.loginStart();
+        assertEquals(logins + 2, stat.getLogins());
+        assertEquals(true, stat.getMaxLogins() >= logins + 2);
+        stat.loginEnd(5, true);
+        stat.loginEnd(6000, false);
+        assertEquals(logins, stat.getLogins());
+        assertEquals(count + 2, stat.getLoginCount());
+        assertEquals(failures + 1, stat.getFailureCount());
+        assertEquals(slow + 1, stat.getLoginHistogram().get(5));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.mycat.util;
+
+import io.mycat.backend.mysql.BufferUtil;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test String Encoder
+ */
+public class StringEncoderTest {
+    @Test
+    public void testDirectPath() throws Exception {
+        StringEncoder utf8 = new StringEncoder("utf8");
+        assertTrue(utf8.hasDirectPath());
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        assertTrue(utf8.putDirect("hetu", buffer));
+        assertArrayEquals(withLength("hetu".getBytes("utf8")), written(buffer));
+
+        // 非ascii字符需要encode(), buffer不变
+        buffer.clear();
+        assertFalse(utf8.putDirect("hetu\u00e9", buffer));
+        assertEquals(0, buffer.position());
+
+        StringEncoder latin1 = new StringEncoder("latin1");
+        assertTrue(latin1.putDirect("caf\u00e9", buffer));
+        assertArrayEquals(withLength("caf\u00e9".getBytes("ISO-8859-1")), written(buffer));
+
+        assertFalse(new StringEncoder("UTF-16").hasDirectPath());
+    }
+
+    @Test
+    public void testDirectPathLargerThanScratch() throws Exception {
+        StringEncoder utf8 = new StringEncoder("utf8");
+        ByteBuffer buffer = ByteBuffer.allocate(256 * 1024);
+        assertTrue(utf8.putDirectBytes("hetu", buffer));
+        assertArrayEquals("hetu".getBytes("utf8"), written(buffer));
+
+        // 超过scratch的ascii字符串不走直接拷贝, 由调用方encode(), buffer不变
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        buffer.clear();
+        assertFalse(utf8.putDirect(large, buffer));
+        assertFalse(utf8.putDirectBytes(large, buffer));
+        assertEquals(0, buffer.position());
+        assertArrayEquals(large.getBytes("utf8"), bytes(utf8.encode(large)));
+
+        // scratch没有被大字符串替换
+        assertTrue(utf8.putDirect("gateway", buffer));
+        assertArrayEquals(withLength("gateway".getBytes("utf8")), written(buffer));
+    }
+
+    @Test
+    public void testEncode() throws Exception {
+        String[] values = {"\u5f00\u6e90", "hetu \u6570\u636e\u5e93 gateway", "\ud83d\ude00", "caf\u00e9"};
+        for (String charset : new String[] {"utf8", "gbk", "UTF-16"}) {
+            StringEncoder encoder = new StringEncoder(charset);
+            for (String value : values) {
+                assertArrayEquals(value.getBytes(charset), bytes(encoder.encode(value)));
+            }
+        }
+
+        // 大于scratch的字符串, 长度前缀超过1个字节
+        char[] chars = new char[100000];
+        Arrays.fill(chars, '\u4e2d');
+        String large = new String(chars);
+        StringEncoder encoder = new StringEncoder("utf8");
+        assertArrayEquals(large.getBytes("utf8"), bytes(encoder.encode(large)));
+        assertArrayEquals(values[0].getBytes("utf8"), bytes(encoder.encode(values[0])));
+
+        // 不支持的字符集和 String.getBytes() 一样使用默认字符集
+        assertArrayEquals(values[1].getBytes(), bytes(new StringEncoder("no-such-charset").encode(values[1])));
+    }
+
+    private static byte[] withLength(byte[] v) {
+        ByteBuffer buffer = ByteBuffer.allocate(BufferUtil.getLength(v));
+        BufferUtil.writeWithLength(buffer, v);
+        return buffer.array();
+    }
+
+    private static byte[] written(ByteBuffer buffer) {
+        buffer.flip();
+        return bytes(buffer);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}